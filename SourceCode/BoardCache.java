@@ -0,0 +1,106 @@
+package SourceCode;
+/**
+ * Cache of rendered live departure boards, one per station and direction.
+ * A live board lists the next departures from the current minute onwards, rendered
+ * both as console text and as JSON. Kiosks ask for the same boards over and over, so
+ * each one is rendered once and then served from memory until either
+ * - a change (add, delay, reschedule, cancel, simulation) touches that station and direction,
+ *   which the timetable records as a new station stamp, or
+ * - the clock moves on to the next minute and the board has to roll forward.
+ * Entries are checked against the current timetable version on every read, so a reader
+ * never sees a board from before a change it could already see elsewhere.
+ * Demonstrates use of ConcurrentHashMap, records and LongAdder counters.
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class BoardCache {
+    /** Number of departures on a live board unless configured otherwise */
+    public static final int DEFAULT_ROWS = 10;
+
+    /**
+     * One rendered live board.
+     * @param stationNumber The station the board belongs to
+     * @param northbound The direction the board shows
+     * @param minuteOfDay The minute the board starts from
+     * @param stamp The station stamp of the timetable version the board was built from
+     * @param size The number of departures on the board
+     * @param text The board as console text
+     * @param json The board as JSON
+     */
+    public record Board(int stationNumber, boolean northbound, int minuteOfDay, long stamp,
+                        int size, String text, String json) {}
+
+    /** Rendered boards keyed by station number * 2 + (1 if northbound) */
+    private final ConcurrentHashMap<Integer, Board> boards = new ConcurrentHashMap<>();
+
+    /** Number of departures per board */
+    private final int rows;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     * @param rows Number of departures per board
+     */
+    public BoardCache(int rows) {
+        if (rows <= 0) {
+            throw new IllegalArgumentException("A board must show at least one departure, got: " + rows);
+        }
+        this.rows = rows;
+    }
+
+    /**
+     * Gets the live board of a station in one direction, rendering it only if the cached one is stale.
+     * @param timetable The timetable version to answer from
+     * @param stationNumber The station to show
+     * @param northbound The direction to show
+     * @param time The current time in HHMM format
+     * @return The board
+     */
+    public Board get(Timetable timetable, int stationNumber, boolean northbound, int time) {
+        int minute = TimeUtils.toMinuteOfDay(time);
+        long stamp = timetable.getStationStamp(stationNumber, northbound);
+        Integer key = stationNumber * 2 + (northbound ? 1 : 0);
+
+        Board board = boards.get(key);
+        if (board != null && board.stamp() == stamp && board.minuteOfDay() == minute) {
+            hits.increment();
+            return board;
+        }
+        misses.increment();
+        board = render(timetable, stationNumber, northbound, minute, stamp);
+        // Two readers may render the same board at once; both results are identical
+        boards.put(key, board);
+        return board;
+    }
+
+    private Board render(Timetable timetable, int stationNumber, boolean northbound, int minute, long stamp) {
+        StopEventStore.Departures departures =
+            timetable.getNextDepartures(stationNumber, northbound, TimeUtils.fromMinuteOfDay(minute), rows);
+        String stationName = Stations.getInstance().getStationName(stationNumber);
+
+        StringBuilder text = new StringBuilder();
+        ConsoleRenderer.appendDepartures(text, departures.asList());
+        String json = JsonRenderer.departures(stationName, northbound, departures);
+        return new Board(stationNumber, northbound, minute, stamp, departures.size(), text.toString(), json);
+    }
+
+    /** Drops every cached board */
+    public void clear() {
+        boards.clear();
+    }
+
+    /** @return The number of departures per board */
+    public int getRows() { return rows; }
+
+    /** @return The number of reads served from the cache */
+    public long getHits() { return hits.sum(); }
+
+    /** @return The number of reads that had to render a board */
+    public long getMisses() { return misses.sum(); }
+
+    /** @return The number of boards currently cached */
+    public int size() { return boards.size(); }
+}
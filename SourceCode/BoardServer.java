@@ -0,0 +1,321 @@
+package SourceCode;
+/**
+ * Small HTTP server that publishes departure boards, next trains and delays as JSON.
+ * Built on the JDK's own com.sun.net.httpserver, so no extra libraries are needed.
+ * Every request reads the current timetable version without locking, so requests never
+ * wait for each other or for the console. Requests run one per virtual thread on Java 21
+ * and later, and on a fixed pool of platform threads on older runtimes.
+ *
+ * Endpoints (all GET):
+ * - /boards/{station}                                 the station's departure board
+ * - /next?station={station}&time=HHMM             next train each way (no station: whole system)
+ * - /departures/{station}?direction=north|south&limit=K&time=HHMM&line=CODE
+ *                                                     next K departures one way (optionally of one line)
+ * - /delays?limit=K                                   delayed trains each way, most delayed first (all if no limit)
+ * - /journey?from={station}&to={station}&time=HHMM     earliest-arrival journey, changing trains where needed
+ * - /arrival?from={station}&to={station}&time=HHMM     earliest arrival only, from the travel-time profiles
+ * - /live/{station}?time=HHMM                         next departures each way, served from the board cache
+ * - /cache                                            board cache hit and miss counters
+ * - /metrics                                          operation latencies and index sizes, in the Prometheus text format
+ * Stations can be given by name or by number. Times default to the current time.
+ *
+ * The JDK server leaves Nagle's algorithm on, which holds small responses back for ~40 ms waiting
+ * for the client's delayed ACK. Run with -Dsun.net.httpserver.nodelay=true to send them at once;
+ * Main sets it on startup, since it must be set before the first server is created.
+ *
+ * Demonstrates use of the JDK HTTP server, executors, reflection and exception handling.
+ */
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BoardServer {
+    /** Number of departures returned by /departures when no limit is given */
+    private static final int DEFAULT_LIMIT = 5;
+
+    /** Seconds to let running requests finish when the server stops */
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final SchedulingSystem system;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server on the loopback interface. Call start() to accept requests.
+     * @param system The scheduling system to answer from
+     * @param port The port to listen on (0 picks a free port, see getPort)
+     * @throws IOException if the port cannot be opened
+     */
+    public BoardServer(SchedulingSystem system, int port) throws IOException {
+        this(system, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Creates a server on the given address. Call start() to accept requests.
+     * @param system The scheduling system to answer from
+     * @param address The address and port to listen on
+     * @throws IOException if the port cannot be opened
+     */
+    public BoardServer(SchedulingSystem system, InetSocketAddress address) throws IOException {
+        this.system = system;
+        this.server = HttpServer.create(address, 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Creates the executor requests run on: a virtual thread per request when the
+     * runtime has them (Java 21+), otherwise a fixed pool of daemon platform threads.
+     * Looked up by reflection so the project still compiles and runs on Java 17.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "board-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Starts accepting requests in the background */
+    public void start() {
+        server.start();
+    }
+
+    /** Stops accepting requests and shuts the request threads down */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return The port the server listens on */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers one request, turning bad input into a 400, unknown paths into a 404 and
+     * any other failure into a 500, always with a JSON error body.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, JsonRenderer.error("Only GET is supported"));
+                return;
+            }
+            String rawPath = exchange.getRequestURI().getRawPath();
+            if (rawPath.equals("/metrics")) {
+                send(exchange, 200, PrometheusRenderer.CONTENT_TYPE, PrometheusRenderer.render(system.getMetricsReport()));
+                return;
+            }
+            String body;
+            try {
+                body = route(parsePath(rawPath), parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, JsonRenderer.error(e.getMessage()));
+                return;
+            }
+            if (body == null) {
+                send(exchange, 404, JsonRenderer.error("Not found: " + rawPath));
+            } else {
+                send(exchange, 200, body);
+            }
+        } catch (RuntimeException e) {
+            send(exchange, 500, JsonRenderer.error("Internal error (" + e.getClass().getSimpleName() + ")"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Runs the query a path asks for.
+     * @param path The decoded segments of the path (path[0] is empty)
+     * @param query The decoded query parameters
+     * @return The JSON response, or null if the path is not known
+     */
+    private String route(String[] path, Map<String, String> query) {
+        if (path.length < 2) return null;
+        String resource = path[1];
+        String station = path.length == 3 ? path[2] : null;
+        if (path.length > 3) return null;
+
+        switch (resource) {
+            case "boards": {
+                if (station == null) return null;
+                return JsonRenderer.stationBoard(system.getStationBoard(requireStationName(station)));
+            }
+            case "next": {
+                if (station != null) return null;
+                String name = query.containsKey("station") ? requireStationName(query.get("station")) : null;
+                return JsonRenderer.nextTrains(system.getNextTrains(name, parseTime(query)));
+            }
+            case "departures": {
+                if (station == null) return null;
+                String name = requireStationName(station);
+                boolean northbound = parseDirection(query.get("direction"));
+                int limit = parseLimit(query.get("limit"));
+                StopEventStore.Departures departures = query.containsKey("line")
+                    ? system.getNextDepartures(query.get("line"), name, northbound, parseTime(query), limit)
+                    : system.getNextDepartures(name, northbound, parseTime(query), limit);
+                return JsonRenderer.departures(name, northbound, departures);
+            }
+            case "delays": {
+                if (station != null) return null;
+                return JsonRenderer.delayReport(query.containsKey("limit")
+                    ? system.getDelayReport(parseLimit(query.get("limit")))
+                    : system.getDelayReport());
+            }
+            case "journey": {
+                if (station != null) return null;
+                if (!query.containsKey("from") || !query.containsKey("to")) {
+                    throw new IllegalArgumentException("from and to are required");
+                }
+                return JsonRenderer.itinerary(system.planJourney(requireStationName(query.get("from")),
+                    requireStationName(query.get("to")), parseTime(query)));
+            }
+            case "arrival": {
+                if (station != null) return null;
+                if (!query.containsKey("from") || !query.containsKey("to")) {
+                    throw new IllegalArgumentException("from and to are required");
+                }
+                String from = requireStationName(query.get("from"));
+                String to = requireStationName(query.get("to"));
+                int time = parseTime(query);
+                return JsonRenderer.arrival(from, to, time, system.getArrivalTime(from, to, time));
+            }
+            case "live": {
+                if (station == null) return null;
+                String name = requireStationName(station);
+                int time = parseTime(query);
+                return JsonRenderer.liveBoard(name, system.getLiveBoard(name, true, time),
+                    system.getLiveBoard(name, false, time));
+            }
+            case "cache": {
+                if (station != null) return null;
+                return JsonRenderer.cacheStats(system.getBoardCache());
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Resolves a station given by name, in any case, or by number.
+     * @return The name of the station as the network spells it
+     * @throws IllegalArgumentException if there is no such station
+     */
+    private static String requireStationName(String station) {
+        Stations stations = Stations.getInstance();
+        int number = stations.getStationNumber(station);
+        if (number != -1) return stations.getStationName(number);
+        try {
+            String name = stations.getStationName(Integer.parseInt(station));
+            if (name != null) return name;
+        } catch (NumberFormatException e) {
+            // Not a number either; reported below
+        }
+        throw new IllegalArgumentException("Unknown station: " + station);
+    }
+
+    private static int parseTime(Map<String, String> query) {
+        String time = query.get("time");
+        if (time == null) return TimeUtils.getCurrentTime();
+        int parsed = parseNumber(time, "time");
+        TimeUtils.formatDepartureTime(parsed);
+        return parsed;
+    }
+
+    private static boolean parseDirection(String direction) {
+        if (direction == null) {
+            throw new IllegalArgumentException("direction is required (north or south)");
+        }
+        return switch (direction.toLowerCase()) {
+            case "north", "northbound" -> true;
+            case "south", "southbound" -> false;
+            default -> throw new IllegalArgumentException("direction must be north or south, got: " + direction);
+        };
+    }
+
+    private static int parseLimit(String limit) {
+        if (limit == null) return DEFAULT_LIMIT;
+        int parsed = parseNumber(limit, "limit");
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("limit must be positive, got: " + limit);
+        }
+        return parsed;
+    }
+
+    private static int parseNumber(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number, got: " + value);
+        }
+    }
+
+    /**
+     * Splits a raw path on '/' and decodes each segment once, so an encoded '/' or '%' in a
+     * station name stays part of the name. '+' is only a space in query strings, so it is kept.
+     * @throws IllegalArgumentException if a segment is not validly encoded
+     */
+    private static String[] parsePath(String rawPath) {
+        String[] segments = rawPath.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = decode(segments[i].replace("+", "%2B"));
+        }
+        return segments;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals == -1) {
+                query.put(decode(pair), "");
+            } else {
+                query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
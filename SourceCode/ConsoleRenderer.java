@@ -0,0 +1,323 @@
+package SourceCode;
+/**
+ * Renders query results as the text shown in the console menus.
+ * The query methods only return data; this class is the one place that turns it into
+ * console output. Every listing is built in a StringBuilder first and printed in one go,
+ * and the append methods can be used on their own to render without printing.
+ * Departures are listed under the terminus they are heading to; on a network with several
+ * lines one direction can have several termini, each with its own heading.
+ * Demonstrates use of static methods and StringBuilder.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public final class ConsoleRenderer {
+    /** Line printed under headers and after every group of trains */
+    private static final String SEPARATOR = "-------------------------------";
+
+    /** Private constructor to prevent instantiation */
+    private ConsoleRenderer() {}
+
+    /**
+     * Prints every train in the system, grouped by direction.
+     * @param trains The trains to print
+     */
+    public static void printTrainList(TrainList trains) {
+        StringBuilder out = new StringBuilder();
+        appendTrainList(out, trains);
+        System.out.print(out);
+    }
+
+    /**
+     * Prints a station's departure board.
+     * @param board The board to print
+     */
+    public static void printStationBoard(StationBoard board) {
+        StringBuilder out = new StringBuilder();
+        appendStationBoard(out, board);
+        System.out.print(out);
+    }
+
+    /**
+     * Prints the next train in each direction.
+     * @param next The next trains to print
+     */
+    public static void printNextTrains(NextTrains next) {
+        StringBuilder out = new StringBuilder();
+        appendNextTrains(out, next);
+        System.out.print(out);
+    }
+
+    /**
+     * Prints every delayed train, grouped by direction.
+     * @param report The delay report to print
+     */
+    public static void printDelayReport(DelayReport report) {
+        StringBuilder out = new StringBuilder();
+        appendDelayReport(out, report);
+        System.out.print(out);
+    }
+
+    /**
+     * Prints a planned journey.
+     * @param fromStation The station the journey was asked from
+     * @param toStation The station the journey was asked to
+     * @param itinerary The journey to print, or null if there is none
+     */
+    public static void printItinerary(String fromStation, String toStation, Itinerary itinerary) {
+        StringBuilder out = new StringBuilder();
+        appendItinerary(out, fromStation, toStation, itinerary);
+        System.out.print(out);
+    }
+
+    /**
+     * Prints the operation metrics.
+     * @param report The report to print
+     */
+    public static void printMetrics(MetricsReport report) {
+        StringBuilder out = new StringBuilder();
+        appendMetrics(out, report);
+        System.out.print(out);
+    }
+
+    /**
+     * Renders every train in the system, heading to the northern terminus first.
+     * @param out The builder to append to
+     * @param trains The trains to render
+     */
+    public static void appendTrainList(StringBuilder out, TrainList trains) {
+        if (trains.isEmpty()) {
+            appendNoTrainsMessage(out, null);
+            return;
+        }
+        appendDirectionGroup(out, trains.northbound(), true, "No trains heading to ");
+        appendDirectionGroup(out, trains.southbound(), false, "No trains heading to ");
+    }
+
+    /**
+     * Renders every delayed train, heading to the northern terminus first.
+     * @param out The builder to append to
+     * @param report The delay report to render
+     */
+    public static void appendDelayReport(StringBuilder out, DelayReport report) {
+        if (report.isEmpty()) {
+            out.append("No delayed trains.").append(System.lineSeparator());
+            return;
+        }
+        appendDirectionGroup(out, report.northbound(), true, "No delayed trains heading to ");
+        appendDirectionGroup(out, report.southbound(), false, "No delayed trains heading to ");
+    }
+
+    /**
+     * Renders a station's departure board. Directions without trains are left out.
+     * @param out The builder to append to
+     * @param board The board to render
+     */
+    public static void appendStationBoard(StringBuilder out, StationBoard board) {
+        if (board.isEmpty()) {
+            appendNoTrainsMessage(out, board.stationName());
+            return;
+        }
+        out.append(System.lineSeparator()).append("Schedule for ").append(board.stationName()).append(':')
+           .append(System.lineSeparator());
+        appendDepartures(out, board.northbound());
+        appendDepartures(out, board.southbound());
+    }
+
+    /**
+     * Renders the next train in each direction.
+     * @param out The builder to append to
+     * @param next The next trains to render
+     */
+    public static void appendNextTrains(StringBuilder out, NextTrains next) {
+        if (!next.hasService()) {
+            appendNoTrainsMessage(out, next.stationName());
+            return;
+        }
+        if (next.northbound() != null) {
+            appendDepartures(out, List.of(next.northbound()));
+        }
+        if (next.southbound() != null) {
+            appendDepartures(out, List.of(next.southbound()));
+        }
+
+        // If no future trains are found, show a message
+        if (next.isEmpty()) {
+            out.append("No more trains scheduled for today");
+            if (next.stationName() == null) {
+                out.append('.');
+            } else {
+                out.append(" at ").append(next.stationName());
+            }
+            out.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Renders one schedule line, e.g. "07:30 - TS0001 - Blok M".
+     * Delayed trains get the delay and its reason appended.
+     * @param out The builder to append to
+     * @param entry The departure to render
+     */
+    public static void appendScheduleLine(StringBuilder out, ScheduleEntry entry) {
+        int time = entry.departureTime();
+        appendTwoDigits(out, time / 100).append(':');
+        appendTwoDigits(out, time % 100);
+        out.append(" - ").append(entry.trainID()).append(" - ").append(entry.stationName());
+        if (entry.isDelayed()) {
+            out.append(" | Delayed: ").append(entry.delayMinutes()).append(" minutes (Reason: ")
+               .append(entry.delayReason()).append(')');
+        }
+        out.append(System.lineSeparator());
+    }
+
+    /**
+     * Renders a planned journey, one line per train, e.g.
+     * "07:30 - TS0001 (NS) - Lebak Bulus -> 07:58 Dukuh Atas".
+     * @param out The builder to append to
+     * @param fromStation The station the journey was asked from
+     * @param toStation The station the journey was asked to
+     * @param itinerary The journey to render, or null if there is none
+     */
+    public static void appendItinerary(StringBuilder out, String fromStation, String toStation, Itinerary itinerary) {
+        if (itinerary == null) {
+            out.append("No journey from ").append(fromStation).append(" to ").append(toStation)
+               .append(" for the rest of the day.").append(System.lineSeparator());
+            return;
+        }
+        appendHeader(out, itinerary.destination());
+        for (Itinerary.Leg leg : itinerary.legs()) {
+            appendTwoDigits(out, leg.boardTime() / 100).append(':');
+            appendTwoDigits(out, leg.boardTime() % 100);
+            out.append(" - ").append(leg.trainID()).append(" (").append(leg.getLine().getCode()).append(") - ")
+               .append(leg.boardStation()).append(" -> ");
+            appendTwoDigits(out, leg.alightTime() / 100).append(':');
+            appendTwoDigits(out, leg.alightTime() % 100);
+            out.append(' ').append(leg.alightStation()).append(System.lineSeparator());
+        }
+        out.append("Arrive ");
+        appendTwoDigits(out, itinerary.arrivalTime() / 100).append(':');
+        appendTwoDigits(out, itinerary.arrivalTime() % 100);
+        out.append(" after ").append(itinerary.getDurationMinutes()).append(" minutes, ")
+           .append(itinerary.getTransfers()).append(itinerary.getTransfers() == 1 ? " change" : " changes")
+           .append(System.lineSeparator());
+        out.append(SEPARATOR).append(System.lineSeparator());
+    }
+
+    /**
+     * Renders the operation metrics: one row per operation that was called, then one row per
+     * operation and station, then the size of every index. Latencies are shown in the largest
+     * unit that keeps them at 1 or more, e.g. "850 ns" or "12.4 us".
+     * @param out The builder to append to
+     * @param report The report to render
+     */
+    public static void appendMetrics(StringBuilder out, MetricsReport report) {
+        String header = String.format("%-34s %9s %7s %9s %9s %9s %9s %9s",
+            "Operation", "Calls", "Failed", "Mean", "p50", "p99", "p99.9", "Max");
+        out.append(System.lineSeparator()).append(header).append(System.lineSeparator());
+        out.append(SEPARATOR).append(System.lineSeparator());
+        boolean called = false;
+        for (MetricsReport.OperationStats stats : report.operations()) {
+            if (stats.count() == 0) continue;
+            appendOperationStats(out, stats.operation(), stats);
+            called = true;
+        }
+        if (!called) {
+            out.append("No operations recorded yet.").append(System.lineSeparator());
+        }
+        for (MetricsReport.OperationStats stats : report.stations()) {
+            appendOperationStats(out, stats.operation() + " @ " + stats.station(), stats);
+        }
+        out.append(SEPARATOR).append(System.lineSeparator());
+        out.append("Timetable version ").append(report.timetableVersion()).append(System.lineSeparator());
+        report.indexSizes().forEach((index, size) ->
+            out.append(String.format("%-34s %9d", index, size)).append(System.lineSeparator()));
+        out.append(SEPARATOR).append(System.lineSeparator());
+    }
+
+    private static void appendOperationStats(StringBuilder out, String name, MetricsReport.OperationStats stats) {
+        out.append(String.format("%-34s %9d %7d %9s %9s %9s %9s %9s", name, stats.count(), stats.failures(),
+            formatNanos(stats.getMeanNanos()), formatNanos(stats.p50Nanos()), formatNanos(stats.p99Nanos()),
+            formatNanos(stats.p999Nanos()), formatNanos(stats.maxNanos())));
+        out.append(System.lineSeparator());
+    }
+
+    private static String formatNanos(double nanos) {
+        if (nanos < 1_000) return String.format("%.0f ns", nanos);
+        if (nanos < 1_000_000) return String.format("%.1f us", nanos / 1_000);
+        if (nanos < 1_000_000_000) return String.format("%.1f ms", nanos / 1_000_000);
+        return String.format("%.2f s", nanos / 1_000_000_000);
+    }
+
+    /**
+     * Renders one direction of a system-wide listing, with a message if it is empty.
+     */
+    private static void appendDirectionGroup(StringBuilder out, List<ScheduleEntry> entries, boolean northbound,
+                                             String emptyMessage) {
+        if (entries.isEmpty()) {
+            String destination = Stations.getInstance().getMainLine().getTerminusName(northbound);
+            appendHeader(out, destination);
+            out.append(emptyMessage).append(destination).append(System.lineSeparator());
+            out.append(SEPARATOR).append(System.lineSeparator());
+            return;
+        }
+        appendDepartures(out, entries);
+    }
+
+    /**
+     * Renders one direction of a station board, or nothing if it is empty.
+     * Departures heading to different termini are listed under separate headings,
+     * in the order the termini first appear.
+     * @param out The builder to append to
+     * @param entries The departures to render, all heading the same way
+     */
+    public static void appendDepartures(StringBuilder out, List<ScheduleEntry> entries) {
+        if (entries.isEmpty()) return;
+        List<String> destinations = getDestinations(entries);
+        for (String destination : destinations) {
+            appendHeader(out, destination);
+            for (ScheduleEntry entry : entries) {
+                if (destinations.size() == 1 || entry.getDestination().equals(destination)) {
+                    appendScheduleLine(out, entry);
+                }
+            }
+            out.append(SEPARATOR).append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Lists the termini departures are heading to, in the order they first appear.
+     * On a single-line network every departure of a direction heads the same way, so only the first is looked at.
+     */
+    private static List<String> getDestinations(List<ScheduleEntry> entries) {
+        List<String> destinations = new ArrayList<>(2);
+        if (Stations.getInstance().getLines().size() == 1) {
+            destinations.add(entries.get(0).getDestination());
+            return destinations;
+        }
+        for (ScheduleEntry entry : entries) {
+            String destination = entry.getDestination();
+            if (!destinations.contains(destination)) destinations.add(destination);
+        }
+        return destinations;
+    }
+
+    private static void appendHeader(StringBuilder out, String destination) {
+        out.append(System.lineSeparator()).append("Heading To: ").append(destination).append(System.lineSeparator());
+        out.append(SEPARATOR).append(System.lineSeparator());
+    }
+
+    private static void appendNoTrainsMessage(StringBuilder out, String stationName) {
+        if (stationName != null) {
+            out.append("No trains scheduled for station: ").append(stationName);
+        } else {
+            out.append("No trains scheduled in the system.");
+        }
+        out.append(System.lineSeparator());
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder out, int value) {
+        if (value < 10) out.append('0');
+        return out.append(value);
+    }
+}
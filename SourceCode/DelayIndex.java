@@ -0,0 +1,368 @@
+package SourceCode;
+/**
+ * Index of the delayed stops of a timetable version, one indexed binary heap per direction,
+ * ordered most delayed first, then by departure time, station and train ID.
+ * Every delayed stop has a handle that stays put while the heap moves it around, found by
+ * train ID and stop index, so a change to one train updates, adds or removes only that train's
+ * stops: O(log d) each for d delayed stops, with no scan of the timetable.
+ * A later version's index starts as a copy of this one (O(d)) and applies the trains changed
+ * since; a finished index is never modified, so readers use it without locking. The copy is made
+ * once per read after a run of writes, not once per write (see DelayBenchmark for its cost).
+ * Reports read the heap in order without changing it, through a small frontier heap of
+ * candidate slots: the k most delayed stops cost O(k log k), however many stops are delayed.
+ * Demonstrates use of indexed heaps, primitive arrays, iterators and streams.
+ */
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public final class DelayIndex {
+    private final Heap northbound;
+    private final Heap southbound;
+
+    private DelayIndex(Heap northbound, Heap southbound) {
+        this.northbound = northbound;
+        this.southbound = southbound;
+    }
+
+    /**
+     * Indexes every delayed live stop of some trips.
+     * @param trips The trips of a timetable version
+     * @return The index
+     */
+    public static DelayIndex build(Collection<Trip> trips) {
+        DelayIndex index = new DelayIndex(new Heap(), new Heap());
+        for (Trip trip : trips) {
+            index.apply(trip.getTrainID(), trip);
+        }
+        return index;
+    }
+
+    /**
+     * Creates the index of a later version from this one.
+     * @param trips The trips of the later version, by train ID
+     * @param changedTrainIDs The trains added, changed or removed since this version
+     * @return The index of the later version (this one if no delayed stop changed)
+     */
+    DelayIndex update(Map<String, Trip> trips, Set<String> changedTrainIDs) {
+        DelayIndex next = null;
+        for (String trainID : changedTrainIDs) {
+            Trip trip = trips.get(trainID);
+            if (next == null) {
+                // Nothing to copy for trains that neither had nor got a delayed stop
+                if (!northbound.hasTrain(trainID) && !southbound.hasTrain(trainID) && !hasDelayedStop(trip)) continue;
+                next = new DelayIndex(northbound.copy(), southbound.copy());
+            }
+            next.apply(trainID, trip);
+        }
+        return next == null ? this : next;
+    }
+
+    private static boolean hasDelayedStop(Trip trip) {
+        if (trip == null) return false;
+        for (int i = 0; i < trip.size(); i++) {
+            if (!trip.isCancelled(i) && trip.isDelayed(i)) return true;
+        }
+        return false;
+    }
+
+    /** Brings one train's stops in both heaps in line with its trip (null if removed) */
+    private void apply(String trainID, Trip trip) {
+        northbound.apply(trainID, trip, true);
+        southbound.apply(trainID, trip, false);
+    }
+
+    /** @return The number of delayed stops in both directions */
+    public int size() {
+        return northbound.size + southbound.size;
+    }
+
+    /** @return The number of delayed stops in one direction */
+    public int size(boolean northbound) {
+        return heap(northbound).size;
+    }
+
+    /**
+     * Streams the delayed stops of one direction in order, most delayed first.
+     * Entries are produced as they are consumed, so stream(...).limit(k) only orders k of them.
+     * @param northbound The direction to list
+     * @return The delayed stops
+     */
+    public Stream<ScheduleEntry> stream(boolean northbound) {
+        Heap heap = heap(northbound);
+        return StreamSupport.stream(Spliterators.spliterator(heap.ordered(), heap.size,
+            Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Lists the most delayed stops of one direction.
+     * @param northbound The direction to list
+     * @param limit The maximum number of stops to list
+     * @return Up to limit stops, most delayed first
+     */
+    public List<ScheduleEntry> getMostDelayed(boolean northbound, int limit) {
+        return stream(northbound).limit(limit).toList();
+    }
+
+    private Heap heap(boolean northbound) {
+        return northbound ? this.northbound : southbound;
+    }
+
+    /**
+     * Binary heap of the delayed stops of one direction, with the most delayed at the root.
+     * Handles index the per-stop columns; slots are positions in the heap. A removed stop's
+     * handle is reused by the next stop added.
+     */
+    private static final class Heap {
+        /** Slot of a handle that is not in the heap */
+        private static final int NONE = -1;
+
+        /** Columns of every handle: the trip and stop, and the delay and departure minute it is ordered by */
+        private Trip[] trips = new Trip[0];
+        private int[] stops = new int[0];
+        private int[] delays = new int[0];
+        private int[] minutes = new int[0];
+
+        /** Slot of every handle, or NONE if the handle is free */
+        private int[] slots = new int[0];
+
+        /** Handle at every slot, from the root on */
+        private int[] heap = new int[0];
+
+        /** Number of stops in the heap */
+        private int size = 0;
+
+        /** Handles no longer in use */
+        private int[] free = new int[0];
+        private int freeCount = 0;
+
+        /** Number of handles ever given out */
+        private int handleCount = 0;
+
+        /** Handle of every stop of a train with a delayed stop, by stop index (NONE for other stops) */
+        private Map<String, int[]> handlesByTrain = new HashMap<>();
+
+        /** @return A copy that can be changed without affecting this heap */
+        Heap copy() {
+            Heap copy = new Heap();
+            copy.trips = Arrays.copyOf(trips, handleCount);
+            copy.stops = Arrays.copyOf(stops, handleCount);
+            copy.delays = Arrays.copyOf(delays, handleCount);
+            copy.minutes = Arrays.copyOf(minutes, handleCount);
+            copy.slots = Arrays.copyOf(slots, handleCount);
+            copy.heap = Arrays.copyOf(heap, size);
+            copy.size = size;
+            copy.free = Arrays.copyOf(free, freeCount);
+            copy.freeCount = freeCount;
+            copy.handleCount = handleCount;
+            copy.handlesByTrain = new HashMap<>(handlesByTrain);
+            // The per-train handle arrays are shared until a train changes, see apply
+            return copy;
+        }
+
+        boolean hasTrain(String trainID) {
+            return handlesByTrain.containsKey(trainID);
+        }
+
+        /**
+         * Adds, updates or removes every stop of a train in this direction.
+         * A stop whose delay or time changed keeps its handle and moves up or down the heap.
+         */
+        void apply(String trainID, Trip trip, boolean northbound) {
+            int[] handles = handlesByTrain.get(trainID);
+            int stopCount = Math.max(handles == null ? 0 : handles.length, trip == null ? 0 : trip.size());
+            boolean copied = false;
+            for (int i = 0; i < stopCount; i++) {
+                boolean wanted = trip != null && i < trip.size() && !trip.isCancelled(i) && trip.isDelayed(i)
+                    && trip.isNorthbound(i) == northbound;
+                int handle = handles != null && i < handles.length ? handles[i] : NONE;
+                if (handle == NONE && !wanted) continue;
+                if (!copied) {
+                    // The array may be shared with the heap this one was copied from
+                    int known = handles == null ? 0 : handles.length;
+                    handles = handles == null ? new int[stopCount] : Arrays.copyOf(handles, stopCount);
+                    Arrays.fill(handles, known, stopCount, NONE);
+                    copied = true;
+                }
+                if (!wanted) {
+                    remove(handle);
+                    handles[i] = NONE;
+                } else if (handle == NONE) {
+                    handles[i] = add(trip, i);
+                } else {
+                    update(handle, trip, i);
+                }
+            }
+            if (!copied) return;
+            int remaining = 0;
+            for (int handle : handles) {
+                if (handle != NONE) remaining++;
+            }
+            if (remaining == 0) {
+                handlesByTrain.remove(trainID);
+            } else {
+                handlesByTrain.put(trainID, handles);
+            }
+        }
+
+        private int add(Trip trip, int stop) {
+            int handle;
+            if (freeCount > 0) {
+                handle = free[--freeCount];
+            } else {
+                handle = handleCount++;
+                if (handle == trips.length) grow();
+            }
+            set(handle, trip, stop);
+            if (size == heap.length) heap = Arrays.copyOf(heap, Math.max(16, size * 2));
+            heap[size] = handle;
+            slots[handle] = size;
+            size++;
+            siftUp(size - 1);
+            return handle;
+        }
+
+        private void update(int handle, Trip trip, int stop) {
+            set(handle, trip, stop);
+            int slot = slots[handle];
+            siftUp(slot);
+            siftDown(slots[handle]);
+        }
+
+        private void remove(int handle) {
+            int slot = slots[handle];
+            int last = heap[--size];
+            slots[handle] = NONE;
+            trips[handle] = null;
+            if (freeCount == free.length) free = Arrays.copyOf(free, Math.max(16, freeCount * 2));
+            free[freeCount++] = handle;
+            if (slot == size) return;
+            heap[slot] = last;
+            slots[last] = slot;
+            siftUp(slot);
+            siftDown(slots[last]);
+        }
+
+        private void set(int handle, Trip trip, int stop) {
+            trips[handle] = trip;
+            stops[handle] = stop;
+            delays[handle] = trip.getDelay(stop);
+            minutes[handle] = TimeUtils.toMinuteOfDay(trip.getTime(stop));
+        }
+
+        private void grow() {
+            int capacity = Math.max(16, trips.length * 2);
+            trips = Arrays.copyOf(trips, capacity);
+            stops = Arrays.copyOf(stops, capacity);
+            delays = Arrays.copyOf(delays, capacity);
+            minutes = Arrays.copyOf(minutes, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+        }
+
+        private void siftUp(int slot) {
+            int handle = heap[slot];
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (!before(handle, heap[parent])) break;
+                place(heap[parent], slot);
+                slot = parent;
+            }
+            place(handle, slot);
+        }
+
+        private void siftDown(int slot) {
+            int handle = heap[slot];
+            while (true) {
+                int child = 2 * slot + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+                if (!before(heap[child], handle)) break;
+                place(heap[child], slot);
+                slot = child;
+            }
+            place(handle, slot);
+        }
+
+        private void place(int handle, int slot) {
+            heap[slot] = handle;
+            slots[handle] = slot;
+        }
+
+        /** @return true if stop a comes before stop b: more delayed, then earlier, then by station and train ID */
+        private boolean before(int a, int b) {
+            if (delays[a] != delays[b]) return delays[a] > delays[b];
+            if (minutes[a] != minutes[b]) return minutes[a] < minutes[b];
+            int stationA = trips[a].getStationNumber(stops[a]);
+            int stationB = trips[b].getStationNumber(stops[b]);
+            if (stationA != stationB) return stationA < stationB;
+            int byID = trips[a].getTrainID().compareTo(trips[b].getTrainID());
+            if (byID != 0) return byID < 0;
+            return stops[a] < stops[b];
+        }
+
+        /**
+         * Reads the heap in order without changing it: the next stop is always the first of the
+         * candidates, which start with the root and gain the two children of every slot taken.
+         */
+        Iterator<ScheduleEntry> ordered() {
+            return new Iterator<>() {
+                private int[] candidates = new int[16];
+                private int count = size > 0 ? 1 : 0; // candidates[0] is slot 0, the root
+
+                @Override
+                public boolean hasNext() {
+                    return count > 0;
+                }
+
+                @Override
+                public ScheduleEntry next() {
+                    if (count == 0) throw new NoSuchElementException();
+                    int slot = candidates[0];
+                    candidates[0] = candidates[--count];
+                    siftCandidateDown();
+                    offer(2 * slot + 1);
+                    offer(2 * slot + 2);
+                    int handle = heap[slot];
+                    return ScheduleEntry.of(trips[handle].stop(stops[handle]));
+                }
+
+                private void offer(int slot) {
+                    if (slot >= size) return;
+                    if (count == candidates.length) candidates = Arrays.copyOf(candidates, count * 2);
+                    int at = count++;
+                    while (at > 0) {
+                        int parent = (at - 1) >>> 1;
+                        if (!before(heap[slot], heap[candidates[parent]])) break;
+                        candidates[at] = candidates[parent];
+                        at = parent;
+                    }
+                    candidates[at] = slot;
+                }
+
+                private void siftCandidateDown() {
+                    if (count == 0) return;
+                    int slot = candidates[0];
+                    int at = 0;
+                    while (true) {
+                        int child = 2 * at + 1;
+                        if (child >= count) break;
+                        if (child + 1 < count && before(heap[candidates[child + 1]], heap[candidates[child]])) child++;
+                        if (!before(heap[candidates[child]], heap[slot])) break;
+                        candidates[at] = candidates[child];
+                        at = child;
+                    }
+                    candidates[at] = slot;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package SourceCode;
+/**
+ * Immutable report of every delayed departure, split by direction.
+ * Each direction lists the most delayed departures first, then by departure time.
+ * Demonstrates use of records and unmodifiable collections.
+ *
+ * @param northbound Delayed departures heading to the northern terminus
+ * @param southbound Delayed departures heading to the southern terminus
+ */
+import java.util.List;
+
+public record DelayReport(List<ScheduleEntry> northbound, List<ScheduleEntry> southbound) {
+    /** @return true if no departure is delayed */
+    public boolean isEmpty() {
+        return northbound.isEmpty() && southbound.isEmpty();
+    }
+
+    /** @return The number of delayed departures in both directions */
+    public int size() {
+        return northbound.size() + southbound.size();
+    }
+}
@@ -0,0 +1,715 @@
+package SourceCode;
+/**
+ * Imports and exports timetables as GTFS feeds (stops, trips, stop_times and calendar),
+ * so DIMSUM can exchange schedules with other tools.
+ *
+ * Import:
+ * - stops.txt is matched onto Stations by stop name (ignoring case), or by the name of the
+ *   parent station for platforms. Stop times at stops outside the network are skipped.
+ * - calendar.txt, if present, limits the import to trips whose service runs on the chosen day.
+ * - routes.txt, if present, maps routes onto lines whose code or name matches the route's ID,
+ *   short name or long name (ignoring case). Trips of other routes run on the first line that
+ *   calls at all of their stations.
+ * - trips.txt gives each GTFS trip its train: the block_id if set (one vehicle running several
+ *   trips), otherwise the trip_id. A train runs on one line, so a trip on a different line than
+ *   the rest of its block becomes a train of its own, named by its trip_id.
+ * - stop_times.txt is streamed one line at a time straight into the bulk-load path of MRTManager,
+ *   one train at a time, so memory holds the timetable being built but never the file. The rows
+ *   of a train must therefore be together, as feeds are normally written.
+ * The direction of each GTFS trip follows from the order of its stations on its line; direction_id
+ * is only used for trips that stay at one station. Times past midnight (e.g., 25:10:00) wrap around,
+ * and seconds are dropped.
+ *
+ * Export writes the current timetable as a feed with one daily service and one route per line.
+ * Every run in one direction becomes a GTFS trip and all runs of a train share its ID as block_id,
+ * so importing the feed gives back the same trains. Delays are live information and are not exported.
+ * Demonstrates use of streams of text, iterators and static nested classes.
+ */
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public final class GtfsFeed {
+    /** direction_id written for northbound runs (towards the last station); southbound runs get 1 */
+    private static final int NORTHBOUND_DIRECTION = 0;
+
+    /** IDs used for the single agency and service of an exported feed; routes are named by line code */
+    private static final String AGENCY_ID = "MRTJ";
+    private static final String SERVICE_ID = "DAILY";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Minutes in a day, and the drop in departure time between two stops that means the train ran past midnight */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int PAST_MIDNIGHT_DROP = MINUTES_PER_DAY / 2;
+
+    /**
+     * What an import loaded.
+     * @param trains The number of trains (trips in DIMSUM) added or replaced
+     * @param stopTimes The number of stop times loaded
+     * @param skippedStopTimes The number of stop times left out (unknown stop, trip not running, no time)
+     */
+    public record ImportSummary(int trains, long stopTimes, long skippedStopTimes) {}
+
+    /** Private constructor to prevent instantiation */
+    private GtfsFeed() {}
+
+    /**
+     * Imports a GTFS feed as a single new timetable version.
+     * Each train in the feed replaces any train with the same ID.
+     * @param directory The directory holding the feed's .txt files
+     * @param day Only import trips running on this day according to calendar.txt, or null for all trips
+     * @return What was loaded
+     * @throws IOException if a file cannot be read or a required file or column is missing
+     * @throws IllegalArgumentException if a row cannot be understood (the timetable is then left unchanged)
+     */
+    public static ImportSummary importFeed(Path directory, DayOfWeek day) throws IOException {
+        return importFeed(directory, day, trip -> {});
+    }
+
+    /**
+     * Imports a GTFS feed as a single new timetable version, handing every imported trip to a consumer
+     * as it is loaded (e.g., to journal the trips rather than the location of the feed).
+     * @param directory The directory holding the feed's .txt files
+     * @param day Only import trips running on this day according to calendar.txt, or null for all trips
+     * @param imported Receives each trip added to the timetable (not to be modified)
+     * @return What was loaded
+     * @throws IOException if a file cannot be read or a required file or column is missing
+     * @throws IllegalArgumentException if a row cannot be understood (the timetable is then left unchanged)
+     */
+    public static ImportSummary importFeed(Path directory, DayOfWeek day, Consumer<Trip> imported)
+            throws IOException {
+        Map<String, Integer> stations = readStops(directory.resolve("stops.txt"));
+        Set<String> services = day == null ? null : readServices(directory.resolve("calendar.txt"), day);
+        Map<String, Line> lines = readRoutes(directory.resolve("routes.txt"));
+        Map<String, Run> runs = readTrips(directory.resolve("trips.txt"), services, lines);
+
+        try (StopTimeReader reader = new StopTimeReader(directory.resolve("stop_times.txt"), stations, runs, imported)) {
+            MRTManager.addTrips(reader);
+            return new ImportSummary(reader.trains, reader.stopTimes, reader.skipped);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Maps stop IDs onto station numbers; stops outside the network are left out */
+    private static Map<String, Integer> readStops(Path file) throws IOException {
+        Stations network = Stations.getInstance();
+        Map<String, Integer> byName = new HashMap<>();
+        for (var entry : network.getStationMap().entrySet()) {
+            byName.put(entry.getValue().toLowerCase(), entry.getKey());
+        }
+
+        Map<String, Integer> stations = new HashMap<>();
+        Map<String, String> parents = new HashMap<>();
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requireColumn("stop_id");
+            int name = csv.requireColumn("stop_name");
+            int parent = csv.column("parent_station");
+            while (csv.next()) {
+                Integer station = byName.get(csv.get(name).toLowerCase());
+                if (station != null) {
+                    stations.put(csv.get(id), station);
+                } else if (!csv.get(parent).isEmpty()) {
+                    parents.put(csv.get(id), csv.get(parent));
+                }
+            }
+        }
+        // Platforms take the station of their parent, which may come later in the file
+        for (var entry : parents.entrySet()) {
+            Integer station = stations.get(entry.getValue());
+            if (station != null) stations.put(entry.getKey(), station);
+        }
+        return stations;
+    }
+
+    /** Finds the services running on a day; every service runs if the feed has no calendar */
+    private static Set<String> readServices(Path file, DayOfWeek day) throws IOException {
+        if (!Files.exists(file)) return null;
+        Set<String> services = new HashSet<>();
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requireColumn("service_id");
+            int runsOnDay = csv.requireColumn(day.name().toLowerCase());
+            while (csv.next()) {
+                if (csv.matches(runsOnDay, "1")) services.add(csv.get(id));
+            }
+        }
+        return services;
+    }
+
+    /** Maps route IDs onto the lines they match; routes matching no line are left out */
+    private static Map<String, Line> readRoutes(Path file) throws IOException {
+        Map<String, Line> lines = new HashMap<>();
+        if (!Files.exists(file)) return lines;
+        Stations network = Stations.getInstance();
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requireColumn("route_id");
+            int[] names = {id, csv.column("route_short_name"), csv.column("route_long_name")};
+            while (csv.next()) {
+                for (int name : names) {
+                    Line line = findLine(network, csv.get(name));
+                    if (line != null) {
+                        lines.put(csv.get(id), line);
+                        break;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    /** @return The line whose code or name is the given text (ignoring case), or null */
+    private static Line findLine(Stations network, String text) {
+        if (text.isEmpty()) return null;
+        for (Line line : network.getLines()) {
+            if (line.getCode().equalsIgnoreCase(text) || line.getName().equalsIgnoreCase(text)) return line;
+        }
+        return null;
+    }
+
+    /** A GTFS trip: the train running it, its line (null if the route matches none) and direction_id (null if not given) */
+    private record Run(String tripID, String trainID, Line line, Boolean northbound) {}
+
+    private static Map<String, Run> readTrips(Path file, Set<String> services, Map<String, Line> lines) throws IOException {
+        Map<String, Run> runs = new HashMap<>();
+        try (CsvReader csv = new CsvReader(file)) {
+            int id = csv.requireColumn("trip_id");
+            int route = csv.column("route_id");
+            int service = csv.requireColumn("service_id");
+            int block = csv.column("block_id");
+            int direction = csv.column("direction_id");
+            while (csv.next()) {
+                if (services != null && !services.contains(csv.get(service))) continue;
+                String tripID = csv.get(id);
+                String trainID = csv.get(block).isEmpty() ? tripID : csv.get(block);
+                String directionID = csv.get(direction);
+                Boolean northbound = directionID.isEmpty() ? null
+                    : Integer.parseInt(directionID) == NORTHBOUND_DIRECTION;
+                runs.put(tripID, new Run(tripID, trainID, lines.get(csv.get(route)), northbound));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid direction_id in " + file + ": " + e.getMessage());
+        }
+        return runs;
+    }
+
+    /**
+     * Streams stop_times.txt as trips, one train at a time.
+     * Rows are read only when the next trip is asked for, so the file is never held in memory.
+     */
+    private static final class StopTimeReader implements Iterable<Trip>, Iterator<Trip>, Closeable {
+        private final CsvReader csv;
+        private final Map<String, Integer> stations;
+        private final Map<String, Run> runs;
+        private final Consumer<Trip> imported;
+        private final int tripColumn;
+        private final int arrivalColumn;
+        private final int departureColumn;
+        private final int stopColumn;
+        private final int sequenceColumn;
+
+        /** Trains already handed out, to catch rows of a train that are not together */
+        private final Set<String> finished = new HashSet<>();
+
+        /** Trips of runs on a different line than the rest of their block, handed out before the next train */
+        private final ArrayDeque<Trip> separated = new ArrayDeque<>();
+
+        /** The run of the current row, and whether a row is waiting to be used */
+        private String currentTripID = null;
+        private Run currentRun = null;
+        private boolean pending = false;
+
+        /** Stops of the run being collected: stop_sequence, time in HHMM and station */
+        private int[] sequences = new int[64];
+        private int[] times = new int[64];
+        private int[] runStations = new int[64];
+        private int runSize = 0;
+
+        private int trains = 0;
+        private long stopTimes = 0;
+        private long skipped = 0;
+
+        StopTimeReader(Path file, Map<String, Integer> stations, Map<String, Run> runs, Consumer<Trip> imported)
+                throws IOException {
+            this.csv = new CsvReader(file);
+            this.stations = stations;
+            this.runs = runs;
+            this.imported = imported;
+            this.tripColumn = csv.requireColumn("trip_id");
+            this.arrivalColumn = csv.column("arrival_time");
+            this.departureColumn = csv.requireColumn("departure_time");
+            this.stopColumn = csv.requireColumn("stop_id");
+            this.sequenceColumn = csv.requireColumn("stop_sequence");
+        }
+
+        @Override
+        public Iterator<Trip> iterator() { return this; }
+
+        @Override
+        public boolean hasNext() {
+            return !separated.isEmpty() || hasNextRow();
+        }
+
+        /** @return true if a row of a trip that is being imported is waiting to be used */
+        private boolean hasNextRow() {
+            try {
+                // Skip rows until one belongs to a trip that is being imported
+                while (!pending) {
+                    if (!csv.next()) return false;
+                    if (!csv.matches(tripColumn, currentTripID)) {
+                        currentTripID = csv.get(tripColumn);
+                        currentRun = runs.get(currentTripID);
+                    }
+                    if (currentRun != null) {
+                        pending = true;
+                    } else {
+                        skipped++;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Trip next() {
+            Trip trip = nextTrip();
+            imported.accept(trip);
+            return trip;
+        }
+
+        private Trip nextTrip() {
+            if (!separated.isEmpty()) return separated.poll();
+            if (!hasNextRow()) throw new NoSuchElementException();
+            String trainID = currentRun.trainID();
+            checkNotFinished(trainID);
+            Trip trip = null;
+            Run run = currentRun;
+            // Collect rows until the train changes, adding each run once it is complete
+            while (hasNextRow() && currentRun.trainID().equals(trainID)) {
+                if (currentRun != run) {
+                    trip = addRun(trip, run);
+                    run = currentRun;
+                }
+                collectRow();
+                pending = false;
+            }
+            trip = addRun(trip, run);
+            trains++;
+            return trip != null ? trip : new Trip(trainID);
+        }
+
+        private void checkNotFinished(String trainID) {
+            if (!finished.add(trainID)) {
+                throw new IllegalArgumentException("Stop times of train " + trainID + " are not together in "
+                    + csv.file + " (line " + csv.lineNumber + ")");
+            }
+        }
+
+        private void collectRow() {
+            Integer station = stations.get(csv.get(stopColumn));
+            int time = csv.getTime(departureColumn);
+            if (time == -1) time = csv.getTime(arrivalColumn);
+            if (station == null || time == -1) {
+                skipped++;
+                return;
+            }
+            if (runSize == times.length) {
+                sequences = Arrays.copyOf(sequences, runSize * 2);
+                times = Arrays.copyOf(times, runSize * 2);
+                runStations = Arrays.copyOf(runStations, runSize * 2);
+            }
+            sequences[runSize] = csv.getInt(sequenceColumn);
+            times[runSize] = time;
+            runStations[runSize] = station;
+            runSize++;
+        }
+
+        /**
+         * Adds the collected run to the train's trip in stop_sequence order, all in the direction of travel.
+         * The first run decides the line of the trip; a run on another line becomes a trip of its own.
+         * @param trip The train's trip, or null if no run has been added yet
+         * @return The train's trip, or null if it still has no run
+         */
+        private Trip addRun(Trip trip, Run run) {
+            if (runSize == 0) return trip;
+            Integer[] order = new Integer[runSize];
+            boolean sorted = true;
+            for (int i = 0; i < runSize; i++) {
+                order[i] = i;
+                if (i > 0 && sequences[i] < sequences[i - 1]) sorted = false;
+            }
+            if (!sorted) Arrays.sort(order, Comparator.comparingInt(i -> sequences[i]));
+
+            Line line = findLine(run, trip);
+            Trip target = trip;
+            if (trip == null) {
+                target = trip = new Trip(run.trainID(), line.getIndex());
+            } else if (line.getIndex() != trip.getLineIndex()) {
+                checkNotFinished(run.tripID());
+                target = new Trip(run.tripID(), line.getIndex());
+                separated.add(target);
+                trains++;
+            }
+
+            int first = runStations[order[0]];
+            int last = runStations[order[runSize - 1]];
+            boolean northbound = first != last ? line.getPosition(last) > line.getPosition(first)
+                : run.northbound() != null ? run.northbound() : line.getInitialDirection(first);
+            for (int i : order) {
+                target.addStop(times[i], runStations[i], northbound);
+            }
+            stopTimes += runSize;
+            runSize = 0;
+            return trip;
+        }
+
+        /**
+         * Finds the line of the collected run: the line of its route, otherwise the line of the train's trip
+         * if it calls at every station of the run, otherwise the first line that does.
+         */
+        private Line findLine(Run run, Trip trip) {
+            if (run.line() != null) return run.line();
+            if (trip != null && callsAtRun(trip.getLine())) return trip.getLine();
+            for (Line line : Stations.getInstance().getLines()) {
+                if (callsAtRun(line)) return line;
+            }
+            throw new IllegalArgumentException("No line calls at every stop of trip " + run.tripID() + " in " + csv.file);
+        }
+
+        private boolean callsAtRun(Line line) {
+            for (int i = 0; i < runSize; i++) {
+                if (!line.contains(runStations[i])) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            csv.close();
+        }
+    }
+
+    /**
+     * Exports a timetable as a GTFS feed, replacing any feed files in the directory.
+     * @param timetable The timetable to export
+     * @param directory The directory to write agency, routes, stops, calendar, trips and stop_times to
+     * @param startDate First day of the daily service
+     * @param endDate Last day of the daily service
+     * @return The number of stop times written
+     * @throws IOException if a file cannot be written
+     */
+    public static long exportFeed(Timetable timetable, Path directory, LocalDate startDate, LocalDate endDate)
+            throws IOException {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("The service cannot end (" + endDate + ") before it starts (" + startDate + ")");
+        }
+        Files.createDirectories(directory);
+        Stations stations = Stations.getInstance();
+
+        try (Writer out = open(directory.resolve("agency.txt"))) {
+            out.write("agency_id,agency_name,agency_url,agency_timezone\n");
+            out.write(AGENCY_ID + ",MRT Jakarta,https://jakartamrt.co.id,Asia/Jakarta\n");
+        }
+        try (Writer out = open(directory.resolve("routes.txt"))) {
+            out.write("route_id,agency_id,route_short_name,route_long_name,route_type\n");
+            // Route type 1: subway/metro
+            for (Line line : stations.getLines()) {
+                out.write(csv(line.getCode()) + "," + AGENCY_ID + "," + csv(line.getCode()) + "," + csv(line.getName()) + ",1\n");
+            }
+        }
+        try (Writer out = open(directory.resolve("stops.txt"))) {
+            out.write("stop_id,stop_name\n");
+            for (var entry : stations.getStationMap().entrySet()) {
+                out.write(entry.getKey() + "," + csv(entry.getValue()) + "\n");
+            }
+        }
+        try (Writer out = open(directory.resolve("calendar.txt"))) {
+            out.write("service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date\n");
+            out.write(SERVICE_ID + ",1,1,1,1,1,1,1," + startDate.format(DateTimeFormatter.BASIC_ISO_DATE) + ","
+                + endDate.format(DateTimeFormatter.BASIC_ISO_DATE) + "\n");
+        }
+
+        List<Trip> trips = new ArrayList<>(timetable.getTrips().values());
+        trips.sort(Comparator.comparing(Trip::getTrainID));
+        long written = 0;
+        try (Writer tripsOut = open(directory.resolve("trips.txt"));
+             Writer stopTimesOut = open(directory.resolve("stop_times.txt"))) {
+            tripsOut.write("route_id,service_id,trip_id,direction_id,block_id,trip_headsign\n");
+            stopTimesOut.write("trip_id,arrival_time,departure_time,stop_id,stop_sequence\n");
+            StringBuilder row = new StringBuilder(64);
+            for (Trip trip : trips) {
+                int[] serviceMinutes = new int[trip.size()];
+                List<int[]> runs = splitRuns(trip, serviceMinutes);
+                for (int r = 0; r < runs.size(); r++) {
+                    int[] run = runs.get(r);
+                    boolean northbound = trip.isNorthbound(run[0]);
+                    Line line = trip.getLine();
+                    String tripID = runs.size() == 1 ? trip.getTrainID() : trip.getTrainID() + "_" + (r + 1);
+                    tripsOut.write(csv(line.getCode()) + "," + SERVICE_ID + "," + csv(tripID) + ","
+                        + (northbound ? NORTHBOUND_DIRECTION : 1 - NORTHBOUND_DIRECTION) + ","
+                        + csv(trip.getTrainID()) + "," + csv(line.getTerminusName(northbound)) + "\n");
+                    for (int s = 0; s < run.length; s++) {
+                        row.setLength(0);
+                        row.append(csv(tripID)).append(',');
+                        appendTime(row, serviceMinutes[run[s]]).append(',');
+                        appendTime(row, serviceMinutes[run[s]]).append(',');
+                        row.append(trip.getStationNumber(run[s])).append(',').append(s + 1).append('\n');
+                        stopTimesOut.append(row);
+                    }
+                    written += run.length;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Splits the live stops of a trip into runs in one direction, each in departure order.
+     * Stops are taken in trip order; a stop departing more than 12 hours before the stop before it
+     * ran past midnight, so it (and every stop after it) is counted from the midnight before,
+     * as GTFS times such as 24:01:00 are.
+     * @param serviceMinutes Filled with the departure of every live stop in minutes since the midnight the trip started after
+     * @return The stop indexes of every run, in departure order
+     */
+    private static List<int[]> splitRuns(Trip trip, int[] serviceMinutes) {
+        Integer[] order = new Integer[trip.size()];
+        int live = 0;
+        int previous = -1;
+        int day = 0;
+        for (int i = 0; i < trip.size(); i++) {
+            if (trip.isCancelled(i)) continue;
+            int minute = TimeUtils.toMinuteOfDay(trip.getTime(i));
+            if (previous != -1 && minute < previous - PAST_MIDNIGHT_DROP) day += MINUTES_PER_DAY;
+            serviceMinutes[i] = minute + day;
+            previous = minute;
+            order[live++] = i;
+        }
+        order = Arrays.copyOf(order, live);
+        Arrays.sort(order, Comparator.comparingInt(i -> serviceMinutes[i]));
+
+        List<int[]> runs = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= live; i++) {
+            if (i == live || trip.isNorthbound(order[i]) != trip.isNorthbound(order[start])) {
+                int[] run = new int[i - start];
+                for (int s = 0; s < run.length; s++) run[s] = order[start + s];
+                runs.add(run);
+                start = i;
+            }
+        }
+        return runs;
+    }
+
+    private static Writer open(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /** Formats minutes since midnight as HH:MM:SS, with hours of 24 and more for the day after */
+    private static StringBuilder appendTime(StringBuilder out, int minutes) {
+        if (minutes / 60 < 10) out.append('0');
+        out.append(minutes / 60).append(':');
+        if (minutes % 60 < 10) out.append('0');
+        return out.append(minutes % 60).append(":00");
+    }
+
+    /** Quotes a field if it contains a comma, quote or line break */
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Reads a GTFS file one row at a time.
+     * Field bounds are found on the line itself, so a field is only turned into a String
+     * when it is asked for; lines with quotes are unquoted into strings up front.
+     */
+    private static final class CsvReader implements Closeable {
+        private final Path file;
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long lineNumber = 1;
+
+        /** The current line and the bounds of its fields */
+        private String line;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int fieldCount = 0;
+
+        /** Fields of the current line if it has quotes, otherwise null */
+        private String[] unquoted = null;
+
+        CsvReader(Path file) throws IOException {
+            this.file = file;
+            this.reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+            line = reader.readLine();
+            if (line == null) {
+                reader.close();
+                throw new IOException("Empty GTFS file: " + file);
+            }
+            if (line.startsWith("\uFEFF")) line = line.substring(1);
+            split();
+            for (int i = 0; i < fieldCount; i++) {
+                columns.put(get(i), i);
+            }
+        }
+
+        /** @return The index of a column, or -1 if the file does not have it */
+        int column(String name) {
+            return columns.getOrDefault(name, -1);
+        }
+
+        int requireColumn(String name) throws IOException {
+            int column = column(name);
+            if (column == -1) {
+                throw new IOException("Missing column " + name + " in " + file);
+            }
+            return column;
+        }
+
+        /** Moves to the next non-empty row; returns false at the end of the file */
+        boolean next() throws IOException {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!line.isBlank()) {
+                    split();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** @return A field of the current row, or "" if the column is missing */
+        String get(int column) {
+            if (column < 0 || column >= fieldCount) return "";
+            return unquoted != null ? unquoted[column] : line.substring(starts[column], ends[column]);
+        }
+
+        /** @return true if a field equals the value, without creating a String for the field */
+        boolean matches(int column, String value) {
+            if (value == null || column < 0 || column >= fieldCount) return false;
+            if (unquoted != null) return unquoted[column].equals(value);
+            int length = ends[column] - starts[column];
+            return length == value.length() && line.regionMatches(starts[column], value, 0, length);
+        }
+
+        /** @return A whole-number field */
+        int getInt(int column) {
+            String value = get(column);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw error("a number", value);
+            }
+        }
+
+        /** @return An H:MM:SS field in HHMM format, wrapped to one day, or -1 if empty */
+        int getTime(int column) {
+            String value = get(column);
+            if (value.isEmpty()) return -1;
+            int firstColon = value.indexOf(':');
+            int secondColon = value.indexOf(':', firstColon + 1);
+            try {
+                int hours = Integer.parseInt(value, 0, firstColon, 10);
+                int minutes = Integer.parseInt(value, firstColon + 1, secondColon < 0 ? value.length() : secondColon, 10);
+                if (hours < 0 || minutes < 0 || minutes > 59) throw error("a time (H:MM:SS)", value);
+                return hours % 24 * 100 + minutes;
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw error("a time (H:MM:SS)", value);
+            }
+        }
+
+        private IllegalArgumentException error(String expected, String value) {
+            return new IllegalArgumentException("Expected " + expected + " but found '" + value + "' in "
+                + file + " (line " + lineNumber + ")");
+        }
+
+        private void split() {
+            fieldCount = 0;
+            unquoted = null;
+            if (line.indexOf('"') >= 0) {
+                splitQuoted();
+                return;
+            }
+            int start = 0;
+            for (int i = 0; i <= line.length(); i++) {
+                if (i == line.length() || line.charAt(i) == ',') {
+                    addField(start, i);
+                    start = i + 1;
+                }
+            }
+        }
+
+        /** Records a field's bounds without surrounding spaces */
+        private void addField(int start, int end) {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+            }
+            while (start < end && line.charAt(start) == ' ') start++;
+            while (end > start && line.charAt(end - 1) == ' ') end--;
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            fieldCount++;
+        }
+
+        private void splitQuoted() {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString().trim());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString().trim());
+            unquoted = fields.toArray(new String[0]);
+            fieldCount = unquoted.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
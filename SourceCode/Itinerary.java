@@ -0,0 +1,41 @@
+package SourceCode;
+/**
+ * Immutable answer to a journey query: the trains to take to arrive as early as possible.
+ * Demonstrates use of records and unmodifiable collections.
+ *
+ * @param origin The station the journey starts at
+ * @param destination The station the journey ends at
+ * @param departureTime The earliest time the passenger can leave, in HHMM format
+ * @param arrivalTime The time the passenger arrives at the destination, in HHMM format
+ * @param legs The trains to take, in order (empty if origin and destination are the same)
+ */
+import java.util.List;
+
+public record Itinerary(String origin, String destination, int departureTime, int arrivalTime, List<Leg> legs) {
+    /**
+     * One train ride of a journey.
+     * @param trainID The ID of the train to board
+     * @param line The index of the line the train runs on (see Stations.getLine)
+     * @param boardStation The station to board at
+     * @param boardTime The departure time of the train there, in HHMM format
+     * @param alightStation The station to get off at
+     * @param alightTime The time the train gets there, in HHMM format
+     */
+    public record Leg(String trainID, int line, String boardStation, int boardTime, String alightStation,
+                      int alightTime) {
+        /** @return The line the train runs on */
+        public Line getLine() {
+            return Stations.getInstance().getLine(line);
+        }
+    }
+
+    /** @return The number of times the passenger changes trains */
+    public int getTransfers() {
+        return Math.max(legs.size() - 1, 0);
+    }
+
+    /** @return The minutes from the requested departure time until arrival */
+    public int getDurationMinutes() {
+        return TimeUtils.toMinuteOfDay(arrivalTime) - TimeUtils.toMinuteOfDay(departureTime);
+    }
+}
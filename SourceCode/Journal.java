@@ -0,0 +1,573 @@
+package SourceCode;
+/**
+ * Append-only journal of every change the manager makes.
+ * Each change (add, bulk add, delay, reschedule, cancel, simulate, generate, GTFS import) is written as one
+ * compact binary record to a memory-mapped file once it has been applied, in the same batch that
+ * publishes it, so after a restart the timetable can be rebuilt by replaying the journal. A change
+ * that fails is never recorded.
+ *
+ * This is not a write-ahead log: the record is appended before the change is published, but it is
+ * forced to disk only afterwards, outside the write lock. Readers may therefore see a change before
+ * it is durable, and a crash of the machine in between loses a change that was already read. The
+ * writer itself does not return before its record is durable when the policy is ALWAYS.
+ *
+ * Record layout: int length of the body, the body (one type byte followed by the fields),
+ * then the CRC32C of the body. A record with length 0 marks the end of the journal; a record
+ * whose checksum does not match (e.g., a write cut short by a crash) ends it as well.
+ *
+ * Appending only copies bytes into the mapped file, which takes microseconds. When the bytes
+ * reach the disk depends on the FsyncPolicy; with ALWAYS, writers that finish at the same time
+ * share a single fsync (group commit).
+ * Demonstrates use of memory-mapped files, ByteBuffer, enums and synchronization.
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+public final class Journal implements Closeable {
+    /**
+     * When appended records are forced to disk.
+     * - NEVER: left to the operating system; survives a crash of the program but not of the machine
+     * - INTERVAL: forced by a background thread every few milliseconds
+     * - ALWAYS: forced before the change returns; concurrent changes share one fsync
+     */
+    public enum FsyncPolicy { NEVER, INTERVAL, ALWAYS }
+
+    /** Default time between forced writes for the INTERVAL policy */
+    public static final long DEFAULT_INTERVAL_MILLIS = 50;
+
+    /** Marks the file as a DIMSUM journal ("DIMJ") */
+    private static final int MAGIC = 0x44494D4A;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /** Longest close waits for a flush already running on the INTERVAL flusher thread */
+    private static final long FLUSHER_STOP_SECONDS = 5;
+
+    /** Size the file is mapped in at first, and the minimum it grows by */
+    private static final int INITIAL_MAPPING = 1 << 20;
+
+    /** Record types */
+    private static final byte ADD_TRAIN = 1;
+    private static final byte ADD_TRAINS = 2;
+    private static final byte DELAY = 3;
+    private static final byte RESCHEDULE = 4;
+    private static final byte CANCEL = 5;
+    private static final byte SIMULATE = 6;
+    private static final byte GENERATE = 7;
+    private static final byte IMPORT_TRIPS = 8;
+
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final ScheduledExecutorService flusher;
+
+    /** The mapped part of the file; replaced by a larger mapping when full */
+    private MappedByteBuffer mapping;
+
+    /** Scratch buffer records are encoded into before being copied to the mapping */
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private final CRC32C checksum = new CRC32C();
+
+    /** End of the last appended record; guarded by this */
+    private long position;
+
+    /** Number of records in the journal; guarded by this */
+    private long recordCount;
+
+    /** Everything before this offset has been forced to disk; guarded by syncLock */
+    private long durablePosition;
+    private final Object syncLock = new Object();
+
+    private Journal(FileChannel channel, FsyncPolicy policy, long intervalMillis) throws IOException {
+        this.channel = channel;
+        this.policy = policy;
+        long size = channel.size();
+        map(Math.max(size, INITIAL_MAPPING));
+
+        if (size == 0) {
+            mapping.putInt(0, MAGIC);
+            mapping.putInt(4, FORMAT_VERSION);
+            position = HEADER_SIZE;
+        } else {
+            if (size < HEADER_SIZE || mapping.getInt(0) != MAGIC) {
+                throw new IOException("Not a DIMSUM journal");
+            }
+            if (mapping.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported journal version " + mapping.getInt(4));
+            }
+            position = findEnd();
+        }
+        durablePosition = position;
+
+        if (policy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens a journal, creating the file if it does not exist.
+     * @param file The journal file
+     * @param policy When to force records to disk
+     * @return The open journal, positioned after its last valid record
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    public static Journal open(Path file, FsyncPolicy policy) throws IOException {
+        return open(file, policy, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens a journal, creating the file if it does not exist.
+     * @param file The journal file
+     * @param policy When to force records to disk
+     * @param intervalMillis Time between forced writes for the INTERVAL policy
+     * @return The open journal, positioned after its last valid record
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    public static Journal open(Path file, FsyncPolicy policy, long intervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            return new Journal(channel, policy, intervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long size) throws IOException {
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Walks the records from the start to find where the valid journal ends.
+     * Anything after a torn or corrupt record is wiped so it cannot be mistaken for records later.
+     */
+    private long findEnd() {
+        long offset = HEADER_SIZE;
+        long limit = mapping.capacity();
+        while (offset + 4 <= limit) {
+            int length = mapping.getInt((int) offset);
+            if (length <= 0 || offset + 4 + length + 4 > limit || !checksumMatches(offset, length)) break;
+            offset += 4 + length + 4;
+            recordCount++;
+        }
+        for (long i = offset; i < limit; i++) {
+            if (mapping.get((int) i) != 0) mapping.put((int) i, (byte) 0);
+        }
+        return offset;
+    }
+
+    private boolean checksumMatches(long offset, int length) {
+        ByteBuffer body = mapping.duplicate().position((int) offset + 4).limit((int) offset + 4 + length);
+        checksum.reset();
+        checksum.update(body);
+        return (int) checksum.getValue() == mapping.getInt((int) offset + 4 + length);
+    }
+
+    /** @return The number of records in the journal */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /** @return The size of the journal in bytes */
+    public synchronized long getSize() {
+        return position;
+    }
+
+    /** @return The fsync policy of the journal */
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    /* RECORDING: each method appends one record and returns the offset it ends at */
+
+    /** Records a single train being added */
+    public synchronized long logAddTrain(Schedulable schedule) throws IOException {
+        begin(ADD_TRAIN);
+        putTrain(schedule);
+        return end();
+    }
+
+    /** Records a bulk load of trains */
+    public synchronized long logAddTrains(Collection<? extends Schedulable> schedules) throws IOException {
+        begin(ADD_TRAINS);
+        putInt(schedules.size());
+        for (Schedulable schedule : schedules) {
+            putTrain(schedule);
+        }
+        return end();
+    }
+
+    /** Records a delay */
+    public synchronized long logDelay(String trainID, int departureTime, int delayMinutes, String reason)
+            throws IOException {
+        begin(DELAY);
+        putString(trainID);
+        putShort(departureTime);
+        putInt(delayMinutes);
+        putString(reason);
+        return end();
+    }
+
+    /** Records a reschedule */
+    public synchronized long logReschedule(String trainID, int oldDepartureTime, int newDepartureTime,
+                                           String newStation) throws IOException {
+        begin(RESCHEDULE);
+        putString(trainID);
+        putShort(oldDepartureTime);
+        putShort(newDepartureTime);
+        putString(newStation);
+        return end();
+    }
+
+    /** Records a cancellation */
+    public synchronized long logCancel(String trainID, int departureTime) throws IOException {
+        begin(CANCEL);
+        putString(trainID);
+        putShort(departureTime);
+        return end();
+    }
+
+    /** Records a simulation run */
+    public synchronized long logSimulate(int closingTime) throws IOException {
+        begin(SIMULATE);
+        putShort(closingTime);
+        return end();
+    }
+
+    /** Records a timetable being generated from a service plan */
+    public synchronized long logGenerate(ServicePlan plan) throws IOException {
+        begin(GENERATE);
+        for (boolean northbound : new boolean[] {true, false}) {
+            List<ServicePlan.Band> bands = plan.getBands(northbound);
+            putInt(bands.size());
+            for (ServicePlan.Band band : bands) {
+                putShort(band.startTime());
+                putShort(band.endTime());
+                putShort(band.headway());
+            }
+        }
+        return end();
+    }
+
+    /**
+     * Records whole trips being imported, e.g. from a GTFS feed.
+     * The trips themselves are recorded, so the journal replays without the feed they came from.
+     */
+    public synchronized long logImportTrips(Collection<Trip> trips) throws IOException {
+        begin(IMPORT_TRIPS);
+        putInt(trips.size());
+        for (Trip trip : trips) {
+            putString(trip.getTrainID());
+            putShort(trip.getLineIndex());
+            putInt(trip.size());
+            for (int i = 0; i < trip.size(); i++) {
+                putShort(trip.getTime(i));
+                putShort(trip.getStationNumber(i));
+                ensureScratch(1);
+                scratch.put((byte) (trip.isNorthbound(i) ? 1 : 0));
+                putInt(trip.getDelay(i));
+                putString(trip.getDelayReason(i));
+            }
+        }
+        return end();
+    }
+
+    private void begin(byte type) {
+        scratch.clear();
+        scratch.put(type);
+    }
+
+    private void putTrain(Schedulable schedule) {
+        Trains train = (Trains) schedule;
+        putString(train.getTrainID());
+        putShort(train.getDepartureTime());
+        putString(train.getCurrentStation());
+        // The line of an MRT, or -1 for the default line of the station
+        putShort(train instanceof MRT mrt ? mrt.getLine().getIndex() : -1);
+        boolean isNorthbound = train instanceof MRT mrt ? mrt.isNorthbound()
+            : StationUtils.isNorthbound(train.getCurrentStationNumber());
+        ensureScratch(1);
+        scratch.put((byte) (isNorthbound ? 1 : 0));
+        if (train instanceof MRT mrt && mrt.isDelayed()) {
+            putInt(mrt.getDelayDuration());
+            putString(mrt.getDelayReason());
+        } else {
+            putInt(0);
+            putString(null);
+        }
+    }
+
+    private void putShort(int value) {
+        ensureScratch(2);
+        scratch.putShort((short) value);
+    }
+
+    private void putInt(int value) {
+        ensureScratch(4);
+        scratch.putInt(value);
+    }
+
+    /** Strings are written as a short length (-1 for null) and UTF-8 bytes */
+    private void putString(String value) {
+        if (value == null) {
+            putShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Text too long for the journal: " + bytes.length + " bytes");
+        }
+        putShort(bytes.length);
+        ensureScratch(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    /**
+     * Copies the encoded record into the mapped file.
+     * @return The offset the record ends at
+     */
+    private long end() throws IOException {
+        scratch.flip();
+        int length = scratch.remaining();
+        checksum.reset();
+        checksum.update(scratch.duplicate());
+        int crc = (int) checksum.getValue();
+
+        long needed = position + 4 + length + 4;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Journal is full; take a snapshot and start a new journal");
+        }
+        if (needed > mapping.capacity()) {
+            map(Math.min(Integer.MAX_VALUE, Math.max(needed, (long) mapping.capacity() * 2)));
+        }
+        int offset = (int) position;
+        try {
+            // Write the body before the length, so a reader never sees a length without its record
+            mapping.put(offset + 4, scratch, 0, length);
+            mapping.putInt(offset + 4 + length, crc);
+            mapping.putInt(offset, length);
+        } catch (BufferOverflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Could not append to the journal", e);
+        }
+        position = needed;
+        recordCount++;
+        return position;
+    }
+
+    /**
+     * Waits until a record is as durable as the policy requires.
+     * With ALWAYS, the first waiter forces everything appended so far, so records appended
+     * while it was waiting for the lock are covered by the same fsync.
+     * @param recordEnd The offset returned when the record was appended
+     */
+    public void commit(long recordEnd) {
+        if (policy != FsyncPolicy.ALWAYS) return;
+        synchronized (syncLock) {
+            if (durablePosition >= recordEnd) return;
+            forceAppended();
+        }
+    }
+
+    /** Forces every appended record to disk */
+    public void flush() {
+        synchronized (syncLock) {
+            forceAppended();
+        }
+    }
+
+    /** Must hold syncLock */
+    private void forceAppended() {
+        MappedByteBuffer target;
+        long end;
+        synchronized (this) {
+            target = mapping;
+            end = position;
+        }
+        if (end <= durablePosition) return;
+        // The mapping may have been replaced since; forcing a newer range of the same file is still correct
+        target.force((int) durablePosition, (int) (end - durablePosition));
+        durablePosition = end;
+    }
+
+    /**
+     * Replays every record into MRTManager, each as its own change, just as they were first made.
+     * Changes are applied directly to MRTManager, so replaying does not write new records.
+     * Only changes that succeeded are recorded, so a record that fails to replay means the journal
+     * does not match the timetable it is replayed onto (or is corrupt), and replaying stops there.
+     * Call before the journal starts recording new changes.
+     * @return The number of records replayed
+     * @throws IOException if a record cannot be replayed; the records before it stay applied
+     */
+    public long replay() throws IOException {
+        return replay(0);
+    }
+
+    /**
+     * Replays the records after the first few, e.g. those not yet included in a snapshot.
+     * @param skipRecords The number of records at the start of the journal to leave out
+     * @return The number of records replayed
+     * @throws IOException if a record cannot be replayed (the records before it stay applied), or if the
+     *         journal has fewer records than skipRecords, e.g. a snapshot taken with another journal
+     */
+    public long replay(long skipRecords) throws IOException {
+        ByteBuffer in;
+        long end;
+        synchronized (this) {
+            in = mapping.duplicate();
+            end = position;
+        }
+        long replayed = 0;
+        long offset = HEADER_SIZE;
+        long record = 0;
+        while (offset < end) {
+            int length = in.getInt((int) offset);
+            if (record >= skipRecords) {
+                in.limit((int) offset + 4 + length).position((int) offset + 4);
+                try {
+                    apply(in);
+                } catch (RuntimeException e) {
+                    throw new IOException("Journal record " + (record + 1) + " could not be replayed: "
+                        + e.getMessage(), e);
+                }
+                in.limit(in.capacity());
+                replayed++;
+            }
+            offset += 4 + length + 4;
+            record++;
+        }
+        if (record < skipRecords) {
+            throw new IOException("The journal has " + record + " records, but " + skipRecords
+                + " are already in the snapshot");
+        }
+        return replayed;
+    }
+
+    private static void apply(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case ADD_TRAIN -> MRTManager.addTrain(readTrain(in));
+            case ADD_TRAINS -> {
+                int count = in.getInt();
+                List<MRT> trains = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    trains.add(readTrain(in));
+                }
+                MRTManager.addTrains(trains);
+            }
+            case DELAY -> MRTManager.delayTrain(readString(in), in.getShort(), in.getInt(), readString(in));
+            case RESCHEDULE -> MRTManager.rescheduleTrain(readString(in), in.getShort(), in.getShort(), readString(in));
+            case CANCEL -> MRTManager.cancelTrain(readString(in), in.getShort());
+            case SIMULATE -> MRTManager.simulateTrainsRunning(in.getShort());
+            case GENERATE -> {
+                ServicePlan plan = new ServicePlan();
+                for (boolean northbound : new boolean[] {true, false}) {
+                    int bands = in.getInt();
+                    for (int i = 0; i < bands; i++) {
+                        plan.addBand(northbound, in.getShort(), in.getShort(), in.getShort());
+                    }
+                }
+                TimetableGenerator.generateAndLoad(plan);
+            }
+            case IMPORT_TRIPS -> {
+                int count = in.getInt();
+                List<Trip> trips = new ArrayList<>(count);
+                for (int t = 0; t < count; t++) {
+                    trips.add(readTrip(in));
+                }
+                MRTManager.addTrips(trips);
+            }
+            default -> throw new IllegalArgumentException("Unknown journal record type " + type);
+        }
+    }
+
+    private static MRT readTrain(ByteBuffer in) {
+        String trainID = readString(in);
+        int departureTime = in.getShort();
+        String station = readString(in);
+        int line = in.getShort();
+        boolean isNorthbound = in.get() == 1;
+        MRT train = new MRT(trainID, departureTime, station, isNorthbound,
+            line == -1 ? null : Stations.getInstance().getLine(line));
+        int delay = in.getInt();
+        String reason = readString(in);
+        if (reason != null) {
+            train.setDelay(delay, reason);
+        }
+        return train;
+    }
+
+    private static Trip readTrip(ByteBuffer in) {
+        String trainID = readString(in);
+        int line = in.getShort();
+        int size = in.getInt();
+        int[] times = new int[size];
+        short[] stations = new short[size];
+        boolean[] northbound = new boolean[size];
+        int[] delays = new int[size];
+        String[] delayReasons = new String[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = in.getShort();
+            stations[i] = in.getShort();
+            northbound[i] = in.get() == 1;
+            delays[i] = in.getInt();
+            delayReasons[i] = readString(in);
+        }
+        return Trip.restore(trainID, line, false, times, stations, northbound, delays, delayReasons);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forces everything to disk and closes the file.
+     * Stops the INTERVAL flusher first and waits for a flush it is running, so none runs on the closed file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(FLUSHER_STOP_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,303 @@
+package SourceCode;
+/**
+ * Earliest-arrival journey planner for one timetable version, using the Connection Scan Algorithm.
+ * Every time a train runs from one station straight to the next is a connection; the connections
+ * of the whole day are kept in flat parallel arrays sorted by departure time. A query binary
+ * searches the first connection leaving at or after the requested time and scans forward once,
+ * keeping the earliest known arrival at every station, until no later connection can arrive
+ * sooner at the destination. The trains taken are then read back from the connection that
+ * last improved each station.
+ * Changing trains takes at least MIN_CHANGE_MINUTES; staying on the same train takes none.
+ * A query allocates nothing while scanning: the per-station and per-trip state lives in
+ * arrays kept per thread and reused, with trips cleared lazily by a query counter.
+ * Demonstrates use of primitive arrays, sorting, binary search and thread-local buffers.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class JourneyPlanner {
+    /** Minutes needed to change from one train to another at a station */
+    public static final int MIN_CHANGE_MINUTES = 2;
+
+    /** Minutes in a day; connections arriving later are left out */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** Arrival time of stations that cannot be reached */
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    /** Trips referenced by the trip column, in the order of the timetable's column store */
+    private final Trip[] trips;
+
+    /** Station every connection leaves from and arrives at */
+    private final short[] departureStations;
+    private final short[] arrivalStations;
+
+    /** Departure and arrival of every connection in minutes since midnight */
+    private final short[] departureMinutes;
+    private final short[] arrivalMinutes;
+
+    /** Index into trips of every connection */
+    private final int[] tripIndexes;
+
+    /** Number of connections */
+    private final int size;
+
+    /** One more than the highest station number any connection touches */
+    private final int stationSlots;
+
+    /** Per-thread search state, grown as needed and reused by every query on the thread */
+    private static final ThreadLocal<Search> SEARCH = ThreadLocal.withInitial(Search::new);
+
+    private JourneyPlanner(Trip[] trips, int size, int stationSlots) {
+        this.trips = trips;
+        this.size = size;
+        this.stationSlots = stationSlots;
+        this.departureStations = new short[size];
+        this.arrivalStations = new short[size];
+        this.departureMinutes = new short[size];
+        this.arrivalMinutes = new short[size];
+        this.tripIndexes = new int[size];
+    }
+
+    /**
+     * Builds the connections of every trip in a column store.
+     * The live stops of each trip are taken in departure order; every two consecutive stops at
+     * different stations make a connection, and a trip that runs to the end of its line also gets
+     * the ride from its last stop to the terminus. Connections past midnight are left out.
+     * @param events The column store of the timetable version
+     * @return The planner
+     */
+    public static JourneyPlanner build(StopEventStore events) {
+        Trip[] trips = events.getTrips().toArray(new Trip[0]);
+        int capacity = events.size() + trips.length;
+
+        // Collect the connections unsorted, with sort keys holding departure (11 bits), arrival (11 bits)
+        // and the position before sorting (32 bits)
+        short[] fromStations = new short[capacity];
+        short[] toStations = new short[capacity];
+        int[] unsortedTrips = new int[capacity];
+        long[] keys = new long[capacity];
+        int count = 0;
+        int maxStation = Stations.getInstance().getStationCount();
+        long[] order = new long[16];
+        for (int t = 0; t < trips.length; t++) {
+            Trip trip = trips[t];
+            if (order.length < trip.size()) order = new long[trip.size()];
+            int live = 0;
+            boolean sorted = true;
+            for (int i = 0; i < trip.size(); i++) {
+                if (trip.isCancelled(i)) continue;
+                order[live] = (long) TimeUtils.toMinuteOfDay(trip.getTime(i)) << 32 | i;
+                if (live > 0 && order[live] < order[live - 1]) sorted = false;
+                live++;
+            }
+            if (!sorted) Arrays.sort(order, 0, live);
+            for (int k = 1; k < live; k++) {
+                int from = (int) order[k - 1];
+                int to = (int) order[k];
+                int departure = (int) (order[k - 1] >>> 32);
+                int arrival = (int) (order[k] >>> 32);
+                if (trip.getStationNumber(from) == trip.getStationNumber(to)) continue;
+                fromStations[count] = (short) trip.getStationNumber(from);
+                toStations[count] = (short) trip.getStationNumber(to);
+                maxStation = Math.max(maxStation, Math.max(fromStations[count], toStations[count]));
+                unsortedTrips[count] = t;
+                keys[count] = (long) departure << 43 | (long) arrival << 32 | count;
+                count++;
+            }
+
+            // Stops are departures, so a train running to the end of its line has no stop at the terminus;
+            // add the ride there from the last stop
+            if (live == 0) continue;
+            int last = (int) order[live - 1];
+            Line line = trip.getLine();
+            boolean northbound = trip.isNorthbound(last);
+            int terminus = line.getNextStation(trip.getStationNumber(last), northbound);
+            if (terminus == -1 || line.getNextStation(terminus, northbound) != -1) continue;
+            int departure = (int) (order[live - 1] >>> 32);
+            // Travel time of the final segment, without the halt the train then makes at the terminus
+            int segment = northbound ? line.getSegmentMinutes(line.getPosition(trip.getStationNumber(last)), true)
+                : line.getSegmentMinutes(line.getPosition(terminus), false);
+            int arrival = departure + segment;
+            if (arrival >= MINUTES_PER_DAY) continue;
+            fromStations[count] = (short) trip.getStationNumber(last);
+            toStations[count] = (short) terminus;
+            maxStation = Math.max(maxStation, Math.max(fromStations[count], terminus));
+            unsortedTrips[count] = t;
+            keys[count] = (long) departure << 43 | (long) arrival << 32 | count;
+            count++;
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+
+        JourneyPlanner planner = new JourneyPlanner(trips, count, maxStation + 1);
+        for (int c = 0; c < count; c++) {
+            int from = (int) keys[c];
+            planner.departureMinutes[c] = (short) (keys[c] >>> 43);
+            planner.arrivalMinutes[c] = (short) (keys[c] >>> 32 & 0x7FF);
+            planner.departureStations[c] = fromStations[from];
+            planner.arrivalStations[c] = toStations[from];
+            planner.tripIndexes[c] = unsortedTrips[from];
+        }
+        return planner;
+    }
+
+    /** @return The number of connections */
+    public int size() { return size; }
+
+    /** @return The number of trips the connections belong to */
+    int getTripCount() { return trips.length; }
+
+    /** @return One more than the highest station number any connection touches */
+    int getStationSlots() { return stationSlots; }
+
+    /** @return The station a connection leaves from */
+    int getDepartureStation(int connection) { return departureStations[connection]; }
+
+    /** @return The station a connection arrives at */
+    int getArrivalStation(int connection) { return arrivalStations[connection]; }
+
+    /** @return The departure of a connection in minutes since midnight */
+    int getDepartureMinute(int connection) { return departureMinutes[connection]; }
+
+    /** @return The arrival of a connection in minutes since midnight */
+    int getArrivalMinute(int connection) { return arrivalMinutes[connection]; }
+
+    /** @return The index of the trip a connection belongs to */
+    int getTripIndex(int connection) { return tripIndexes[connection]; }
+
+    /**
+     * Search state of one thread: the earliest arrival and the connection that reached every station,
+     * and the connection every trip was boarded with in the current query.
+     */
+    private static final class Search {
+        int[] earliest = new int[0];
+        int[] incoming = new int[0];
+        int[] boarded = new int[0];
+        int[] boardedQuery = new int[0];
+        int query = 0;
+
+        /** Makes room for a planner and starts a new query */
+        void reset(int stationSlots, int tripCount) {
+            if (earliest.length < stationSlots) {
+                earliest = new int[stationSlots];
+                incoming = new int[stationSlots];
+            }
+            if (boarded.length < tripCount) {
+                boarded = new int[tripCount];
+                boardedQuery = new int[tripCount];
+                query = 0;
+            }
+            Arrays.fill(earliest, 0, stationSlots, UNREACHED);
+            Arrays.fill(incoming, 0, stationSlots, -1);
+            if (++query == 0) { // Wrapped around; forget every earlier query
+                Arrays.fill(boardedQuery, 0);
+                query = 1;
+            }
+        }
+    }
+
+    /**
+     * Finds the earliest arrival at a station.
+     * @param origin The station number to leave from
+     * @param destination The station number to arrive at
+     * @param fromTime The earliest departure time in HHMM format
+     * @return The arrival time in HHMM format, or -1 if the destination cannot be reached today
+     */
+    public int getEarliestArrival(int origin, int destination, int fromTime) {
+        if (!isStation(origin) || !isStation(destination)) return -1;
+        int arrival = scan(SEARCH.get(), origin, destination, TimeUtils.toMinuteOfDay(fromTime));
+        return arrival == UNREACHED ? -1 : TimeUtils.fromMinuteOfDay(arrival);
+    }
+
+    /**
+     * Plans the journey that arrives at a station as early as possible.
+     * @param origin The station number to leave from
+     * @param destination The station number to arrive at
+     * @param fromTime The earliest departure time in HHMM format
+     * @return The itinerary, or null if the destination cannot be reached today
+     */
+    public Itinerary plan(int origin, int destination, int fromTime) {
+        Stations stations = Stations.getInstance();
+        if (!isStation(origin) || !isStation(destination)) return null;
+        if (origin == destination) {
+            return new Itinerary(stations.getStationName(origin), stations.getStationName(destination),
+                fromTime, fromTime, List.of());
+        }
+        Search search = SEARCH.get();
+        int arrival = scan(search, origin, destination, TimeUtils.toMinuteOfDay(fromTime));
+        if (arrival == UNREACHED) return null;
+
+        // Walk back from the destination, one train at a time
+        List<Itinerary.Leg> legs = new ArrayList<>();
+        int station = destination;
+        while (station != origin && legs.size() < stationSlots) {
+            int alight = search.incoming[station];
+            Trip trip = trips[tripIndexes[alight]];
+            int board = search.boarded[tripIndexes[alight]];
+            legs.add(new Itinerary.Leg(trip.getTrainID(), trip.getLineIndex(),
+                stations.getStationName(departureStations[board]), TimeUtils.fromMinuteOfDay(departureMinutes[board]),
+                stations.getStationName(arrivalStations[alight]), TimeUtils.fromMinuteOfDay(arrivalMinutes[alight])));
+            station = departureStations[board];
+        }
+        java.util.Collections.reverse(legs);
+        return new Itinerary(stations.getStationName(origin), stations.getStationName(destination),
+            fromTime, TimeUtils.fromMinuteOfDay(arrival), List.copyOf(legs));
+    }
+
+    private boolean isStation(int stationNumber) {
+        return stationNumber > 0 && stationNumber < stationSlots;
+    }
+
+    /**
+     * Scans the connections from the departure time on.
+     * @return The earliest arrival at the destination in minutes since midnight, or UNREACHED
+     */
+    private int scan(Search search, int origin, int destination, int fromMinute) {
+        search.reset(stationSlots, trips.length);
+        int[] earliest = search.earliest;
+        int[] incoming = search.incoming;
+        int[] boarded = search.boarded;
+        int[] boardedQuery = search.boardedQuery;
+        int query = search.query;
+        earliest[origin] = fromMinute;
+
+        for (int c = firstDeparture(fromMinute); c < size; c++) {
+            int departure = departureMinutes[c];
+            if (departure >= earliest[destination]) break; // No later connection can arrive sooner
+            int trip = tripIndexes[c];
+            if (boardedQuery[trip] != query) {
+                // Not on this train yet: board it if the station was reached in time to change
+                int station = departureStations[c];
+                int ready = earliest[station];
+                if (ready == UNREACHED) continue;
+                if (station != origin) ready += MIN_CHANGE_MINUTES;
+                if (ready > departure) continue;
+                boardedQuery[trip] = query;
+                boarded[trip] = c;
+            }
+            int arrivalStation = arrivalStations[c];
+            if (arrivalMinutes[c] < earliest[arrivalStation]) {
+                earliest[arrivalStation] = arrivalMinutes[c];
+                incoming[arrivalStation] = c;
+            }
+        }
+        return earliest[destination];
+    }
+
+    /** @return The first connection departing at or after the given minute */
+    int firstDeparture(int fromMinute) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departureMinutes[middle] < fromMinute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
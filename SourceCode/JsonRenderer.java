@@ -0,0 +1,245 @@
+package SourceCode;
+/**
+ * Renders query results as JSON for the HTTP board server.
+ * The counterpart of ConsoleRenderer: same results, different format. Written by hand
+ * with a StringBuilder so the project needs no JSON library.
+ * Demonstrates use of static methods and StringBuilder.
+ */
+import java.util.List;
+
+public final class JsonRenderer {
+    /** Private constructor to prevent instantiation */
+    private JsonRenderer() {}
+
+    /**
+     * Renders a station's departure board.
+     * @param board The board to render
+     * @return {"station": ..., "northbound": [...], "southbound": [...]}
+     */
+    public static String stationBoard(StationBoard board) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"station\":");
+        appendString(out, board.stationName());
+        out.append(",\"northbound\":");
+        appendEntries(out, board.northbound());
+        out.append(",\"southbound\":");
+        appendEntries(out, board.southbound());
+        return out.append('}').toString();
+    }
+
+    /**
+     * Renders the next train in each direction.
+     * @param next The next trains to render
+     * @return {"station": ..., "hasService": ..., "northbound": {...}|null, "southbound": {...}|null}
+     */
+    public static String nextTrains(NextTrains next) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"station\":");
+        appendString(out, next.stationName());
+        out.append(",\"hasService\":").append(next.hasService());
+        out.append(",\"northbound\":");
+        appendEntry(out, next.northbound());
+        out.append(",\"southbound\":");
+        appendEntry(out, next.southbound());
+        return out.append('}').toString();
+    }
+
+    /**
+     * Renders a run of next departures.
+     * @param stationName The station the departures leave from (null for the whole system)
+     * @param northbound The direction of the departures
+     * @param departures The departures to render
+     * @return {"station": ..., "direction": ..., "departures": [...]}
+     */
+    public static String departures(String stationName, boolean northbound, StopEventStore.Departures departures) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"station\":");
+        appendString(out, stationName);
+        out.append(",\"direction\":").append(northbound ? "\"northbound\"" : "\"southbound\"");
+        out.append(",\"departures\":");
+        appendEntries(out, departures.asList());
+        return out.append('}').toString();
+    }
+
+    /**
+     * Renders a planned journey.
+     * @param itinerary The journey to render, or null if there is none
+     * @return {"origin": ..., "destination": ..., "departureTime": ..., "arrivalTime": ..., "legs": [...]}, or null
+     */
+    public static String itinerary(Itinerary itinerary) {
+        if (itinerary == null) return "null";
+        StringBuilder out = new StringBuilder();
+        out.append("{\"origin\":");
+        appendString(out, itinerary.origin());
+        out.append(",\"destination\":");
+        appendString(out, itinerary.destination());
+        out.append(",\"departureTime\":");
+        appendTime(out, itinerary.departureTime());
+        out.append(",\"arrivalTime\":");
+        appendTime(out, itinerary.arrivalTime());
+        out.append(",\"transfers\":").append(itinerary.getTransfers());
+        out.append(",\"legs\":[");
+        for (int i = 0; i < itinerary.legs().size(); i++) {
+            Itinerary.Leg leg = itinerary.legs().get(i);
+            if (i > 0) out.append(',');
+            out.append("{\"trainID\":");
+            appendString(out, leg.trainID());
+            out.append(",\"line\":");
+            appendString(out, leg.getLine().getCode());
+            out.append(",\"from\":");
+            appendString(out, leg.boardStation());
+            out.append(",\"departureTime\":");
+            appendTime(out, leg.boardTime());
+            out.append(",\"to\":");
+            appendString(out, leg.alightStation());
+            out.append(",\"arrivalTime\":");
+            appendTime(out, leg.alightTime());
+            out.append('}');
+        }
+        return out.append("]}").toString();
+    }
+
+    /**
+     * Renders the earliest arrival between two stations.
+     * @param origin The station to leave from
+     * @param destination The station to arrive at
+     * @param departureTime The earliest departure time in HHMM format
+     * @param arrivalTime The arrival time in HHMM format, or -1 if there is none
+     * @return {"origin": ..., "destination": ..., "departureTime": ..., "arrivalTime": ...|null}
+     */
+    public static String arrival(String origin, String destination, int departureTime, int arrivalTime) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"origin\":");
+        appendString(out, origin);
+        out.append(",\"destination\":");
+        appendString(out, destination);
+        out.append(",\"departureTime\":");
+        appendTime(out, departureTime);
+        out.append(",\"arrivalTime\":");
+        if (arrivalTime == -1) {
+            out.append("null");
+        } else {
+            appendTime(out, arrivalTime);
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * Renders every delayed train.
+     * @param report The delay report to render
+     * @return {"northbound": [...], "southbound": [...]}, most delayed first
+     */
+    public static String delayReport(DelayReport report) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"northbound\":");
+        appendEntries(out, report.northbound());
+        out.append(",\"southbound\":");
+        appendEntries(out, report.southbound());
+        return out.append('}').toString();
+    }
+
+    /**
+     * Combines the cached boards of both directions of a station.
+     * The boards are already rendered, so only the wrapper is built here.
+     * @param stationName The station the boards belong to
+     * @param northbound The northbound live board
+     * @param southbound The southbound live board
+     * @return {"station": ..., "northbound": {...}, "southbound": {...}}
+     */
+    public static String liveBoard(String stationName, BoardCache.Board northbound, BoardCache.Board southbound) {
+        StringBuilder out = new StringBuilder(northbound.json().length() + southbound.json().length() + 64);
+        out.append("{\"station\":");
+        appendString(out, stationName);
+        out.append(",\"northbound\":").append(northbound.json());
+        out.append(",\"southbound\":").append(southbound.json());
+        return out.append('}').toString();
+    }
+
+    /**
+     * Renders the counters of a board cache.
+     * @param cache The cache to describe
+     * @return {"hits": ..., "misses": ..., "boards": ...}
+     */
+    public static String cacheStats(BoardCache cache) {
+        return "{\"hits\":" + cache.getHits() + ",\"misses\":" + cache.getMisses()
+            + ",\"boards\":" + cache.size() + "}";
+    }
+
+    /**
+     * Renders an error message.
+     * @param message The message to send
+     * @return {"error": ...}
+     */
+    public static String error(String message) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"error\":");
+        appendString(out, message);
+        return out.append('}').toString();
+    }
+
+    private static void appendEntries(StringBuilder out, List<ScheduleEntry> entries) {
+        out.append('[');
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) out.append(',');
+            appendEntry(out, entries.get(i));
+        }
+        out.append(']');
+    }
+
+    private static void appendEntry(StringBuilder out, ScheduleEntry entry) {
+        if (entry == null) {
+            out.append("null");
+            return;
+        }
+        out.append("{\"trainID\":");
+        appendString(out, entry.trainID());
+        out.append(",\"time\":");
+        appendTime(out, entry.departureTime());
+        out.append(",\"stationNumber\":").append(entry.stationNumber());
+        out.append(",\"station\":");
+        appendString(out, entry.stationName());
+        out.append(",\"line\":");
+        appendString(out, entry.getLine().getCode());
+        out.append(",\"destination\":");
+        appendString(out, entry.getDestination());
+        out.append(",\"delayMinutes\":").append(entry.delayMinutes());
+        out.append(",\"delayReason\":");
+        appendString(out, entry.delayReason());
+        out.append('}');
+    }
+
+    /** Appends an HHMM time as "HH:MM" */
+    private static void appendTime(StringBuilder out, int time) {
+        out.append('"');
+        if (time / 100 < 10) out.append('0');
+        out.append(time / 100).append(':');
+        if (time % 100 < 10) out.append('0');
+        out.append(time % 100).append('"');
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,115 @@
+package SourceCode;
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * Values below 64 ns get a bucket each; above that every power of two is split into
+ * 32 equal buckets, so any recorded value is known to within about 3% while the whole
+ * range from 1 ns to about 36 minutes fits in 1,184 counters. Recording is one array
+ * increment plus two adders, with no locks and no allocation, so it is cheap enough for
+ * every call on the hot path; percentiles are computed only when the histogram is read.
+ * Reads taken while other threads record see each recorded value either fully or not at all
+ * in the bucket counts, but the count, sum and maximum may be a few values apart.
+ * Demonstrates use of atomic arrays, LongAdder and bit manipulation.
+ */
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class LatencyHistogram {
+    /** Each power of two is split into 2^SUB_BUCKET_BITS buckets */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Largest value told apart from larger ones (2^41 - 1 ns, about 36 minutes) */
+    public static final long HIGHEST_TRACKABLE = (1L << 41) - 1;
+
+    private static final int BUCKET_COUNT = bucketIndex(HIGHEST_TRACKABLE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value.
+     * @param nanos The value in nanoseconds (negative values count as 0, larger ones as HIGHEST_TRACKABLE)
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), HIGHEST_TRACKABLE);
+        counts.incrementAndGet(bucketIndex(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return The bucket of a value: the value itself below 2 * SUB_BUCKETS, otherwise
+     *         SUB_BUCKETS per power of two, picked by the bits right after the highest one
+     */
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /** @return The highest value that falls into a bucket */
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /** @return The number of values recorded */
+    public long getCount() {
+        long count = 0;
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            count += counts.get(b);
+        }
+        return count;
+    }
+
+    /** @return The sum of all values recorded, in nanoseconds */
+    public long getTotal() { return total.sum(); }
+
+    /** @return The largest value recorded, in nanoseconds (0 if none) */
+    public long getMax() { return max.get(); }
+
+    /** @return The mean of all values recorded, in nanoseconds (0 if none) */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getTotal() / count;
+    }
+
+    /**
+     * Finds the value a given share of all recorded values are at or below.
+     * @param percentile The share in percent, from 0 to 100
+     * @return The highest value of the bucket holding that rank, in nanoseconds (0 if none),
+     *         never more than the largest value recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, got: " + percentile);
+        }
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            snapshot[b] = counts.get(b);
+            count += snapshot[b];
+        }
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            seen += snapshot[b];
+            if (seen >= rank) return Math.min(highestValueIn(b), getMax());
+        }
+        return getMax();
+    }
+
+    /** Forgets every value recorded so far */
+    public void reset() {
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            counts.set(b, 0);
+        }
+        total.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,217 @@
+package SourceCode;
+/**
+ * One line of the network: an ordered run of stations that trains shuttle back and forth on.
+ * Trains leaving towards the last station of a line travel "northbound" and trains leaving
+ * towards the first station travel "southbound"; the names come from the North-South line the
+ * system started with, and on other lines simply mean "towards the end" and "towards the start".
+ * Each direction ends at a terminus, where trains halt before they turn around.
+ * A station can be on several lines, e.g. an interchange such as Dukuh Atas or a station
+ * shared by two branches; its number is the same on all of them.
+ * Every station of a line also has a platform number (see getPlatform), used to
+ * index departures per line.
+ * Demonstrates use of immutable classes, arrays and prefix sums.
+ */
+import java.util.Arrays;
+
+public final class Line {
+    /** Position of the line in the network */
+    private final int index;
+
+    /** Short code of the line (e.g., "NS") */
+    private final String code;
+
+    /** Full name of the line (e.g., "North-South Line") */
+    private final String name;
+
+    /** Station numbers in order from the southern to the northern terminus */
+    private final int[] stations;
+
+    /** Position of every station number on the line, or -1 for stations that are not on it */
+    private final int[] positions;
+
+    /** Minutes from the first station to each position travelling northbound, including the halt at the end */
+    private final int[] northboundOffsets;
+
+    /** Minutes from the last station to each position travelling southbound, including the halt at the end */
+    private final int[] southboundOffsets;
+
+    /** Minutes between neighbouring stations in each direction, excluding the halts */
+    private final int[] northboundMinutes;
+    private final int[] southboundMinutes;
+
+    /** Minutes trains halt at either terminus */
+    private final int terminusHaltTime;
+
+    /** Platform number of the first station; the others follow in order */
+    private final int firstPlatform;
+
+    /**
+     * Creates a line. Used by Stations when it builds the network.
+     * @param index The position of the line in the network
+     * @param code The short code of the line
+     * @param name The full name of the line
+     * @param stations Station numbers from the southern to the northern terminus
+     * @param northboundMinutes Minutes from each station to the next one, northbound (one fewer than stations)
+     * @param southboundMinutes Minutes from each station's successor back to it, southbound (one fewer than stations)
+     * @param terminusHaltTime Minutes trains halt at either terminus
+     * @param maxStationNumber The highest station number in the network
+     * @param firstPlatform The platform number of the first station
+     */
+    Line(int index, String code, String name, int[] stations, int[] northboundMinutes, int[] southboundMinutes,
+         int terminusHaltTime, int maxStationNumber, int firstPlatform) {
+        if (stations.length < 2) {
+            throw new IllegalArgumentException("Line " + code + " needs at least two stations");
+        }
+        this.index = index;
+        this.code = code;
+        this.name = name;
+        this.stations = stations.clone();
+        this.northboundMinutes = northboundMinutes.clone();
+        this.southboundMinutes = southboundMinutes.clone();
+        this.terminusHaltTime = terminusHaltTime;
+        this.firstPlatform = firstPlatform;
+
+        positions = new int[maxStationNumber + 1];
+        Arrays.fill(positions, -1);
+        for (int p = 0; p < stations.length; p++) {
+            if (positions[stations[p]] != -1) {
+                throw new IllegalArgumentException("Line " + code + " calls at station " + stations[p] + " twice");
+            }
+            positions[stations[p]] = p;
+        }
+
+        // Prefix sums of the segment times; the last segment of each direction includes the halt
+        int last = stations.length - 1;
+        northboundOffsets = new int[stations.length];
+        southboundOffsets = new int[stations.length];
+        for (int p = 1; p <= last; p++) {
+            northboundOffsets[p] = northboundOffsets[p - 1] + northboundMinutes[p - 1] + (p == last ? terminusHaltTime : 0);
+        }
+        for (int p = last - 1; p >= 0; p--) {
+            southboundOffsets[p] = southboundOffsets[p + 1] + southboundMinutes[p] + (p == 0 ? terminusHaltTime : 0);
+        }
+    }
+
+    /** @return The position of the line in the network */
+    public int getIndex() { return index; }
+
+    /** @return The short code of the line */
+    public String getCode() { return code; }
+
+    /** @return The full name of the line */
+    public String getName() { return name; }
+
+    /** @return The number of stations on the line */
+    public int size() { return stations.length; }
+
+    /** @return The station number at a position on the line */
+    public int getStation(int position) { return stations[position]; }
+
+    /**
+     * @param stationNumber The station to look for
+     * @return The position of the station on the line, or -1 if it is not on the line
+     */
+    public int getPosition(int stationNumber) {
+        return stationNumber >= 0 && stationNumber < positions.length ? positions[stationNumber] : -1;
+    }
+
+    /** @return true if the line calls at the station */
+    public boolean contains(int stationNumber) { return getPosition(stationNumber) != -1; }
+
+    /** @return The number of the first station (the southern terminus) */
+    public int getFirstStation() { return stations[0]; }
+
+    /** @return The number of the last station (the northern terminus) */
+    public int getLastStation() { return stations[stations.length - 1]; }
+
+    /**
+     * @param northbound The direction of travel
+     * @return The number of the terminus trains in that direction are heading to
+     */
+    public int getTerminus(boolean northbound) {
+        return northbound ? getLastStation() : getFirstStation();
+    }
+
+    /**
+     * @param northbound The direction of travel
+     * @return The name of the terminus trains in that direction are heading to
+     */
+    public String getTerminusName(boolean northbound) {
+        return Stations.getInstance().getStationName(getTerminus(northbound));
+    }
+
+    /**
+     * Determines the direction a train starting at a station leaves in.
+     * Trains leave northbound unless they start at the northern terminus.
+     * @param stationNumber The station the train starts at
+     * @return true if the train leaves northbound
+     */
+    public boolean getInitialDirection(int stationNumber) {
+        return stationNumber != getLastStation();
+    }
+
+    /**
+     * @param stationNumber The station the train is at
+     * @param northbound The direction of travel
+     * @return The next station in that direction, or -1 at the terminus (or if the station is not on the line)
+     */
+    public int getNextStation(int stationNumber, boolean northbound) {
+        int position = getPosition(stationNumber);
+        if (position == -1) return -1;
+        int next = northbound ? position + 1 : position - 1;
+        return next >= 0 && next < stations.length ? stations[next] : -1;
+    }
+
+    /**
+     * @param stationNumber A station on the line
+     * @return The platform number of the station on this line, or -1 if it is not on the line
+     */
+    public int getPlatform(int stationNumber) {
+        int position = getPosition(stationNumber);
+        return position == -1 ? -1 : firstPlatform + position;
+    }
+
+    /**
+     * Gets the travel time between two stations of the line in a given direction of travel.
+     * Includes the halt at a terminus whenever the trip arrives at one.
+     * If the destination lies behind the train, the train runs to the terminus,
+     * turns around and comes back, so the answer is the sum of both legs.
+     * @param from The number of the station the train leaves
+     * @param to The number of the station the train arrives at
+     * @param northbound The direction the train leaves in
+     * @return The travel time in minutes
+     * @throws IllegalArgumentException if either station is not on the line
+     */
+    public int getTravelTime(int from, int to, boolean northbound) {
+        int fromPosition = getPosition(from);
+        int toPosition = getPosition(to);
+        if (fromPosition == -1 || toPosition == -1) {
+            throw new IllegalArgumentException("Station " + (fromPosition == -1 ? from : to) + " is not on line " + code);
+        }
+        int first = 0;
+        int last = stations.length - 1;
+        if (northbound) {
+            if (toPosition >= fromPosition) return northboundOffsets[toPosition] - northboundOffsets[fromPosition];
+            return northboundOffsets[last] - northboundOffsets[fromPosition] + southboundOffsets[toPosition];
+        }
+        if (toPosition <= fromPosition) return southboundOffsets[toPosition] - southboundOffsets[fromPosition];
+        return southboundOffsets[first] - southboundOffsets[fromPosition] + northboundOffsets[toPosition];
+    }
+
+    /** @return The minutes trains halt at either terminus */
+    public int getTerminusHaltTime() { return terminusHaltTime; }
+
+    /**
+     * @param position A position on the line, before the last one
+     * @param northbound The direction of travel
+     * @return The minutes between the stations at this position and the next one in that direction, excluding halts
+     */
+    int getSegmentMinutes(int position, boolean northbound) {
+        return northbound ? northboundMinutes[position] : southboundMinutes[position];
+    }
+
+    @Override
+    public String toString() {
+        return code + " (" + name + ")";
+    }
+}
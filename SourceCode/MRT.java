@@ -2,12 +2,17 @@ package SourceCode;
 /**
  * MRT is a concrete train type that extends the abstract Trains class.
  * This class represents a Mass Rapid Transit train in the system.
- * It handles train-specific operations like journey simulation, delay management,
- * and schedule display. Demonstrates inheritance and polymorphism.
+ * It handles train-specific operations like journey simulation and delay management;
+ * ConsoleRenderer displays schedules. Every train runs on one line of the network, which decides
+ * where it turns around and which terminus it is heading to.
+ * Demonstrates inheritance and polymorphism.
  */
 public class MRT extends Trains {
     // Indicates whether the train is traveling northbound 
     private boolean isNorthbound;
+
+    // The line the train runs on
+    private Line line;
     
     // Indicates if the train is currently delayed 
     private boolean isDelayed = false;
@@ -26,8 +31,32 @@ public class MRT extends Trains {
      * @param isNorthbound Whether the train is heading northbound
      */
     public MRT(String trainID, int departureTime, String currentStation, boolean isNorthbound) {
+        this(trainID, departureTime, currentStation, isNorthbound, null);
+    }
+
+    /**
+     * Constructor for an MRT train on a given line.
+     * @param trainID Unique identifier for the train
+     * @param departureTime Departure time in HHMM format
+     * @param currentStation Name of the current station
+     * @param isNorthbound Whether the train is heading northbound
+     * @param line The line the train runs on, or null for the first line calling at the station
+     * @throws IllegalArgumentException if the station is not on the line
+     */
+    public MRT(String trainID, int departureTime, String currentStation, boolean isNorthbound, Line line) {
         super(trainID, departureTime, currentStation);
         this.isNorthbound = isNorthbound;
+        this.line = line != null ? line : Stations.getInstance().getDefaultLine(getCurrentStationNumber());
+        if (!this.line.contains(getCurrentStationNumber())) {
+            throw new IllegalArgumentException(currentStation + " is not on line " + this.line.getCode());
+        }
+    }
+
+    /**
+     * @return The line the train runs on
+     */
+    public Line getLine() {
+        return line;
     }
 
     /**
@@ -40,15 +69,19 @@ public class MRT extends Trains {
 
     /**
      * Reschedules the train to a new departure time and station.
-     * Updates the train's direction based on the new station.
+     * Updates the train's direction based on the new station, and moves the train
+     * to the station's first line if its own line does not call there.
      * @param newDepartureTime New departure time in HHMM format
      * @param newStation New station name
      */
     public void reschedule(int newDepartureTime, String newStation) {
         setDepartureTime(newDepartureTime);
         setCurrentStation(newStation);
+        if (!line.contains(getCurrentStationNumber())) {
+            line = Stations.getInstance().getDefaultLine(getCurrentStationNumber());
+        }
         // Update direction based on new station
-        this.isNorthbound = StationUtils.checkInitialDirection(newStation);
+        this.isNorthbound = line.getInitialDirection(getCurrentStationNumber());
     }
 
     /**
@@ -57,58 +90,7 @@ public class MRT extends Trains {
      * @return Station number, or -1 if not found
      */
     public int getStationNumber(String stationName) {
-        for (var entry : new Stations().getStationMap().entrySet()) {
-            if (entry.getValue().equals(stationName)) {
-                return entry.getKey();
-            }
-        }
-        return -1;
-    }
-
-    /**
-     * Displays the train schedule information.
-     * Shows different formats based on whether the train is delayed.
-     * @param stationName The station name to display (null for system-wide display)
-     * @param isFirst Whether this is the first train in a list
-     */
-    public void displaySchedule(String stationName, boolean isFirst) {
-        // If this is the first train in a list, show the direction header
-        if (isFirst) {
-            System.out.println("\nHeading To: " + getDirection());
-            System.out.println("-------------------------------");
-        }
-
-        // Format time as HH:MM
-        String timeStr = String.format("%02d:%02d", getDepartureTime() / 100, getDepartureTime() % 100);
-        
-        // Display train details in the original format
-        if (isDelayed()) {
-            System.out.printf("%s - %s - %s | Delayed: %d minutes (Reason: %s)%n",
-                timeStr,
-                getTrainID(),
-                getCurrentStation(),
-                getDelayDuration(),
-                getDelayReason()
-            );
-        } else {
-            System.out.printf("%s - %s - %s%n",
-                timeStr,
-                getTrainID(),
-                getCurrentStation()
-            );
-        }
-    }
-
-    /**
-     * Displays a message when no trains are available.
-     * @param stationName The station name to display (null for system-wide display)
-     */
-    public static void displayNoTrainsMessage(String stationName) {
-        if (stationName != null) {
-            System.out.println("No trains scheduled for station: " + stationName);
-        } else {
-            System.out.println("No trains scheduled in the system.");
-        }
+        return Stations.getInstance().getStationNumber(stationName);
     }
 
     /**
@@ -172,7 +154,7 @@ public class MRT extends Trains {
      * @return The opposite terminal station name based on current direction
      */
     public String getOppositeTerminal() {
-        return isNorthbound() ? "Bundaran HI" : "Lebak Bulus";
+        return line.getTerminusName(isNorthbound());
     }
     
     /**
@@ -180,32 +162,44 @@ public class MRT extends Trains {
      */
     @Override
     public String getDirection() {
-        return isNorthbound ? "Bundaran HI" : "Lebak Bulus";
+        return line.getTerminusName(isNorthbound);
     }
 
     /**
      * Simulates the train's journey through the system.
-     * Handles station-to-station movement, direction changes at terminals,
-     * and time calculations including delays.
+     * Handles station-to-station movement along the train's line, direction changes
+     * at its terminals, and time calculations including delays.
+     * The stops are collected into a single Trip which is then registered with MRTManager.
      * @param stations Station data for the system
      * @param forward Initial direction of travel
      * @param closingTime System closing time in HHMM format
      */
     @Override
     public void simulateJourney(Stations stations, boolean forward, int closingTime) {
-        int currentKey = -1;
-        // Find the current station key
-        for (var entry : stations.getStationMap().entrySet()) {
-            if (entry.getValue().equalsIgnoreCase(getCurrentStation())) {
-                currentKey = entry.getKey();
-                break;
-            }
+        Trip trip = buildJourney(stations, forward, closingTime);
+
+        // Register the whole run at once; it replaces any earlier trip of this train
+        if (trip != null) {
+            MRTManager.addTrip(trip);
         }
-        if (currentKey == -1) return;
+    }
+
+    /**
+     * Computes the train's journey as a Trip without registering it anywhere.
+     * Only reads the shared station data, so journeys of different trains
+     * can be computed in parallel.
+     * @param stations Station data for the system
+     * @param forward Initial direction of travel
+     * @param closingTime System closing time in HHMM format
+     * @return The trip with every stop until closing time, or null if there are none
+     */
+    public Trip buildJourney(Stations stations, boolean forward, int closingTime) {
+        int currentKey = getCurrentStationNumber();
 
         int time = getDepartureTime();
         boolean dir = forward;
         this.isNorthbound = dir; // Set initial direction
+        Trip trip = new Trip(getTrainID(), line.getIndex());
 
         while (true) {
             // Check if we've passed the closing time
@@ -215,26 +209,23 @@ public class MRT extends Trains {
             }
 
             // Determine next station and travel time
-            int nextKey = dir ? currentKey + 1 : currentKey - 1;
+            int nextKey = line.getNextStation(currentKey, dir);
             // Reverse direction at ends
-            if (!stations.getStationMap().containsKey(nextKey)) {
+            if (nextKey == -1) {
                 dir = !dir;
                 this.isNorthbound = dir; // Update direction when reversing
-                nextKey = dir ? currentKey + 1 : currentKey - 1; // Recalculate nextKey after direction change
-                if (!stations.getStationMap().containsKey(nextKey)) break; // Safety check
+                nextKey = line.getNextStation(currentKey, dir); // Recalculate nextKey after direction change
+                if (nextKey == -1) break; // Safety check
             }
 
-            // Add this train's current state to the global schedule with current direction
-            MRT newTrain = new MRT(getTrainID(), time, stations.getStationMap().get(currentKey), dir);
-            newTrain.setDelay(getDelay()); // Preserve delay
-            MRTManager.addTrain(newTrain);
-
-            String travelKey = currentKey + "-" + nextKey;
-            Integer travelTime = dir
-                ? stations.getForwardTravelTimeMap().get(travelKey)
-                : stations.getBackwardTravelTimeMap().get(travelKey);
+            // Record this stop on the trip with the current direction
+            int stopIndex = trip.addStop(time, currentKey, dir);
+            if (isDelayed()) {
+                // The departure time already includes the delay, so it carries to every later stop as in Trip.delayFrom
+                trip.setDelay(stopIndex, getDelayDuration(), getDelayReason());
+            }
 
-            if (travelTime == null) break;
+            int travelTime = line.getTravelTime(currentKey, nextKey, dir);
 
             // Move to next station
             time = TimeUtils.addMinutesToDepTime(time, travelTime);
@@ -243,6 +234,10 @@ public class MRT extends Trains {
             // If we've wrapped around midnight, break the loop
             if (time < getDepartureTime()) break;
         }
+
+        if (trip.size() == 0) return null;
+        trip.trimToSize();
+        return trip;
     }
 }
 
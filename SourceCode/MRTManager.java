@@ -1,155 +1,378 @@
 package SourceCode;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.TreeMap;
-import java.util.PriorityQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public final class MRTManager {
-    // Maps train ID to train object for quick lookup (e.g., "MRT123" -> MRT object)
-    private static final Map<String, Schedulable> trainById = new HashMap<>();
-    
-    // Maps station name to station object for quick lookup (e.g., "Lebak Bulus" -> CurrentStation object)
-    private static final Map<String, CurrentStation> stations = new HashMap<>();
-    
-    // MAIN SCHEDULE: departure time -> (train ID -> train object)
-    // Using TreeMap for both levels ensures trains are sorted by time and then by ID
-    private static final TreeMap<Integer, TreeMap<String, Schedulable>> mainSchedule = new TreeMap<>();
-    
-    // Station-specific schedules: station name -> (departure time -> (train ID -> train))
-    private static final Map<String, TreeMap<Integer, TreeMap<String, MRT>>> stationSchedule = new HashMap<>();
-    
-    // Track the earliest train for quick access
-    private static Schedulable earliestTrain = null;
-    
-    // Queue for delayed trains, sorted by delay time
-    private static final PriorityQueue<Schedulable> delayQueue = new PriorityQueue<>(
-        (a, b) -> {
-            int cmp = Integer.compare(((Trains) b).getDelay(), ((Trains) a).getDelay());
-            if (cmp == 0) {
-                return Integer.compare(a.getDepartureTime(), b.getDepartureTime());
-            }
-            return cmp;
-        }
-    );
+    // The published timetable. Queries read it once and work on that version without locking;
+    // writers build the next version and publish it with a single atomic swap
+    private static final AtomicReference<Timetable> timetable = new AtomicReference<>(Timetable.EMPTY);
+
+    // Serializes writers so each one builds on the latest published version
+    private static final ReentrantLock writeLock = new ReentrantLock();
+
+    // Builder of the change in progress, so nested writes (e.g. addTrip from a simulation) join it
+    // Only accessed while holding writeLock
+    private static Timetable.Builder activeBuilder = null;
+
+    // Flight Recorder event of the change in progress, and events of changes that joined a write without
+    // an event of its own (e.g. changes in a batch). Only accessed while holding writeLock
+    private static TimetableEvents.Change activeEvent = null;
+    private static List<TimetableEvents.Change> joinedEvents = null;
 
-    private static Schedulable earliestNorthboundTrain = null;
-    private static Schedulable earliestSouthboundTrain = null;
+    // Orders bulk-loaded trains by train ID, then departure time
+    private static final Comparator<Trains> BY_ID_AND_TIME =
+        Comparator.comparing(Trains::getTrainID).thenComparingInt(Trains::getDepartureTime);
 
     private MRTManager() {} // Prevent instantiation
-    
-    // Earlist trains update methods to be used for O(1) lookups in getNextTrain()
+
+    /**
+     * Gets the current timetable version.
+     * Callers that run several queries can hold on to it to see one consistent timetable.
+     * @return The latest published timetable
+     */
+    public static Timetable getTimetable() {
+        return timetable.get();
+    }
+
     /**
-     * Updates the earliest trains when a new train is added.
+     * Applies a change to a new timetable version and publishes it.
+     * Writes made while another write is in progress on the same thread join that write,
+     * so the whole change becomes visible at once.
+     * @param change The change to apply to the builder
+     * @return The result of the change
      */
-    private static void updateEarliestTrains(Schedulable train) {
-        if (train instanceof MRT mrt) {
-            if (mrt.isNorthbound()) {
-                if (earliestNorthboundTrain == null || mrt.isEarlierThan(earliestNorthboundTrain)) {
-                    earliestNorthboundTrain = train;
+    private static <T> T write(Function<Timetable.Builder, T> change) {
+        return write(change, null);
+    }
+
+    /**
+     * Applies a change to a new timetable version and publishes it, recording it as a Flight Recorder event.
+     * The event is given the version the change is published in: its own, or that of the write it joins.
+     * A write that joins one with an event of its own is part of that change and is not recorded separately.
+     * @param change The change to apply to the builder
+     * @param event The event of the change, or null
+     * @return The result of the change
+     */
+    private static <T> T write(Function<Timetable.Builder, T> change, TimetableEvents.Change event) {
+        writeLock.lock();
+        try {
+            if (activeBuilder != null) {
+                TimetableEvents.Change enclosing = activeEvent;
+                if (event != null && enclosing == null) {
+                    if (joinedEvents == null) joinedEvents = new ArrayList<>();
+                    joinedEvents.add(event);
+                    activeEvent = event;
                 }
-            } else {
-                if (earliestSouthboundTrain == null || mrt.isEarlierThan(earliestSouthboundTrain)) {
-                    earliestSouthboundTrain = train;
+                try {
+                    return change.apply(activeBuilder);
+                } finally {
+                    activeEvent = enclosing;
+                }
+            }
+            activeBuilder = timetable.get().toBuilder();
+            activeEvent = event;
+            try {
+                T result = change.apply(activeBuilder);
+                Timetable published = activeBuilder.build();
+                timetable.set(published);
+                if (event != null) event.publish(published);
+                if (joinedEvents != null) {
+                    for (TimetableEvents.Change joined : joinedEvents) {
+                        joined.publish(published);
+                    }
                 }
+                return result;
+            } finally {
+                activeBuilder = null;
+                activeEvent = null;
+                joinedEvents = null;
             }
+        } finally {
+            writeLock.unlock();
         }
     }
+
     /**
-     * Updates the earliest trains when a train is removed.
+     * Runs several changes (e.g., a bulk edit by the manager) as a single new version.
+     * Readers see either none or all of the changes.
+     * @param changes The changes to run
      */
-    private static void updateEarliestTrainsAfterRemoval(Schedulable train) {
-        if (train instanceof MRT mrt) {
-            if (mrt.isNorthbound() && train == earliestNorthboundTrain) {
-                // Find new earliest northbound train
-                earliestNorthboundTrain = null;
-                for (var station : stations.values()) {
-                    Schedulable next = station.getNextNorthboundTrain();
-                    if (next instanceof MRT nextTrain && 
-                        (earliestNorthboundTrain == null || nextTrain.isEarlierThan(earliestNorthboundTrain))) {
-                        earliestNorthboundTrain = next;
-                    }
-                }
-            } else if (!mrt.isNorthbound() && train == earliestSouthboundTrain) {
-                // Find new earliest southbound train
-                earliestSouthboundTrain = null;
-                for (var station : stations.values()) {
-                    Schedulable next = station.getNextSouthboundTrain();
-                    if (next instanceof MRT nextTrain && 
-                        (earliestSouthboundTrain == null || nextTrain.isEarlierThan(earliestSouthboundTrain))) {
-                        earliestSouthboundTrain = next;
-                    }
-                }
+    public static void runBatch(Runnable changes) {
+        write(builder -> {
+            changes.run();
+            return null;
+        });
+    }
+
+    /**
+     * Removes every train, leaving the timetable as empty as on a fresh start.
+     * Tests share the one timetable of the process, so each starts from here.
+     */
+    static void clear() {
+        write(builder -> {
+            for (String trainID : List.copyOf(builder.getTrainIDs())) {
+                builder.removeTrip(trainID);
             }
+            return null;
+        });
+    }
+
+    /**
+     * Replaces the whole timetable with one loaded from a snapshot.
+     * The snapshot becomes a new version after the current one, so caches built from
+     * earlier versions are never mistaken for it.
+     * @param snapshot The loaded snapshot
+     * @throws IllegalStateException if called inside a batch
+     */
+    public static void restore(Snapshot snapshot) {
+        writeLock.lock();
+        try {
+            if (activeBuilder != null) {
+                throw new IllegalStateException("A snapshot cannot be restored inside a batch");
+            }
+            long version = timetable.get().getVersion() + 1;
+            timetable.set(Timetable.restore(version, snapshot.getTrips(), snapshot.getStopEvents()));
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    /**
+     * Switches to a different network, e.g. one loaded from a file.
+     * Trips refer to stations and lines by number, so this is only allowed while the timetable is empty.
+     * @param network The network to use from now on
+     * @throws IllegalStateException if the timetable has trips or a batch is in progress
+     */
+    public static void useNetwork(Stations network) {
+        writeLock.lock();
+        try {
+            if (activeBuilder != null || !timetable.get().getTrips().isEmpty()) {
+                throw new IllegalStateException("The network can only be changed while the timetable is empty");
+            }
+            Stations.setInstance(network);
+            Metrics.resetStations();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the first train number after every train in the system.
+     * Inside a batch this includes trains added earlier in the same batch.
+     * @return The next free train number
+     */
+    public static int nextFreeTrainNumber() {
+        return write(builder -> TrainUtils.nextFreeTrainNumber(builder.getTrainIDs()));
+    }
+
+    /**
+     * Counts the entries of a version's indexes, for the operation metrics:
+     * trainById (trips by train ID), mainSchedule (stop events in the column store) and
+     * delayQueue (delayed stops). Builds the column store if no query has needed it yet.
+     * @param current The timetable version to look at
+     * @return A modifiable map of the number of entries of each index, in the order above
+     */
+    public static Map<String, Long> getIndexSizes(Timetable current) {
+        StopEventStore events = current.getStopEvents();
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        sizes.put("trainById", (long) current.getTrips().size());
+        sizes.put("mainSchedule", (long) events.size());
+        sizes.put("delayQueue", (long) current.getDelayIndex().size());
+        return sizes;
+    }
+
+    /**
+     * Builds a report of the operation metrics recorded so far, with the current index sizes.
+     * @return The report
+     */
+    public static MetricsReport getMetricsReport() {
+        Timetable current = timetable.get();
+        return Metrics.report(current.getVersion(), getIndexSizes(current));
+    }
+
+    /**
+     * Looks up a station number, rejecting unknown stations.
+     */
+    private static int requireStationNumber(String stationName) {
+        int stationNumber = Stations.getInstance().getStationNumber(stationName);
+        if (stationNumber == -1) {
+            throw new IllegalArgumentException("Unknown station: " + stationName);
+        }
+        return stationNumber;
+    }
+
     /**
      * Adds a train to the system.
-     * Updates all necessary data structures to maintain consistency.
+     * The stop is appended to the trip of the train, creating the trip if needed.
      * @param schedule the train to add
      */
     public static void addTrain(Schedulable schedule) {
-        int dep = schedule.getDepartureTime();
-        String trainId = ((Trains) schedule).getTrainID();
-        String station = ((Trains) schedule).getCurrentStation();
-        
-        // Add to global schedule
-        mainSchedule.computeIfAbsent(dep, k -> new TreeMap<>()).put(trainId, schedule);
-        
-        // Add to train lookup
-        trainById.put(trainId, schedule);
-        
-        // Add to station
-        stations.computeIfAbsent(station, k -> new CurrentStation(k)).addTrain((MRT) schedule);
-        
-        // Add to station-specific schedule
-        if (schedule instanceof MRT mrt) {
-            stationSchedule.computeIfAbsent(station, k -> new TreeMap<>())
-                .computeIfAbsent(dep, k -> new TreeMap<>())
-                .put(trainId, mrt);
+        long start = System.nanoTime();
+        Trains train = (Trains) schedule;
+        write(builder -> {
+            Trip trip = editOrCreateTrip(builder, train);
+            // A train can only be at one place at a time, so a stop at the same time is replaced
+            appendStop(trip, train, trip.indexOf(train.getDepartureTime()));
+            return null;
+        });
+        Metrics.record(Metrics.Operation.ADD_TRAIN, start);
+    }
+
+    /**
+     * Adds many trains to the system as a single new version.
+     * The input is sorted once by train ID and departure time, so every trip is looked up once
+     * and its stops are appended in order. The station boards, column store and earliest-train
+     * pointers of the new version are then built in one pass over the finished trips instead of
+     * once per train. Much faster than calling addTrain for every train when loading a timetable.
+     * @param schedules the trains to add
+     */
+    public static void addTrains(Collection<? extends Schedulable> schedules) {
+        long start = System.nanoTime();
+        TimetableEvents.BulkLoad event = new TimetableEvents.BulkLoad();
+        event.begin();
+        Trains[] trains = new Trains[schedules.size()];
+        int count = 0;
+        for (Schedulable schedule : schedules) {
+            trains[count++] = (Trains) schedule;
+        }
+        Arrays.sort(trains, 0, count, BY_ID_AND_TIME);
+
+        int total = count;
+        write(builder -> {
+            Trip trip = null;
+            boolean isNew = false;
+            for (int i = 0; i < total; i++) {
+                Trains train = trains[i];
+                if (trip == null || !trip.getTrainID().equals(train.getTrainID())) {
+                    isNew = builder.getTrip(train.getTrainID()) == null;
+                    trip = editOrCreateTrip(builder, train);
+                }
+                // Stops of a new trip arrive in time order, so only the previous stop can clash
+                int existing;
+                if (isNew) {
+                    int last = trip.size() - 1;
+                    existing = last >= 0 && trip.getTime(last) == train.getDepartureTime() ? last : -1;
+                } else {
+                    existing = trip.indexOf(train.getDepartureTime());
+                }
+                appendStop(trip, train, existing);
+            }
+            return null;
+        }, event);
+        Metrics.record(Metrics.Operation.ADD_TRAINS, start);
+        event.operation = "addTrains";
+        event.count = total;
+        event.finish();
+    }
+
+    /**
+     * Gets the trip of a train to append its stop to, creating the trip if the train has none.
+     * A new trip of an MRT runs on the MRT's line; otherwise it takes the default line of its first stop.
+     */
+    private static Trip editOrCreateTrip(Timetable.Builder builder, Trains train) {
+        if (train instanceof MRT mrt && builder.getTrip(train.getTrainID()) == null) {
+            builder.putTrip(new Trip(train.getTrainID(), mrt.getLine().getIndex()));
         }
+        return builder.editOrCreateTrip(train.getTrainID());
+    }
 
-        // Update earliest train if needed
-        if (earliestTrain == null || dep < earliestTrain.getDepartureTime()) {
-            earliestTrain = schedule;
+    /**
+     * Appends one train's stop to its trip.
+     * @param existing index of a stop at the same time to replace, or -1
+     */
+    private static void appendStop(Trip trip, Trains train, int existing) {
+        if (existing != -1) {
+            trip.cancelStop(existing);
+        }
+        int stationNumber = train.getCurrentStationNumber();
+        boolean isNorthbound = train instanceof MRT mrt ? mrt.isNorthbound()
+            : trip.getLineIndex() == -1 ? StationUtils.isNorthbound(stationNumber)
+            : trip.getLine().getInitialDirection(stationNumber);
+        int index = trip.addStop(train.getDepartureTime(), stationNumber, isNorthbound);
+        if (train instanceof MRT mrt && mrt.isDelayed()) {
+            trip.setDelay(index, mrt.getDelayDuration(), mrt.getDelayReason());
         }
+    }
 
-        updateEarliestTrains(schedule);
+    /**
+     * Adds a whole trip to the system.
+     * Replaces any trip already registered for the same train ID.
+     * @param trip the trip to add
+     */
+    public static void addTrip(Trip trip) {
+        long start = System.nanoTime();
+        write(builder -> {
+            builder.putTrip(trip);
+            return null;
+        });
+        Metrics.record(Metrics.Operation.ADD_TRIPS, start);
     }
 
     /**
-     * Displays a train's information.
-     * @param train the train to display
-     * @param stationName the station name (null for system-wide display)
-     * @param isFirstTrain whether this is the first train in a group (to print headers)
+     * Adds many whole trips to the system as a single new version.
+     * Trips are taken one at a time, so a large feed can be streamed in (e.g., from a file reader)
+     * without collecting it into a list first. Each trip replaces any trip of the same train.
+     * @param trips the trips to add
      */
-    public static void displayTrainSchedule(Schedulable train, String stationName, boolean isFirstTrain) {
-        if (train == null) {
-            if (stationName == null) {
-                System.out.println("No trains found in the system.");
-            } else {
-                System.out.println("No trains found for station: " + stationName);
+    public static void addTrips(Iterable<Trip> trips) {
+        long start = System.nanoTime();
+        TimetableEvents.BulkLoad event = new TimetableEvents.BulkLoad();
+        event.begin();
+        int count = write(builder -> {
+            int added = 0;
+            for (Trip trip : trips) {
+                builder.putTrip(trip);
+                added++;
             }
-            return;
-        }
+            return added;
+        }, event);
+        Metrics.record(Metrics.Operation.ADD_TRIPS, start);
+        event.operation = "addTrips";
+        event.count = count;
+        event.finish();
+    }
 
-        if (train instanceof MRT mrt) {
-            String direction = mrt.getDirection();
-            String destination = direction.contains("Northbound") ? "Bundaran HI" : "Lebak Bulus";
-            
-            if (isFirstTrain) {
-                System.out.println("\nHeading To: " + destination);
-                System.out.println("-------------------------------");
+    /**
+     * Removes every trip made by TimetableGenerator, so a newly generated timetable can take its place.
+     * Takes O(n) in the number of trains.
+     * @return The number of trips removed
+     */
+    public static int removeGeneratedTrips() {
+        return write(builder -> {
+            int removed = 0;
+            for (String trainID : List.copyOf(builder.getTrainIDs())) {
+                if (builder.getTrip(trainID).isGenerated()) {
+                    builder.removeTrip(trainID);
+                    removed++;
+                }
             }
-            
-            String timeStr = String.format("%02d:%02d", train.getDepartureTime() / 100, train.getDepartureTime() % 100);
-            System.out.printf("%s - %s - %s%n",
-                timeStr,
-                mrt.getTrainID(),
-                mrt.getCurrentStation()
-            );
-        }
+            return removed;
+        });
+    }
+
+    /**
+     * Lists all train schedules in chronological order, grouped by direction.
+     * The lists are views over the current version's column store that create entries as they are read.
+     * Once the store is compact they cost nothing to get; while changed rows wait to be merged in,
+     * each list first merges the row numbers of its direction into a new array, O(n) per call.
+     * @return Every departure heading to each terminus
+     */
+    public static TrainList getAllSchedules() {
+        long start = System.nanoTime();
+        StopEventStore events = timetable.get().getStopEvents();
+        TrainList trains = new TrainList(events.getEntries(true), events.getEntries(false));
+        Metrics.record(Metrics.Operation.ALL_SCHEDULES, start);
+        return trains;
     }
 
     /**
@@ -158,118 +381,78 @@ public final class MRTManager {
      * Each group shows schedules in chronological order.
      */
     public static void printAllSchedules() {
-        if (mainSchedule.isEmpty()) {
-            MRT.displayNoTrainsMessage(null);
-            return;
-        }
-
-        // First, show all trains heading to Bundaran HI
-        System.out.println("\nHeading To: Bundaran HI");
-        System.out.println("-------------------------------");
-        boolean hasNorthbound = false;
-        for (var entry : mainSchedule.entrySet()) {
-            var trains = entry.getValue();
-            for (var train : trains.values()) {
-                if (train instanceof MRT mrt && mrt.getDirection().contains("Bundaran HI")) {
-                    hasNorthbound = true;
-                    mrt.displaySchedule(null, false);
-                }
-            }
-        }
-        if (!hasNorthbound) {
-            System.out.println("No trains heading to Bundaran HI");
-        }
-        System.out.println("-------------------------------");
-
-        // Then, show all trains heading to Lebak Bulus
-        System.out.println("\nHeading To: Lebak Bulus");
-        System.out.println("-------------------------------");
-        boolean hasSouthbound = false;
-        for (var entry : mainSchedule.entrySet()) {
-            var trains = entry.getValue();
-            for (var train : trains.values()) {
-                if (train instanceof MRT mrt && mrt.getDirection().contains("Lebak Bulus")) {
-                    hasSouthbound = true;
-                    mrt.displaySchedule(null, false);
-                }
-            }
-        }
-        if (!hasSouthbound) {
-            System.out.println("No trains heading to Lebak Bulus");
-        }
-        System.out.println("-------------------------------");
+        ConsoleRenderer.printTrainList(getAllSchedules());
     }
 
     /**
-     * Prints the train schedule for a specific station.
-     * Shows trains in both directions except at terminus stations.
+     * Builds the departure board of a station.
+     * Shows trains of every line calling at the station in both directions, except
+     * trains arriving at the terminus of their line.
      * For example:
      * - At Lebak Bulus: only shows trains heading to Bundaran HI
      * - At Bundaran HI: only shows trains heading to Lebak Bulus
      * - At other stations: shows trains in both directions
-     * 
+     * - At an interchange: shows the trains of every line, each direction in departure order
+     *
+     * @param stationName The name of the station
+     * @return The station's board (empty if the station is unknown)
+     */
+    public static StationBoard getStationBoard(String stationName) {
+        long start = System.nanoTime();
+        Stations stations = Stations.getInstance();
+        int stationNumber = stations.getStationNumber(stationName);
+        if (stationNumber == -1) {
+            Metrics.record(Metrics.Operation.STATION_BOARD, start, false);
+            return new StationBoard(stationName, List.of(), List.of());
+        }
+        StopEventStore events = timetable.get().getStopEvents();
+        List<Line> lines = stations.getLinesAt(stationNumber);
+        List<ScheduleEntry> northbound = events.getNextDepartures(
+            lines.stream().filter(line -> line.getLastStation() != stationNumber).toList(),
+            stationNumber, true, 0, Integer.MAX_VALUE).asList();
+        List<ScheduleEntry> southbound = events.getNextDepartures(
+            lines.stream().filter(line -> line.getFirstStation() != stationNumber).toList(),
+            stationNumber, false, 0, Integer.MAX_VALUE).asList();
+        Metrics.record(Metrics.Operation.STATION_BOARD, stationNumber, start, true);
+        return new StationBoard(stationName, northbound, southbound);
+    }
+
+    /**
+     * Prints the train schedule for a specific station.
      * @param stationName The name of the station to show schedules for
      */
     public static void printStationSchedule(String stationName) {
-        CurrentStation station = stations.get(stationName);
-        if (station == null) {
-            MRT.displayNoTrainsMessage(stationName);
-            return;
-        }
-
-        StationUtils.printStationScheduleHeader(stationName);
-        
-        // Get and display northbound trains
-        TreeMap<Integer, ArrayList<MRT>> northboundSchedule = station.getNorthboundSchedule();
-        if (!northboundSchedule.isEmpty()) {
-            boolean isFirst = true;
-            for (var timeEntry : northboundSchedule.entrySet()) {
-                for (MRT train : timeEntry.getValue()) {
-                    // At Lebak Bulus, only show trains heading to Bundaran HI
-                    if (stationName.equals("Lebak Bulus") && !train.isNorthbound()) continue;
-                    // At Bundaran HI, only show trains heading to Lebak Bulus
-                    if (stationName.equals("Bundaran HI") && train.isNorthbound()) continue;
-                    
-                    train.displaySchedule(stationName, isFirst);
-                    isFirst = false;
-                }
-            }
-            System.out.println("-------------------------------");
-        }
-
-        // Get and display southbound trains
-        TreeMap<Integer, ArrayList<MRT>> southboundSchedule = station.getSouthboundSchedule();
-        if (!southboundSchedule.isEmpty()) {
-            boolean isFirst = true;
-            for (var timeEntry : southboundSchedule.entrySet()) {
-                for (MRT train : timeEntry.getValue()) {
-                    // At Lebak Bulus, only show trains heading to Bundaran HI
-                    if (stationName.equals("Lebak Bulus") && !train.isNorthbound()) continue;
-                    // At Bundaran HI, only show trains heading to Lebak Bulus
-                    if (stationName.equals("Bundaran HI") && train.isNorthbound()) continue;
-                    
-                    train.displaySchedule(stationName, isFirst);
-                    isFirst = false;
-                }
-            }
-            System.out.println("-------------------------------");
-        }
+        ConsoleRenderer.printStationBoard(getStationBoard(stationName));
+    }
 
-        // If no trains are scheduled for this station, show a message
-        if (northboundSchedule.isEmpty() && southboundSchedule.isEmpty()) {
-            MRT.displayNoTrainsMessage(stationName);
-        }
+    /**
+     * Finds the next train in each direction, in the whole system or at one station.
+     * Only includes trains that haven't departed yet at the given time.
+     * @param stationName The station to look at (null for the whole system)
+     * @param fromTime The current time in HHMM format
+     * @return The next trains
+     */
+    public static NextTrains getNextTrains(String stationName, int fromTime) {
+        long start = System.nanoTime();
+        int stationNumber = stationName == null ? 0 : Stations.getInstance().getStationNumber(stationName);
+        Timetable current = timetable.get();
+        boolean hasService = !current.getNextDepartures(stationNumber, true, 0, 1).isEmpty()
+            || !current.getNextDepartures(stationNumber, false, 0, 1).isEmpty();
+        Trip.Stop northbound = current.findNextStop(stationNumber, true, fromTime);
+        Trip.Stop southbound = current.findNextStop(stationNumber, false, fromTime);
+        Metrics.record(Metrics.Operation.NEXT_TRAINS, stationNumber, start, stationNumber != -1);
+        return new NextTrains(stationName, hasService,
+            northbound == null ? null : ScheduleEntry.of(northbound),
+            southbound == null ? null : ScheduleEntry.of(southbound));
     }
 
     /**
-     * Gets the current time in HHMM format.
-     * @return current time as integer (e.g., 1430 for 2:30 PM)
+     * Finds the next train in each direction, starting from the current local time.
+     * @param stationName The station to look at (null for the whole system)
+     * @return The next trains
      */
-    private static int getCurrentTime() {
-        java.time.LocalTime now = java.time.LocalTime.now();
-        int time = now.getHour() * 100 + now.getMinute();
-        //System.out.println("DEBUG: Current time is " + time);
-        return time;
+    public static NextTrains getNextTrains(String stationName) {
+        return getNextTrains(stationName, TimeUtils.getCurrentTime());
     }
 
     /**
@@ -278,56 +461,7 @@ public final class MRTManager {
      * Only shows trains that haven't departed yet based on current time.
      */
     public static void getNextTrain() {
-        int currentTime = getCurrentTime();
-        
-        // If no trains are scheduled, show a message
-        if (mainSchedule.isEmpty()) {
-            MRT.displayNoTrainsMessage(null);
-            return;
-        }
-
-        boolean hasFutureTrains = false;
-        boolean isFirstNorthbound = true;
-        boolean isFirstSouthbound = true;
-
-        // Find next available northbound train
-        for (var timeEntry : mainSchedule.entrySet()) {
-            int time = timeEntry.getKey();
-            if (time >= currentTime) {
-                for (var train : timeEntry.getValue().values()) {
-                    if (train instanceof MRT mrt && mrt.isNorthbound()) {
-                        mrt.displaySchedule(null, isFirstNorthbound);
-                        System.out.println("-------------------------------");
-                        hasFutureTrains = true;
-                        isFirstNorthbound = false;
-                        break;
-                    }
-                }
-                break;
-            }
-        }
-
-        // Find next available southbound train
-        for (var timeEntry : mainSchedule.entrySet()) {
-            int time = timeEntry.getKey();
-            if (time >= currentTime) {
-                for (var train : timeEntry.getValue().values()) {
-                    if (train instanceof MRT mrt && !mrt.isNorthbound()) {
-                        mrt.displaySchedule(null, isFirstSouthbound);
-                        System.out.println("-------------------------------");
-                        hasFutureTrains = true;
-                        isFirstSouthbound = false;
-                        break;
-                    }
-                }
-                break;
-            }
-        }
-
-        // If no future trains are found, show a message
-        if (!hasFutureTrains) {
-            System.out.println("No more trains scheduled for today.");
-        }
+        ConsoleRenderer.printNextTrains(getNextTrains(null));
     }
 
     /**
@@ -337,101 +471,182 @@ public final class MRTManager {
      * @param stationName The name of the station to check
      */
     public static void getNextTrain(String stationName) {
-        int currentTime = getCurrentTime();
-        
-        // Get the station object from our stations map
-        CurrentStation station = stations.get(stationName);
-        if (station == null) {
-            MRT.displayNoTrainsMessage(stationName);
-            return;
-        }
+        ConsoleRenderer.printNextTrains(getNextTrains(stationName));
+    }
 
-        boolean hasFutureTrains = false;
-        boolean isFirstNorthbound = true;
-        boolean isFirstSouthbound = true;
-
-        // Get all trains from the station
-        TreeMap<Integer, ArrayList<MRT>> northboundSchedule = station.getNorthboundSchedule();
-        TreeMap<Integer, ArrayList<MRT>> southboundSchedule = station.getSouthboundSchedule();
-
-        // Find next available northbound train
-        for (var timeEntry : northboundSchedule.entrySet()) {
-            int time = timeEntry.getKey();
-            if (time >= currentTime) {
-                for (MRT train : timeEntry.getValue()) {
-                    train.displaySchedule(stationName, isFirstNorthbound);
-                    System.out.println("-------------------------------");
-                    hasFutureTrains = true;
-                    isFirstNorthbound = false;
-                    break;
-                }
-                break;
-            }
-        }
+    /**
+     * Gets the next departures from a station in one direction, as data.
+     * Meant for displays that poll often: each call is a binary search on the current version.
+     * @param stationNumber The station to look at (0 for the whole system)
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time
+     */
+    public static StopEventStore.Departures getNextDepartures(int stationNumber, boolean northbound, int fromTime, int limit) {
+        long start = System.nanoTime();
+        StopEventStore.Departures departures =
+            timetable.get().getNextDepartures(stationNumber, northbound, fromTime, limit);
+        Metrics.record(Metrics.Operation.NEXT_DEPARTURES, stationNumber, start, true);
+        return departures;
+    }
 
-        // Find next available southbound train
-        for (var timeEntry : southboundSchedule.entrySet()) {
-            int time = timeEntry.getKey();
-            if (time >= currentTime) {
-                for (MRT train : timeEntry.getValue()) {
-                    train.displaySchedule(stationName, isFirstSouthbound);
-                    System.out.println("-------------------------------");
-                    hasFutureTrains = true;
-                    isFirstSouthbound = false;
-                    break;
-                }
-                break;
-            }
-        }
+    /**
+     * Gets the next departures from a station in one direction, starting from the current time.
+     * @param stationName The name of the station
+     * @param northbound The direction of travel to look for
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time
+     */
+    public static StopEventStore.Departures getNextDepartures(String stationName, boolean northbound, int limit) {
+        return getNextDepartures(stationName, northbound, TimeUtils.getCurrentTime(), limit);
+    }
 
-        // If no future trains are found, show a message
-        if (!hasFutureTrains) {
-            System.out.println("No more trains scheduled for today at " + stationName);
-        }
+    /**
+     * Gets the next departures from a station in one direction.
+     * @param stationName The name of the station
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time
+     * @throws IllegalArgumentException if the station does not exist
+     */
+    public static StopEventStore.Departures getNextDepartures(String stationName, boolean northbound, int fromTime, int limit) {
+        return getNextDepartures(requireStationNumber(stationName), northbound, fromTime, limit);
+    }
+
+    /**
+     * Gets the next departures of one line from a station in one direction.
+     * @param lineCode The code of the line
+     * @param stationName The name of the station
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time
+     * @throws IllegalArgumentException if the line or station does not exist, or the line does not call there
+     */
+    public static StopEventStore.Departures getNextDepartures(String lineCode, String stationName, boolean northbound,
+                                                              int fromTime, int limit) {
+        long start = System.nanoTime();
+        Line line = Stations.getInstance().getLine(lineCode);
+        if (line == null) {
+            throw new IllegalArgumentException("Unknown line: " + lineCode);
+        }
+        int stationNumber = requireStationNumber(stationName);
+        if (!line.contains(stationNumber)) {
+            throw new IllegalArgumentException("Line " + line.getCode() + " does not call at " + stationName);
+        }
+        StopEventStore.Departures departures =
+            timetable.get().getNextDepartures(line, stationNumber, northbound, fromTime, limit);
+        Metrics.record(Metrics.Operation.NEXT_DEPARTURES, stationNumber, start, true);
+        return departures;
+    }
+
+    /**
+     * Plans the journey between two stations that arrives as early as possible, changing trains where needed.
+     * @param fromStation The name of the station to leave from
+     * @param toStation The name of the station to travel to
+     * @param fromTime The earliest departure time in HHMM format
+     * @return The itinerary, or null if the destination cannot be reached today
+     * @throws IllegalArgumentException if either station does not exist
+     */
+    public static Itinerary planJourney(String fromStation, String toStation, int fromTime) {
+        long start = System.nanoTime();
+        int origin = requireStationNumber(fromStation);
+        int destination = requireStationNumber(toStation);
+        Itinerary itinerary = timetable.get().getJourneyPlanner().plan(origin, destination, fromTime);
+        Metrics.record(Metrics.Operation.PLAN_JOURNEY, origin, start, itinerary != null);
+        return itinerary;
+    }
+
+    /**
+     * Looks up the earliest arrival between two stations in the precomputed travel-time profiles.
+     * The profiles are computed the first time they are needed and then updated with every change.
+     * @param fromStation The name of the station to leave from
+     * @param toStation The name of the station to travel to
+     * @param departureTime The earliest departure time in HHMM format
+     * @return The arrival time in HHMM format, or -1 if the destination cannot be reached today
+     * @throws IllegalArgumentException if either station does not exist
+     */
+    public static int getArrivalTime(String fromStation, String toStation, int departureTime) {
+        long start = System.nanoTime();
+        int origin = requireStationNumber(fromStation);
+        int destination = requireStationNumber(toStation);
+        int arrival = timetable.get().getTravelTimeProfiles().getArrivalTime(origin, destination, departureTime);
+        Metrics.record(Metrics.Operation.ARRIVAL_TIME, origin, start, arrival != -1);
+        return arrival;
     }
 
     /**
      * Gets a train by its ID and departure time.
-     * Uses TreeMap's ordering for efficient lookup.
-     * @return The train if found, null otherwise
+     * Looks the trip up by ID and then finds the stop at that time.
+     * @return A train record describing the stop if found, null otherwise
      */
     public static Schedulable getTrainByIdAndTime(String trainID, int departureTime) {
-        TreeMap<String, Schedulable> trainsAtTime = mainSchedule.get(departureTime);
-        if (trainsAtTime != null) {
-            return trainsAtTime.get(trainID);
-        }
-        return null;
+        long start = System.nanoTime();
+        Trip.Stop stop = timetable.get().findStop(trainID, departureTime);
+        Schedulable train = stop == null ? null : stop.trip().toMRT(stop.index());
+        Metrics.record(Metrics.Operation.FIND_TRAIN, start, train != null);
+        return train;
     }
 
     /**
      * Delays a train and updates its schedule.
+     * The delay is applied at the given stop and carried along the rest of the trip,
+     * so every later stop moves by the same amount. Readers see all of the new times at once.
      * @return true if train was found and delayed, false otherwise
      */
     public static boolean delayTrain(String trainID, int departureTime, int delayMinutes, String reason) {
-        Schedulable schedule = getTrainByIdAndTime(trainID, departureTime);
-        if (schedule == null) return false;
-        
-        Trains train = (Trains) schedule;
-        
-        // Remove from old schedules
-        removeFromSchedules(train);
-        
-        // Update delay and departure time
-        if (train instanceof MRT mrt) {
-            mrt.setDelay(delayMinutes, reason);
-        } else {
-            train.setDelay(train.getDelay() + delayMinutes);
-        }
-        int newDepartureTime = TimeUtils.addMinutesToDepTime(train.getDepartureTime(), delayMinutes);
-        train.setDepartureTime(newDepartureTime);
-        
-        // Add to delay queue
-        delayQueue.remove(train);
-        delayQueue.add(train);
-        
-        // Add back to schedules with new time
-        addTrain(train);
-        return true;
+        long start = System.nanoTime();
+        TimetableEvents.DelayTrain event = new TimetableEvents.DelayTrain();
+        event.begin();
+        int[] station = new int[1];
+        boolean delayed = write(builder -> {
+            Trip trip = builder.getTrip(trainID);
+            int index = trip == null ? -1 : trip.indexOf(departureTime);
+            if (index == -1) return false;
+
+            // Update delay and departure time of this stop and every later one
+            station[0] = trip.getStationNumber(index);
+            event.station = trip.getStationName(index);
+            builder.editTrip(trainID).delayFrom(index, delayMinutes, reason);
+            return true;
+        }, event);
+        Metrics.record(Metrics.Operation.DELAY_TRAIN, station[0], start, delayed);
+        event.trainID = trainID;
+        event.departureTime = departureTime;
+        event.delayMinutes = delayMinutes;
+        event.found = delayed;
+        event.finish();
+        return delayed;
+    }
+
+    /**
+     * Lists all delayed trains, grouped by direction.
+     * Each direction lists the most delayed trains first, then by departure time.
+     * Read from the version's delay index, so the timetable itself is not scanned.
+     * @return The delay report
+     */
+    public static DelayReport getDelayReport() {
+        return getDelayReport(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists the most delayed trains of each direction.
+     * Only the listed trains are put in order, so a short list stays fast however many trains are delayed.
+     * @param limit The maximum number of trains to list per direction
+     * @return The delay report
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public static DelayReport getDelayReport(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, got: " + limit);
+        }
+        long start = System.nanoTime();
+        DelayIndex delays = timetable.get().getDelayIndex();
+        DelayReport report = new DelayReport(delays.getMostDelayed(true, limit), delays.getMostDelayed(false, limit));
+        Metrics.record(Metrics.Operation.DELAY_REPORT, start);
+        return report;
     }
 
     /**
@@ -439,67 +654,41 @@ public final class MRTManager {
      * Shows trains grouped by direction, with delay information.
      */
     public static void printDelayedTrains() {
-        if (delayQueue.isEmpty()) {
-            System.out.println("No delayed trains.");
-            return;
-        }
-
-        // First, show all delayed trains heading to Bundaran HI
-        System.out.println("\nHeading To: Bundaran HI");
-        System.out.println("-------------------------------");
-        boolean hasNorthbound = false;
-        for (var train : delayQueue) {
-            if (train instanceof MRT mrt && mrt.isNorthbound()) {
-                hasNorthbound = true;
-                mrt.displaySchedule(null, !hasNorthbound);
-            }
-        }
-        if (!hasNorthbound) {
-            System.out.println("No delayed trains heading to Bundaran HI");
-        }
-        System.out.println("-------------------------------");
-
-        // Then, show all delayed trains heading to Lebak Bulus
-        System.out.println("\nHeading To: Lebak Bulus");
-        System.out.println("-------------------------------");
-        boolean hasSouthbound = false;
-        for (var train : delayQueue) {
-            if (train instanceof MRT mrt && !mrt.isNorthbound()) {
-                hasSouthbound = true;
-                mrt.displaySchedule(null, !hasSouthbound);
-            }
-        }
-        if (!hasSouthbound) {
-            System.out.println("No delayed trains heading to Lebak Bulus");
-        }
-        System.out.println("-------------------------------");
+        ConsoleRenderer.printDelayReport(getDelayReport());
     }
 
     /**
      * Reschedules a train to a new departure time and station.
      * @return true if train was found and rescheduled, false otherwise
+     * @throws IllegalArgumentException if the new station is unknown or not on the train's line
      */
     public static boolean rescheduleTrain(String trainID, int oldDepartureTime, int newDepartureTime, String newStation) {
-        Schedulable schedule = getTrainByIdAndTime(trainID, oldDepartureTime);
-        if (schedule == null) return false;
-        
-        Trains train = (Trains) schedule;
-        
-        // Remove from old schedules
-        removeFromSchedules(train);
-        
-        // Update train properties
-        train.setDepartureTime(newDepartureTime);
-        train.setCurrentStation(newStation);
-        
-        // If it's an MRT, update its direction based on the new station
-        if (train instanceof MRT mrt) {
-            mrt.reschedule(newDepartureTime, newStation);
-        }
-        
-        // Add to new schedules
-        addTrain(train);
-        return true;
+        long start = System.nanoTime();
+        TimetableEvents.RescheduleTrain event = new TimetableEvents.RescheduleTrain();
+        event.begin();
+        int[] station = new int[1];
+        boolean rescheduled = write(builder -> {
+            Trip trip = builder.getTrip(trainID);
+            int index = trip == null ? -1 : trip.indexOf(oldDepartureTime);
+            if (index == -1) return false;
+
+            // Update the stop, with its direction based on the new station's place on the train's line
+            station[0] = trip.getStationNumber(index);
+            event.oldStation = trip.getStationName(index);
+            int stationNumber = requireStationNumber(newStation);
+            Trip edited = builder.editTrip(trainID);
+            edited.rescheduleStop(index, newDepartureTime, stationNumber,
+                edited.getLine().getInitialDirection(stationNumber));
+            return true;
+        }, event);
+        Metrics.record(Metrics.Operation.RESCHEDULE_TRAIN, station[0], start, rescheduled);
+        event.trainID = trainID;
+        event.oldDepartureTime = oldDepartureTime;
+        event.newDepartureTime = newDepartureTime;
+        event.station = newStation;
+        event.found = rescheduled;
+        event.finish();
+        return rescheduled;
     }
 
     /**
@@ -507,81 +696,100 @@ public final class MRTManager {
      * @return true if train was found and cancelled, false otherwise
      */
     public static boolean cancelTrain(String trainID, int departureTime) {
-        Schedulable schedule = getTrainByIdAndTime(trainID, departureTime);
-        if (schedule == null) return false;
-        
-        // Remove from all schedules
-        removeFromSchedules((Trains) schedule);
-        
-        // Remove from train lookup
-        trainById.remove(trainID);
-        
-        // Remove from delay queue if present
-        delayQueue.remove(schedule);
-        
-        // Update earliest train
-        earliestTrain = mainSchedule.isEmpty() ? null : mainSchedule.firstEntry().getValue().values().stream().findFirst().orElse(null);
-        return true;
-    }
-
-    /**
-     * Helper method to remove a train from all schedules.
-     */
-    public static void removeFromSchedules(Trains train) {
-        String trainId = train.getTrainID();
-        int dep = train.getDepartureTime();
-        String station = train.getCurrentStation();
-        
-        // Remove from global schedule
-        TreeMap<String, Schedulable> trainsAtTime = mainSchedule.get(dep);
-        if (trainsAtTime != null) {
-            trainsAtTime.remove(trainId);
-            if (trainsAtTime.isEmpty()) {
-                mainSchedule.remove(dep);
-            }
-        }
-        
-        // Remove from station
-        CurrentStation stationObj = stations.get(station);
-        if (stationObj != null) stationObj.removeTrain((MRT) train);
-        
-        // Remove from station schedules
-        TreeMap<Integer, TreeMap<String, MRT>> stationScheduleMap = stationSchedule.get(station);
-        if (stationScheduleMap != null) {
-            TreeMap<String, MRT> trainsAtTimeInStation = stationScheduleMap.get(dep);
-            if (trainsAtTimeInStation != null) {
-                trainsAtTimeInStation.remove(trainId);
-                if (trainsAtTimeInStation.isEmpty()) {
-                    stationScheduleMap.remove(dep);
-                }
+        long start = System.nanoTime();
+        TimetableEvents.CancelTrain event = new TimetableEvents.CancelTrain();
+        event.begin();
+        int[] station = new int[1];
+        boolean cancelled = write(builder -> {
+            Trip trip = builder.getTrip(trainID);
+            int index = trip == null ? -1 : trip.indexOf(departureTime);
+            if (index == -1) return false;
+
+            station[0] = trip.getStationNumber(index);
+            event.station = trip.getStationName(index);
+            Trip edited = builder.editTrip(trainID);
+            edited.cancelStop(index);
+
+            // Remove from train lookup once the train has no stops left
+            if (!edited.hasLiveStops()) {
+                builder.removeTrip(trainID);
+                event.tripRemoved = true;
             }
-        }
-
-        updateEarliestTrainsAfterRemoval(train);
+            return true;
+        }, event);
+        Metrics.record(Metrics.Operation.CANCEL_TRAIN, station[0], start, cancelled);
+        event.trainID = trainID;
+        event.departureTime = departureTime;
+        event.found = cancelled;
+        event.finish();
+        return cancelled;
     }
 
+    /**
+     * Gets a train by its ID.
+     * @return A train record describing the earliest stop of the train's trip, or null if not found
+     */
     public static Schedulable getTrainById(String id) {
-        return trainById.get(id);
+        long start = System.nanoTime();
+        Trip trip = timetable.get().getTrip(id);
+        int first = trip == null ? -1 : trip.earliestLiveStop();
+        Schedulable train = first == -1 ? null : trip.toMRT(first);
+        Metrics.record(Metrics.Operation.FIND_TRAIN, start, train != null);
+        return train;
     }
 
+    /**
+     * Simulates every train running until closing time.
+     * All simulated trips are published together as one new version.
+     * @param closingTime System closing time in HHMM format
+     */
     public static void simulateTrainsRunning(int closingTime) {
-        Stations stations = new Stations();
-        // To avoid ConcurrentModificationException, copy the values to a list
-        java.util.List<Schedulable> trains = new java.util.ArrayList<>(trainById.values());
-        for (Schedulable schedule : trains) {
-            if (schedule instanceof MRT mrt) {
-                // Use the train's current station and departure time as starting point
-                // Use a fresh MRT object for simulation to avoid overwriting the original
-                String currentStation = mrt.getCurrentStation();
-                int stationNum = mrt.getStationNumber(currentStation);
-                boolean isNorthbound = stationNum < 13; // If not at Bundaran HI (13), train is northbound
-                MRT simTrain = new MRT(mrt.getTrainID(), mrt.getDepartureTime(), currentStation, isNorthbound);
-                simTrain.simulateJourney(stations, isNorthbound, closingTime);
-            }
-        }
+        simulateTrainsRunning(closingTime, true);
     }
-}
-
-
 
+    /**
+     * Simulates every train running until closing time.
+     * Each train's journey only depends on its own starting stop, so in parallel mode the journeys
+     * are computed on the common ForkJoinPool, each into its own Trip. The finished trips then
+     * replace the old ones in a single new version, one trip per train.
+     * @param closingTime System closing time in HHMM format
+     * @param parallel true to compute the journeys on all cores, false to compute them one by one
+     */
+    public static void simulateTrainsRunning(int closingTime, boolean parallel) {
+        long start = System.nanoTime();
+        TimetableEvents.SimulateTrains event = new TimetableEvents.SimulateTrains();
+        event.begin();
+        Stations stations = Stations.getInstance();
+        int simulated = write(builder -> {
+            Trip[] trips = builder.getTrips().toArray(new Trip[0]);
+            Trip[] journeys = new Trip[trips.length];
+            IntStream indexes = IntStream.range(0, trips.length);
+            (parallel ? indexes.parallel() : indexes)
+                .forEach(i -> journeys[i] = simulateJourney(trips[i], stations, closingTime));
+
+            List<Trip> simulatedTrips = Arrays.stream(journeys).filter(Objects::nonNull).toList();
+            addTrips(simulatedTrips);
+            return simulatedTrips.size();
+        }, event);
+        Metrics.record(Metrics.Operation.SIMULATE_TRAINS, start);
+        event.closingTime = closingTime;
+        event.parallel = parallel;
+        event.journeys = simulated;
+        event.finish();
+    }
 
+    /**
+     * Computes the journey of one train, starting from the earliest stop of its current trip.
+     * The journey of a generated train is still generated, so a new plan replaces it.
+     * @return The simulated trip, or null if there is nothing to simulate
+     */
+    private static Trip simulateJourney(Trip trip, Stations stations, int closingTime) {
+        int first = trip.earliestLiveStop();
+        if (first == -1) return null;
+        MRT simTrain = trip.toMRT(first);
+        boolean isNorthbound = trip.getLine().getInitialDirection(trip.getStationNumber(first));
+        Trip journey = simTrain.buildJourney(stations, isNorthbound, closingTime);
+        if (trip.isGenerated()) journey.markGenerated();
+        return journey;
+    }
+}
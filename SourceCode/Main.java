@@ -3,15 +3,90 @@ package SourceCode;
  * Main entry point for the MRT Scheduling System.
  * This class handles the initial user authentication and role-based access control.
  * It creates the Scheduling System instance and manages the main program loop.
+ * Options:
+ * - "--http PORT" also serves departure boards over HTTP on that port (loopback only)
+ *   while the console keeps working.
+ * - "--journal FILE" replays the journal in FILE on startup and records every change in it.
+ * - "--fsync never|interval|always" sets when journal records are forced to disk (default interval).
+ * - "--network FILE" runs on the network (lines and stations) described in FILE instead of the
+ *   North-South line; snapshots and journals must be used with the same network they were written with.
+ * - "--snapshot FILE" loads the timetable from the snapshot in FILE on startup (before the journal,
+ *   whose records after the snapshot are then replayed) and saves a new snapshot on exit.
  */
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 public class Main {
     public static void main(String[] args) {
+        // Send small HTTP responses at once instead of waiting ~40 ms for a delayed ACK (see BoardServer);
+        // read when the first server is created, so it is set before anything else
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
         // Initialize the core scheduling system
         SchedulingSystem scheduleSystem = new SchedulingSystem();
         Scanner sc = new Scanner(System.in);
 
+        // Read "--option value" pairs
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+
+        // Optionally run on a different network, before anything is loaded onto it
+        if (options.containsKey("--network")) {
+            try {
+                Stations network = scheduleSystem.loadNetwork(Path.of(options.get("--network")));
+                System.out.println("Loaded " + network.getLines().size() + " lines (" + network.getStationCount()
+                    + " stations) from " + options.get("--network"));
+            } catch (IllegalArgumentException | IOException e) {
+                System.out.println("Could not load the network: " + e.getMessage());
+            }
+        }
+
+        // Optionally load the timetable from a snapshot
+        Path snapshotFile = options.containsKey("--snapshot") ? Path.of(options.get("--snapshot")) : null;
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            try {
+                long start = System.nanoTime();
+                Snapshot snapshot = scheduleSystem.loadSnapshot(snapshotFile);
+                System.out.println("Loaded " + snapshot.getTripCount() + " trips (" + snapshot.getStopCount()
+                    + " stops) from " + snapshotFile + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                System.out.println("Could not load the snapshot: " + e.getMessage());
+                snapshotFile = null; // Keep the file as it is rather than overwrite it on exit
+            }
+        }
+
+        // Optionally restore the timetable from a journal and keep recording changes in it
+        if (options.containsKey("--journal")) {
+            try {
+                Journal.FsyncPolicy policy = Journal.FsyncPolicy.valueOf(
+                    options.getOrDefault("--fsync", "interval").toUpperCase());
+                long replayed = scheduleSystem.openJournal(Path.of(options.get("--journal")), policy);
+                System.out.println("Restored " + replayed + " changes from " + options.get("--journal"));
+            } catch (IllegalArgumentException | IOException e) {
+                System.out.println("Could not open the journal: " + e.getMessage());
+            }
+        }
+
+        // Optionally serve the boards over HTTP alongside the console
+        BoardServer server = null;
+        if (options.containsKey("--http")) {
+            try {
+                server = new BoardServer(scheduleSystem, Integer.parseInt(options.get("--http")));
+                server.start();
+                System.out.println("Serving departure boards on http://localhost:" + server.getPort() + "/");
+            } catch (NumberFormatException | IOException e) {
+                System.out.println("Could not start the HTTP server: " + e.getMessage());
+            }
+        }
+
         // Main Menu Loop
         while (true) {
             // Display welcome message and prompt for user role
@@ -44,6 +119,21 @@ public class Main {
             }
         }
         // Cleanup and exit
+        if (server != null) {
+            server.stop();
+        }
+        if (snapshotFile != null) {
+            try {
+                scheduleSystem.saveSnapshot(snapshotFile);
+            } catch (IOException e) {
+                System.out.println("Could not save the snapshot: " + e.getMessage());
+            }
+        }
+        try {
+            scheduleSystem.closeJournal();
+        } catch (IOException e) {
+            System.out.println("Could not close the journal: " + e.getMessage());
+        }
         System.out.println("Exiting program. Goodbye!");
         sc.close();
     }
@@ -0,0 +1,187 @@
+package SourceCode;
+/**
+ * Call counts and latency histograms of every timetable operation, in total and per station.
+ * MRTManager (and SchedulingSystem for the board cache) time each call with System.nanoTime
+ * and record it here; a call that finds nothing to work on (e.g. delaying an unknown train)
+ * also counts as a failure. Calls that throw are not recorded.
+ * Recording takes no locks and allocates nothing once a station has been seen, so it adds only
+ * tens of nanoseconds to a call. Reports are built on demand, for the manager menu, the
+ * /metrics endpoint of BoardServer and Prometheus text files (see PrometheusRenderer).
+ * Demonstrates use of enums, LongAdder counters and copy-on-write arrays.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Metrics {
+    /** The operations that are timed */
+    public enum Operation {
+        ADD_TRAIN(false),
+        ADD_TRAINS(false),
+        ADD_TRIPS(false),
+        DELAY_TRAIN(true),
+        RESCHEDULE_TRAIN(true),
+        CANCEL_TRAIN(true),
+        SIMULATE_TRAINS(false),
+        FIND_TRAIN(false),
+        ALL_SCHEDULES(false),
+        DELAY_REPORT(false),
+        STATION_BOARD(true),
+        NEXT_TRAINS(true),
+        NEXT_DEPARTURES(true),
+        LIVE_BOARD(true),
+        PLAN_JOURNEY(true),
+        ARRIVAL_TIME(true);
+
+        private final boolean perStation;
+
+        Operation(boolean perStation) {
+            this.perStation = perStation;
+        }
+
+        /** @return true if calls are also recorded per station (journeys: the origin; writes: the changed stop) */
+        public boolean isPerStation() { return perStation; }
+
+        /** @return The name used in reports, e.g. delay_train */
+        public String getLabel() { return name().toLowerCase(); }
+    }
+
+    /** Latency and failures of one operation, in total or at one station */
+    private static final class Series {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder failures = new LongAdder();
+
+        void record(long nanos, boolean succeeded) {
+            latency.record(nanos);
+            if (!succeeded) failures.increment();
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private static final Series[] totals = new Series[OPERATIONS.length];
+
+    /**
+     * Series of every station, indexed by operation and then station number; null until a station
+     * is first recorded. Grown by copying under the class lock, read without locking.
+     */
+    private static volatile Series[][] stations = new Series[OPERATIONS.length][0];
+
+    static {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new Series();
+        }
+    }
+
+    private Metrics() {} // Prevent instantiation
+
+    /**
+     * Records a successful call.
+     * @param operation The operation called
+     * @param startNanos System.nanoTime() when the call started
+     */
+    public static void record(Operation operation, long startNanos) {
+        totals[operation.ordinal()].record(System.nanoTime() - startNanos, true);
+    }
+
+    /**
+     * Records a call.
+     * @param operation The operation called
+     * @param startNanos System.nanoTime() when the call started
+     * @param succeeded false if the call found nothing to work on
+     */
+    public static void record(Operation operation, long startNanos, boolean succeeded) {
+        totals[operation.ordinal()].record(System.nanoTime() - startNanos, succeeded);
+    }
+
+    /**
+     * Records a call in total and at a station.
+     * @param operation The operation called
+     * @param stationNumber The station the call was about (0 or less to only record the total)
+     * @param startNanos System.nanoTime() when the call started
+     * @param succeeded false if the call found nothing to work on
+     */
+    public static void record(Operation operation, int stationNumber, long startNanos, boolean succeeded) {
+        long nanos = System.nanoTime() - startNanos;
+        totals[operation.ordinal()].record(nanos, succeeded);
+        if (stationNumber > 0 && operation.perStation) {
+            station(operation, stationNumber).record(nanos, succeeded);
+        }
+    }
+
+    /** @return The series of an operation at a station, created on first use */
+    private static Series station(Operation operation, int stationNumber) {
+        Series[] byStation = stations[operation.ordinal()];
+        if (stationNumber < byStation.length && byStation[stationNumber] != null) {
+            return byStation[stationNumber];
+        }
+        return createStation(operation, stationNumber);
+    }
+
+    private static synchronized Series createStation(Operation operation, int stationNumber) {
+        Series[][] grown = stations.clone();
+        Series[] byStation = grown[operation.ordinal()];
+        if (stationNumber < byStation.length && byStation[stationNumber] != null) {
+            return byStation[stationNumber];
+        }
+        byStation = Arrays.copyOf(byStation, Math.max(byStation.length, stationNumber + 1));
+        Series series = new Series();
+        byStation[stationNumber] = series;
+        grown[operation.ordinal()] = byStation;
+        stations = grown;
+        return series;
+    }
+
+    /**
+     * Forgets the per-station series, e.g. when switching to a network with different station numbers.
+     */
+    public static synchronized void resetStations() {
+        stations = new Series[OPERATIONS.length][0];
+    }
+
+    /** Forgets everything recorded so far */
+    public static synchronized void reset() {
+        for (Series series : totals) {
+            series.latency.reset();
+            series.failures.reset();
+        }
+        resetStations();
+    }
+
+    /**
+     * Builds a report of everything recorded so far.
+     * Every operation is listed, including those never called; stations only once they were recorded.
+     * @param timetableVersion The version of the timetable the index sizes were read from
+     * @param indexSizes The number of entries in each index, by name, in the order to report them
+     * @return The report
+     */
+    public static MetricsReport report(long timetableVersion, Map<String, Long> indexSizes) {
+        List<MetricsReport.OperationStats> operations = new ArrayList<>();
+        List<MetricsReport.OperationStats> byStation = new ArrayList<>();
+        Series[][] current = stations;
+        Stations network = Stations.getInstance();
+        for (Operation operation : OPERATIONS) {
+            operations.add(stats(operation, null, totals[operation.ordinal()]));
+            Series[] seen = current[operation.ordinal()];
+            for (int stationNumber = 0; stationNumber < seen.length; stationNumber++) {
+                if (seen[stationNumber] == null) continue;
+                String name = network.getStationName(stationNumber);
+                byStation.add(stats(operation, name == null ? "#" + stationNumber : name, seen[stationNumber]));
+            }
+        }
+        return new MetricsReport(timetableVersion, List.copyOf(operations), List.copyOf(byStation),
+            Collections.unmodifiableMap(new LinkedHashMap<>(indexSizes)));
+    }
+
+    private static MetricsReport.OperationStats stats(Operation operation, String station, Series series) {
+        LatencyHistogram latency = series.latency;
+        return new MetricsReport.OperationStats(operation.getLabel(), station, latency.getCount(),
+            series.failures.sum(), latency.getTotal(), latency.getValueAtPercentile(50),
+            latency.getValueAtPercentile(90), latency.getValueAtPercentile(99),
+            latency.getValueAtPercentile(99.9), latency.getMax());
+    }
+}
@@ -0,0 +1,37 @@
+package SourceCode;
+/**
+ * Immutable report of the operation metrics recorded so far, with the size of every index.
+ * Latencies are in nanoseconds; percentiles are accurate to about 3% (see LatencyHistogram).
+ * Demonstrates use of records and unmodifiable collections.
+ *
+ * @param timetableVersion The version of the timetable the index sizes were read from
+ * @param operations The totals of every operation, in the order of Metrics.Operation
+ * @param stations The series of every operation at every station it was called for
+ * @param indexSizes The number of entries in each index, by name
+ */
+import java.util.List;
+import java.util.Map;
+
+public record MetricsReport(long timetableVersion, List<OperationStats> operations, List<OperationStats> stations,
+                            Map<String, Long> indexSizes) {
+    /**
+     * Calls of one operation, in total or at one station.
+     * @param operation The operation label, e.g. delay_train
+     * @param station The station name, or null for the total
+     * @param count The number of calls
+     * @param failures The number of calls that found nothing to work on
+     * @param totalNanos The time spent in all calls
+     * @param p50Nanos The median latency
+     * @param p90Nanos The 90th percentile latency
+     * @param p99Nanos The 99th percentile latency
+     * @param p999Nanos The 99.9th percentile latency
+     * @param maxNanos The longest call
+     */
+    public record OperationStats(String operation, String station, long count, long failures, long totalNanos,
+                                 long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+        /** @return The mean latency in nanoseconds (0 if never called) */
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+    }
+}
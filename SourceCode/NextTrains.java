@@ -0,0 +1,16 @@
+package SourceCode;
+/**
+ * Immutable answer to a next-train query: the next departure in each direction.
+ * Demonstrates use of records.
+ *
+ * @param stationName The station asked about (null for the whole system)
+ * @param hasService true if any train is scheduled there at all, departed or not
+ * @param northbound The next northbound departure, or null if none is left today
+ * @param southbound The next southbound departure, or null if none is left today
+ */
+public record NextTrains(String stationName, boolean hasService, ScheduleEntry northbound, ScheduleEntry southbound) {
+    /** @return true if no train is left today in either direction */
+    public boolean isEmpty() {
+        return northbound == null && southbound == null;
+    }
+}
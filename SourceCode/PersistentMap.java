@@ -0,0 +1,375 @@
+package SourceCode;
+/**
+ * Immutable hash map that shares structure between versions (a hash array mapped trie).
+ * Keys are placed in a tree of nodes by 5 bits of their hash at a time; a node stores only the
+ * entries and children that are present, found with a bitmap and a bit count. Changing one key
+ * copies only the nodes on its path (at most 7 small arrays), so a new version of a map with a
+ * million entries costs about as much as a version of a map with a thousand, and both versions
+ * stay valid. Timetable versions keep their trips in one, so a write does not copy every trip.
+ *
+ * Changes are made through an Editor, which edits the nodes it has already copied in place, so a
+ * bulk load of many keys copies each node once rather than once per key.
+ * Keys and values must not be null.
+ * Demonstrates use of tries, bit manipulation and structural sharing.
+ */
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    /** Bits of the hash used per level, and the resulting number of branches per node */
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** Levels below this shift have run out of hash bits, so their nodes list colliding keys */
+    private static final int MAX_SHIFT = 32;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    /** Root of the trie, or null if the map is empty */
+    private final Node root;
+
+    private final int size;
+
+    /** Cached entry view */
+    private Set<Map.Entry<K, V>> entries;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** @return The empty map */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Copies a map.
+     * @param map The map to copy
+     * @return An immutable map with the same entries
+     */
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap<?, ?>) {
+            @SuppressWarnings("unchecked")
+            PersistentMap<K, V> persistent = (PersistentMap<K, V>) map;
+            return persistent;
+        }
+        Editor<K, V> editor = PersistentMap.<K, V>empty().edit();
+        editor.putAll(map);
+        return editor.toMap();
+    }
+
+    /** @return An editor starting from this map; the map itself never changes */
+    public Editor<K, V> edit() {
+        return new Editor<>(root, size);
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return key == null || root == null ? null : (V) root.find(0, hash(key), key);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entries == null) entries = new EntrySet<>(root, size);
+        return entries;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Mutable view of a map being changed, e.g. by a timetable builder.
+     * Nodes copied by the editor belong to it and are changed in place until toMap is called;
+     * nodes still shared with other maps are copied before they are changed.
+     * An editor is not thread-safe.
+     */
+    public static final class Editor<K, V> extends AbstractMap<K, V> {
+        private Node root;
+        private int size;
+
+        /** Marks the nodes this editor may change in place; replaced once they are handed to a map */
+        private Object owner = new Object();
+
+        /** Set by put and remove when the number of keys changes */
+        private final int[] sizeChange = new int[1];
+
+        private Editor(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            return key == null || root == null ? null : (V) root.find(0, hash(key), key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(value);
+            V old = get(key);
+            Node start = root == null ? new Node(owner, 0, new Object[0]) : root;
+            sizeChange[0] = 0;
+            root = start.put(owner, 0, hash(key), key, value, sizeChange);
+            size += sizeChange[0];
+            return old;
+        }
+
+        @Override
+        public V remove(Object key) {
+            V old = get(key);
+            if (old == null) return null;
+            sizeChange[0] = 0;
+            root = root.remove(owner, 0, hash(key), key, sizeChange);
+            size += sizeChange[0];
+            return old;
+        }
+
+        /**
+         * Ends this round of editing. The editor can be used again afterwards, but copies
+         * every node it changes from then on, so the returned map never changes.
+         * @return The edited map
+         */
+        public PersistentMap<K, V> toMap() {
+            owner = new Object();
+            return size == 0 ? empty() : new PersistentMap<>(root, size);
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() { return size; }
+
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    // Iterate a snapshot of the current keys, so the editor may be changed while iterating
+                    return toMap().entrySet().iterator();
+                }
+            };
+        }
+    }
+
+    /**
+     * A node of the trie. Above MAX_SHIFT, each present branch takes two slots of the array:
+     * the key and value of an entry, or null and the child node holding every key of the branch.
+     * At MAX_SHIFT, the array lists the keys and values of colliding keys in pairs.
+     */
+    private static final class Node {
+        final Object owner;
+        int bitmap;
+        Object[] array;
+
+        Node(Object owner, int bitmap, Object[] array) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Object find(int shift, int hash, Object key) {
+            if (shift >= MAX_SHIFT) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (key.equals(array[i])) return array[i + 1];
+                }
+                return null;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            int slot = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[slot];
+            if (k == null) return ((Node) array[slot + 1]).find(shift + BITS, hash, key);
+            return key.equals(k) ? array[slot + 1] : null;
+        }
+
+        /** @return This node if the editor owns it, otherwise a copy it owns */
+        private Node editable(Object editor) {
+            return owner == editor ? this : new Node(editor, bitmap, array.clone());
+        }
+
+        Node put(Object editor, int shift, int hash, Object key, Object value, int[] sizeChange) {
+            if (shift >= MAX_SHIFT) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (!key.equals(array[i])) continue;
+                    if (array[i + 1] == value) return this;
+                    Node node = editable(editor);
+                    node.array[i + 1] = value;
+                    return node;
+                }
+                return withPair(editor, array.length, 0, key, value, sizeChange);
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int slot = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                return withPair(editor, slot, bit, key, value, sizeChange);
+            }
+            Object k = array[slot];
+            Object v = array[slot + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(editor, shift + BITS, hash, key, value, sizeChange);
+                if (child == v) return this;
+                Node node = editable(editor);
+                node.array[slot + 1] = child;
+                return node;
+            }
+            if (key.equals(k)) {
+                if (v == value) return this;
+                Node node = editable(editor);
+                node.array[slot + 1] = value;
+                return node;
+            }
+            // Two keys share this branch: move both into a new child one level down
+            int[] ignored = new int[1];
+            Node child = new Node(editor, 0, new Object[0])
+                .put(editor, shift + BITS, hash(k), k, v, ignored)
+                .put(editor, shift + BITS, hash, key, value, ignored);
+            sizeChange[0] = 1;
+            Node node = editable(editor);
+            node.array[slot] = null;
+            node.array[slot + 1] = child;
+            return node;
+        }
+
+        /** Inserts a key and value at a slot, growing the array */
+        private Node withPair(Object editor, int slot, int bit, Object key, Object value, int[] sizeChange) {
+            Object[] grown = new Object[array.length + 2];
+            System.arraycopy(array, 0, grown, 0, slot);
+            grown[slot] = key;
+            grown[slot + 1] = value;
+            System.arraycopy(array, slot, grown, slot + 2, array.length - slot);
+            sizeChange[0] = 1;
+            if (owner == editor) {
+                bitmap |= bit;
+                array = grown;
+                return this;
+            }
+            return new Node(editor, bitmap | bit, grown);
+        }
+
+        /** @return The node without the key, or null if it is left empty */
+        Node remove(Object editor, int shift, int hash, Object key, int[] sizeChange) {
+            if (shift >= MAX_SHIFT) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (key.equals(array[i])) return withoutPair(editor, i, 0, sizeChange);
+                }
+                return this;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            int slot = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[slot];
+            if (k == null) {
+                Node child = (Node) array[slot + 1];
+                Node changed = child.remove(editor, shift + BITS, hash, key, sizeChange);
+                if (changed == child) return this;
+                if (changed == null) return withoutPair(editor, slot, bit, sizeChange);
+                Node node = editable(editor);
+                node.array[slot + 1] = changed;
+                return node;
+            }
+            return key.equals(k) ? withoutPair(editor, slot, bit, sizeChange) : this;
+        }
+
+        /** Removes the key and value (or child) at a slot, shrinking the array */
+        private Node withoutPair(Object editor, int slot, int bit, int[] sizeChange) {
+            if (array[slot] != null) sizeChange[0] = -1;
+            if (array.length == 2) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, slot);
+            System.arraycopy(array, slot + 2, shrunk, slot, array.length - slot - 2);
+            if (owner == editor) {
+                bitmap &= ~bit;
+                array = shrunk;
+                return this;
+            }
+            return new Node(editor, bitmap & ~bit, shrunk);
+        }
+    }
+
+    /** Entries of a trie, walked depth first without copying */
+    private static class EntrySet<K, V> extends AbstractSet<Map.Entry<K, V>> {
+        private final Node root;
+        private final int size;
+
+        EntrySet(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<>() {
+                /** Arrays of the nodes on the path being walked, and the next slot of each */
+                private final Object[][] arrays = new Object[MAX_SHIFT / BITS + 2][];
+                private final int[] slots = new int[arrays.length];
+                private int depth = -1;
+                private Map.Entry<K, V> next;
+
+                {
+                    if (root != null) arrays[++depth] = root.array;
+                    advance();
+                }
+
+                @SuppressWarnings("unchecked")
+                private void advance() {
+                    next = null;
+                    while (depth >= 0) {
+                        Object[] array = arrays[depth];
+                        int slot = slots[depth];
+                        if (slot >= array.length) {
+                            slots[depth--] = 0;
+                            continue;
+                        }
+                        slots[depth] = slot + 2;
+                        if (array[slot] == null) {
+                            arrays[++depth] = ((Node) array[slot + 1]).array;
+                        } else {
+                            next = new SimpleImmutableEntry<>((K) array[slot], (V) array[slot + 1]);
+                            return;
+                        }
+                    }
+                }
+
+                @Override
+                public boolean hasNext() { return next != null; }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    if (next == null) throw new NoSuchElementException();
+                    Map.Entry<K, V> entry = next;
+                    advance();
+                    return entry;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package SourceCode;
+/**
+ * Renders the operation metrics in the Prometheus text exposition format (version 0.0.4),
+ * for the /metrics endpoint of BoardServer and for files picked up by a node exporter's
+ * textfile collector. Latencies are exported as summaries in seconds, with the quantiles
+ * taken from the histograms, so a scrape never has to ship the histogram buckets.
+ * Demonstrates use of static methods and StringBuilder.
+ */
+import java.util.List;
+
+public final class PrometheusRenderer {
+    /** Content type of the text format, for HTTP responses */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Prefix of every metric name */
+    private static final String PREFIX = "dimsum_";
+
+    /** Private constructor to prevent instantiation */
+    private PrometheusRenderer() {}
+
+    /**
+     * Renders a metrics report.
+     * @param report The report to render
+     * @return The report in the text format, ending with a newline
+     */
+    public static String render(MetricsReport report) {
+        StringBuilder out = new StringBuilder();
+        appendSummaries(out, "operation_duration_seconds",
+            "Time spent in each timetable operation.", report.operations());
+        appendFailures(out, "operation_failures_total",
+            "Calls of each timetable operation that found nothing to work on.", report.operations());
+        appendSummaries(out, "station_operation_duration_seconds",
+            "Time spent in each timetable operation, by station.", report.stations());
+        appendFailures(out, "station_operation_failures_total",
+            "Calls of each timetable operation that found nothing to work on, by station.", report.stations());
+
+        appendFamily(out, "timetable_version", "gauge", "Version of the published timetable.");
+        out.append(PREFIX).append("timetable_version ").append(report.timetableVersion()).append('\n');
+        appendFamily(out, "index_entries", "gauge", "Entries in each index of the published timetable.");
+        report.indexSizes().forEach((index, size) -> {
+            out.append(PREFIX).append("index_entries{index=");
+            appendLabelValue(out, index);
+            out.append("} ").append(size).append('\n');
+        });
+        return out.toString();
+    }
+
+    private static void appendSummaries(StringBuilder out, String name, String help,
+                                        List<MetricsReport.OperationStats> series) {
+        if (series.isEmpty()) return;
+        appendFamily(out, name, "summary", help);
+        for (MetricsReport.OperationStats stats : series) {
+            appendQuantile(out, name, stats, "0.5", stats.p50Nanos());
+            appendQuantile(out, name, stats, "0.9", stats.p90Nanos());
+            appendQuantile(out, name, stats, "0.99", stats.p99Nanos());
+            appendQuantile(out, name, stats, "0.999", stats.p999Nanos());
+            out.append(PREFIX).append(name).append("_sum");
+            appendLabels(out, stats, null);
+            out.append(' ').append(toSeconds(stats.totalNanos())).append('\n');
+            out.append(PREFIX).append(name).append("_count");
+            appendLabels(out, stats, null);
+            out.append(' ').append(stats.count()).append('\n');
+        }
+    }
+
+    private static void appendQuantile(StringBuilder out, String name, MetricsReport.OperationStats stats,
+                                       String quantile, long nanos) {
+        out.append(PREFIX).append(name);
+        appendLabels(out, stats, quantile);
+        out.append(' ').append(toSeconds(nanos)).append('\n');
+    }
+
+    private static void appendFailures(StringBuilder out, String name, String help,
+                                       List<MetricsReport.OperationStats> series) {
+        if (series.isEmpty()) return;
+        appendFamily(out, name, "counter", help);
+        for (MetricsReport.OperationStats stats : series) {
+            out.append(PREFIX).append(name);
+            appendLabels(out, stats, null);
+            out.append(' ').append(stats.failures()).append('\n');
+        }
+    }
+
+    private static void appendFamily(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /** Appends {operation="...",station="...",quantile="..."}, leaving out the labels that are null */
+    private static void appendLabels(StringBuilder out, MetricsReport.OperationStats stats, String quantile) {
+        out.append("{operation=");
+        appendLabelValue(out, stats.operation());
+        if (stats.station() != null) {
+            out.append(",station=");
+            appendLabelValue(out, stats.station());
+        }
+        if (quantile != null) {
+            out.append(",quantile=");
+            appendLabelValue(out, quantile);
+        }
+        out.append('}');
+    }
+
+    /** Appends a quoted label value, escaping backslashes, quotes and newlines */
+    private static void appendLabelValue(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
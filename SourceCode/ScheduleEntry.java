@@ -0,0 +1,45 @@
+package SourceCode;
+/**
+ * Immutable description of one scheduled departure, as returned by the query methods.
+ * Holds plain values only, so it can be rendered, serialized or compared without
+ * touching the timetable it came from.
+ * Demonstrates use of records and static factory methods.
+ *
+ * @param trainID The ID of the train
+ * @param departureTime The departure time in HHMM format
+ * @param stationNumber The number of the station
+ * @param stationName The name of the station
+ * @param line The index of the line the train runs on (see Stations.getLine)
+ * @param northbound true if the train leaves heading northbound
+ * @param delayMinutes The delay in minutes (0 if not delayed)
+ * @param delayReason The reason for the delay, or null if not delayed
+ */
+public record ScheduleEntry(String trainID, int departureTime, int stationNumber, String stationName,
+                            int line, boolean northbound, int delayMinutes, String delayReason) {
+    /**
+     * Creates an entry from a stop of a trip.
+     * @param stop The stop to describe
+     * @return The entry
+     */
+    public static ScheduleEntry of(Trip.Stop stop) {
+        Trip trip = stop.trip();
+        int i = stop.index();
+        return new ScheduleEntry(trip.getTrainID(), trip.getTime(i), trip.getStationNumber(i),
+            trip.getStationName(i), trip.getLineIndex(), trip.isNorthbound(i), trip.getDelay(i), trip.getDelayReason(i));
+    }
+
+    /** @return true if the departure is delayed */
+    public boolean isDelayed() {
+        return delayReason != null;
+    }
+
+    /** @return The line the train runs on */
+    public Line getLine() {
+        return Stations.getInstance().getLine(line);
+    }
+
+    /** @return The name of the terminus the train is heading to */
+    public String getDestination() {
+        return getLine().getTerminusName(northbound);
+    }
+}
@@ -1,11 +1,20 @@
 package SourceCode;
 /**
  * Main scheduling system for trains.
+ * When a journal is open, every change made through this class is recorded in it first,
+ * so the timetable survives a restart.
  * Demonstrates use of Java Collections, exception handling, custom classes, and polymorphism.
  */
 public class SchedulingSystem {
-    private final Stations stationsData = new Stations();
     private final String managerPassword = "eatdimsumeveryday";
+    private final BoardCache boardCache = new BoardCache(BoardCache.DEFAULT_ROWS);
+    private volatile Journal journal = null; // null when changes are not journaled
+    private long snapshotJournalRecords = 0; // journal records already included in the loaded snapshot
+
+    /** Writes one change to the journal and returns the offset its record ends at */
+    private interface JournalRecord {
+        long writeTo(Journal journal) throws java.io.IOException;
+    }
 
     public boolean checkManagerPassword(String password) {
         return managerPassword.equals(password);
@@ -16,45 +25,276 @@ public class SchedulingSystem {
         return MRTManager.getTrainById(id);
     }
 
-    /* ALL METHODS BELOW ARE PASS THROUGH METHODS */
-    // Adds a train schedule to the system
-    public void addTrain(Schedulable schedule) {
-        MRTManager.addTrain(schedule);
+    /* HEADLESS QUERIES: return immutable results and never print, for batch jobs, servers and benchmarks */
+    // Lists every departure in the system, grouped by direction
+    public TrainList getAllSchedules() {
+        return MRTManager.getAllSchedules();
+    }
+    // Gets the departure board of a station
+    public StationBoard getStationBoard(String stationName) {
+        return MRTManager.getStationBoard(stationName);
+    }
+    // Gets the next train in each direction (stationName null for the whole system) at the given time
+    public NextTrains getNextTrains(String stationName, int fromTime) {
+        return MRTManager.getNextTrains(stationName, fromTime);
+    }
+    // Gets the next train in each direction (stationName null for the whole system) from now
+    public NextTrains getNextTrains(String stationName) {
+        return MRTManager.getNextTrains(stationName);
+    }
+    // Gets the live board (next departures from the given time) of a station in one direction, from the cache
+    public BoardCache.Board getLiveBoard(String stationName, boolean northbound, int time) {
+        int stationNumber = Stations.getInstance().getStationNumber(stationName);
+        if (stationNumber == -1) {
+            throw new IllegalArgumentException("Unknown station: " + stationName);
+        }
+        TimeUtils.formatDepartureTime(time);
+        long start = System.nanoTime();
+        BoardCache.Board board = boardCache.get(MRTManager.getTimetable(), stationNumber, northbound, time);
+        Metrics.record(Metrics.Operation.LIVE_BOARD, stationNumber, start, true);
+        return board;
+    }
+    // Gets the cache live boards are served from, e.g. to read its hit and miss counters
+    public BoardCache getBoardCache() {
+        return boardCache;
+    }
+    // Lists every delayed departure, most delayed first
+    public DelayReport getDelayReport() {
+        return MRTManager.getDelayReport();
+    }
+    // Lists the most delayed departures of each direction, at most limit per direction
+    public DelayReport getDelayReport(int limit) {
+        return MRTManager.getDelayReport(limit);
+    }
+    // Plans the earliest-arriving journey between two stations (null if there is none today)
+    public Itinerary planJourney(String fromStation, String toStation, int fromTime) {
+        return MRTManager.planJourney(fromStation, toStation, fromTime);
+    }
+    // Looks up the earliest arrival between two stations in the travel-time profiles (-1 if there is none today)
+    public int getArrivalTime(String fromStation, String toStation, int departureTime) {
+        return MRTManager.getArrivalTime(fromStation, toStation, departureTime);
     }
+
+    // Reports the operation metrics recorded so far, with the index sizes of the current version and the board cache
+    public MetricsReport getMetricsReport() {
+        Timetable current = MRTManager.getTimetable();
+        java.util.Map<String, Long> sizes = MRTManager.getIndexSizes(current);
+        sizes.put("boardCache", (long) boardCache.size());
+        return Metrics.report(current.getVersion(), sizes);
+    }
+
+    /* CONSOLE OUTPUT: renders the query results above */
     // Prints all train schedules
     public void printAllSchedules() {
-        MRTManager.printAllSchedules();
+        ConsoleRenderer.printTrainList(getAllSchedules());
     }
     // Prints the train schedule for a specific station
     public void printStationSchedule(String station) {
-        MRTManager.printStationSchedule(station);
+        ConsoleRenderer.printStationBoard(getStationBoard(station));
+    }
+    // Prints the earliest-arriving journey between two stations
+    public void printJourney(String fromStation, String toStation, int fromTime) {
+        ConsoleRenderer.printItinerary(fromStation, toStation, planJourney(fromStation, toStation, fromTime));
     }
     // Gets the next departing train in the system
     public void getNextTrain() {
-        MRTManager.getNextTrain();
+        ConsoleRenderer.printNextTrains(getNextTrains(null));
     }
     // Gets the next departing train at a specific station
     public void getNextTrain(String stationName) {
-        MRTManager.getNextTrain(stationName);
-    }
-    // Delays a train 
-    public boolean delayTrain(String trainID, int departureTime, int delayMinutes, String reason) {
-        return MRTManager.delayTrain(trainID, departureTime, delayMinutes, reason);
+        ConsoleRenderer.printNextTrains(getNextTrains(stationName));
     }
     // Prints only delayed trains
     public void printDelayedTrains() {
-        MRTManager.printDelayedTrains();
+        ConsoleRenderer.printDelayReport(getDelayReport());
+    }
+    // Prints the operation metrics
+    public void printMetrics() {
+        ConsoleRenderer.printMetrics(getMetricsReport());
+    }
+
+    /* METRICS EXPORT */
+    // Writes the operation metrics to a file in the Prometheus text format. The file is written next to
+    // the target and then moved over it, so a collector reading the file never sees half of it
+    public void exportMetrics(java.nio.file.Path file) throws java.io.IOException {
+        java.nio.file.Path target = file.toAbsolutePath();
+        java.nio.file.Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            java.nio.file.Files.writeString(temp, PrometheusRenderer.render(getMetricsReport()));
+        } catch (java.io.IOException e) {
+            java.nio.file.Files.deleteIfExists(temp);
+            throw e;
+        }
+        java.nio.file.Files.move(temp, target, java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+            java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /* JOURNAL */
+    // Opens a journal, replays it into the timetable and records every later change in it.
+    // Returns the number of records replayed
+    public long openJournal(java.nio.file.Path file, Journal.FsyncPolicy policy) throws java.io.IOException {
+        closeJournal();
+        Journal opened = Journal.open(file, policy);
+        long replayed;
+        try {
+            replayed = opened.replay(snapshotJournalRecords);
+        } catch (java.io.IOException e) {
+            opened.close(); // Leave the journal as it is rather than record new changes after a bad record
+            throw e;
+        }
+        journal = opened;
+        return replayed;
+    }
+    // Flushes and closes the journal; later changes are no longer recorded
+    public void closeJournal() throws java.io.IOException {
+        Journal current = journal;
+        journal = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+    // Gets the open journal, or null if changes are not journaled
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /* NETWORK */
+    // Switches to the network described in a file (see Stations.parse); only while the timetable is empty
+    public Stations loadNetwork(java.nio.file.Path file) throws java.io.IOException {
+        Stations network = Stations.load(file);
+        MRTManager.useNetwork(network);
+        boardCache.clear();
+        return network;
+    }
+
+    /* GTFS */
+    // Imports a GTFS feed (only the trips running on day, or all trips if day is null) as one change
+    public GtfsFeed.ImportSummary importGtfs(java.nio.file.Path directory, java.time.DayOfWeek day)
+            throws java.io.IOException {
+        try {
+            java.util.List<Trip> imported = new java.util.ArrayList<>();
+            return journaled(j -> j.logImportTrips(imported), () -> {
+                try {
+                    return GtfsFeed.importFeed(directory, day, imported::add);
+                } catch (java.io.IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    // Exports the timetable as a GTFS feed with a daily service from startDate to endDate
+    public long exportGtfs(java.nio.file.Path directory, java.time.LocalDate startDate, java.time.LocalDate endDate)
+            throws java.io.IOException {
+        return GtfsFeed.exportFeed(MRTManager.getTimetable(), directory, startDate, endDate);
+    }
+
+    /* SNAPSHOTS */
+    // Saves the whole timetable to a snapshot file, together with how much of the open journal it includes
+    public void saveSnapshot(java.nio.file.Path file) throws java.io.IOException {
+        Timetable[] saved = new Timetable[1];
+        long[] journalRecords = new long[1];
+        // No change can be journaled between reading the timetable and the journal position
+        MRTManager.runBatch(() -> {
+            saved[0] = MRTManager.getTimetable();
+            Journal current = journal;
+            journalRecords[0] = current == null ? 0 : current.getRecordCount();
+        });
+        Snapshot.write(saved[0], journalRecords[0], file);
+    }
+    // Replaces the timetable with a snapshot. Load it before opening the journal it was taken with,
+    // so only the journal records written after the snapshot are replayed
+    public Snapshot loadSnapshot(java.nio.file.Path file) throws java.io.IOException {
+        if (journal != null) {
+            throw new IllegalStateException("Close the journal before loading a snapshot");
+        }
+        Snapshot snapshot = Snapshot.load(file);
+        MRTManager.restore(snapshot);
+        snapshotJournalRecords = snapshot.getJournalRecords();
+        return snapshot;
+    }
+
+    // Applies a change and then records it in the journal, as one step so the journal keeps the order
+    // changes were applied in. A change that throws is discarded and never recorded, and a record that
+    // cannot be written discards the change. Waits for the record to be durable (per the fsync policy)
+    // afterwards, outside the write lock, so concurrent changes can share one fsync. The change is
+    // published before that, so readers may see it before it is durable (see Journal)
+    private <T> T journaled(JournalRecord record, java.util.function.Supplier<T> change) {
+        Journal current = journal;
+        if (current == null) {
+            return change.get();
+        }
+        long[] recordEnd = new long[1];
+        java.util.List<T> result = new java.util.ArrayList<>(1);
+        MRTManager.runBatch(() -> {
+            result.add(change.get());
+            try {
+                recordEnd[0] = record.writeTo(current);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException("Could not write to the journal", e);
+            }
+        });
+        current.commit(recordEnd[0]);
+        return result.get(0);
+    }
+
+    /* ALL METHODS BELOW ARE PASS THROUGH METHODS */
+    // Adds a train schedule to the system
+    public void addTrain(Schedulable schedule) {
+        journaled(j -> j.logAddTrain(schedule), () -> {
+            MRTManager.addTrain(schedule);
+            return null;
+        });
+    }
+    // Gets the current timetable version
+    public Timetable getTimetable() {
+        return MRTManager.getTimetable();
+    }
+    // Generates a full day's trips from a service plan in place of any generated before, returning how many were added
+    public int generateTimetable(ServicePlan plan) {
+        return journaled(j -> j.logGenerate(plan), () -> TimetableGenerator.generateAndLoad(plan));
+    }
+    // Adds many train schedules to the system at once
+    public void addTrains(java.util.Collection<? extends Schedulable> schedules) {
+        journaled(j -> j.logAddTrains(schedules), () -> {
+            MRTManager.addTrains(schedules);
+            return null;
+        });
+    }
+    // Gets the next departures at a station in one direction, as data
+    public StopEventStore.Departures getNextDepartures(String stationName, boolean northbound, int limit) {
+        return MRTManager.getNextDepartures(stationName, northbound, limit);
+    }
+    // Gets the next departures at a station in one direction from the given time, as data
+    public StopEventStore.Departures getNextDepartures(String stationName, boolean northbound, int fromTime, int limit) {
+        return MRTManager.getNextDepartures(stationName, northbound, fromTime, limit);
+    }
+    // Gets the next departures of one line at a station in one direction from the given time, as data
+    public StopEventStore.Departures getNextDepartures(String lineCode, String stationName, boolean northbound,
+                                                       int fromTime, int limit) {
+        return MRTManager.getNextDepartures(lineCode, stationName, northbound, fromTime, limit);
+    }
+    // Delays a train 
+    public boolean delayTrain(String trainID, int departureTime, int delayMinutes, String reason) {
+        return journaled(j -> j.logDelay(trainID, departureTime, delayMinutes, reason),
+            () -> MRTManager.delayTrain(trainID, departureTime, delayMinutes, reason));
     }
     // Reschedules a train to a new departure time and station (optional)
     public boolean rescheduleTrain(String trainID, int oldDepartureTime, int newDepartureTime, String newStation) {
-        return MRTManager.rescheduleTrain(trainID, oldDepartureTime, newDepartureTime, newStation);
+        return journaled(j -> j.logReschedule(trainID, oldDepartureTime, newDepartureTime, newStation),
+            () -> MRTManager.rescheduleTrain(trainID, oldDepartureTime, newDepartureTime, newStation));
     }
     // Cancel a train schedule
     public boolean cancelTrain(String trainID, int departureTime) {
-        return MRTManager.cancelTrain(trainID, departureTime);
+        return journaled(j -> j.logCancel(trainID, departureTime),
+            () -> MRTManager.cancelTrain(trainID, departureTime));
     }
     public void simulateTrainsRunning(int closingTime) {
-        MRTManager.simulateTrainsRunning(closingTime);
+        journaled(j -> j.logSimulate(closingTime), () -> {
+            MRTManager.simulateTrainsRunning(closingTime);
+            return null;
+        });
     }
 
     /* PASSENGER & MANAGER MENU LOGIC */
@@ -66,6 +306,7 @@ public class SchedulingSystem {
             System.out.println("1. View all schedules");
             System.out.println("2. View schedules for a station");
             System.out.println("3. Find next departing train at a station");
+            System.out.println("4. Plan a journey");
             System.out.println("0. Exit (Back to Main Menu)");
             System.out.print("Choose an option: ");
             String choice = sc.nextLine();
@@ -75,10 +316,13 @@ public class SchedulingSystem {
                     printAllSchedules();
                     break;
                 case "2":
-                    printStationScheduleMenu(sc, stationsData.getStationMap());
+                    printStationScheduleMenu(sc, Stations.getInstance().getStationMap());
                     break;
                 case "3":
-                    getNextTrainAtStation(sc, stationsData.getStationMap());
+                    getNextTrainAtStation(sc, Stations.getInstance().getStationMap());
+                    break;
+                case "4":
+                    planJourneyMenu(sc, Stations.getInstance().getStationMap());
                     break;
                 case "0":
                     running = false;
@@ -103,6 +347,7 @@ public class SchedulingSystem {
             System.out.println("7. Find next departing train");
             System.out.println("8. View delayed trains by priority");
             System.out.println("9. Simulate trains running");
+            System.out.println("10. View operation metrics");
             System.out.println("0. Exit (Back to Main Menu)");
             System.out.print("Choose an option: ");
             String choice = sc.nextLine();
@@ -112,7 +357,7 @@ public class SchedulingSystem {
                     addTrainMenu(sc);
                     break;
                 case "2":
-                    rescheduleTrainMenu(sc, stationsData);
+                    rescheduleTrainMenu(sc, Stations.getInstance());
                     break;
                 case "3":
                     delayTrainMenu(sc);
@@ -124,7 +369,7 @@ public class SchedulingSystem {
                     printAllSchedules();
                     break;
                 case "6":
-                    printStationScheduleMenu(sc, stationsData.getStationMap());
+                    printStationScheduleMenu(sc, Stations.getInstance().getStationMap());
                     break;
                 case "7":
                     getNextTrainMenu(sc);
@@ -135,6 +380,9 @@ public class SchedulingSystem {
                 case "9":
                     simulateTrainsRunningMenu(sc);
                     break;
+                case "10":
+                    metricsMenu(sc);
+                    break;
                 case "0":
                     running = false;
                     break;
@@ -150,19 +398,20 @@ public class SchedulingSystem {
         System.out.println("Add Train Schedule Mode:");
         System.out.println("1. Add schedules manually");
         System.out.println("2. Add schedules automatically (batch)");
-        System.out.print("Choose mode (1 or 2): ");
+        System.out.println("3. Generate full-day timetable (weekday service plan)");
+        System.out.print("Choose mode (1, 2 or 3): ");
         int addMode = 1;
         boolean validInput = false;
         while (!validInput) {
             if (sc.hasNextInt()) {
                 addMode = sc.nextInt();
-                if (addMode == 1 || addMode == 2) {
+                if (addMode >= 1 && addMode <= 3) {
                     validInput = true;
                 } else {
-                    System.out.print("Invalid input! Please enter 1 or 2: ");
+                    System.out.print("Invalid input! Please enter 1, 2 or 3: ");
                 }
             } else {
-                System.out.print("Invalid input! Please enter 1 or 2: ");
+                System.out.print("Invalid input! Please enter 1, 2 or 3: ");
                 sc.next();
             }
         }
@@ -170,8 +419,10 @@ public class SchedulingSystem {
 
         if (addMode == 1) {
             manualAddTrainMenu(sc);
-        } else {
+        } else if (addMode == 2) {
             autoAddTrainMenu(sc);
+        } else {
+            generateTimetableMenu();
         }
     }
 
@@ -191,29 +442,8 @@ public class SchedulingSystem {
         sc.nextLine(); // consume newline
 
         for (int i = 0; i < addCount; i++) {
-            System.out.println("\nPlease enter the following details to add a new train schedule:\nWhich station do you want to add a train schedule to?\n\n1. Lebak Bulus (Start Terminus)\n2. Bundaran HI (End Terminus)\n3. Blok M (Middle Parking)");
-            boolean validInput = false;
-            int stationNumber = 0;
-            String stationName = null;
-            while (!validInput) {
-                if (sc.hasNextInt()) {
-                    stationNumber = sc.nextInt();
-                    if (stationNumber < 1 || stationNumber > 3) {
-                        System.out.print("Invalid station Number! Please enter a Number between 1 - 3: ");
-                    } else {
-                        validInput = true;
-                    }
-                } else {
-                    System.out.print("Invalid input! Please enter a Number between 1 - 3: ");
-                    sc.next(); // Consume invalid input
-                }
-            }
-            switch (stationNumber) {
-                case 1 -> stationName = "Lebak Bulus";
-                case 2 -> stationName = "Bundaran HI";
-                case 3 -> stationName = "Blok M";
-            }
-            sc.nextLine(); // Consume the newline character
+            System.out.println("\nPlease enter the following details to add a new train schedule:\nWhich station do you want to add a train schedule to?\n");
+            String stationName = depotSelection(sc);
 
             // Train ID
             String id = TrainUtils.promptValidTrainID(sc);
@@ -228,30 +458,7 @@ public class SchedulingSystem {
 
     private void autoAddTrainMenu(java.util.Scanner sc) {
         System.out.println("\nWhich station do you want to add train schedules to automatically?");
-        System.out.println("1. Lebak Bulus (Start Terminus)\n2. Bundaran HI (End Terminus)\n3. Blok M (Middle Parking)");
-        int autoStationNum = 0;
-        String autoStationName = null;
-        boolean validInput = false;
-        while (!validInput) {
-            if (sc.hasNextInt()) {
-                autoStationNum = sc.nextInt();
-                if (autoStationNum >= 1 && autoStationNum <= 3) {
-                    validInput = true;
-                } else {
-                    System.out.print("Invalid station Number! Please enter a Number between 1 - 3: ");
-                }
-            } else {
-                System.out.print("Invalid input! Please enter a Number between 1 - 3: ");
-                sc.next();
-            }
-        }
-        autoStationName = switch (autoStationNum) {
-            case 1 -> "Lebak Bulus";
-            case 2 -> "Bundaran HI";
-            case 3 -> "Blok M";
-            default -> null;
-        };
-        sc.nextLine(); // consume newline
+        String autoStationName = depotSelection(sc);
 
         System.out.print("Enter the START TIME: ");
         int startTime = TimeUtils.promptValidTime(sc);
@@ -272,11 +479,75 @@ public class SchedulingSystem {
         sc.nextLine(); // consume newline
 
         // Delegate to MRT for business logic
-        TrainUtils.autoAddTrain(this, autoStationName, startTime, endTime, headway);
-        System.out.println("Automatic schedule addition completed.");
+        try {
+            TrainUtils.autoAddTrain(this, autoStationName, startTime, endTime, headway);
+            System.out.println("Automatic schedule addition completed.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the stations trains can be added at: the termini of every line, and the
+     * Blok M parking area on networks that have it.
+     * @return Station names mapped to their descriptions, in menu order
+     */
+    private java.util.Map<String, String> getDepots() {
+        Stations stations = Stations.getInstance();
+        java.util.Map<String, String> depots = new java.util.LinkedHashMap<>();
+        for (Line line : stations.getLines()) {
+            String prefix = line.getIndex() == 0 ? "" : line.getCode() + " ";
+            depots.putIfAbsent(line.getTerminusName(false), prefix + "Start Terminus");
+            depots.putIfAbsent(line.getTerminusName(true), prefix + "End Terminus");
+            if (line.getIndex() == 0 && stations.getStationNumber("Blok M") != -1) {
+                depots.putIfAbsent("Blok M", "Middle Parking");
+            }
+        }
+        return depots;
+    }
+
+    /**
+     * Prints the stations trains can be added at and lets the user choose one.
+     * @return The name of the chosen station
+     */
+    private String depotSelection(java.util.Scanner sc) {
+        java.util.List<String> depots = new java.util.ArrayList<>();
+        StringBuilder menu = new StringBuilder();
+        for (var depot : getDepots().entrySet()) {
+            depots.add(depot.getKey());
+            if (menu.length() > 0) menu.append('\n');
+            menu.append(depots.size()).append(". ").append(depot.getKey()).append(" (").append(depot.getValue()).append(')');
+        }
+        System.out.println(menu);
+        int depotNumber = 0;
+        boolean validInput = false;
+        while (!validInput) {
+            if (sc.hasNextInt()) {
+                depotNumber = sc.nextInt();
+                if (depotNumber >= 1 && depotNumber <= depots.size()) {
+                    validInput = true;
+                } else {
+                    System.out.print("Invalid station Number! Please enter a Number between 1 - " + depots.size() + ": ");
+                }
+            } else {
+                System.out.print("Invalid input! Please enter a Number between 1 - " + depots.size() + ": ");
+                sc.next(); // Consume invalid input
+            }
+        }
+        sc.nextLine(); // Consume the newline character
+        return depots.get(depotNumber - 1);
+    }
+
+    private void generateTimetableMenu() {
+        try {
+            int added = generateTimetable(ServicePlan.weekday());
+            System.out.println("Generated " + added + " trips for both directions.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
     }
 
-    private void printStationScheduleMenu(java.util.Scanner sc, java.util.TreeMap<Integer, String> stationMap) {
+    private void printStationScheduleMenu(java.util.Scanner sc, java.util.NavigableMap<Integer, String> stationMap) {
         StationUtils.printStationList(stationMap);
         System.out.print("Choose Station: ");
         int stationNum = StationUtils.stationSelection(sc, stationMap);
@@ -285,19 +556,19 @@ public class SchedulingSystem {
     }
 
     private void getNextTrainMenu(java.util.Scanner sc) {
-        StationUtils.printStationList(stationsData.getStationMap());
+        StationUtils.printStationList(Stations.getInstance().getStationMap());
         System.out.print("Choose Station (Enter '0' for finding the next departing train in the system): ");
-        int stationNum = StationUtils.stationSelection(sc, stationsData.getStationMap());
+        int stationNum = StationUtils.stationSelection(sc, Stations.getInstance().getStationMap());
         if (stationNum == 0) {
             getNextTrain();
         } else {
-            String stationName = StationUtils.getStationName(stationNum, stationsData.getStationMap());
+            String stationName = StationUtils.getStationName(stationNum, Stations.getInstance().getStationMap());
             getNextTrain(stationName);
         }
     }
 
     // This method is reserved specifically for passengers to find the next train at a station, because finding next train globally is not as important for passengers.
-    private void getNextTrainAtStation(java.util.Scanner sc, java.util.TreeMap<Integer, String> stationMap) {
+    private void getNextTrainAtStation(java.util.Scanner sc, java.util.NavigableMap<Integer, String> stationMap) {
         StationUtils.printStationList(stationMap);
         System.out.print("Choose Station: ");
         int stationNum = StationUtils.stationSelection(sc, stationMap);
@@ -305,6 +576,21 @@ public class SchedulingSystem {
         getNextTrain(stationName);
     }
 
+    private void planJourneyMenu(java.util.Scanner sc, java.util.NavigableMap<Integer, String> stationMap) {
+        StationUtils.printStationList(stationMap);
+        System.out.print("Choose Departure Station: ");
+        String fromStation = StationUtils.getStationName(StationUtils.stationSelection(sc, stationMap), stationMap);
+        System.out.print("Choose Destination Station: ");
+        String toStation = StationUtils.getStationName(StationUtils.stationSelection(sc, stationMap), stationMap);
+        System.out.print("Enter Departure Time: ");
+        int fromTime = TimeUtils.promptValidTime(sc);
+        try {
+            printJourney(fromStation, toStation, fromTime);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
     private void rescheduleTrainMenu(java.util.Scanner sc, Stations stationData) {
         String trainID = TrainUtils.promptValidTrainID(sc);
         System.out.print("Enter Current Departure Time: ");
@@ -325,10 +611,14 @@ public class SchedulingSystem {
         } else {
             newStation = StationUtils.getStationName(newStationNum, stationData.getStationMap());
         }
-        if (rescheduleTrain(trainID, oldDep, newDep, newStation)) {
-            System.out.println("Train rescheduled.");
-        } else {
-            System.out.println("Train not found at the specified time.");
+        try {
+            if (rescheduleTrain(trainID, oldDep, newDep, newStation)) {
+                System.out.println("Train rescheduled.");
+            } else {
+                System.out.println("Train not found at the specified time.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage()); // e.g. a station that is not on the train's line
         }
     }
 
@@ -356,6 +646,19 @@ public class SchedulingSystem {
             System.out.println("Train not found at the specified time.");
         }
     }
+    private void metricsMenu(java.util.Scanner sc) {
+        printMetrics();
+        System.out.print("Export to a Prometheus text file (Enter a path, or leave blank to skip): ");
+        String path = sc.nextLine().trim();
+        if (path.isEmpty()) return;
+        try {
+            exportMetrics(java.nio.file.Path.of(path));
+            System.out.println("Metrics written to " + path);
+        } catch (java.io.IOException | java.nio.file.InvalidPathException e) {
+            System.out.println("Could not write metrics: " + e.getMessage());
+        }
+    }
+
     private void simulateTrainsRunningMenu(java.util.Scanner sc) {
         System.out.print("Enter Closing Time (HHMM): ");
         int closingTime = TimeUtils.promptClosingTime(sc);
@@ -0,0 +1,115 @@
+package SourceCode;
+/**
+ * Describes how often trains leave each terminus during the day.
+ * A plan is a list of time bands per direction; within a band trains leave the
+ * terminus at a fixed headway (e.g., every 5 minutes in the morning peak and
+ * every 10 minutes off-peak). Used by TimetableGenerator to build a full day's timetable.
+ * Demonstrates use of records, Java Collections and validation with exceptions.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class ServicePlan {
+    /**
+     * One band of the plan.
+     * @param startTime First departure of the band in HHMM format
+     * @param endTime End of the band in HHMM format (exclusive)
+     * @param headway Minutes between departures
+     */
+    public record Band(int startTime, int endTime, int headway) {
+        /** @return The start of the band in minutes since midnight */
+        public int startMinute() { return TimeUtils.toMinuteOfDay(startTime); }
+
+        /** @return The end of the band in minutes since midnight */
+        public int endMinute() { return TimeUtils.toMinuteOfDay(endTime); }
+    }
+
+    /** Bands for trains leaving the southern terminus heading northbound, ordered by start time */
+    private final List<Band> northboundBands = new ArrayList<>();
+
+    /** Bands for trains leaving the northern terminus heading southbound, ordered by start time */
+    private final List<Band> southboundBands = new ArrayList<>();
+
+    /**
+     * Creates the usual weekday plan: every 5 minutes in the morning and evening peaks
+     * (0700-0900 and 1700-1900) and every 10 minutes otherwise, from 0500 until 2359 (the last HHMM
+     * time a band can end at, so the last trains leave at 2350), in both directions.
+     * @return The weekday plan
+     */
+    public static ServicePlan weekday() {
+        ServicePlan plan = new ServicePlan();
+        for (boolean northbound : new boolean[] {true, false}) {
+            plan.addBand(northbound, 500, 700, 10);
+            plan.addBand(northbound, 700, 900, 5);
+            plan.addBand(northbound, 900, 1700, 10);
+            plan.addBand(northbound, 1700, 1900, 5);
+            plan.addBand(northbound, 1900, 2359, 10);
+        }
+        return plan;
+    }
+
+    /**
+     * Adds a band to the plan.
+     * @param northbound The direction the band applies to
+     * @param startTime First departure in HHMM format
+     * @param endTime End of the band in HHMM format (exclusive)
+     * @param headway Minutes between departures
+     * @return This plan, so bands can be chained
+     * @throws IllegalArgumentException if the band is empty or overlaps another band of the same direction
+     */
+    public ServicePlan addBand(boolean northbound, int startTime, int endTime, int headway) {
+        TimeUtils.formatDepartureTime(startTime);
+        TimeUtils.formatDepartureTime(endTime);
+        if (startTime >= endTime) {
+            throw new IllegalArgumentException("A band must end after it starts, got: "
+                + String.format("%04d-%04d", startTime, endTime));
+        }
+        if (headway <= 0) {
+            throw new IllegalArgumentException("Headway must be a positive number of minutes, got: " + headway);
+        }
+
+        List<Band> bands = northbound ? northboundBands : southboundBands;
+        int position = 0;
+        while (position < bands.size() && bands.get(position).startTime() < startTime) {
+            position++;
+        }
+        boolean overlapsPrevious = position > 0 && bands.get(position - 1).endTime() > startTime;
+        boolean overlapsNext = position < bands.size() && bands.get(position).startTime() < endTime;
+        if (overlapsPrevious || overlapsNext) {
+            throw new IllegalArgumentException("Band " + String.format("%04d-%04d", startTime, endTime)
+                + " overlaps another " + (northbound ? "northbound" : "southbound") + " band");
+        }
+        bands.add(position, new Band(startTime, endTime, headway));
+        return this;
+    }
+
+    /**
+     * @param northbound The direction to look at
+     * @return A read-only view of the bands of one direction, ordered by start time
+     */
+    public List<Band> getBands(boolean northbound) {
+        return Collections.unmodifiableList(northbound ? northboundBands : southboundBands);
+    }
+
+    /**
+     * Lists the departure times from the terminus of one direction.
+     * @param northbound The direction to look at
+     * @return The departure times in minutes since midnight, in order
+     */
+    public int[] getDepartureMinutes(boolean northbound) {
+        List<Band> bands = northbound ? northboundBands : southboundBands;
+        int count = 0;
+        for (Band band : bands) {
+            count += (band.endMinute() - band.startMinute() + band.headway() - 1) / band.headway();
+        }
+        int[] departures = new int[count];
+        int i = 0;
+        for (Band band : bands) {
+            for (int minute = band.startMinute(); minute < band.endMinute(); minute += band.headway()) {
+                departures[i++] = minute;
+            }
+        }
+        return departures;
+    }
+}
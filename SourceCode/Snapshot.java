@@ -0,0 +1,373 @@
+package SourceCode;
+/**
+ * Versioned binary snapshot of a whole timetable, including its column store.
+ * Rebuilding a large timetable by replaying every change or re-running a simulation takes
+ * seconds; loading a snapshot maps the file into memory and copies each column out of it
+ * in bulk, so the system is queryable again within milliseconds. The column store is saved
+ * already sorted and grouped, so nothing has to be sorted on startup either.
+ *
+ * File layout (all numbers little-endian, so columns copy without byte swapping):
+ * - header: magic "DIMS", format version, timetable version, number of journal records covered
+ * - network: its description (see Stations.describe), checked against the current network on load
+ * - trips: count, number of stops and of delayed stops, train IDs, line, generated flag and stops per trip
+ * - stops of all trips, one column at a time: times, stations, directions, delays,
+ *   then the positions and reasons of delayed stops
+ * - the StopEventStore columns (see StopEventStore.writeColumns)
+ * - CRC32C of everything after the header
+ *
+ * A snapshot is written to a temporary file next to the target and moved over it once
+ * it is complete and forced to disk, so a crash never leaves a half-written snapshot behind.
+ * Demonstrates use of memory-mapped files, ByteBuffer views and atomic file moves.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+public final class Snapshot {
+    /** Marks the file as a DIMSUM snapshot ("DIMS") */
+    private static final int MAGIC = 0x44494D53;
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 24;
+
+    /** Size of the buffer a snapshot is written through */
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final long timetableVersion;
+    private final long journalRecords;
+    private final Map<String, Trip> trips;
+    private final StopEventStore stopEvents;
+
+    private Snapshot(long timetableVersion, long journalRecords, Map<String, Trip> trips, StopEventStore stopEvents) {
+        this.timetableVersion = timetableVersion;
+        this.journalRecords = journalRecords;
+        this.trips = trips;
+        this.stopEvents = stopEvents;
+    }
+
+    /**
+     * Buffered writer for the body of a snapshot.
+     * Checksums every buffer it writes to the file.
+     */
+    static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C checksum = new CRC32C();
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putShort(int value) throws IOException {
+            ensure(2);
+            buffer.putShort((short) value);
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putShort(bytes.length);
+            putBytes(bytes, bytes.length);
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int done = 0; done < count; ) {
+                ensure(4);
+                int n = Math.min(buffer.remaining() / 4, count - done);
+                buffer.asIntBuffer().put(values, done, n);
+                buffer.position(buffer.position() + n * 4);
+                done += n;
+            }
+        }
+
+        void putShorts(short[] values, int count) throws IOException {
+            for (int done = 0; done < count; ) {
+                ensure(2);
+                int n = Math.min(buffer.remaining() / 2, count - done);
+                buffer.asShortBuffer().put(values, done, n);
+                buffer.position(buffer.position() + n * 2);
+                done += n;
+            }
+        }
+
+        void putBytes(byte[] values, int count) throws IOException {
+            for (int done = 0; done < count; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), count - done);
+                buffer.put(values, done, n);
+                done += n;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        /** Writes out the buffer, adding it to the checksum */
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            writeFully();
+        }
+
+        /** Appends the checksum of everything written so far and writes it out */
+        private void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue()).flip();
+            writeFully();
+        }
+
+        private void writeFully() throws IOException {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes a snapshot of a timetable, replacing the file atomically.
+     * @param timetable The timetable to save
+     * @param journalRecords The number of journal records already included in the timetable
+     * @param file The file to write
+     * @throws IOException if the snapshot cannot be written; the old file is then left as it was
+     */
+    public static void write(Timetable timetable, long journalRecords, Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        StopEventStore stopEvents = timetable.getStopEvents().compact();
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(timetable.getVersion()).putLong(journalRecords).flip();
+            while (header.hasRemaining()) channel.write(header);
+
+            Output out = new Output(channel);
+            writeNetwork(out);
+            writeTrips(out, stopEvents.getTrips());
+            stopEvents.writeColumns(out);
+            out.finish();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeNetwork(Output out) throws IOException {
+        byte[] description = Stations.getInstance().describe().getBytes(StandardCharsets.UTF_8);
+        out.putInt(description.length);
+        out.putBytes(description, description.length);
+    }
+
+    private static void writeTrips(Output out, List<Trip> trips) throws IOException {
+        int stops = 0;
+        int delayed = 0;
+        for (Trip trip : trips) {
+            stops += trip.size();
+            for (int i = 0; i < trip.size(); i++) {
+                if (trip.isDelayed(i)) delayed++;
+            }
+        }
+        out.putInt(trips.size());
+        out.putInt(stops);
+        out.putInt(delayed);
+        // Train IDs as one block of UTF-8 bytes after the offset each ID ends at
+        byte[][] trainIDs = new byte[trips.size()][];
+        int idBytes = 0;
+        for (int t = 0; t < trainIDs.length; t++) {
+            trainIDs[t] = trips.get(t).getTrainID().getBytes(StandardCharsets.UTF_8);
+            idBytes += trainIDs[t].length;
+            out.putInt(idBytes);
+        }
+        for (byte[] trainID : trainIDs) out.putBytes(trainID, trainID.length);
+        for (Trip trip : trips) out.putShort(trip.getLineIndex());
+        for (Trip trip : trips) out.putByte(trip.isGenerated() ? 1 : 0);
+        for (Trip trip : trips) out.putInt(trip.size());
+        for (Trip trip : trips) for (int i = 0; i < trip.size(); i++) out.putInt(trip.getTime(i));
+        for (Trip trip : trips) for (int i = 0; i < trip.size(); i++) out.putShort(trip.getStationNumber(i));
+        for (Trip trip : trips) for (int i = 0; i < trip.size(); i++) out.putByte(trip.isNorthbound(i) ? 1 : 0);
+        for (Trip trip : trips) for (int i = 0; i < trip.size(); i++) out.putInt(trip.getDelay(i));
+
+        // Delay reasons are rare, so only delayed stops are listed, by position among all stops
+        int position = 0;
+        for (Trip trip : trips) {
+            for (int i = 0; i < trip.size(); i++, position++) {
+                if (trip.isDelayed(i)) out.putInt(position);
+            }
+        }
+        for (Trip trip : trips) {
+            for (int i = 0; i < trip.size(); i++) {
+                if (trip.isDelayed(i)) out.putString(trip.getDelayReason(i));
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of a timetable in memory, without writing a file.
+     * Versions never change once published, so the snapshot shares their trips and column store;
+     * restoring it later (e.g. to undo a run of changes) takes no copying or sorting.
+     * @param timetable The timetable to keep
+     * @return The snapshot, ready to be published with MRTManager.restore
+     */
+    public static Snapshot of(Timetable timetable) {
+        return new Snapshot(timetable.getVersion(), 0, timetable.getTrips(), timetable.getStopEvents());
+    }
+
+    /**
+     * Loads a snapshot by mapping the file into memory.
+     * @param file The file to read
+     * @return The loaded snapshot, ready to be published with MRTManager.restore
+     * @throws IOException if the file cannot be read, is not a valid snapshot, is damaged,
+     *         or was written for a different network
+     */
+    public static Snapshot load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + 4) {
+                throw new IOException("Not a DIMSUM snapshot: " + file);
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to map: " + file);
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            ByteBuffer in = mapping.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt(0) != MAGIC) {
+                throw new IOException("Not a DIMSUM snapshot: " + file);
+            }
+            if (in.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + in.getInt(4) + " in " + file);
+            }
+            int end = (int) fileSize - 4;
+            CRC32C checksum = new CRC32C();
+            checksum.update(in.duplicate().position(HEADER_SIZE).limit(end));
+            if ((int) checksum.getValue() != in.getInt(end)) {
+                throw new IOException("Snapshot is damaged (checksum mismatch): " + file);
+            }
+
+            long timetableVersion = in.getLong(8);
+            long journalRecords = in.getLong(16);
+            in.position(HEADER_SIZE).limit(end);
+            checkNetwork(in, file);
+            Trip[] trips = readTrips(in);
+            StopEventStore stopEvents = StopEventStore.readColumns(in, trips);
+
+            Map<String, Trip> byID = new HashMap<>(trips.length * 4 / 3 + 1);
+            for (Trip trip : trips) byID.put(trip.getTrainID(), trip);
+            return new Snapshot(timetableVersion, journalRecords, byID, stopEvents);
+        }
+    }
+
+    private static void checkNetwork(ByteBuffer in, Path file) throws IOException {
+        byte[] description = new byte[in.getInt()];
+        in.get(description);
+        if (!new String(description, StandardCharsets.UTF_8).equals(Stations.getInstance().describe())) {
+            throw new IOException("Snapshot was written for a different network: " + file);
+        }
+    }
+
+    private static Trip[] readTrips(ByteBuffer in) {
+        int tripCount = in.getInt();
+        int stopCount = in.getInt();
+        int delayedCount = in.getInt();
+        int[] idEnds = getInts(in, new int[tripCount]);
+        byte[] idBytes = new byte[tripCount == 0 ? 0 : idEnds[tripCount - 1]];
+        in.get(idBytes);
+        String[] trainIDs = new String[tripCount];
+        for (int t = 0, start = 0; t < tripCount; start = idEnds[t++]) {
+            trainIDs[t] = new String(idBytes, start, idEnds[t] - start, StandardCharsets.UTF_8);
+        }
+        short[] lines = getShorts(in, new short[tripCount]);
+        byte[] generated = new byte[tripCount];
+        in.get(generated);
+        int[] sizes = getInts(in, new int[tripCount]);
+
+        // Each column is copied out of the mapping in one bulk transfer, then split into trips
+        int[] times = getInts(in, new int[stopCount]);
+        short[] stations = getShorts(in, new short[stopCount]);
+        byte[] directions = new byte[stopCount];
+        in.get(directions);
+        int[] delays = getInts(in, new int[stopCount]);
+
+        // Delay reasons, listed by position among all stops
+        int[] positions = getInts(in, new int[delayedCount]);
+        String[][] reasons = new String[tripCount][];
+        int trip = 0;
+        int tripStart = 0;
+        for (int position : positions) {
+            while (position >= tripStart + sizes[trip]) tripStart += sizes[trip++];
+            if (reasons[trip] == null) reasons[trip] = new String[sizes[trip]];
+            reasons[trip][position - tripStart] = getString(in);
+        }
+
+        Trip[] trips = new Trip[tripCount];
+        int from = 0;
+        for (int t = 0; t < tripCount; t++) {
+            int to = from + sizes[t];
+            boolean[] northbound = new boolean[sizes[t]];
+            for (int i = from; i < to; i++) northbound[i - from] = directions[i] != 0;
+            trips[t] = Trip.restore(trainIDs[t], lines[t], generated[t] != 0, Arrays.copyOfRange(times, from, to),
+                Arrays.copyOfRange(stations, from, to), northbound, Arrays.copyOfRange(delays, from, to), reasons[t]);
+            from = to;
+        }
+        return trips;
+    }
+
+    /** Fills an array from the buffer in one bulk copy and moves past it */
+    static int[] getInts(ByteBuffer in, int[] into) {
+        in.asIntBuffer().get(into);
+        in.position(in.position() + into.length * 4);
+        return into;
+    }
+
+    /** Fills an array from the buffer in one bulk copy and moves past it */
+    static short[] getShorts(ByteBuffer in, short[] into) {
+        in.asShortBuffer().get(into);
+        in.position(in.position() + into.length * 2);
+        return into;
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @return The version of the timetable when the snapshot was written */
+    public long getTimetableVersion() { return timetableVersion; }
+
+    /** @return The number of journal records whose changes are included in the snapshot */
+    public long getJournalRecords() { return journalRecords; }
+
+    /** @return The number of trips in the snapshot */
+    public int getTripCount() { return trips.size(); }
+
+    /** @return The number of stop events in the snapshot */
+    public int getStopCount() { return stopEvents.size(); }
+
+    /** @return The loaded trips, keyed by train ID */
+    Map<String, Trip> getTrips() { return trips; }
+
+    /** @return The loaded column store */
+    StopEventStore getStopEvents() { return stopEvents; }
+}
@@ -0,0 +1,18 @@
+package SourceCode;
+/**
+ * Immutable departure board of one station.
+ * A terminus only lists the direction trains leave it in; other stations list both.
+ * Demonstrates use of records and unmodifiable collections.
+ *
+ * @param stationName The name of the station (null if the station is unknown)
+ * @param northbound Departures heading to the northern terminus, in time order
+ * @param southbound Departures heading to the southern terminus, in time order
+ */
+import java.util.List;
+
+public record StationBoard(String stationName, List<ScheduleEntry> northbound, List<ScheduleEntry> southbound) {
+    /** @return true if no train leaves the station */
+    public boolean isEmpty() {
+        return northbound.isEmpty() && southbound.isEmpty();
+    }
+}
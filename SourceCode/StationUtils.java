@@ -9,7 +9,7 @@ package SourceCode;
  * Demonstrates use of static methods and utility functions.
  */
 import java.util.Scanner;
-import java.util.TreeMap;
+import java.util.NavigableMap;
 
 public final class StationUtils {
     /** Private constructor to prevent instantiation */
@@ -22,7 +22,7 @@ public final class StationUtils {
      * @param stationMap Map of station numbers to names
      * @return A valid station number
      */
-    public static int checkStationNumber(Scanner sc, TreeMap<Integer, String> stationMap) {
+    public static int checkStationNumber(Scanner sc, NavigableMap<Integer, String> stationMap) {
         int stationNumber = -1;
         boolean validInput = false;
         while (!validInput) {
@@ -31,7 +31,8 @@ public final class StationUtils {
                 if (stationMap.containsKey(stationNumber)) {
                     validInput = true;
                 } else {
-                    System.out.print("Invalid station number! Please enter a number between 1 - 13: ");
+                    System.out.print("Invalid station number! Please enter a number between "
+                        + stationMap.firstKey() + " - " + stationMap.lastKey() + ": ");
                 }
             } else {
                 System.out.print("Invalid input! Please enter a number: ");
@@ -47,7 +48,7 @@ public final class StationUtils {
      * Displays all stations in the system in a formatted list.
      * @param stationMap Map of station numbers to names
      */
-    public static void printStationList(TreeMap<Integer, String> stationMap) {
+    public static void printStationList(NavigableMap<Integer, String> stationMap) {
         System.out.println("\nList of stations:");
         stationMap.forEach((key, value) -> {
             System.out.println(key + ". " + value);
@@ -61,7 +62,7 @@ public final class StationUtils {
      * @param stationMap Map of station numbers to names
      * @return Selected station number (0 for system-wide)
      */
-    public static int stationSelection(Scanner sc, TreeMap<Integer, String> stationMap) {
+    public static int stationSelection(Scanner sc, NavigableMap<Integer, String> stationMap) {
         int stationNum = -1;
         boolean validInput = false;
         while (!validInput) {
@@ -70,10 +71,10 @@ public final class StationUtils {
                 if (stationNum == 0 || stationMap.containsKey(stationNum)) {
                     validInput = true;
                 } else {
-                    System.out.print("Invalid station number! Please enter a number between 0 - 13: ");
+                    System.out.print("Invalid station number! Please enter a number between 0 - " + stationMap.lastKey() + ": ");
                 }
             } else {
-                System.out.print("Invalid input! Please enter a number between 0 - 13: ");
+                System.out.print("Invalid input! Please enter a number between 0 - " + stationMap.lastKey() + ": ");
                 sc.next();
             }
         }
@@ -87,7 +88,7 @@ public final class StationUtils {
      * @param stationMap Map of station numbers to names
      * @return The name of the station
      */
-    public static String getStationName(int stationNum, TreeMap<Integer, String> stationMap) {
+    public static String getStationName(int stationNum, NavigableMap<Integer, String> stationMap) {
         return stationMap.get(stationNum);
     }
 
@@ -101,29 +102,23 @@ public final class StationUtils {
 
     /**
      * Determines if a train at a given station should be northbound.
-     * Uses station number to determine direction (northbound if not at Bundaran HI).
+     * Uses the first line calling at the station (northbound unless at that line's northern terminus).
      * @param stationName The name of the station
      * @return true if the train should be northbound, false if southbound
      */
     public static boolean checkInitialDirection(String stationName) {
-        Stations stations = new Stations();
-        int stationNum = -1;
-        for (var entry : stations.getStationMap().entrySet()) {
-            if (entry.getValue().equals(stationName)) {
-                stationNum = entry.getKey();
-                break;
-            }
-        }
-        return stationNum < 13; // If not at Bundaran HI (13), train is northbound
+        return isNorthbound(Stations.getInstance().getStationNumber(stationName));
     }
 
     /**
      * Determines if a train at a given station should be northbound.
-     * Uses station number to determine direction (northbound if not at Bundaran HI).
+     * Uses the first line calling at the station (northbound unless at that line's northern terminus).
      * @param stationNum The number of the station
      * @return true if the train should be northbound, false if southbound
      */
     public static boolean isNorthbound(int stationNum) {
-        return stationNum < 13; // If not at Bundaran HI (13), train is northbound
+        Stations stations = Stations.getInstance();
+        if (!stations.isValidStation(stationNum)) return true; // Unknown stations are rejected elsewhere
+        return stations.getDefaultLine(stationNum).getInitialDirection(stationNum);
     }
 }
\ No newline at end of file
@@ -1,116 +1,506 @@
 package SourceCode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
  * Holds static station and travel time data for the MRT system.
  * This class maintains the complete network information including:
- * - Station names and their order
+ * - Station names and their numbers
+ * - The lines of the network and the order of their stations (see Line)
  * - Travel times between stations in both directions
  * - Terminus halt times
- * Demonstrates use of Java Collections, instance variables, and defensive copying for immutability.
+ * A network can have several lines, including branches that share stations and interchanges
+ * such as Dukuh Atas; a station that appears on several lines has one number on all of them.
+ * The network is described in a small text format (see parse) and can be loaded from a file;
+ * without one, the North-South line is used. The network does not change while trains are
+ * scheduled, so a single shared instance is kept (see getInstance) and only hands out
+ * unmodifiable views; a different one can only be installed while the timetable is empty
+ * (see MRTManager.useNetwork).
+ * Station numbers are used as IDs everywhere; names are only looked up for display and input.
+ * Demonstrates use of Java Collections, the singleton pattern, and unmodifiable views for immutability.
  */
-public class Stations {
+public final class Stations {
+    /**
+     * The network used when no other network is loaded: the North-South line,
+     * numbered from Lebak Bulus (1) to Bundaran HI (13).
+     */
+    static final String DEFAULT_NETWORK = """
+        # MRT Jakarta, North-South Line
+        line NS North-South Line
+        halt 3
+        Lebak Bulus
+        Fatmawati | 3 | 3
+        Cipete Raya | 3 | 3
+        Haji Nawi | 2 | 2
+        Blok A | 2 | 2
+        Blok M | 3 | 3
+        ASEAN | 2 | 2
+        Senayan | 2 | 2
+        Istora | 2 | 2
+        Bendungan Hilir | 3 | 3
+        Setiabudi | 2 | 2
+        Dukuh Atas | 2 | 2
+        Bundaran HI | 3 | 3
+        """;
+
+    /** The shared network instance */
+    private static volatile Stations instance = parse(DEFAULT_NETWORK);
+
     /** Map of station numbers to station names */
     private final TreeMap<Integer, String> stationMap;
-    
-    /** Map of station pairs to forward travel times */
+
+    /** Station names indexed by station number, for O(1) number to name lookups */
+    private final String[] stationNames;
+
+    /** Map of station names to station numbers, for O(1) name to number lookups (keyed by nameKey) */
+    private final Map<String, Integer> stationNumbers;
+
+    /** The lines of the network; the first one is the main line */
+    private final List<Line> lines;
+
+    /** The lines calling at each station, indexed by station number */
+    private final List<List<Line>> linesAtStation;
+
+    /** The number of platforms, i.e. of stations counted once per line (see Line.getPlatform) */
+    private final int platformCount;
+
+    /** Read-only views handed out to callers, created once */
+    private final NavigableMap<Integer, String> stationMapView;
+    private final SortedMap<String, Integer> forwardTravelTimeView;
+    private final SortedMap<String, Integer> backwardTravelTimeView;
+
+    /** Map of station pairs to forward travel times, for every segment of every line */
     private final TreeMap<String, Integer> forwardTravelTimeMap;
-    
-    /** Map of station pairs to backward travel times */
-    private final TreeMap<String, Integer> backwardTravelTimeMap;
 
-    /** Time in minutes where trains halt at terminus stations */
-    private final int terminusHaltTime = 3;
+    /** Map of station pairs to backward travel times, for every segment of every line */
+    private final TreeMap<String, Integer> backwardTravelTimeMap;
 
-    /** 
-     * Constructor initializes station and travel time data.
-     * Creates and populates all necessary data structures.
+    /**
+     * Builds the network from parsed line descriptions.
+     * Private because the network is shared; use getInstance(), parse() or load().
+     * @param names Station names in order of their numbers, starting from station 1
+     * @param lineSpecs The lines in the order they were described
      */
-    public Stations() {
+    private Stations(List<String> names, List<LineSpec> lineSpecs) {
         stationMap = new TreeMap<>();
+        stationNames = new String[names.size() + 1];
+        stationNumbers = new HashMap<>();
+        for (int number = 1; number <= names.size(); number++) {
+            stationMap.put(number, names.get(number - 1));
+            stationNames[number] = names.get(number - 1);
+            stationNumbers.put(nameKey(names.get(number - 1)), number);
+        }
+
+        // Build the lines, numbering the platforms line by line
+        List<Line> built = new ArrayList<>();
+        List<List<Line>> atStation = new ArrayList<>();
+        for (int i = 0; i < stationNames.length; i++) atStation.add(new ArrayList<>());
         forwardTravelTimeMap = new TreeMap<>();
         backwardTravelTimeMap = new TreeMap<>();
-        initializeStations();
-        initializeTravelTimes();
-    }
-
-    /** 
-     * Initializes the station map with all stations in the system.
-     * Stations are numbered from 1 to 13, with Lebak Bulus as 1
-     * and Bundaran HI as 13.
-     */
-    private void initializeStations() {
-        stationMap.put(1, "Lebak Bulus");
-        stationMap.put(2, "Fatmawati");
-        stationMap.put(3, "Cipete Raya");
-        stationMap.put(4, "Haji Nawi");
-        stationMap.put(5, "Blok A");
-        stationMap.put(6, "Blok M");
-        stationMap.put(7, "ASEAN");
-        stationMap.put(8, "Senayan");
-        stationMap.put(9, "Istora");
-        stationMap.put(10, "Bendungan Hilir");
-        stationMap.put(11, "Setiabudi");
-        stationMap.put(12, "Dukuh Atas");
-        stationMap.put(13, "Bundaran HI");
-    }
-
-    /** 
-     * Initializes the travel time maps for both directions.
+        int platforms = 1;
+        for (LineSpec spec : lineSpecs) {
+            Line line = new Line(built.size(), spec.code, spec.name, spec.stations(), spec.forward(), spec.backward(),
+                spec.terminusHaltTime, names.size(), platforms);
+            platforms += line.size();
+            built.add(line);
+            for (int p = 0; p < line.size(); p++) atStation.get(line.getStation(p)).add(line);
+            initializeTravelTimes(spec);
+        }
+        if (built.isEmpty()) {
+            throw new IllegalArgumentException("The network has no lines");
+        }
+        lines = List.copyOf(built);
+        List<List<Line>> views = new ArrayList<>();
+        for (List<Line> list : atStation) views.add(List.copyOf(list));
+        linesAtStation = Collections.unmodifiableList(views);
+        platformCount = platforms;
+
+        stationMapView = Collections.unmodifiableNavigableMap(stationMap);
+        forwardTravelTimeView = Collections.unmodifiableSortedMap(forwardTravelTimeMap);
+        backwardTravelTimeView = Collections.unmodifiableSortedMap(backwardTravelTimeMap);
+    }
+
+    /**
+     * @return The shared network instance
+     */
+    public static Stations getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the shared network instance. Only MRTManager calls this, while the timetable is empty.
+     * @param network The network to use from now on
+     */
+    static void setInstance(Stations network) {
+        instance = network;
+    }
+
+    /**
+     * Reads a network description from a file (see parse for the format).
+     * @param file The file to read
+     * @return The network
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the description is invalid
+     */
+    public static Stations load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader, file.getFileName().toString());
+        }
+    }
+
+    /**
+     * Reads a network description. The description lists every line with its stations in order,
+     * from the southern to the northern terminus:
+     * <pre>
+     * # comment
+     * line NS North-South Line
+     * halt 3
+     * Lebak Bulus
+     * Fatmawati | 3 | 3
+     * </pre>
+     * "line" starts a line with its code and name, "halt" sets the minutes trains halt at its termini
+     * (default 3), and every other row is a station, followed by the minutes from the previous station
+     * northbound and back southbound (the second number defaults to the first).
+     * Stations with the same name on several lines are the same station (an interchange).
+     * Stations are numbered in the order they first appear, starting from 1.
+     * @param description The network description
+     * @return The network
+     * @throws IllegalArgumentException if the description is invalid
+     */
+    public static Stations parse(String description) {
+        try {
+            return parse(new BufferedReader(new StringReader(description)), "network");
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown when reading from a string
+        }
+    }
+
+    /**
+     * Parses a network description row by row.
+     * @param reader The description
+     * @param source The name of the description, for error messages
+     * @return The network
+     */
+    private static Stations parse(BufferedReader reader, String source) throws IOException {
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> numbers = new HashMap<>();
+        List<LineSpec> specs = new ArrayList<>();
+        LineSpec current = null;
+        String row;
+        int rowNumber = 0;
+        while ((row = reader.readLine()) != null) {
+            rowNumber++;
+            row = row.strip();
+            if (row.isEmpty() || row.startsWith("#")) continue;
+            String where = source + " line " + rowNumber + ": ";
+
+            String[] words = row.split("\\s+", 3);
+            if (words[0].equals("line")) {
+                if (words.length < 2) throw new IllegalArgumentException(where + "a line needs a code");
+                for (LineSpec spec : specs) {
+                    if (spec.code.equalsIgnoreCase(words[1])) {
+                        throw new IllegalArgumentException(where + "line " + words[1] + " is described twice");
+                    }
+                }
+                current = new LineSpec(words[1], words.length > 2 ? words[2] : words[1]);
+                specs.add(current);
+                continue;
+            }
+            if (current == null) {
+                throw new IllegalArgumentException(where + "expected \"line CODE Name\" before the first station");
+            }
+            if (words[0].equals("halt") && words.length == 2) {
+                current.terminusHaltTime = parseMinutes(words[1], where);
+                continue;
+            }
+
+            // A station, with the minutes from the previous station
+            String[] fields = row.split("\\|");
+            String name = fields[0].strip();
+            if (name.isEmpty()) throw new IllegalArgumentException(where + "missing station name");
+            if (current.names.isEmpty()) {
+                if (fields.length > 1) {
+                    throw new IllegalArgumentException(where + "the first station of a line has no travel time");
+                }
+            } else {
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException(where + "missing the travel time from " + current.names.get(current.names.size() - 1));
+                }
+                int forward = parseMinutes(fields[1], where);
+                current.forward.add(forward);
+                current.backward.add(fields.length > 2 ? parseMinutes(fields[2], where) : forward);
+            }
+            // Names that differ only in case are the same station, spelled as it was first described
+            Integer number = numbers.get(nameKey(name));
+            if (number == null) {
+                names.add(name);
+                number = names.size();
+                numbers.put(nameKey(name), number);
+            }
+            if (current.numbers.contains(number)) {
+                throw new IllegalArgumentException(where + "line " + current.code + " calls at " + name + " twice");
+            }
+            current.names.add(names.get(number - 1));
+            current.numbers.add(number);
+        }
+        for (LineSpec spec : specs) {
+            if (spec.names.size() < 2) {
+                throw new IllegalArgumentException(source + ": line " + spec.code + " needs at least two stations");
+            }
+        }
+        if (names.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(source + ": too many stations");
+        }
+        return new Stations(names, specs);
+    }
+
+    /** Parses a positive number of minutes */
+    private static int parseMinutes(String text, String where) {
+        try {
+            int minutes = Integer.parseInt(text.strip());
+            if (minutes < 0) throw new NumberFormatException();
+            return minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(where + "invalid number of minutes: " + text.strip());
+        }
+    }
+
+    /** A line as read from a network description */
+    private static final class LineSpec {
+        final String code;
+        final String name;
+        final List<String> names = new ArrayList<>();
+        final List<Integer> numbers = new ArrayList<>();
+        final List<Integer> forward = new ArrayList<>();
+        final List<Integer> backward = new ArrayList<>();
+        int terminusHaltTime = 3;
+
+        LineSpec(String code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        int[] stations() { return numbers.stream().mapToInt(Integer::intValue).toArray(); }
+        int[] forward() { return forward.stream().mapToInt(Integer::intValue).toArray(); }
+        int[] backward() { return backward.stream().mapToInt(Integer::intValue).toArray(); }
+    }
+
+    /**
+     * Adds the segments of a line to the travel time maps for both directions.
      * Travel times are stored as minutes between stations.
      * Includes terminus halt times at the end stations.
+     * Segments shared by several lines keep the times of the first line.
+     */
+    private void initializeTravelTimes(LineSpec spec) {
+        int last = spec.numbers.size() - 1;
+        for (int p = 1; p <= last; p++) {
+            int from = spec.numbers.get(p - 1);
+            int to = spec.numbers.get(p);
+            forwardTravelTimeMap.putIfAbsent(from + "-" + to,
+                spec.forward.get(p - 1) + (p == last ? spec.terminusHaltTime : 0));
+            backwardTravelTimeMap.putIfAbsent(to + "-" + from,
+                spec.backward.get(p - 1) + (p == 1 ? spec.terminusHaltTime : 0));
+        }
+    }
+
+    /**
+     * Gets the travel time between two stations in a given direction of travel,
+     * along the first line that calls at both.
+     * Includes the halt at a terminus whenever the trip arrives at one.
+     * If the destination lies behind the train, the train runs to the terminus,
+     * turns around and comes back, so the answer is the sum of both legs.
+     * @param from The number of the station the train leaves
+     * @param to The number of the station the train arrives at
+     * @param northbound The direction the train leaves in
+     * @return The travel time in minutes
+     * @throws IllegalArgumentException if no line calls at both stations
+     */
+    public int getTravelTime(int from, int to, boolean northbound) {
+        return getLineBetween(from, to).getTravelTime(from, to, northbound);
+    }
+
+    /**
+     * Gets the travel time between two stations, travelling towards the destination.
+     * @param from The number of the station the train leaves
+     * @param to The number of the station the train arrives at
+     * @return The travel time in minutes
+     * @throws IllegalArgumentException if no line calls at both stations
+     */
+    public int getTravelTime(int from, int to) {
+        Line line = getLineBetween(from, to);
+        return line.getTravelTime(from, to, line.getPosition(to) >= line.getPosition(from));
+    }
+
+    /** @return The first line that calls at both stations */
+    private Line getLineBetween(int from, int to) {
+        for (Line line : getLinesAt(from)) {
+            if (line.contains(to)) return line;
+        }
+        throw new IllegalArgumentException("No line runs between stations " + from + " and " + to);
+    }
+
+    /**
+     * Gets the number of a station. Names are matched ignoring case, as "blok m" is Blok M.
+     * @param stationName The name of the station
+     * @return The station number, or -1 if there is no station with that name
+     */
+    public int getStationNumber(String stationName) {
+        Integer number = stationName == null ? null : stationNumbers.get(nameKey(stationName));
+        return number == null ? -1 : number;
+    }
+
+    /** @return The key a station name is looked up by, the same for names that differ only in case */
+    private static String nameKey(String stationName) {
+        return stationName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the name of a station.
+     * @param stationNumber The number of the station
+     * @return The station name, or null if there is no station with that number
+     */
+    public String getStationName(int stationNumber) {
+        return isValidStation(stationNumber) ? stationNames[stationNumber] : null;
+    }
+
+    /**
+     * @param stationNumber The number to check
+     * @return true if a station with that number exists
+     */
+    public boolean isValidStation(int stationNumber) {
+        return stationNumber >= 0 && stationNumber < stationNames.length && stationNames[stationNumber] != null;
+    }
+
+    /** @return The number of stations; they are numbered from 1 up to this number */
+    public int getStationCount() {
+        return stationNames.length - 1;
+    }
+
+    /** @return The number of the first station of the main line (its southern terminus) */
+    public int getFirstStationNumber() {
+        return getMainLine().getFirstStation();
+    }
+
+    /** @return The number of the last station of the main line (its northern terminus) */
+    public int getLastStationNumber() {
+        return getMainLine().getLastStation();
+    }
+
+    /** @return The lines of the network, the main line first */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /** @return The main line, i.e. the first line of the network */
+    public Line getMainLine() {
+        return lines.get(0);
+    }
+
+    /**
+     * @param index The position of the line in the network
+     * @return The line
+     * @throws IllegalArgumentException if there is no line at that position
+     */
+    public Line getLine(int index) {
+        if (index < 0 || index >= lines.size()) {
+            throw new IllegalArgumentException("No line number " + index + " in the network");
+        }
+        return lines.get(index);
+    }
+
+    /**
+     * @param code The code of the line, ignoring case
+     * @return The line, or null if there is no line with that code
+     */
+    public Line getLine(String code) {
+        for (Line line : lines) {
+            if (line.getCode().equalsIgnoreCase(code)) return line;
+        }
+        return null;
+    }
+
+    /**
+     * @param stationNumber The number of the station
+     * @return The lines calling at the station, in network order (empty for unknown stations)
+     */
+    public List<Line> getLinesAt(int stationNumber) {
+        return isValidStation(stationNumber) ? linesAtStation.get(stationNumber) : List.of();
+    }
+
+    /**
+     * @param stationNumber The number of the station
+     * @return The first line calling at the station, used when no line is given
+     * @throws IllegalArgumentException if there is no station with that number
+     */
+    public Line getDefaultLine(int stationNumber) {
+        List<Line> atStation = getLinesAt(stationNumber);
+        if (atStation.isEmpty()) {
+            throw new IllegalArgumentException("Invalid station number: " + stationNumber);
+        }
+        return atStation.get(0);
+    }
+
+    /** @return true if more than one line calls at the station */
+    public boolean isInterchange(int stationNumber) {
+        return getLinesAt(stationNumber).size() > 1;
+    }
+
+    /** @return The number of platform numbers in use, including the unused platform 0 */
+    public int getPlatformCount() {
+        return platformCount;
+    }
+
+    /**
+     * @return A read-only view of the station map
+     * This prevents external modification of the internal data structure without copying it
+     */
+    public NavigableMap<Integer, String> getStationMap() {
+        return stationMapView;
+    }
+
+    /**
+     * @return A read-only view of the forward travel time map
+     */
+    public SortedMap<String, Integer> getForwardTravelTimeMap() {
+        return forwardTravelTimeView;
+    }
+
+    /**
+     * @return A read-only view of the backward travel time map
+     */
+    public SortedMap<String, Integer> getBackwardTravelTimeMap() {
+        return backwardTravelTimeView;
+    }
+
+    /**
+     * Writes the network in the format read by parse, so it can be saved and loaded again.
+     * @return The network description
      */
-    private void initializeTravelTimes() {
-        // Forward travel times (northbound)
-        forwardTravelTimeMap.put("1-2", 3);  // Lebak Bulus -> Fatmawati
-        forwardTravelTimeMap.put("2-3", 3);  // Fatmawati -> Cipete Raya
-        forwardTravelTimeMap.put("3-4", 2);  // Cipete Raya -> Haji Nawi
-        forwardTravelTimeMap.put("4-5", 2);  // Haji Nawi -> Blok A
-        forwardTravelTimeMap.put("5-6", 3);  // Blok A -> Blok M
-        forwardTravelTimeMap.put("6-7", 2);  // Blok M -> ASEAN
-        forwardTravelTimeMap.put("7-8", 2);  // ASEAN -> Senayan
-        forwardTravelTimeMap.put("8-9", 2);  // Senayan -> Istora
-        forwardTravelTimeMap.put("9-10", 3); // Istora -> Bendungan Hilir
-        forwardTravelTimeMap.put("10-11", 2); // Bendungan Hilir -> Setiabudi
-        forwardTravelTimeMap.put("11-12", 2); // Setiabudi -> Dukuh Atas
-        forwardTravelTimeMap.put("12-13", 3 + terminusHaltTime); // Dukuh Atas -> Bundaran HI
-
-        // Backward travel times (southbound)
-        backwardTravelTimeMap.put("13-12", 3); // Bundaran HI -> Dukuh Atas
-        backwardTravelTimeMap.put("12-11", 2); // Dukuh Atas -> Setiabudi
-        backwardTravelTimeMap.put("11-10", 2); // Setiabudi -> Bendungan Hilir
-        backwardTravelTimeMap.put("10-9", 3); // Bendungan Hilir -> Istora
-        backwardTravelTimeMap.put("9-8", 2); // Istora -> Senayan
-        backwardTravelTimeMap.put("8-7", 2); // Senayan -> ASEAN
-        backwardTravelTimeMap.put("7-6", 2); // ASEAN -> Blok M
-        backwardTravelTimeMap.put("6-5", 3); // Blok M -> Blok A
-        backwardTravelTimeMap.put("5-4", 2); // Blok A -> Haji Nawi
-        backwardTravelTimeMap.put("4-3", 2); // Haji Nawi -> Cipete Raya
-        backwardTravelTimeMap.put("3-2", 3); // Cipete Raya -> Fatmawati
-        backwardTravelTimeMap.put("2-1", 3 + terminusHaltTime); // Fatmawati -> Lebak Bulus
-    }
-
-    /** 
-     * @return A defensive copy of the station map
-     * This prevents external modification of the internal data structure
-     */
-    public TreeMap<Integer, String> getStationMap() {
-        return new TreeMap<>(stationMap);
-    }
-
-    /** 
-     * @return A defensive copy of the forward travel time map
-     * This prevents external modification of the internal data structure
-     */
-    public TreeMap<String, Integer> getForwardTravelTimeMap() {
-        return new TreeMap<>(forwardTravelTimeMap);
-    }
-
-    /** 
-     * @return A defensive copy of the backward travel time map
-     * This prevents external modification of the internal data structure
-     */
-    public TreeMap<String, Integer> getBackwardTravelTimeMap() {
-        return new TreeMap<>(backwardTravelTimeMap);
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Line line : lines) {
+            sb.append("line ").append(line.getCode()).append(' ').append(line.getName()).append('\n');
+            sb.append("halt ").append(line.getTerminusHaltTime()).append('\n');
+            sb.append(stationNames[line.getStation(0)]).append('\n');
+            for (int p = 1; p < line.size(); p++) {
+                sb.append(stationNames[line.getStation(p)])
+                    .append(" | ").append(line.getSegmentMinutes(p - 1, true))
+                    .append(" | ").append(line.getSegmentMinutes(p - 1, false)).append('\n');
+            }
+        }
+        return sb.toString();
     }
 }
@@ -0,0 +1,774 @@
+package SourceCode;
+/**
+ * Column-oriented store of every stop event in a timetable version.
+ * Each stop is one row spread over parallel primitive arrays (minute of day, station,
+ * direction, trip, stop and delay), sorted by time and then station.
+ * Full scans such as printing all schedules walk these arrays
+ * in order without boxing. Next-departure queries use a second ordering of the rows,
+ * grouped by platform (a station of one line, see Line.getPlatform) and direction,
+ * and binary search it for the first departure. Queries for a station served by several
+ * lines search the group of each line and merge the results.
+ * A row costs 27 bytes, so tens of millions of stop events fit in a few hundred MB.
+ *
+ * A new timetable version does not sort its rows again. It shares the sorted columns of the
+ * version they were built for, marks the rows of the trains changed since then as dead, and
+ * keeps the current rows of those trains in a second, small set of sorted columns; queries
+ * search both and merge. Once the changed rows outgrow a few times the square root of the
+ * store, both are merged into new sorted columns in one linear pass.
+ * Demonstrates use of primitive arrays, sorting and binary search.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+public final class StopEventStore {
+    /** Value stored in the delay column for stops that are not delayed */
+    public static final int NOT_DELAYED = -1;
+
+    /** Direction column values */
+    public static final byte SOUTHBOUND = 0;
+    public static final byte NORTHBOUND = 1;
+
+    /** Above this many rows the sort runs on all cores */
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    /** Changed rows are always kept aside up to this many before being merged into the sorted columns */
+    private static final int MIN_CHANGED_ROWS = 4096;
+
+    private static final int[] NO_ROWS = new int[0];
+    private static final String[] NO_TRAINS = new String[0];
+
+    /** Rows as sorted when the columns were last built or merged; shared with other versions */
+    private final Columns main;
+
+    /** Rows of main belonging to trains changed since main was built, ascending */
+    private final int[] deadRows;
+
+    /** IDs of the trains changed since main was built, sorted */
+    private final String[] changedTrainIDs;
+
+    /**
+     * Current rows of the changed trains, or null if none changed.
+     * Row numbers past the end of main refer to these rows.
+     */
+    private final Columns changed;
+
+    /** Number of live rows */
+    private final int size;
+
+    private StopEventStore(Columns main, int[] deadRows, String[] changedTrainIDs, Columns changed) {
+        this.main = main;
+        this.deadRows = deadRows;
+        this.changedTrainIDs = changedTrainIDs;
+        this.changed = changed;
+        this.size = main.size - deadRows.length + (changed == null ? 0 : changed.size);
+    }
+
+    /**
+     * Builds the store from the live stops of the given trips.
+     * Rows are sorted by minute of day, then station, then train ID.
+     * @param tripCollection The trips to take stops from
+     * @return The new store
+     */
+    public static StopEventStore build(Collection<Trip> tripCollection) {
+        Trip[] trips = tripCollection.toArray(new Trip[0]);
+        Arrays.sort(trips, Comparator.comparing(Trip::getTrainID));
+        return new StopEventStore(Columns.build(trips), NO_ROWS, NO_TRAINS, null);
+    }
+
+    /**
+     * Brings the store up to date with a later timetable version.
+     * The rows of the changed trains are marked dead and their current stops are sorted on their own,
+     * so the cost grows with the trains changed since the columns were last merged rather than with
+     * the whole store. When those rows grow past a few times the square root of the store, everything
+     * is merged into new sorted columns in O(n).
+     * @param trips Every trip of the later version, keyed by train ID
+     * @param changedTrainIDs The trains whose trips were added, changed or removed since this store
+     * @return The store of the later version; this store is not changed
+     */
+    public StopEventStore update(Map<String, Trip> trips, Set<String> changedTrainIDs) {
+        String[] newlyChanged = changedTrainIDs.stream()
+            .filter(trainID -> Arrays.binarySearch(this.changedTrainIDs, trainID) < 0)
+            .sorted()
+            .toArray(String[]::new);
+        if (newlyChanged.length == 0 && changedTrainIDs.isEmpty()) return this;
+
+        // The rows main holds for newly changed trains die; trains changed before are already dead
+        int[] dead = new int[16];
+        int deadCount = 0;
+        for (String trainID : newlyChanged) {
+            int t = main.indexOfTrip(trainID);
+            if (t < 0) continue;
+            Trip trip = main.trips[t];
+            for (int i = 0; i < trip.size(); i++) {
+                if (trip.isCancelled(i)) continue;
+                if (deadCount == dead.length) dead = Arrays.copyOf(dead, deadCount * 2);
+                dead[deadCount++] = main.indexOfStop(t, i);
+            }
+        }
+        Arrays.sort(dead, 0, deadCount);
+        int[] deadRows = mergeSorted(this.deadRows, dead, deadCount);
+
+        // Sort the current stops of every train changed since main was built
+        String[] allChanged = new String[this.changedTrainIDs.length + newlyChanged.length];
+        System.arraycopy(this.changedTrainIDs, 0, allChanged, 0, this.changedTrainIDs.length);
+        System.arraycopy(newlyChanged, 0, allChanged, this.changedTrainIDs.length, newlyChanged.length);
+        Arrays.sort(allChanged);
+        List<Trip> current = new ArrayList<>(allChanged.length);
+        for (String trainID : allChanged) {
+            Trip trip = trips.get(trainID);
+            if (trip != null) current.add(trip);
+        }
+        StopEventStore store = new StopEventStore(main, deadRows, allChanged,
+            Columns.build(current.toArray(new Trip[0])));
+
+        int limit = Math.max(MIN_CHANGED_ROWS, 4 * (int) Math.sqrt(main.size));
+        return deadRows.length + store.changed.size > limit ? store.compact() : store;
+    }
+
+    /** @return The union of a sorted array and the first count values of another, both without duplicates */
+    private static int[] mergeSorted(int[] a, int[] b, int count) {
+        if (count == 0) return a;
+        int[] merged = new int[a.length + count];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            merged[k] = j >= count || (i < a.length && a[i] < b[j]) ? a[i++] : b[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Merges the changed rows into the sorted columns, so the store is a single set of columns
+     * again, exactly as build would have made it. Takes O(n), as no row is sorted again.
+     * @return A store without changed rows (this store if it has none)
+     */
+    StopEventStore compact() {
+        if (changed == null) return this;
+        int[] mainTrips = new int[main.trips.length];
+        int[] changedTrips = new int[changed.trips.length];
+        Trip[] trips = mergeTrips(mainTrips, changedTrips);
+
+        Columns merged = new Columns(trips, size);
+        int m = 0;
+        int c = 0;
+        int dead = 0;
+        for (int r = 0; r < size; r++) {
+            while (dead < deadRows.length && deadRows[dead] == m) {
+                m++;
+                dead++;
+            }
+            boolean fromMain = c >= changed.size
+                || (m < main.size && compareMerged(main, m, mainTrips, changed, c, changedTrips) < 0);
+            Columns from = fromMain ? main : changed;
+            int row = fromMain ? m++ : c++;
+            merged.minutes[r] = from.minutes[row];
+            merged.stations[r] = from.stations[row];
+            merged.directions[r] = from.directions[row];
+            merged.tripIndexes[r] = (fromMain ? mainTrips : changedTrips)[from.tripIndexes[row]];
+            merged.stopIndexes[r] = from.stopIndexes[row];
+            merged.delays[r] = from.delays[row];
+        }
+        merged.groupRows();
+        return new StopEventStore(merged, NO_ROWS, NO_TRAINS, null);
+    }
+
+    /**
+     * Lists the trips of main that did not change and every changed trip, in train ID order.
+     * @param mainTrips Filled with the new index of each trip of main (-1 if it changed)
+     * @param changedTrips Filled with the new index of each changed trip
+     * @return The trips
+     */
+    private Trip[] mergeTrips(int[] mainTrips, int[] changedTrips) {
+        Trip[] trips = new Trip[main.trips.length + changed.trips.length];
+        int count = 0;
+        int m = 0;
+        int c = 0;
+        while (m < main.trips.length || c < changed.trips.length) {
+            if (m < main.trips.length && Arrays.binarySearch(changedTrainIDs, main.trips[m].getTrainID()) >= 0) {
+                mainTrips[m++] = -1;
+            } else if (c >= changed.trips.length
+                    || (m < main.trips.length
+                        && main.trips[m].getTrainID().compareTo(changed.trips[c].getTrainID()) < 0)) {
+                mainTrips[m] = count;
+                trips[count++] = main.trips[m++];
+            } else {
+                changedTrips[c] = count;
+                trips[count++] = changed.trips[c++];
+            }
+        }
+        return Arrays.copyOf(trips, count);
+    }
+
+    /** Compares a row of main with a changed row in store order, using the trip indexes of the merged store */
+    private static int compareMerged(Columns main, int m, int[] mainTrips, Columns changed, int c, int[] changedTrips) {
+        int order = Integer.compare(main.minutes[m], changed.minutes[c]);
+        if (order == 0) order = Integer.compare(main.stations[m], changed.stations[c]);
+        if (order == 0) order = Integer.compare(mainTrips[main.tripIndexes[m]], changedTrips[changed.tripIndexes[c]]);
+        return order;
+    }
+
+    /**
+     * Writes every column, so the store can be loaded again without sorting.
+     * The trips themselves are not written; see Snapshot. Changed rows are merged in first.
+     * @param out The snapshot being written
+     */
+    void writeColumns(Snapshot.Output out) throws IOException {
+        if (changed != null) {
+            compact().writeColumns(out);
+            return;
+        }
+        out.putInt(main.size);
+        out.putInts(main.minutes, main.size);
+        out.putShorts(main.stations, main.size);
+        out.putBytes(main.directions, main.size);
+        out.putInts(main.tripIndexes, main.size);
+        out.putInts(main.stopIndexes, main.size);
+        out.putInts(main.delays, main.size);
+        out.putInts(main.groupedRows, main.groupedRows.length);
+        out.putInt(main.groupStarts.length);
+        out.putInts(main.groupStarts, main.groupStarts.length);
+    }
+
+    /**
+     * Reads columns written by writeColumns.
+     * Each column is copied out of the buffer in one bulk transfer.
+     * @param in The buffer to read from, positioned at the columns
+     * @param trips The trips the rows refer to, sorted by train ID
+     * @return The store
+     */
+    static StopEventStore readColumns(ByteBuffer in, Trip[] trips) {
+        int size = in.getInt();
+        int[] minutes = Snapshot.getInts(in, new int[size]);
+        short[] stations = Snapshot.getShorts(in, new short[size]);
+        byte[] directions = new byte[size];
+        in.get(directions);
+        int[] tripIndexes = Snapshot.getInts(in, new int[size]);
+        int[] stopIndexes = Snapshot.getInts(in, new int[size]);
+        int[] delays = Snapshot.getInts(in, new int[size]);
+        int[] groupedRows = Snapshot.getInts(in, new int[size * 2]);
+        int[] groupStarts = Snapshot.getInts(in, new int[in.getInt()]);
+        return new StopEventStore(new Columns(trips, minutes, stations, directions, tripIndexes, stopIndexes, delays,
+            groupedRows, groupStarts), NO_ROWS, NO_TRAINS, null);
+    }
+
+    /** @return The number of stop events */
+    public int size() { return size; }
+
+    /** @return The trips the rows refer to, sorted by train ID */
+    public List<Trip> getTrips() {
+        if (changed == null) return Collections.unmodifiableList(Arrays.asList(main.trips));
+        Trip[] trips = mergeTrips(new int[main.trips.length], new int[changed.trips.length]);
+        return Collections.unmodifiableList(Arrays.asList(trips));
+    }
+
+    /** @return The departure time of a row in minutes since midnight */
+    public int getMinuteOfDay(int row) {
+        return row < main.size ? main.minutes[row] : changed.minutes[row - main.size];
+    }
+
+    /** @return The departure time of a row in HHMM format */
+    public int getDepartureTime(int row) { return TimeUtils.fromMinuteOfDay(getMinuteOfDay(row)); }
+
+    /** @return The station number of a row */
+    public int getStationNumber(int row) {
+        return row < main.size ? main.stations[row] : changed.stations[row - main.size];
+    }
+
+    /** @return true if the train leaves heading northbound */
+    public boolean isNorthbound(int row) {
+        return (row < main.size ? main.directions[row] : changed.directions[row - main.size]) == NORTHBOUND;
+    }
+
+    /** @return The line of a row */
+    public Line getLine(int row) { return getTrip(row).getLine(); }
+
+    /** @return The trip a row belongs to */
+    public Trip getTrip(int row) {
+        return row < main.size ? main.trips[main.tripIndexes[row]]
+            : changed.trips[changed.tripIndexes[row - main.size]];
+    }
+
+    /** @return The index of the row's stop within its trip */
+    public int getStopIndex(int row) {
+        return row < main.size ? main.stopIndexes[row] : changed.stopIndexes[row - main.size];
+    }
+
+    /** @return true if the row is delayed */
+    public boolean isDelayed(int row) { return getDelay(row) != NOT_DELAYED; }
+
+    /** @return The delay of a row in minutes, or NOT_DELAYED */
+    public int getDelay(int row) {
+        return row < main.size ? main.delays[row] : changed.delays[row - main.size];
+    }
+
+    /** @return A view of the row's stop */
+    public Trip.Stop getStop(int row) { return getTrip(row).stop(getStopIndex(row)); }
+
+    /** @return An immutable description of the row */
+    public ScheduleEntry getEntry(int row) {
+        Trip trip = getTrip(row);
+        int stop = getStopIndex(row);
+        return new ScheduleEntry(trip.getTrainID(), getDepartureTime(row), getStationNumber(row),
+            trip.getStationName(stop), trip.getLineIndex(), isNorthbound(row), trip.getDelay(stop),
+            trip.getDelayReason(stop));
+    }
+
+    /** @return true if a row number refers to a current stop rather than a stop of a changed train's old trip */
+    private boolean isLive(int row) {
+        return row >= main.size || Arrays.binarySearch(deadRows, row) < 0;
+    }
+
+    /** @return One more than the highest row number, including dead rows */
+    private int rowLimit() {
+        return main.size + (changed == null ? 0 : changed.size);
+    }
+
+    /**
+     * Compares two rows in store order: departure time, then station, then train ID.
+     * Rows of the same columns are already in that order, so only their numbers are compared.
+     */
+    private int compareRows(int a, int b) {
+        if ((a < main.size) == (b < main.size)) return Integer.compare(a, b);
+        int order = Integer.compare(getMinuteOfDay(a), getMinuteOfDay(b));
+        if (order == 0) order = Integer.compare(getStationNumber(a), getStationNumber(b));
+        if (order == 0) order = getTrip(a).getTrainID().compareTo(getTrip(b).getTrainID());
+        return order;
+    }
+
+    /**
+     * Lists every departure in one direction, in time order.
+     * The list is a read-only view that creates entries as they are read. On a compact store it
+     * costs nothing to get; while there are changed rows, the row numbers of the sorted and changed
+     * rows are first merged into a new array, which takes O(n) time and memory.
+     * @param northbound The direction to list
+     * @return The departures
+     */
+    public List<ScheduleEntry> getEntries(boolean northbound) {
+        return getNextDepartures(0, northbound, 0, Integer.MAX_VALUE).asList();
+    }
+
+    /**
+     * Read-only list of the entries of a range of rows.
+     * Entries are created when read, so a list over millions of rows takes no extra memory.
+     */
+    private static final class EntryList extends AbstractList<ScheduleEntry> implements RandomAccess {
+        private final StopEventStore store;
+        private final int[] rows;
+        private final int start;
+        private final int end;
+
+        private EntryList(StopEventStore store, int[] rows, int start, int end) {
+            this.store = store;
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public ScheduleEntry get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Entry " + index + " out of " + size());
+            }
+            return store.getEntry(rows[start + index]);
+        }
+
+        @Override
+        public int size() { return end - start; }
+    }
+
+    /**
+     * Finds the next departures from a station in one direction, on every line calling there.
+     * Binary searches the station's rows for the first departure at or after the given time,
+     * so the cost is O(log n + limit) and the rows are not copied. At a station served by
+     * several lines the rows of each line are searched and merged, which copies at most limit rows.
+     * @param stationNumber The station to look at (0 for the whole system)
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time, then station and train ID
+     */
+    public Departures getNextDepartures(int stationNumber, boolean northbound, int fromTime, int limit) {
+        if (stationNumber == 0) {
+            return search(0, northbound, fromTime, limit);
+        }
+        return getNextDepartures(Stations.getInstance().getLinesAt(stationNumber), stationNumber, northbound, fromTime, limit);
+    }
+
+    /**
+     * Finds the next departures from a station in one direction, on some of the lines calling there.
+     * @param lines The lines to look at
+     * @param stationNumber The station to look at
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time, then train ID
+     */
+    public Departures getNextDepartures(List<Line> lines, int stationNumber, boolean northbound, int fromTime, int limit) {
+        if (lines.isEmpty()) {
+            return new Departures(this, NO_ROWS, 0, 0);
+        }
+        if (lines.size() == 1) {
+            return search(lines.get(0).getPlatform(stationNumber), northbound, fromTime, limit);
+        }
+        Departures[] perLine = new Departures[lines.size()];
+        for (int i = 0; i < perLine.length; i++) {
+            perLine[i] = search(lines.get(i).getPlatform(stationNumber), northbound, fromTime, limit);
+        }
+        return merge(perLine, limit);
+    }
+
+    /**
+     * Finds the next departures from a station of one line in one direction.
+     * Binary searches the line's rows at the station, so the cost is O(log n + limit).
+     * @param line The line to look at
+     * @param stationNumber The station to look at
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time, then train ID
+     */
+    public Departures getNextDepartures(Line line, int stationNumber, boolean northbound, int fromTime, int limit) {
+        return search(line.getPlatform(stationNumber), northbound, fromTime, limit);
+    }
+
+    /**
+     * Binary searches the group of a platform for the first departure at or after the given time.
+     * If trains changed since the columns were sorted, the changed rows are searched too and
+     * merged in, skipping the dead rows, which copies at most limit rows.
+     * @param platform The platform to look at (0 for the whole system, -1 for none)
+     */
+    private Departures search(int platform, boolean northbound, int fromTime, int limit) {
+        if (platform < 0) {
+            return new Departures(this, NO_ROWS, 0, 0);
+        }
+        int group = groupOf(platform, northbound ? NORTHBOUND : SOUTHBOUND);
+        int fromMinute = TimeUtils.toMinuteOfDay(fromTime);
+        int low = main.seek(group, fromMinute);
+        int high = main.groupEnd(group);
+        if (changed == null) {
+            int end = (int) Math.min((long) low + Math.max(limit, 0), high);
+            return new Departures(this, main.groupedRows, low, end);
+        }
+
+        int changedLow = changed.seek(group, fromMinute);
+        int changedHigh = changed.groupEnd(group);
+        int[] rows = new int[(int) Math.min(Math.max(limit, 0), (long) (high - low) + (changedHigh - changedLow))];
+        int count = 0;
+        while (count < rows.length) {
+            while (low < high && !isLive(main.groupedRows[low])) low++;
+            int mainRow = low < high ? main.groupedRows[low] : -1;
+            int changedRow = changedLow < changedHigh ? main.size + changed.groupedRows[changedLow] : -1;
+            if (mainRow == -1 && changedRow == -1) break;
+            if (changedRow == -1 || (mainRow != -1 && compareRows(mainRow, changedRow) < 0)) {
+                rows[count++] = mainRow;
+                low++;
+            } else {
+                rows[count++] = changedRow;
+                changedLow++;
+            }
+        }
+        return new Departures(this, rows, 0, count);
+    }
+
+    /**
+     * Merges departures of several lines into one run in store order (departure time, then station and train ID).
+     * Each run is already in store order, so only the first row of each run is compared.
+     */
+    private Departures merge(Departures[] runs, int limit) {
+        long total = 0;
+        for (Departures run : runs) total += run.size();
+        int[] rows = new int[(int) Math.min(total, Math.max(limit, 0))];
+        int[] next = new int[runs.length];
+        for (int i = 0; i < rows.length; i++) {
+            int best = -1;
+            for (int k = 0; k < runs.length; k++) {
+                if (next[k] < runs[k].size()
+                        && (best == -1 || compareRows(runs[k].getRow(next[k]), runs[best].getRow(next[best])) < 0)) {
+                    best = k;
+                }
+            }
+            rows[i] = runs[best].getRow(next[best]++);
+        }
+        return new Departures(this, rows, 0, rows.length);
+    }
+
+    private static int groupOf(int platform, byte direction) {
+        return platform * 2 + direction;
+    }
+
+    /**
+     * Read-only view of a run of next departures.
+     * Reads straight from the store's columns, so a query allocates only this one object.
+     */
+    public static final class Departures {
+        private final StopEventStore store;
+        private final int[] rows;
+        private final int start;
+        private final int end;
+
+        private Departures(StopEventStore store, int[] rows, int start, int end) {
+            this.store = store;
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+        }
+
+        /** @return The number of departures */
+        public int size() { return end - start; }
+
+        /** @return true if there are no departures */
+        public boolean isEmpty() { return start == end; }
+
+        /** @return The store row of a departure */
+        public int getRow(int i) {
+            if (i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException("Departure " + i + " out of " + size());
+            }
+            return rows[start + i];
+        }
+
+        /** @return The departure time of a departure in HHMM format */
+        public int getDepartureTime(int i) { return store.getDepartureTime(getRow(i)); }
+
+        /** @return The ID of the train of a departure */
+        public String getTrainID(int i) { return store.getTrip(getRow(i)).getTrainID(); }
+
+        /** @return The station number of a departure */
+        public int getStationNumber(int i) { return store.getStationNumber(getRow(i)); }
+
+        /** @return true if a departure is delayed */
+        public boolean isDelayed(int i) { return store.isDelayed(getRow(i)); }
+
+        /** @return The delay of a departure in minutes, or NOT_DELAYED */
+        public int getDelay(int i) { return store.getDelay(getRow(i)); }
+
+        /** @return A view of a departure's stop */
+        public Trip.Stop getStop(int i) { return store.getStop(getRow(i)); }
+
+        /** @return An immutable description of a departure */
+        public ScheduleEntry getEntry(int i) { return store.getEntry(getRow(i)); }
+
+        /** @return The departures as a read-only list that creates entries as they are read */
+        public List<ScheduleEntry> asList() {
+            return new EntryList(store, rows, start, end);
+        }
+    }
+
+    /**
+     * One set of sorted columns: the rows of some trips, sorted by minute of day, then station,
+     * then train ID, and grouped by platform and direction.
+     */
+    private static final class Columns {
+        /** Trips referenced by the trip column, sorted by train ID */
+        final Trip[] trips;
+
+        /** Departure time of every row in minutes since midnight */
+        final int[] minutes;
+
+        /** Station number of every row */
+        final short[] stations;
+
+        /** Direction of every row (NORTHBOUND or SOUTHBOUND) */
+        final byte[] directions;
+
+        /** Index into trips of every row */
+        final int[] tripIndexes;
+
+        /** Index of the stop within its trip for every row */
+        final int[] stopIndexes;
+
+        /** Delay of every row in minutes, or NOT_DELAYED */
+        final int[] delays;
+
+        /** Number of rows */
+        final int size;
+
+        /**
+         * Rows grouped by platform and direction, each group in departure order.
+         * The group of a platform and direction starts at groupStarts[groupOf(platform, direction)];
+         * platform 0 holds every row of the direction, for system-wide queries.
+         */
+        final int[] groupedRows;
+
+        /** Start of every group in groupedRows, plus one extra entry marking the end of the last group */
+        int[] groupStarts;
+
+        Columns(Trip[] trips, int[] minutes, short[] stations, byte[] directions, int[] tripIndexes,
+                int[] stopIndexes, int[] delays, int[] groupedRows, int[] groupStarts) {
+            this.trips = trips;
+            this.size = minutes.length;
+            this.minutes = minutes;
+            this.stations = stations;
+            this.directions = directions;
+            this.tripIndexes = tripIndexes;
+            this.stopIndexes = stopIndexes;
+            this.delays = delays;
+            this.groupedRows = groupedRows;
+            this.groupStarts = groupStarts;
+        }
+
+        Columns(Trip[] trips, int size) {
+            this.trips = trips;
+            this.size = size;
+            this.minutes = new int[size];
+            this.stations = new short[size];
+            this.directions = new byte[size];
+            this.tripIndexes = new int[size];
+            this.stopIndexes = new int[size];
+            this.delays = new int[size];
+            this.groupedRows = new int[size * 2];
+        }
+
+        /**
+         * Sorts the live stops of the given trips.
+         * @param trips The trips to take stops from, sorted by train ID
+         * @return The columns
+         */
+        static Columns build(Trip[] trips) {
+            int count = 0;
+            for (Trip trip : trips) {
+                for (int i = 0; i < trip.size(); i++) {
+                    if (!trip.isCancelled(i)) count++;
+                }
+            }
+
+            // Sort keys hold minute (11 bits), station (16 bits) and the row's position before sorting (32 bits).
+            // Positions follow train ID order, so equal times and stations stay ordered by train ID.
+            long[] keys = new long[count];
+            int[] unsortedTrips = new int[count];
+            int[] unsortedStops = new int[count];
+            int row = 0;
+            for (int t = 0; t < trips.length; t++) {
+                Trip trip = trips[t];
+                for (int i = 0; i < trip.size(); i++) {
+                    if (trip.isCancelled(i)) continue;
+                    long minute = TimeUtils.toMinuteOfDay(trip.getTime(i));
+                    keys[row] = minute << 48 | (long) trip.getStationNumber(i) << 32 | row;
+                    unsortedTrips[row] = t;
+                    unsortedStops[row] = i;
+                    row++;
+                }
+            }
+            if (count >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(keys);
+            } else {
+                Arrays.sort(keys);
+            }
+
+            Columns columns = new Columns(trips, count);
+            for (int r = 0; r < count; r++) {
+                int from = (int) keys[r];
+                Trip trip = trips[unsortedTrips[from]];
+                int stop = unsortedStops[from];
+                columns.minutes[r] = (int) (keys[r] >>> 48);
+                columns.stations[r] = (short) trip.getStationNumber(stop);
+                columns.directions[r] = trip.isNorthbound(stop) ? NORTHBOUND : SOUTHBOUND;
+                columns.tripIndexes[r] = unsortedTrips[from];
+                columns.stopIndexes[r] = stop;
+                columns.delays[r] = trip.isDelayed(stop) ? trip.getDelay(stop) : NOT_DELAYED;
+            }
+            columns.groupRows();
+            return columns;
+        }
+
+        /**
+         * Fills groupedRows with a counting sort on platform and direction.
+         * Rows are visited in departure order, so every group comes out in departure order too.
+         */
+        void groupRows() {
+            Stations network = Stations.getInstance();
+            int[] platforms = new int[size];
+            for (int r = 0; r < size; r++) {
+                platforms[r] = network.getLine(trips[tripIndexes[r]].getLineIndex()).getPlatform(stations[r]);
+            }
+            groupStarts = new int[groupOf(network.getPlatformCount() - 1, NORTHBOUND) + 2];
+            for (int r = 0; r < size; r++) {
+                groupStarts[groupOf(0, directions[r]) + 1]++;
+                groupStarts[groupOf(platforms[r], directions[r]) + 1]++;
+            }
+            for (int g = 1; g < groupStarts.length; g++) {
+                groupStarts[g] += groupStarts[g - 1];
+            }
+            int[] next = Arrays.copyOf(groupStarts, groupStarts.length - 1);
+            for (int r = 0; r < size; r++) {
+                groupedRows[next[groupOf(0, directions[r])]++] = r;
+                groupedRows[next[groupOf(platforms[r], directions[r])]++] = r;
+            }
+        }
+
+        /** @return The end of a group in groupedRows (0 if there is no such group) */
+        int groupEnd(int group) {
+            return group + 1 < groupStarts.length ? groupStarts[group + 1] : 0;
+        }
+
+        /** @return The first position of a group in groupedRows departing at or after a minute */
+        int seek(int group, int fromMinute) {
+            if (group + 1 >= groupStarts.length) return 0;
+            int low = groupStarts[group];
+            int high = groupStarts[group + 1];
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (minutes[groupedRows[middle]] < fromMinute) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /** @return The index of a train's trip in trips, or -1 if it has none */
+        int indexOfTrip(String trainID) {
+            int low = 0;
+            int high = trips.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int order = trips[middle].getTrainID().compareTo(trainID);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the row of a live stop by binary search: rows are sorted by minute, station,
+         * trip index and stop index, all of which the stop itself gives.
+         * @return The row of stop i of trips[t]
+         */
+        int indexOfStop(int t, int i) {
+            Trip trip = trips[t];
+            int minute = TimeUtils.toMinuteOfDay(trip.getTime(i));
+            int station = trip.getStationNumber(i);
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int order = Integer.compare(minutes[middle], minute);
+                if (order == 0) order = Integer.compare(stations[middle], station);
+                if (order == 0) order = Integer.compare(tripIndexes[middle], t);
+                if (order == 0) order = Integer.compare(stopIndexes[middle], i);
+                if (order < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -29,6 +29,15 @@ public final class TimeUtils {
         }
     }
 
+    /**
+     * Gets the current time of day on the system clock.
+     * @return The current time in HHMM format (e.g., 1430 for 2:30 PM)
+     */
+    public static int getCurrentTime() {
+        java.time.LocalTime now = java.time.LocalTime.now();
+        return now.getHour() * 100 + now.getMinute();
+    }
+
     /**
      * Validates a time string input and converts it to an integer.
      * @param input The time string to validate
@@ -101,6 +110,26 @@ public final class TimeUtils {
         }
     }
 
+    /**
+     * Converts a time in HHMM format to minutes since midnight.
+     * For example, 0730 becomes 450.
+     * @param time The time in HHMM format
+     * @return The number of minutes since midnight
+     */
+    public static int toMinuteOfDay(int time) {
+        return (time / 100) * 60 + (time % 100);
+    }
+
+    /**
+     * Converts minutes since midnight to a time in HHMM format.
+     * For example, 450 becomes 0730.
+     * @param minuteOfDay The number of minutes since midnight
+     * @return The time in HHMM format
+     */
+    public static int fromMinuteOfDay(int minuteOfDay) {
+        return (minuteOfDay / 60) * 100 + minuteOfDay % 60;
+    }
+
     /**
      * Adds minutes to a time in HHMM format, with proper 24-hour wrap-around.
      * For example, adding 30 minutes to 2350 results in 0020.
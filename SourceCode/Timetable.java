@@ -0,0 +1,506 @@
+package SourceCode;
+/**
+ * An immutable version of the whole timetable.
+ * MRTManager publishes a new version after every change, so a reader holding a version
+ * always sees a consistent timetable and never has to lock. Versions share every trip
+ * that did not change; a version is reclaimed by the garbage collector once no reader holds it.
+ * Demonstrates use of immutability, nested builder classes and Java Collections.
+ */
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+public final class Timetable {
+    /** Column store of every stop, sorted by time and station; only the rows of changed trains are redone */
+    public static final TimetableIndex<StopEventStore> STOP_EVENTS =
+        TimetableIndex.incremental("stopEvents",
+            timetable -> StopEventStore.build(timetable.trips.values()),
+            (base, timetable, changes) -> base.update(timetable.trips, changes.trainIDs()));
+
+    /** Connections of every trip for journey planning, built from the column store */
+    public static final TimetableIndex<JourneyPlanner> JOURNEY_PLANNER =
+        TimetableIndex.of("journeyPlanner", timetable -> JourneyPlanner.build(timetable.getStopEvents()));
+
+    /** Travel-time profiles between every pair of stations; only journeys leaving before the last change are redone */
+    public static final TimetableIndex<TravelTimeProfiles> TRAVEL_TIME_PROFILES =
+        TimetableIndex.incremental("travelTimeProfiles",
+            timetable -> TravelTimeProfiles.build(timetable.getJourneyPlanner()),
+            (base, timetable, changes) -> base.update(timetable.getJourneyPlanner(), changes.untilMinute()));
+
+    /** Delayed stops of every direction; only the changed trains are updated in a copy */
+    public static final TimetableIndex<DelayIndex> DELAYS =
+        TimetableIndex.incremental("delays",
+            timetable -> DelayIndex.build(timetable.trips.values()),
+            (base, timetable, changes) -> base.update(timetable.trips, changes.trainIDs()));
+
+    /** The empty timetable the system starts with */
+    public static final Timetable EMPTY = new Timetable(0, PersistentMap.empty(), 0, new long[0]);
+
+    /**
+     * Changes between two versions, as seen by an index being brought up to date.
+     * Each version adds its own changed trains as one link in front of the changes it follows,
+     * so a run of writes between two reads of an index costs O(1) per write; the train IDs
+     * are only gathered into one set when the index is brought up to date.
+     */
+    public static final class Changes {
+        private final Set<String> changed;
+        private final Changes earlier;
+        private final int untilMinute;
+        private final long size;
+
+        /**
+         * @param trainIDs The trains whose trips were added, changed or removed (not to be modified afterwards)
+         * @param untilMinute The latest departure (in minutes since midnight) of any stop changed, or -1 if none
+         */
+        Changes(Set<String> trainIDs, int untilMinute) {
+            this(trainIDs, null, untilMinute);
+        }
+
+        private Changes(Set<String> changed, Changes earlier, int untilMinute) {
+            this.changed = changed;
+            this.earlier = earlier;
+            this.untilMinute = earlier == null ? untilMinute : Math.max(untilMinute, earlier.untilMinute);
+            this.size = changed.size() + (earlier == null ? 0 : earlier.size);
+        }
+
+        /**
+         * Gathers the changed trains of every version in the chain. Takes O(size).
+         * @return The trains whose trips were added, changed or removed
+         */
+        public Set<String> trainIDs() {
+            if (earlier == null) return Collections.unmodifiableSet(changed);
+            Set<String> trainIDs = new HashSet<>();
+            for (Changes link = this; link != null; link = link.earlier) {
+                trainIDs.addAll(link.changed);
+            }
+            return Collections.unmodifiableSet(trainIDs);
+        }
+
+        /** @return The latest departure (in minutes since midnight) of any stop changed, or -1 if none */
+        public int untilMinute() { return untilMinute; }
+
+        /** @return The number of changed trains summed over every version, counting a train once per version */
+        long size() { return size; }
+
+        /** @return The changes of both, as if made by one version; shares this chain instead of copying it */
+        Changes merge(Changes later) {
+            return new Changes(later.changed, this, later.untilMinute);
+        }
+    }
+
+    /**
+     * The index of one TimetableIndex in a version. Until the index is built, an incremental
+     * index may hold the index of an earlier version and the changes made since then.
+     * Building is guarded by the slot's lock, so each index of a version is built once.
+     */
+    private static final class Slot {
+        volatile Object value;
+        Object base;
+        Changes changes;
+    }
+
+    /** Version number, increased by one for every published change */
+    private final long version;
+
+    /** Maps train ID to its (frozen) trip; shares every unchanged entry with the previous version */
+    private final PersistentMap<String, Trip> trips;
+
+    /** One slot per registered index, grown when an index is registered after the version was built */
+    private volatile Slot[] slots;
+
+    /**
+     * Version that last changed the departures of each station and direction,
+     * indexed by station number * 2 + (1 if northbound). Caches built from a station's
+     * departures stay valid for as long as its stamp does not change.
+     */
+    private final long[] stationStamps;
+
+    /** Number of stops of every trip, including cancelled ones; kept up to date by the builder */
+    private final long stopCount;
+
+    /**
+     * Constructor only wraps the frozen trips; every index is built the first time it is needed.
+     */
+    private Timetable(long version, PersistentMap<String, Trip> trips, long stopCount, long[] stationStamps) {
+        this.version = version;
+        this.trips = trips;
+        this.stopCount = stopCount;
+        this.stationStamps = stationStamps;
+        this.slots = newSlots(new Slot[0], TimetableIndex.count());
+    }
+
+    /**
+     * Recreates a timetable from trips and a column store loaded from a snapshot.
+     * Every station is stamped with the new version, since any of them may differ from before.
+     * @param version The version number to give the timetable
+     * @param trips The frozen trips, keyed by train ID
+     * @param stopEvents The column store of the trips
+     * @return The timetable
+     */
+    static Timetable restore(long version, Map<String, Trip> trips, StopEventStore stopEvents) {
+        long[] stamps = new long[stampSlots()];
+        Arrays.fill(stamps, version);
+        long stopCount = 0;
+        for (Trip trip : trips.values()) {
+            stopCount += trip.size();
+        }
+        Timetable timetable = new Timetable(version, PersistentMap.copyOf(trips), stopCount, stamps);
+        timetable.slot(STOP_EVENTS).value = stopEvents;
+        return timetable;
+    }
+
+    private static Slot[] newSlots(Slot[] slots, int count) {
+        Slot[] grown = Arrays.copyOf(slots, Math.max(slots.length, count));
+        for (int i = slots.length; i < grown.length; i++) {
+            grown[i] = new Slot();
+        }
+        return grown;
+    }
+
+    private Slot slot(TimetableIndex<?> index) {
+        Slot[] current = slots;
+        if (index.getId() >= current.length) {
+            synchronized (this) {
+                current = slots;
+                if (index.getId() >= current.length) {
+                    current = newSlots(current, TimetableIndex.count());
+                    slots = current;
+                }
+            }
+        }
+        return current[index.getId()];
+    }
+
+    private static Trip.Stop earlier(Trip.Stop a, Trip.Stop b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Trip.BY_TIME.compare(b, a) < 0 ? b : a;
+    }
+
+    /** @return The version number of this timetable */
+    public long getVersion() { return version; }
+
+    /**
+     * Gets the version that last changed the departures of a station in one direction.
+     * @param stationNumber The station to look at
+     * @param northbound The direction to look at
+     * @return The version number, or 0 if the station has never changed (or does not exist)
+     */
+    public long getStationStamp(int stationNumber, boolean northbound) {
+        int slot = stampSlot(stationNumber, northbound);
+        return slot >= 0 && slot < stationStamps.length ? stationStamps[slot] : 0;
+    }
+
+    /** @return The number of stamps needed for every station of the current network */
+    private static int stampSlots() {
+        return (Stations.getInstance().getStationCount() + 1) * 2;
+    }
+
+    private static int stampSlot(int stationNumber, boolean northbound) {
+        return stationNumber * 2 + (northbound ? 1 : 0);
+    }
+
+    /** @return A read-only view of every trip, keyed by train ID */
+    public Map<String, Trip> getTrips() { return trips; }
+
+    /** @return The trip of a train, or null if not found */
+    public Trip getTrip(String trainID) { return trips.get(trainID); }
+
+    /** @return The number of stops of every trip, including cancelled ones */
+    public long getStopCount() { return stopCount; }
+
+    /** @return true if no train has any stop */
+    public boolean isEmpty() { return getStopEvents().size() == 0; }
+
+    /**
+     * Gets an index of this version.
+     * Built on first use and then shared by every reader of the version. An incremental index
+     * is brought up to date from the latest earlier version that had it, if any.
+     * @param index The index to get
+     * @return The index of this version
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(TimetableIndex<T> index) {
+        Slot slot = slot(index);
+        Object value = slot.value;
+        if (value == null) {
+            synchronized (slot) {
+                value = slot.value;
+                if (value == null) {
+                    value = slot.base == null
+                        ? index.build(this)
+                        : index.update((T) slot.base, this, slot.changes);
+                    slot.value = value;
+                    slot.base = null;
+                    slot.changes = null;
+                }
+            }
+        }
+        return (T) value;
+    }
+
+    /** @return The stop events of this version, sorted by time and station */
+    public StopEventStore getStopEvents() { return get(STOP_EVENTS); }
+
+    /** @return The planner over every connection of this version */
+    public JourneyPlanner getJourneyPlanner() { return get(JOURNEY_PLANNER); }
+
+    /** @return The travel-time profiles between every pair of stations */
+    public TravelTimeProfiles getTravelTimeProfiles() { return get(TRAVEL_TIME_PROFILES); }
+
+    /** @return The delayed stops, most delayed first in each direction */
+    public DelayIndex getDelayIndex() { return get(DELAYS); }
+
+    /** @return The earliest stop in the system (ties broken by train ID), or null if there are none */
+    public Trip.Stop getEarliestTrain() {
+        return earlier(getEarliestNorthboundTrain(), getEarliestSouthboundTrain());
+    }
+
+    /**
+     * Seeks the earliest northbound stop in the column store. Takes O(log n).
+     * @return The earliest northbound stop in the system (ties broken by station, then train ID), or null if there are none
+     */
+    public Trip.Stop getEarliestNorthboundTrain() { return findNextStop(0, true, 0); }
+
+    /**
+     * Seeks the earliest southbound stop in the column store. Takes O(log n).
+     * @return The earliest southbound stop in the system (ties broken by station, then train ID), or null if there are none
+     */
+    public Trip.Stop getEarliestSouthboundTrain() { return findNextStop(0, false, 0); }
+
+    /**
+     * Finds the stop of a train departing at the given time.
+     * @return The stop if found, null otherwise
+     */
+    public Trip.Stop findStop(String trainID, int departureTime) {
+        Trip trip = trips.get(trainID);
+        if (trip == null) return null;
+        int index = trip.indexOf(departureTime);
+        return index == -1 ? null : trip.stop(index);
+    }
+
+    /**
+     * Finds the first stop departing at or after a given time.
+     * @param stationNumber The station to look at (0 for the whole system)
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @return The earliest matching stop (ties broken by station, then train ID), or null if none
+     */
+    public Trip.Stop findNextStop(int stationNumber, boolean northbound, int fromTime) {
+        StopEventStore.Departures next = getNextDepartures(stationNumber, northbound, fromTime, 1);
+        return next.isEmpty() ? null : next.getStop(0);
+    }
+
+    /**
+     * Finds the next departures from a station in one direction.
+     * Takes O(log n + limit). The first query of a new version also brings the column store up to date,
+     * which costs in proportion to the trains changed since the store was last sorted, not to the
+     * whole timetable (see StopEventStore.update).
+     * @param stationNumber The station to look at (0 for the whole system)
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time
+     */
+    public StopEventStore.Departures getNextDepartures(int stationNumber, boolean northbound, int fromTime, int limit) {
+        return getStopEvents().getNextDepartures(stationNumber, northbound, fromTime, limit);
+    }
+
+    /**
+     * Finds the next departures of one line from a station in one direction.
+     * Takes O(log n + limit), plus bringing the column store up to date on the first query of a version.
+     * @param line The line to look at
+     * @param stationNumber The station to look at
+     * @param northbound The direction of travel to look for
+     * @param fromTime The earliest departure time to accept in HHMM format
+     * @param limit The maximum number of departures to return
+     * @return The departures in order of departure time
+     */
+    public StopEventStore.Departures getNextDepartures(Line line, int stationNumber, boolean northbound, int fromTime,
+                                                       int limit) {
+        return getStopEvents().getNextDepartures(line, stationNumber, northbound, fromTime, limit);
+    }
+
+    /**
+     * @return A builder for the next version, starting from this one
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Collects changes for the next timetable version.
+     * Trips are copied the first time they are edited, so the published version is never touched.
+     * The trip map is edited in place of a copy, so a change costs in proportion to the trips it touches.
+     * A builder is only used by the single writer holding MRTManager's write lock.
+     */
+    public static final class Builder {
+        private final Timetable base;
+        private final PersistentMap.Editor<String, Trip> trips;
+        private final Set<Trip> editable = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<String> changedTrainIDs = new HashSet<>();
+        private boolean changed = false;
+
+        private Builder(Timetable base) {
+            this.base = base;
+            this.trips = base.trips.edit();
+        }
+
+        /** @return The current trip of a train (not to be modified), or null if not found */
+        public Trip getTrip(String trainID) {
+            return trips.get(trainID);
+        }
+
+        /** @return The ID of every train in the version being built */
+        public Set<String> getTrainIDs() {
+            return Collections.unmodifiableSet(trips.keySet());
+        }
+
+        /** @return Every trip of the version being built (not to be modified) */
+        public Collection<Trip> getTrips() {
+            return Collections.unmodifiableCollection(trips.values());
+        }
+
+        /**
+         * Gets a trip that may be changed, copying the published one the first time.
+         * @param trainID The ID of the train
+         * @return The editable trip, or null if the train has no trip
+         */
+        public Trip editTrip(String trainID) {
+            Trip trip = trips.get(trainID);
+            if (trip == null) return null;
+            if (!editable.contains(trip)) {
+                trip = trip.copy();
+                trips.put(trainID, trip);
+                editable.add(trip);
+            }
+            changedTrainIDs.add(trainID);
+            changed = true;
+            return trip;
+        }
+
+        /**
+         * Gets a trip that may be changed, creating an empty one if the train has none.
+         * @param trainID The ID of the train
+         * @return The editable trip
+         */
+        public Trip editOrCreateTrip(String trainID) {
+            if (!trips.containsKey(trainID)) {
+                putTrip(new Trip(trainID));
+            }
+            return editTrip(trainID);
+        }
+
+        /**
+         * Adds a trip, replacing any trip of the same train.
+         * @param trip The trip to add
+         */
+        public void putTrip(Trip trip) {
+            trips.put(trip.getTrainID(), trip);
+            if (!trip.isFrozen()) editable.add(trip);
+            changedTrainIDs.add(trip.getTrainID());
+            changed = true;
+        }
+
+        /**
+         * Removes the trip of a train.
+         * @param trainID The ID of the train
+         */
+        public void removeTrip(String trainID) {
+            if (trips.remove(trainID) != null) {
+                changedTrainIDs.add(trainID);
+                changed = true;
+            }
+        }
+
+        /**
+         * Freezes every changed trip and creates the new version.
+         * Stamps every station and direction whose departures changed with the new version number.
+         * @return The new version, or the base version if nothing changed
+         */
+        public Timetable build() {
+            if (!changed) return base;
+            for (Trip trip : editable) {
+                trip.freeze();
+            }
+            long version = base.version + 1;
+            long[] stamps = Arrays.copyOf(base.stationStamps, Math.max(base.stationStamps.length, stampSlots()));
+            int changedUntil = -1;
+            long stopCount = base.stopCount;
+            for (String trainID : changedTrainIDs) {
+                Trip before = base.trips.get(trainID);
+                Trip after = trips.get(trainID);
+                changedUntil = Math.max(changedUntil, stampChangedStops(before, after, stamps, version));
+                stopCount += (after == null ? 0 : after.size()) - (before == null ? 0 : before.size());
+            }
+            Timetable timetable = new Timetable(version, trips.toMap(), stopCount, stamps);
+
+            // Let the new version update the latest incremental indexes instead of building them from scratch
+            Changes changes = new Changes(changedTrainIDs, changedUntil);
+            Slot[] baseSlots = base.slots;
+            for (int i = 0; i < baseSlots.length; i++) {
+                if (!TimetableIndex.get(i).isIncremental()) continue;
+                Slot from = baseSlots[i];
+                Slot to = timetable.slots[i];
+                synchronized (from) {
+                    if (from.value != null) {
+                        to.base = from.value;
+                        to.changes = changes;
+                    } else if (from.base != null) {
+                        // Once more trains changed than the version has, updating is no cheaper than
+                        // building the index again, so let go of the base and the chain of changes
+                        Changes merged = from.changes.merge(changes);
+                        if (merged.size() <= Math.max(trips.size(), 1)) {
+                            to.base = from.base;
+                            to.changes = merged;
+                        }
+                    }
+                }
+            }
+            return timetable;
+        }
+
+        /**
+         * Stamps the stations of every stop that differs between the old and new trip of a train.
+         * Stops keep their index when edited, so stops are compared index by index.
+         * @return The latest departure of a changed stop in minutes since midnight, or -1 if none changed
+         */
+        private static int stampChangedStops(Trip before, Trip after, long[] stamps, long version) {
+            int beforeSize = before == null ? 0 : before.size();
+            int afterSize = after == null ? 0 : after.size();
+            int changedUntil = -1;
+            for (int i = 0; i < Math.max(beforeSize, afterSize); i++) {
+                boolean inBefore = i < beforeSize && !before.isCancelled(i);
+                boolean inAfter = i < afterSize && !after.isCancelled(i);
+                if (inBefore && inAfter && sameStop(before, after, i)) continue;
+                if (inBefore) {
+                    stamp(stamps, before.getStationNumber(i), before.isNorthbound(i), version);
+                    changedUntil = Math.max(changedUntil, TimeUtils.toMinuteOfDay(before.getTime(i)));
+                }
+                if (inAfter) {
+                    stamp(stamps, after.getStationNumber(i), after.isNorthbound(i), version);
+                    changedUntil = Math.max(changedUntil, TimeUtils.toMinuteOfDay(after.getTime(i)));
+                }
+            }
+            return changedUntil;
+        }
+
+        private static boolean sameStop(Trip before, Trip after, int i) {
+            return before.getTime(i) == after.getTime(i)
+                && before.getStationNumber(i) == after.getStationNumber(i)
+                && before.isNorthbound(i) == after.isNorthbound(i)
+                && before.getDelay(i) == after.getDelay(i)
+                && Objects.equals(before.getDelayReason(i), after.getDelayReason(i));
+        }
+
+        private static void stamp(long[] stamps, int stationNumber, boolean northbound, long version) {
+            int slot = stampSlot(stationNumber, northbound);
+            if (slot >= 0 && slot < stamps.length) stamps[slot] = version;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package SourceCode;
+/**
+ * Java Flight Recorder events of the timetable changes MRTManager makes: delays, reschedules,
+ * cancellations, bulk loads and simulations. Each event spans the whole change, including the
+ * wait for the write lock and publishing the new version, so a slow change in a recording
+ * lines up with the GC pauses and lock contention around it. Every event also carries the
+ * version it published and the size of its trip index. A change made inside a batch is recorded
+ * once the batch is published, with the batch's version; one made as part of another recorded
+ * change (e.g., the trips added by a simulation) is not recorded on its own.
+ *
+ * Events are disabled unless a recording enables them; the bundled dimsum.jfc does, on top of
+ * the JDK's default settings:
+ *   java -XX:StartFlightRecording:settings=default,settings=SourceCode/dimsum.jfc,filename=dimsum.jfr ...
+ * While no recording enables them, an event costs a small allocation and a few field writes.
+ * Demonstrates use of the jdk.jfr API, annotations and inheritance.
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+final class TimetableEvents {
+    private TimetableEvents() {} // Prevent instantiation
+
+    /** Fields shared by every timetable change */
+    @Category({"DIMSUM", "Timetable"})
+    @StackTrace(false)
+    abstract static class Change extends Event {
+        @Label("Timetable Version")
+        @Description("Version published after the change")
+        long version;
+
+        @Label("Trips")
+        @Description("Trips in the trip index after the change")
+        int trips;
+
+        @Label("Stops")
+        @Description("Stops of every trip after the change, including cancelled ones")
+        long stops;
+
+        /** Version the change was published in; set by MRTManager, null until then */
+        private transient Timetable published;
+
+        /** Whether the change has finished */
+        private transient boolean finished;
+
+        /**
+         * Ends the event once the change has finished. It is committed as soon as it has also
+         * been published, which for a change made inside a batch is when the batch is.
+         */
+        void finish() {
+            end();
+            finished = true;
+            if (published != null) commitIfWanted();
+        }
+
+        /**
+         * Sets the version the change was published in, committing the event if it has finished.
+         * @param timetable The published version
+         */
+        void publish(Timetable timetable) {
+            published = timetable;
+            if (finished) commitIfWanted();
+        }
+
+        /** Commits the event if the recording wants it, reading the index sizes only then */
+        private void commitIfWanted() {
+            if (!shouldCommit()) return;
+            version = published.getVersion();
+            trips = published.getTrips().size();
+            stops = published.getStopCount();
+            commit();
+        }
+    }
+
+    @Name("dimsum.DelayTrain")
+    @Label("Delay Train")
+    @Description("A train delayed from one stop on")
+    static final class DelayTrain extends Change {
+        @Label("Train ID")
+        String trainID;
+
+        @Label("Departure Time")
+        @Description("Departure before the delay, in HHMM format")
+        int departureTime;
+
+        @Label("Station")
+        @Description("Station of the delayed stop, or null if the train was not found")
+        String station;
+
+        @Label("Delay Minutes")
+        int delayMinutes;
+
+        @Label("Found")
+        boolean found;
+    }
+
+    @Name("dimsum.RescheduleTrain")
+    @Label("Reschedule Train")
+    @Description("A stop of a train moved to a new time and station")
+    static final class RescheduleTrain extends Change {
+        @Label("Train ID")
+        String trainID;
+
+        @Label("Old Departure Time")
+        int oldDepartureTime;
+
+        @Label("New Departure Time")
+        int newDepartureTime;
+
+        @Label("Old Station")
+        @Description("Station of the stop before the change, or null if the train was not found")
+        String oldStation;
+
+        @Label("Station")
+        @Description("Station of the stop after the change")
+        String station;
+
+        @Label("Found")
+        boolean found;
+    }
+
+    @Name("dimsum.CancelTrain")
+    @Label("Cancel Train")
+    @Description("A stop of a train cancelled")
+    static final class CancelTrain extends Change {
+        @Label("Train ID")
+        String trainID;
+
+        @Label("Departure Time")
+        int departureTime;
+
+        @Label("Station")
+        @Description("Station of the cancelled stop, or null if the train was not found")
+        String station;
+
+        @Label("Trip Removed")
+        @Description("True if the train had no stops left and was removed")
+        boolean tripRemoved;
+
+        @Label("Found")
+        boolean found;
+    }
+
+    @Name("dimsum.BulkLoad")
+    @Label("Bulk Load")
+    @Description("Many trains or trips added as one change, e.g. a generated timetable or a GTFS import")
+    static final class BulkLoad extends Change {
+        @Label("Operation")
+        @Description("addTrains or addTrips")
+        String operation;
+
+        @Label("Count")
+        @Description("Trains or trips loaded")
+        int count;
+    }
+
+    @Name("dimsum.SimulateTrains")
+    @Label("Simulate Trains")
+    @Description("Every train simulated until closing time")
+    static final class SimulateTrains extends Change {
+        @Label("Closing Time")
+        int closingTime;
+
+        @Label("Parallel")
+        boolean parallel;
+
+        @Label("Journeys")
+        @Description("Trips simulated")
+        int journeys;
+    }
+}
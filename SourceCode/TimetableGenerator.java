@@ -0,0 +1,115 @@
+package SourceCode;
+/**
+ * Generates a full day's timetable for the whole network from a service plan.
+ * The plan is run on every line. Every departure in the plan becomes one trip that leaves
+ * a terminus of its line and calls at every station up to the last one before the opposite
+ * terminus; the opposite terminus is where the trips of the other direction start.
+ * Train IDs are handed out line by line in departure order, continuing after the highest
+ * ID already in the system, so generated trains never replace trains added by other means.
+ * Generated trips are marked as such, and generating again replaces them: a new plan takes the
+ * place of the old one instead of running alongside it.
+ * Demonstrates use of static methods, parallel streams and arrays.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public final class TimetableGenerator {
+    /** Minutes in a day; runs stop before midnight */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** Private constructor to prevent instantiation */
+    private TimetableGenerator() {}
+
+    /**
+     * Builds the trips of every departure in a plan on every line of a network.
+     * @param plan The service plan to follow
+     * @param stations The network to run on
+     * @param firstTrainNumber The number of the first train ID to hand out (e.g., 1 for TS0001)
+     * @return The generated trips, line by line, each line's ordered by departure time from their terminus
+     * @throws IllegalArgumentException if the plan needs more train IDs than are left
+     */
+    public static List<Trip> generate(ServicePlan plan, Stations stations, int firstTrainNumber) {
+        List<Trip> trips = new ArrayList<>();
+        for (Line line : stations.getLines()) {
+            trips.addAll(generate(plan, line, firstTrainNumber + trips.size()));
+        }
+        return trips;
+    }
+
+    /**
+     * Builds the trips of every departure in a plan on one line.
+     * The trips are independent of each other, so they are built in parallel.
+     * @param plan The service plan to follow
+     * @param line The line to run on
+     * @param firstTrainNumber The number of the first train ID to hand out (e.g., 1 for TS0001)
+     * @return The generated trips, ordered by departure time from their terminus
+     * @throws IllegalArgumentException if the plan needs more train IDs than are left
+     */
+    public static List<Trip> generate(ServicePlan plan, Line line, int firstTrainNumber) {
+        int[] north = plan.getDepartureMinutes(true);
+        int[] south = plan.getDepartureMinutes(false);
+        int total = north.length + south.length;
+        TrainUtils.checkTrainNumbersAvailable(firstTrainNumber, total);
+
+        // Merge both directions by departure time (northbound first on ties) so IDs follow departure order
+        int[] minutes = new int[total];
+        boolean[] northbound = new boolean[total];
+        int n = 0;
+        int s = 0;
+        for (int i = 0; i < total; i++) {
+            boolean takeNorth = s == south.length || (n < north.length && north[n] <= south[s]);
+            minutes[i] = takeNorth ? north[n++] : south[s++];
+            northbound[i] = takeNorth;
+        }
+
+        Trip[] trips = new Trip[total];
+        IntStream.range(0, total).parallel().forEach(i ->
+            trips[i] = buildRun(TrainUtils.toTrainId(firstTrainNumber + i), minutes[i], northbound[i], line));
+        return Arrays.asList(trips);
+    }
+
+    /**
+     * Generates the trips of a plan and loads them in place of any trips generated before.
+     * The old trips are removed and the new ones added in one batch, so readers see either the
+     * old plan or the new one. IDs start after the highest train ID left once the old trips are
+     * removed; no other change can be published between choosing the IDs and adding the trips.
+     * @param plan The service plan to follow
+     * @return The number of trips added
+     */
+    public static int generateAndLoad(ServicePlan plan) {
+        int[] added = new int[1];
+        MRTManager.runBatch(() -> {
+            MRTManager.removeGeneratedTrips();
+            int firstTrainNumber = MRTManager.nextFreeTrainNumber();
+            List<Trip> trips = generate(plan, Stations.getInstance(), firstTrainNumber);
+            MRTManager.addTrips(trips);
+            added[0] = trips.size();
+        });
+        return added[0];
+    }
+
+    /**
+     * Builds one run from a terminus towards the opposite terminus.
+     * @param trainID The ID of the train
+     * @param departureMinute Departure from the terminus in minutes since midnight
+     * @param northbound The direction of the run
+     * @param line The line to run on
+     * @return The trip of the run
+     */
+    private static Trip buildRun(String trainID, int departureMinute, boolean northbound, Line line) {
+        int origin = line.getTerminus(!northbound);
+        int terminus = line.getTerminus(northbound);
+
+        Trip trip = new Trip(trainID, line.getIndex());
+        for (int station = origin; station != terminus; station = line.getNextStation(station, northbound)) {
+            int minute = departureMinute + line.getTravelTime(origin, station, northbound);
+            if (minute >= MINUTES_PER_DAY) break;
+            trip.addStop(TimeUtils.fromMinuteOfDay(minute), station, northbound);
+        }
+        trip.markGenerated();
+        trip.trimToSize();
+        return trip;
+    }
+}
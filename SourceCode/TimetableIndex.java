@@ -0,0 +1,110 @@
+package SourceCode;
+/**
+ * A secondary index of the timetable, derived from the trips of a version.
+ * The trips, keyed by train ID, are the only data a version holds; every other way of looking
+ * at them (by time, by station and direction, by delay, as journey connections) is an index
+ * registered here once and then maintained by Timetable for every version:
+ * - built the first time a reader asks a version for it, and then shared by every reader;
+ * - always derived from the version asked, so all indexes of a version agree with each other
+ *   and with its trips, however many changes were published in between;
+ * - if the index can be updated, built from the nearest earlier version that had it, with
+ *   every change published since merged into one Timetable.Changes.
+ * Adding a query index is one constant:
+ *   static final TimetableIndex<MyIndex> MY_INDEX = TimetableIndex.of("myIndex", MyIndex::build);
+ * and timetable.get(MY_INDEX) in the query.
+ * Demonstrates use of generics, functional interfaces and a copy-on-write registry.
+ */
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+public final class TimetableIndex<T> {
+    /**
+     * Brings an index of an earlier version up to date.
+     * @param <T> The type of the index
+     */
+    @FunctionalInterface
+    public interface Updater<T> {
+        /**
+         * @param base The index of an earlier version (not to be modified)
+         * @param timetable The version to index
+         * @param changes Every change published between the two versions
+         * @return The index of the version
+         */
+        T update(T base, Timetable timetable, Timetable.Changes changes);
+    }
+
+    /** Every index registered so far, in order of id */
+    private static final List<TimetableIndex<?>> registered = new CopyOnWriteArrayList<>();
+
+    private final int id;
+    private final String name;
+    private final Function<Timetable, T> builder;
+    private final Updater<T> updater;
+
+    private TimetableIndex(String name, Function<Timetable, T> builder, Updater<T> updater) {
+        this.name = Objects.requireNonNull(name);
+        this.builder = Objects.requireNonNull(builder);
+        this.updater = updater;
+        synchronized (registered) {
+            this.id = registered.size();
+            registered.add(this);
+        }
+    }
+
+    /**
+     * Registers an index that is built from scratch for every version that needs it.
+     * @param name The name of the index, for messages and metrics
+     * @param builder Builds the index of a version
+     * @return The index, to pass to Timetable.get
+     */
+    public static <T> TimetableIndex<T> of(String name, Function<Timetable, T> builder) {
+        return new TimetableIndex<>(name, builder, null);
+    }
+
+    /**
+     * Registers an index that can be brought up to date from an earlier version's.
+     * @param name The name of the index, for messages and metrics
+     * @param builder Builds the index of a version from scratch, if no earlier version has it
+     * @param updater Updates an earlier version's index
+     * @return The index, to pass to Timetable.get
+     */
+    public static <T> TimetableIndex<T> incremental(String name, Function<Timetable, T> builder, Updater<T> updater) {
+        return new TimetableIndex<>(name, builder, Objects.requireNonNull(updater));
+    }
+
+    /** @return The number of indexes registered so far */
+    static int count() {
+        return registered.size();
+    }
+
+    /** @return The index registered with an id */
+    static TimetableIndex<?> get(int id) {
+        return registered.get(id);
+    }
+
+    /** @return The slot of the index in every version */
+    int getId() { return id; }
+
+    /** @return The name of the index */
+    public String getName() { return name; }
+
+    /** @return true if the index can be updated from an earlier version's */
+    public boolean isIncremental() { return updater != null; }
+
+    /** Builds the index of a version from scratch */
+    T build(Timetable timetable) {
+        return builder.apply(timetable);
+    }
+
+    /** Updates an earlier version's index */
+    T update(T base, Timetable timetable, Timetable.Changes changes) {
+        return updater.update(base, timetable, changes);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
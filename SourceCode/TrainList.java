@@ -0,0 +1,22 @@
+package SourceCode;
+/**
+ * Immutable list of departures across the whole system, split by direction.
+ * Returned by the query methods that list every train; each direction is in time order.
+ * Demonstrates use of records and unmodifiable collections.
+ *
+ * @param northbound Departures heading to the northern terminus
+ * @param southbound Departures heading to the southern terminus
+ */
+import java.util.List;
+
+public record TrainList(List<ScheduleEntry> northbound, List<ScheduleEntry> southbound) {
+    /** @return true if there are no departures in either direction */
+    public boolean isEmpty() {
+        return northbound.isEmpty() && southbound.isEmpty();
+    }
+
+    /** @return The number of departures in both directions */
+    public int size() {
+        return northbound.size() + southbound.size();
+    }
+}
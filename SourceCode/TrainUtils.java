@@ -25,6 +25,50 @@ public final class TrainUtils {
         return upperID;
     }
 
+    /** Highest number a TSxxxx train ID can carry */
+    public static final int MAX_TRAIN_NUMBER = 9999;
+
+    /**
+     * Formats a train number as a TSxxxx train ID.
+     * @param trainNumber The number of the train (e.g., 1 for TS0001)
+     * @return The train ID
+     */
+    public static String toTrainId(int trainNumber) {
+        return String.format("TS%04d", trainNumber);
+    }
+
+    /**
+     * Finds the first train number after every given train ID.
+     * @param trainIDs The IDs already in use
+     * @return The next free train number (1 if there are none)
+     */
+    public static int nextFreeTrainNumber(Iterable<String> trainIDs) {
+        int highest = 0;
+        for (String trainID : trainIDs) {
+            if (trainID.length() == 6 && trainID.startsWith("TS")) {
+                try {
+                    highest = Math.max(highest, Integer.parseInt(trainID.substring(2)));
+                } catch (NumberFormatException e) {
+                    // Not a generated ID, so it cannot clash with one
+                }
+            }
+        }
+        return highest + 1;
+    }
+
+    /**
+     * Checks that enough train IDs are left to number a series of new trains.
+     * @param firstTrainNumber The number of the first new train
+     * @param count The number of new trains
+     * @throws IllegalArgumentException if the series would run past TS9999
+     */
+    public static void checkTrainNumbersAvailable(int firstTrainNumber, int count) {
+        if (firstTrainNumber + count - 1 > MAX_TRAIN_NUMBER) {
+            throw new IllegalArgumentException("Not enough free train IDs: " + count + " trains needed, "
+                + Math.max(0, MAX_TRAIN_NUMBER - firstTrainNumber + 1) + " left");
+        }
+    }
+
     /**
      * Prompts the user until a valid train ID is entered and returns it.
      * Continues prompting until a valid ID in TSxxxx format is provided.
@@ -59,6 +103,8 @@ public final class TrainUtils {
     /**
      * Utility for adding multiple trains automatically to the system.
      * Creates trains at regular intervals between start and end times.
+     * Train IDs continue after the highest ID already in the system, so earlier trains are kept.
+     * All trains are collected first and then added in one bulk load.
      * @param system The scheduling system to add trains to
      * @param stationName The name of the station
      * @param startTime The start time in HHMM format
@@ -66,15 +112,18 @@ public final class TrainUtils {
      * @param headway The time interval between trains in minutes
      */
     public static void autoAddTrain(SchedulingSystem system, String stationName, int startTime, int endTime, int headway) {
-        int trainNumber = 1;
+        int trainNumber = nextFreeTrainNumber(system.getTimetable().getTrips().keySet());
         int currentTime = startTime;
         boolean isNorthbound = StationUtils.checkInitialDirection(stationName);
+        java.util.List<Schedulable> trains = new java.util.ArrayList<>();
 
         while (currentTime <= endTime) {
-            String autoTrainID = String.format("TS%04d", trainNumber);
-            system.addTrain(new MRT(autoTrainID, currentTime, stationName, isNorthbound));
+            checkTrainNumbersAvailable(trainNumber, 1);
+            String autoTrainID = toTrainId(trainNumber);
+            trains.add(new MRT(autoTrainID, currentTime, stationName, isNorthbound));
             currentTime = TimeUtils.addMinutesToDepTime(currentTime, headway);
             trainNumber++;
         }
+        system.addTrains(trains);
     }
 }
@@ -12,8 +12,8 @@ public abstract class Trains implements Schedulable {
     /** Departure time in HHMM format */
     private int departureTime;
     
-    /** Name of the current station */
-    private String currentStation;
+    /** Number of the current station */
+    private int currentStationNumber;
     
     /** Current delay in minutes */
     private int delay = 0;
@@ -26,12 +26,12 @@ public abstract class Trains implements Schedulable {
      * @param trainID Unique identifier for the train (must be in format TSxxxx)
      * @param departureTime Departure time in HHMM format
      * @param currentStation Name of the current station
-     * @throws IllegalArgumentException if trainID format is invalid
+     * @throws IllegalArgumentException if the station is unknown
      */
     public Trains(String trainID, int departureTime, String currentStation) {
         this.trainID = trainID; // Assume already validated and uppercase
         this.departureTime = departureTime;
-        this.currentStation = currentStation;
+        this.currentStationNumber = requireStationNumber(currentStation);
         this.delay = 0;
         this.previousStationNumber = -1; // Initialize to -1 to indicate no previous station
     }
@@ -40,7 +40,10 @@ public abstract class Trains implements Schedulable {
     public String getTrainID() { return trainID; }
 
     /** @return The current station name */
-    public String getCurrentStation() { return currentStation; }
+    public String getCurrentStation() { return Stations.getInstance().getStationName(currentStationNumber); }
+
+    /** @return The current station number */
+    public int getCurrentStationNumber() { return currentStationNumber; }
 
     /** @return The current delay in minutes */
     public int getDelay() { return delay; }
@@ -53,14 +56,22 @@ public abstract class Trains implements Schedulable {
      * @param station The new current station
      */
     public void setCurrentStation(String station) {
+        int stationNumber = requireStationNumber(station);
         // Update previous station number before changing current station
-        for (var entry : new Stations().getStationMap().entrySet()) {
-            if (entry.getValue().equals(this.currentStation)) {
-                this.previousStationNumber = entry.getKey();
-                break;
-            }
+        this.previousStationNumber = currentStationNumber;
+        this.currentStationNumber = stationNumber;
+    }
+
+    /**
+     * Looks up a station number, rejecting unknown stations.
+     * @throws IllegalArgumentException if the station is unknown
+     */
+    private static int requireStationNumber(String station) {
+        int stationNumber = Stations.getInstance().getStationNumber(station);
+        if (stationNumber == -1) {
+            throw new IllegalArgumentException("Unknown station: " + station);
         }
-        this.currentStation = station;
+        return stationNumber;
     }
 
     /** 
@@ -109,6 +120,6 @@ public abstract class Trains implements Schedulable {
         int minutes = departureTime % 100;
         String depTime = String.format("%02d:%02d", hours, minutes);
         return "TrainID: " + trainID + ", Departure: " + depTime +
-                ", Station: " + currentStation;
+                ", Station: " + getCurrentStation();
     }
 }
@@ -0,0 +1,319 @@
+package SourceCode;
+/**
+ * Precomputed travel-time profiles between every pair of stations over the service day.
+ * The profile of an origin and destination lists, for every useful departure from the origin,
+ * the earliest arrival at the destination; entries that leave earlier and arrive no later than
+ * another are kept, all others are dropped. "When do I arrive if I leave at 07:42?" is then one
+ * binary search for the first entry leaving at or after 07:42.
+ *
+ * Profiles are computed from a journey planner's connections (which include the ride to each
+ * terminus from the line's travel times) with the profile variant of the Connection Scan
+ * Algorithm: one scan per destination, latest connection first, keeping for every station the
+ * best arrival per departure and for every trip the best arrival when staying on board.
+ * Destinations are independent, so they are computed in parallel.
+ *
+ * A change to some trips only affects entries that leave at or before the last changed stop:
+ * later journeys never use a changed connection. Updating a version therefore keeps the
+ * entries after that time and scans only the earlier connections again, resuming each trip
+ * that runs past the change with the arrival it already gives.
+ *
+ * All entries are kept in two short arrays, grouped by destination and origin.
+ * Demonstrates use of parallel streams, binary search and primitive arrays.
+ */
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public final class TravelTimeProfiles {
+    /** Arrival time of stations that cannot be reached */
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    /** Departure minute before which nothing is kept when building from scratch */
+    private static final int KEEP_NOTHING = -1;
+
+    /** One more than the highest station number */
+    private final int stationSlots;
+
+    /** Start of the entries of every pair, indexed by destination * stationSlots + origin */
+    private final int[] offsets;
+
+    /** Departure from the origin and arrival at the destination of every entry in minutes since midnight,
+     * in order of departure within a pair */
+    private final short[] departures;
+    private final short[] arrivals;
+
+    private TravelTimeProfiles(int stationSlots, int[] offsets, short[] departures, short[] arrivals) {
+        this.stationSlots = stationSlots;
+        this.offsets = offsets;
+        this.departures = departures;
+        this.arrivals = arrivals;
+    }
+
+    /**
+     * Computes the profiles of every pair of stations.
+     * @param planner The planner whose connections to use
+     * @return The profiles
+     */
+    public static TravelTimeProfiles build(JourneyPlanner planner) {
+        return compute(planner, null, KEEP_NOTHING);
+    }
+
+    /**
+     * Computes the profiles of a changed timetable from the profiles before the change.
+     * @param planner The planner of the changed timetable
+     * @param changedUntil The latest departure, in minutes since midnight, of any stop that changed
+     * @return The profiles of the changed timetable
+     */
+    TravelTimeProfiles update(JourneyPlanner planner, int changedUntil) {
+        if (planner.getStationSlots() != stationSlots) return build(planner);
+        return compute(planner, this, changedUntil);
+    }
+
+    /**
+     * Scans every destination in parallel and packs the results.
+     * @param base Profiles to keep the entries after changedUntil from, or null
+     */
+    private static TravelTimeProfiles compute(JourneyPlanner planner, TravelTimeProfiles base, int changedUntil) {
+        int slots = planner.getStationSlots();
+        int[][] tripConnections = groupByTrip(planner);
+        DestinationScan[] scans = new DestinationScan[slots];
+        IntStream.range(1, slots).parallel().forEach(destination ->
+            scans[destination] = new DestinationScan(planner, tripConnections, base, changedUntil, destination));
+
+        int[] offsets = new int[slots * slots + 1];
+        int total = 0;
+        for (int destination = 0; destination < slots; destination++) {
+            for (int origin = 0; origin < slots; origin++) {
+                offsets[destination * slots + origin] = total;
+                if (scans[destination] != null) total += scans[destination].counts[origin];
+            }
+        }
+        offsets[slots * slots] = total;
+        short[] departures = new short[total];
+        short[] arrivals = new short[total];
+        for (int destination = 1; destination < slots; destination++) {
+            scans[destination].copyTo(offsets, destination * slots, departures, arrivals);
+        }
+        return new TravelTimeProfiles(slots, offsets, departures, arrivals);
+    }
+
+    /** @return The connections of every trip, in order of departure */
+    private static int[][] groupByTrip(JourneyPlanner planner) {
+        int[] counts = new int[planner.getTripCount()];
+        for (int c = 0; c < planner.size(); c++) {
+            counts[planner.getTripIndex(c)]++;
+        }
+        int[][] connections = new int[counts.length][];
+        for (int t = 0; t < counts.length; t++) {
+            connections[t] = new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (int c = 0; c < planner.size(); c++) {
+            int t = planner.getTripIndex(c);
+            connections[t][counts[t]++] = c;
+        }
+        return connections;
+    }
+
+    /**
+     * The profiles of every origin towards one destination.
+     * While scanning, each origin's entries are held latest departure first, which is the order
+     * they are found in; arrivals then decrease along with the departures.
+     */
+    private static final class DestinationScan {
+        private final JourneyPlanner planner;
+        private final int destination;
+        private final int[][] entryDepartures;
+        private final int[][] entryArrivals;
+        private final int[] counts;
+
+        DestinationScan(JourneyPlanner planner, int[][] tripConnections, TravelTimeProfiles base, int changedUntil,
+                        int destination) {
+            this.planner = planner;
+            this.destination = destination;
+            int slots = planner.getStationSlots();
+            this.entryDepartures = new int[slots][];
+            this.entryArrivals = new int[slots][];
+            this.counts = new int[slots];
+            for (int origin = 0; origin < slots; origin++) {
+                entryDepartures[origin] = new int[8];
+                entryArrivals[origin] = new int[8];
+            }
+
+            int[] onBoard = new int[planner.getTripCount()];
+            Arrays.fill(onBoard, UNREACHED);
+            if (base != null) {
+                keepLaterEntries(base, changedUntil);
+                resumeTrips(tripConnections, onBoard, changedUntil);
+            }
+
+            // Latest connection first, from the last one not kept from the base
+            int start = base == null ? planner.size() : planner.firstDeparture(changedUntil + 1);
+            for (int c = start - 1; c >= 0; c--) {
+                int trip = planner.getTripIndex(c);
+                int arrival = Math.min(evaluate(c), onBoard[trip]);
+                if (arrival == UNREACHED) continue;
+                onBoard[trip] = arrival;
+                int station = planner.getDepartureStation(c);
+                if (station != destination) add(station, planner.getDepartureMinute(c), arrival);
+            }
+        }
+
+        /** Copies the entries of the base profiles that leave after the change, latest first */
+        private void keepLaterEntries(TravelTimeProfiles base, int changedUntil) {
+            for (int origin = 1; origin < counts.length; origin++) {
+                int pair = destination * base.stationSlots + origin;
+                int first = base.firstEntry(base.offsets[pair], base.offsets[pair + 1], changedUntil + 1);
+                for (int i = base.offsets[pair + 1] - 1; i >= first; i--) {
+                    add(origin, base.departures[i], base.arrivals[i]);
+                }
+            }
+        }
+
+        /**
+         * Gives every trip that runs both before and after the change the arrival of staying on board
+         * from its first connection after the change, as the full scan would have left it there.
+         */
+        private void resumeTrips(int[][] tripConnections, int[] onBoard, int changedUntil) {
+            for (int t = 0; t < tripConnections.length; t++) {
+                int[] connections = tripConnections[t];
+                if (connections.length == 0 || planner.getDepartureMinute(connections[0]) > changedUntil) continue;
+                int arrival = UNREACHED;
+                for (int k = connections.length - 1;
+                     k >= 0 && planner.getDepartureMinute(connections[k]) > changedUntil; k--) {
+                    arrival = Math.min(arrival, evaluate(connections[k]));
+                }
+                onBoard[t] = arrival;
+            }
+        }
+
+        /** @return The arrival at the destination when getting off after a connection, or UNREACHED */
+        private int evaluate(int connection) {
+            int station = planner.getArrivalStation(connection);
+            int arrival = planner.getArrivalMinute(connection);
+            if (station == destination) return arrival;
+            return lookup(station, arrival + JourneyPlanner.MIN_CHANGE_MINUTES);
+        }
+
+        /** @return The arrival of the first entry of a station leaving at or after a minute, or UNREACHED */
+        private int lookup(int station, int minute) {
+            int[] entries = entryDepartures[station];
+            int low = 0;
+            int high = counts[station];
+            // Entries are latest first: find the last one still leaving at or after the minute
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (entries[middle] >= minute) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low == 0 ? UNREACHED : entryArrivals[station][low - 1];
+        }
+
+        /** Adds an entry to a station unless a later departure arrives as early */
+        private void add(int station, int departure, int arrival) {
+            int count = counts[station];
+            if (count > 0) {
+                if (entryArrivals[station][count - 1] <= arrival) return;
+                if (entryDepartures[station][count - 1] == departure) {
+                    entryArrivals[station][count - 1] = arrival;
+                    return;
+                }
+            }
+            if (count == entryDepartures[station].length) {
+                entryDepartures[station] = Arrays.copyOf(entryDepartures[station], count * 2);
+                entryArrivals[station] = Arrays.copyOf(entryArrivals[station], count * 2);
+            }
+            entryDepartures[station][count] = departure;
+            entryArrivals[station][count] = arrival;
+            counts[station] = count + 1;
+        }
+
+        /** Writes the entries of every origin in order of departure */
+        void copyTo(int[] offsets, int firstPair, short[] departures, short[] arrivals) {
+            for (int origin = 0; origin < counts.length; origin++) {
+                int at = offsets[firstPair + origin];
+                for (int i = counts[origin] - 1; i >= 0; i--, at++) {
+                    departures[at] = (short) entryDepartures[origin][i];
+                    arrivals[at] = (short) entryArrivals[origin][i];
+                }
+            }
+        }
+    }
+
+    /** @return The first entry in [from, to) leaving at or after a minute */
+    private int firstEntry(int from, int to, int minute) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departures[middle] < minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the earliest arrival when leaving a station at a given time.
+     * @param origin The station number to leave from
+     * @param destination The station number to arrive at
+     * @param departureTime The earliest departure time in HHMM format
+     * @return The arrival time in HHMM format, or -1 if the destination cannot be reached today
+     */
+    public int getArrivalTime(int origin, int destination, int departureTime) {
+        if (!isStation(origin) || !isStation(destination)) return -1;
+        if (origin == destination) return departureTime;
+        int pair = destination * stationSlots + origin;
+        int entry = firstEntry(offsets[pair], offsets[pair + 1], TimeUtils.toMinuteOfDay(departureTime));
+        return entry == offsets[pair + 1] ? -1 : TimeUtils.fromMinuteOfDay(arrivals[entry]);
+    }
+
+    /**
+     * @param origin The station number to leave from
+     * @param destination The station number to arrive at
+     * @return The number of entries in the profile of the pair (0 for unknown stations)
+     */
+    public int size(int origin, int destination) {
+        if (!isStation(origin) || !isStation(destination)) return 0;
+        int pair = destination * stationSlots + origin;
+        return offsets[pair + 1] - offsets[pair];
+    }
+
+    /**
+     * @param origin The station number to leave from
+     * @param destination The station number to arrive at
+     * @param index The entry of the profile, in order of departure
+     * @return The departure time of the entry in HHMM format
+     */
+    public int getDepartureTime(int origin, int destination, int index) {
+        return TimeUtils.fromMinuteOfDay(departures[entry(origin, destination, index)]);
+    }
+
+    /**
+     * @param origin The station number to leave from
+     * @param destination The station number to arrive at
+     * @param index The entry of the profile, in order of departure
+     * @return The arrival time of the entry in HHMM format
+     */
+    public int getArrivalTimeAt(int origin, int destination, int index) {
+        return TimeUtils.fromMinuteOfDay(arrivals[entry(origin, destination, index)]);
+    }
+
+    /** @return The number of entries over all pairs */
+    public int size() { return departures.length; }
+
+    private int entry(int origin, int destination, int index) {
+        if (index < 0 || index >= size(origin, destination)) {
+            throw new IndexOutOfBoundsException("Entry " + index + " of " + size(origin, destination));
+        }
+        return offsets[destination * stationSlots + origin] + index;
+    }
+
+    private boolean isStation(int stationNumber) {
+        return stationNumber > 0 && stationNumber < stationSlots;
+    }
+}
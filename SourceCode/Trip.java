@@ -0,0 +1,453 @@
+package SourceCode;
+/**
+ * Represents one run of a train through the MRT network.
+ * Instead of keeping a full MRT object for every station visit, a trip stores
+ * all of its stops in compact parallel arrays (time, station, direction, delay).
+ * Station boards and system-wide schedules are built as views over these arrays.
+ * A trip runs on one line of the network (see Line); every stop must be at a station of that line.
+ * Once a trip is published in a Timetable it is frozen; writers change a copy instead.
+ * Demonstrates use of arrays, encapsulation and nested records.
+ */
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class Trip {
+    /** Marker stored in the time array for stops that were cancelled */
+    private static final int CANCELLED = -1;
+
+    /** Number of stops a new trip has room for before growing */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Orders stops by departure time, then by train ID */
+    public static final Comparator<Stop> BY_TIME =
+        Comparator.comparingInt(Stop::getDepartureTime).thenComparing(Stop::getTrainID);
+
+    /** Unique identifier of the train running this trip (e.g., TS0001) */
+    private final String trainID;
+
+    /** Index of the line the trip runs on, or -1 until the first stop picks the station's default line */
+    private int line = -1;
+
+    /** Departure time of every stop in HHMM format (CANCELLED for removed stops) */
+    private int[] times;
+
+    /** Station number of every stop */
+    private short[] stations;
+
+    /** Direction of travel when leaving every stop */
+    private boolean[] northbound;
+
+    /** Delay of every stop in minutes */
+    private int[] delays;
+
+    /** Delay reason of every stop, only allocated once a stop is delayed */
+    private String[] delayReasons;
+
+    /** Number of stops recorded (including cancelled ones) */
+    private int size = 0;
+
+    /** Set on trips made by TimetableGenerator, which replaces them when it runs again */
+    private boolean generated = false;
+
+    /** Set once the trip is published in a Timetable; frozen trips reject changes */
+    private boolean frozen = false;
+
+    /** Index of the earliest live northbound stop, computed when the trip is frozen */
+    private int earliestNorthbound = -1;
+
+    /** Index of the earliest live southbound stop, computed when the trip is frozen */
+    private int earliestSouthbound = -1;
+
+    /**
+     * Constructor creates an empty trip for a train.
+     * @param trainID The ID of the train running this trip
+     */
+    public Trip(String trainID) {
+        this(trainID, -1);
+    }
+
+    /**
+     * Constructor creates an empty trip for a train on a given line.
+     * @param trainID The ID of the train running this trip
+     * @param line The index of the line the trip runs on, or -1 to use the default line of the first stop
+     */
+    public Trip(String trainID, int line) {
+        this.trainID = trainID;
+        this.line = line;
+        this.times = new int[INITIAL_CAPACITY];
+        this.stations = new short[INITIAL_CAPACITY];
+        this.northbound = new boolean[INITIAL_CAPACITY];
+        this.delays = new int[INITIAL_CAPACITY];
+    }
+
+    private Trip(String trainID, int line, boolean generated, int[] times, short[] stations, boolean[] northbound,
+                 int[] delays, String[] delayReasons) {
+        this.trainID = trainID;
+        this.line = line;
+        this.generated = generated;
+        this.times = times;
+        this.stations = stations;
+        this.northbound = northbound;
+        this.delays = delays;
+        this.delayReasons = delayReasons;
+        this.size = times.length;
+    }
+
+    /**
+     * Recreates a published trip from its stop arrays, e.g. when loading a snapshot.
+     * The arrays are used as they are, not copied.
+     * @param trainID The ID of the train running this trip
+     * @param line The index of the line the trip runs on
+     * @param generated true if the trip was made by TimetableGenerator
+     * @param times Departure times in HHMM format (-1 for cancelled stops)
+     * @param stations Station numbers
+     * @param northbound Directions of travel
+     * @param delays Delays in minutes
+     * @param delayReasons Delay reasons, or null if no stop is delayed
+     * @return The frozen trip
+     */
+    static Trip restore(String trainID, int line, boolean generated, int[] times, short[] stations,
+                        boolean[] northbound, int[] delays, String[] delayReasons) {
+        Trip trip = new Trip(trainID, line, generated, times, stations, northbound, delays, delayReasons);
+        trip.freeze();
+        return trip;
+    }
+
+    /**
+     * Creates an unfrozen copy of this trip that can be modified.
+     * @return A new trip with the same stops
+     */
+    public Trip copy() {
+        Trip copy = new Trip(trainID, line);
+        copy.generated = generated;
+        copy.times = Arrays.copyOf(times, size);
+        copy.stations = Arrays.copyOf(stations, size);
+        copy.northbound = Arrays.copyOf(northbound, size);
+        copy.delays = Arrays.copyOf(delays, size);
+        copy.delayReasons = delayReasons == null ? null : Arrays.copyOf(delayReasons, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Freezes the trip so it can be shared by readers without locking.
+     * Also records the earliest stop per direction.
+     */
+    public void freeze() {
+        if (frozen) return;
+        trimToSize();
+        for (int i = 0; i < size; i++) {
+            if (times[i] == CANCELLED) continue;
+            if (northbound[i]) {
+                if (earliestNorthbound == -1 || times[i] < times[earliestNorthbound]) earliestNorthbound = i;
+            } else {
+                if (earliestSouthbound == -1 || times[i] < times[earliestSouthbound]) earliestSouthbound = i;
+            }
+        }
+        frozen = true;
+    }
+
+    /** @return true if the trip has been frozen */
+    public boolean isFrozen() { return frozen; }
+
+    /**
+     * Marks the trip as made by TimetableGenerator, so the next generated timetable replaces it.
+     * @throws IllegalStateException if the trip is frozen
+     */
+    public void markGenerated() {
+        checkNotFrozen();
+        generated = true;
+    }
+
+    /** @return true if the trip was made by TimetableGenerator */
+    public boolean isGenerated() { return generated; }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Trip " + trainID + " is published and can no longer be changed");
+        }
+    }
+
+    /**
+     * Gets the earliest live stop in one direction. Only available on frozen trips.
+     * @param isNorthbound The direction to look at
+     * @return The index of the stop, or -1 if the trip has no live stop in that direction
+     */
+    public int getEarliestStop(boolean isNorthbound) {
+        return isNorthbound ? earliestNorthbound : earliestSouthbound;
+    }
+
+    /** @return The ID of the train running this trip */
+    public String getTrainID() { return trainID; }
+
+    /** @return The number of stops recorded, including cancelled ones */
+    public int size() { return size; }
+
+    /** @return The index of the line the trip runs on, or -1 if the trip has no stops and no line yet */
+    public int getLineIndex() { return line; }
+
+    /** @return The line the trip runs on (the main line if the trip has no stops and no line yet) */
+    public Line getLine() {
+        Stations network = Stations.getInstance();
+        return line == -1 ? network.getMainLine() : network.getLine(line);
+    }
+
+    /**
+     * Checks that a station is on the trip's line, choosing the station's default line for the first stop.
+     * @throws IllegalArgumentException if the station is not on the line
+     */
+    private void checkStation(int stationNumber) {
+        Stations network = Stations.getInstance();
+        if (line == -1) {
+            line = network.getDefaultLine(stationNumber).getIndex();
+        } else if (!network.getLine(line).contains(stationNumber)) {
+            throw new IllegalArgumentException("Station " + network.getStationName(stationNumber)
+                + " is not on line " + network.getLine(line).getCode() + " of train " + trainID);
+        }
+    }
+
+    /**
+     * Appends a stop to the trip.
+     * @param time Departure time in HHMM format
+     * @param stationNumber Number of the station
+     * @param isNorthbound Direction of travel when leaving the station
+     * @return The index of the new stop
+     * @throws IllegalArgumentException if the station is not on the trip's line
+     */
+    public int addStop(int time, int stationNumber, boolean isNorthbound) {
+        checkNotFrozen();
+        checkStation(stationNumber);
+        if (size == times.length) {
+            grow(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        times[size] = time;
+        stations[size] = (short) stationNumber;
+        northbound[size] = isNorthbound;
+        delays[size] = 0;
+        return size++;
+    }
+
+    /**
+     * Shrinks the stop arrays to the number of recorded stops.
+     * Called once a trip is fully built so it holds no spare capacity.
+     */
+    public void trimToSize() {
+        if (size < times.length) {
+            grow(size);
+        }
+    }
+
+    private void grow(int capacity) {
+        times = Arrays.copyOf(times, capacity);
+        stations = Arrays.copyOf(stations, capacity);
+        northbound = Arrays.copyOf(northbound, capacity);
+        delays = Arrays.copyOf(delays, capacity);
+        if (delayReasons != null) {
+            delayReasons = Arrays.copyOf(delayReasons, capacity);
+        }
+    }
+
+    /** @return The departure time of a stop in HHMM format */
+    public int getTime(int index) { return times[index]; }
+
+    /** @return The station number of a stop */
+    public int getStationNumber(int index) { return stations[index]; }
+
+    /** @return The station name of a stop */
+    public String getStationName(int index) { return Stations.getInstance().getStationName(stations[index]); }
+
+    /** @return true if the train leaves the stop heading northbound */
+    public boolean isNorthbound(int index) { return northbound[index]; }
+
+    /** @return true if the stop was cancelled */
+    public boolean isCancelled(int index) { return times[index] == CANCELLED; }
+
+    /** @return The delay of a stop in minutes */
+    public int getDelay(int index) { return delays[index]; }
+
+    /** @return The delay reason of a stop, or null if it is not delayed */
+    public String getDelayReason(int index) {
+        return delayReasons == null ? null : delayReasons[index];
+    }
+
+    /** @return true if a delay has been recorded for the stop */
+    public boolean isDelayed(int index) { return getDelayReason(index) != null; }
+
+    /** @return true if at least one stop has not been cancelled */
+    public boolean hasLiveStops() { return firstLiveStop() >= 0; }
+
+    /**
+     * @return The index of the first stop that has not been cancelled, or -1 if none
+     */
+    public int firstLiveStop() {
+        for (int i = 0; i < size; i++) {
+            if (times[i] != CANCELLED) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The index of the live stop with the earliest departure time, or -1 if none
+     */
+    public int earliestLiveStop() {
+        int earliest = -1;
+        for (int i = 0; i < size; i++) {
+            if (times[i] != CANCELLED && (earliest == -1 || times[i] < times[earliest])) earliest = i;
+        }
+        return earliest;
+    }
+
+    /**
+     * Finds the stop departing at the given time.
+     * @param time Departure time in HHMM format
+     * @return The index of the stop, or -1 if the train has no stop at that time
+     */
+    public int indexOf(int time) {
+        if (time == CANCELLED) return -1;
+        for (int i = 0; i < size; i++) {
+            if (times[i] == time) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Records delay information for a stop without moving its departure time.
+     * @param index The stop to update
+     * @param minutes The delay in minutes
+     * @param reason The reason for the delay
+     */
+    public void setDelay(int index, int minutes, String reason) {
+        checkNotFrozen();
+        if (delayReasons == null) {
+            delayReasons = new String[times.length];
+        }
+        delays[index] = minutes;
+        delayReasons[index] = reason;
+    }
+
+    /**
+     * Delays a stop, moving its departure time and adding to its recorded delay.
+     * @param index The stop to delay
+     * @param minutes Number of minutes to delay the stop by
+     * @param reason The reason for the delay
+     */
+    public void delayStop(int index, int minutes, String reason) {
+        checkNotFrozen();
+        times[index] = TimeUtils.addMinutesToDepTime(times[index], minutes);
+        setDelay(index, delays[index] + minutes, reason);
+    }
+
+    /**
+     * Delays a stop and every later stop of the trip by the same amount.
+     * Later stops are the ones after it on the journey that depart at or after its original time.
+     * All stops are shifted in one pass over the arrays.
+     * @param index The stop where the delay happens
+     * @param minutes Number of minutes to delay the stops by
+     * @param reason The reason for the delay
+     * @return The number of stops that were delayed
+     */
+    public int delayFrom(int index, int minutes, String reason) {
+        checkNotFrozen();
+        int originalTime = times[index];
+        int delayed = 0;
+        for (int i = index; i < size; i++) {
+            if (times[i] == CANCELLED || times[i] < originalTime) continue;
+            delayStop(i, minutes, reason);
+            delayed++;
+        }
+        return delayed;
+    }
+
+    /**
+     * Moves a stop to a new departure time and station.
+     * @param index The stop to move
+     * @param newTime New departure time in HHMM format
+     * @param stationNumber New station number
+     * @param isNorthbound Direction of travel when leaving the new station
+     * @throws IllegalArgumentException if the station is not on the trip's line
+     */
+    public void rescheduleStop(int index, int newTime, int stationNumber, boolean isNorthbound) {
+        checkNotFrozen();
+        checkStation(stationNumber);
+        times[index] = newTime;
+        stations[index] = (short) stationNumber;
+        northbound[index] = isNorthbound;
+    }
+
+    /**
+     * Cancels a stop. The stop keeps its index so references to other stops stay valid.
+     * @param index The stop to cancel
+     */
+    public void cancelStop(int index) {
+        checkNotFrozen();
+        times[index] = CANCELLED;
+        delays[index] = 0;
+        if (delayReasons != null) {
+            delayReasons[index] = null;
+        }
+    }
+
+    /**
+     * @return A lightweight view of one stop of this trip
+     */
+    public Stop stop(int index) {
+        return new Stop(this, index);
+    }
+
+    /**
+     * Creates a standalone MRT object describing one stop of this trip.
+     * Used where callers still expect a Schedulable train record.
+     * @param index The stop to describe
+     * @return A new MRT with the stop's details
+     */
+    public MRT toMRT(int index) {
+        MRT mrt = new MRT(trainID, times[index], getStationName(index), northbound[index], getLine());
+        if (isDelayed(index)) {
+            mrt.setDelay(delays[index], delayReasons[index]);
+        }
+        return mrt;
+    }
+
+    /**
+     * View of a single stop of a trip.
+     * Holds no data of its own; every value is read from the trip's arrays.
+     */
+    public record Stop(Trip trip, int index) {
+        /** @return The ID of the train stopping here */
+        public String getTrainID() { return trip.trainID; }
+
+        /** @return The departure time in HHMM format */
+        public int getDepartureTime() { return trip.getTime(index); }
+
+        /** @return The station number of the stop */
+        public int getStationNumber() { return trip.getStationNumber(index); }
+
+        /** @return The station name of the stop */
+        public String getCurrentStation() { return trip.getStationName(index); }
+
+        /** @return true if the train leaves heading northbound */
+        public boolean isNorthbound() { return trip.isNorthbound(index); }
+
+        /** @return true if the stop is delayed */
+        public boolean isDelayed() { return trip.isDelayed(index); }
+
+        /** @return The delay in minutes */
+        public int getDelay() { return trip.getDelay(index); }
+
+        /** @return The reason for the delay, or null if not delayed */
+        public String getDelayReason() { return trip.getDelayReason(index); }
+
+        /** @return The line the train runs on */
+        public Line getLine() { return trip.getLine(); }
+
+        /** @return The terminus the train is heading to */
+        public String getDirection() { return getLine().getTerminusName(isNorthbound()); }
+
+        /**
+         * @return true if this stop departs earlier than the other one
+         */
+        public boolean isEarlierThan(Stop other) {
+            return getDepartureTime() < other.getDepartureTime();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package SourceCode;
+/**
+ * Runs the benchmarks with allocation profiling turned on.
+ * Takes the usual JMH command line (e.g. "EngineBenchmark.delayTrain -p size=LINE_DAY") and
+ * adds the GC profiler, so every result also reports the bytes allocated per operation
+ * (gc.alloc.rate.norm) next to its throughput or latency.
+ * Usage: java -jar benchmarks/target/benchmarks.jar [JMH OPTIONS] [BENCHMARK REGEX]
+ * Demonstrates use of the JMH runner API.
+ */
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Options options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
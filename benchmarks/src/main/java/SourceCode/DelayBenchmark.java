@@ -0,0 +1,122 @@
+package SourceCode;
+/**
+ * Cost of keeping the delay index up to date during a disruption.
+ * The timetable is the 100,000-stop one of EngineData, with whole trips delayed until the given
+ * number of stops is delayed (about 5,000 is a major disruption on the North-South line).
+ * A version's delay index starts as a copy of the last one read, which is O(d) for d delayed
+ * stops, and then updates the changed trains in O(log d) each.
+ *
+ * delayTrain measures a write alone: the delay index is only brought up to date when it is
+ * read, so a run of writes between two reports copies it once. delayThenReport measures the
+ * worst case, a report after every write, which pays for the copy each time; the difference
+ * between its runs with and without delayed stops is what the copy costs. delayReport reads
+ * the ten most delayed stops of both directions from an index that is already up to date.
+ *
+ * The budget for delayThenReport is that of EngineBenchmark.delayThenNextDepartures on the same
+ * timetable: a report straight after a write may cost as much as the departure board does,
+ * which brings the column store up to date after the same write.
+ *
+ * Writes use a small fixed sample of stops and restore the timetable as loaded once all have
+ * been used, as in EngineBenchmark, so the sample adds only a few hundred delayed stops.
+ * Demonstrates use of JMH states, parameters and setup levels.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx3g"})
+public class DelayBenchmark {
+    /** Number of stops a benchmark works through before starting over */
+    private static final int SAMPLE_SIZE = 64;
+
+    /** Number of stops to list per direction in a report */
+    private static final int REPORT_LIMIT = 10;
+
+    @Param({"0", "5000"})
+    public int delayedStops;
+
+    /** The timetable as loaded and delayed, restored whenever the sample has been used up */
+    private Snapshot loaded;
+
+    /** The sampled stops: train and stop of its trip */
+    private String[] trainIDs;
+    private int[] stopIndexes;
+
+    /** Next stop of the sample to use */
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void load() {
+        EngineData.load(EngineData.DataSize.STOPS_100K);
+        List<String> trains = new ArrayList<>(MRTManager.getTimetable().getTrips().keySet());
+        // Copies of the day shifted past midnight can be left without stops
+        trains.removeIf(trainID -> MRTManager.getTimetable().getTrip(trainID).size() == 0);
+        trains.sort(null);
+
+        // Delay whole trips from their first stop until enough stops are delayed
+        for (String trainID : trains) {
+            if (MRTManager.getTimetable().getDelayIndex().size() >= delayedStops) break;
+            Trip trip = MRTManager.getTimetable().getTrip(trainID);
+            MRTManager.delayTrain(trainID, trip.getTime(0), 5 * (1 + Math.floorMod(trainID.hashCode(), 4)), "Power failure");
+        }
+        MRTManager.getTimetable().getStopEvents();
+        loaded = Snapshot.of(MRTManager.getTimetable());
+
+        // Stops of trains picked at random, delayed or not
+        Random random = new Random(42);
+        trainIDs = new String[SAMPLE_SIZE];
+        stopIndexes = new int[SAMPLE_SIZE];
+        for (int k = 0; k < SAMPLE_SIZE; k++) {
+            trainIDs[k] = trains.get(random.nextInt(trains.size()));
+            stopIndexes[k] = random.nextInt(MRTManager.getTimetable().getTrip(trainIDs[k]).size());
+        }
+    }
+
+    /** @return The next stop of the sample to change, restoring the loaded timetable once all have been used */
+    private int nextWrite() {
+        if (next == trainIDs.length) {
+            MRTManager.restore(loaded);
+            next = 0;
+        }
+        return next++;
+    }
+
+    private boolean delay(int k) {
+        int time = MRTManager.getTimetable().getTrip(trainIDs[k]).getTime(stopIndexes[k]);
+        return MRTManager.delayTrain(trainIDs[k], time, 1, "Signal fault");
+    }
+
+    @Benchmark
+    public boolean delayTrain() {
+        return delay(nextWrite());
+    }
+
+    @Benchmark
+    public DelayReport delayThenReport() {
+        delay(nextWrite());
+        return MRTManager.getDelayReport(REPORT_LIMIT);
+    }
+
+    @Benchmark
+    public DelayReport delayReport() {
+        return MRTManager.getDelayReport(REPORT_LIMIT);
+    }
+}
@@ -0,0 +1,184 @@
+package SourceCode;
+/**
+ * Throughput, latency and allocation of the MRTManager operations on timetables of every size.
+ * Each benchmark runs in its own JVM on a freshly generated timetable (see EngineData).
+ *
+ * The operations work through a fixed sample of stops picked at random when the timetable is
+ * loaded. Operations that change the timetable use every stop of the sample once and then
+ * restore the timetable as it was loaded before starting over, so a cancelled stop is never
+ * cancelled again and delays do not pile up. addTrain adds a stop to a sampled train, so the
+ * number of trains the engine copies per version stays that of the size. Restoring publishes the loaded version again
+ * without copying it, which is a fraction of one write.
+ *
+ * Writes only publish a new version; bringing the column store up to date is left to the first query
+ * after the write, as it is in the running system. delayThenNextDepartures and delayThenEarliestTrain
+ * measure a delay together with that first query, so they include patching the store (and, now and
+ * then, merging its changed rows back in). printStationSchedule prints to a stream
+ * that drops everything, so the console does not take part in the measurement.
+ * Demonstrates use of JMH states, parameters and setup levels.
+ */
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx3g"})
+public class EngineBenchmark {
+    /** Largest number of stops a benchmark works through before starting over */
+    private static final int SAMPLE_SIZE = 1 << 16;
+
+    @Param({"LINE_DAY", "STOPS_100K", "STOPS_1M", "STOPS_10M"})
+    public EngineData.DataSize size;
+
+    /** The timetable as loaded, restored whenever a writing benchmark has used up its sample */
+    private Snapshot loaded;
+
+    /** The sampled stops: train, stop of its trip, departure time and station when loaded */
+    private String[] trainIDs;
+    private int[] stopIndexes;
+    private int[] times;
+    private String[] stationNames;
+
+    /** Extra stops for addTrain: the sampled trains, one minute after the sampled stop */
+    private MRT[] newStops;
+
+    /** Next stop of the sample to use */
+    private int next = 0;
+
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void load() {
+        loaded = EngineData.load(size);
+        // Merge in any changed rows, so rows are numbered 0 to size - 1
+        StopEventStore events = MRTManager.getTimetable().getStopEvents().compact();
+        int count = Math.min(events.size(), SAMPLE_SIZE);
+        trainIDs = new String[count];
+        stopIndexes = new int[count];
+        times = new int[count];
+        stationNames = new String[count];
+        newStops = new MRT[count];
+
+        // Distinct rows spread over the whole timetable: a random start, stepped by a number with no factor
+        // in common with the size
+        Random random = new Random(42);
+        int step = 1_000_003;
+        while (gcd(step, events.size()) != 1) step++;
+        long row = random.nextInt(events.size());
+        Stations stations = Stations.getInstance();
+        for (int k = 0; k < count; k++) {
+            row = (row + step) % events.size();
+            int r = (int) row;
+            trainIDs[k] = events.getTrip(r).getTrainID();
+            stopIndexes[k] = events.getStopIndex(r);
+            times[k] = events.getDepartureTime(r);
+            stationNames[k] = stations.getStationName(events.getStationNumber(r));
+            newStops[k] = new MRT(trainIDs[k], TimeUtils.addMinutesToDepTime(times[k], 1), stationNames[k],
+                events.isNorthbound(r), events.getLine(r));
+        }
+
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        System.setOut(console);
+    }
+
+    /** @return The next stop of the sample to read */
+    private int nextRead() {
+        if (next == trainIDs.length) next = 0;
+        return next++;
+    }
+
+    /** @return The next stop of the sample to change, restoring the loaded timetable once all have been used */
+    private int nextWrite() {
+        if (next == trainIDs.length) {
+            MRTManager.restore(loaded);
+            next = 0;
+        }
+        return next++;
+    }
+
+    @Benchmark
+    public void addTrain() {
+        MRTManager.addTrain(newStops[nextWrite()]);
+    }
+
+    @Benchmark
+    public Schedulable getTrainByIdAndTime() {
+        int k = nextRead();
+        return MRTManager.getTrainByIdAndTime(trainIDs[k], times[k]);
+    }
+
+    @Benchmark
+    public NextTrains getNextTrain() {
+        int k = nextRead();
+        return MRTManager.getNextTrains(stationNames[k], times[k]);
+    }
+
+    @Benchmark
+    public boolean delayTrain() {
+        int k = nextWrite();
+        int time = MRTManager.getTimetable().getTrip(trainIDs[k]).getTime(stopIndexes[k]);
+        return MRTManager.delayTrain(trainIDs[k], time, 1, "Signal fault");
+    }
+
+    @Benchmark
+    public boolean rescheduleTrain() {
+        int k = nextWrite();
+        int time = MRTManager.getTimetable().getTrip(trainIDs[k]).getTime(stopIndexes[k]);
+        return MRTManager.rescheduleTrain(trainIDs[k], time, TimeUtils.addMinutesToDepTime(time, 1),
+            stationNames[k]);
+    }
+
+    @Benchmark
+    public boolean cancelTrain() {
+        int k = nextWrite();
+        return MRTManager.cancelTrain(trainIDs[k], times[k]);
+    }
+
+    @Benchmark
+    public StopEventStore.Departures delayThenNextDepartures() {
+        int k = nextWrite();
+        int time = MRTManager.getTimetable().getTrip(trainIDs[k]).getTime(stopIndexes[k]);
+        MRTManager.delayTrain(trainIDs[k], time, 1, "Signal fault");
+        return MRTManager.getNextDepartures(stationNames[k], newStops[k].isNorthbound(), times[k], 5);
+    }
+
+    @Benchmark
+    public Trip.Stop delayThenEarliestTrain() {
+        int k = nextWrite();
+        int time = MRTManager.getTimetable().getTrip(trainIDs[k]).getTime(stopIndexes[k]);
+        MRTManager.delayTrain(trainIDs[k], time, 1, "Signal fault");
+        return MRTManager.getTimetable().getEarliestTrain();
+    }
+
+    @Benchmark
+    public void printStationSchedule() {
+        MRTManager.printStationSchedule(stationNames[nextRead()]);
+    }
+}
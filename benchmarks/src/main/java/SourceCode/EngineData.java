@@ -0,0 +1,79 @@
+package SourceCode;
+/**
+ * Timetables of different sizes for the benchmarks.
+ * The smallest is one weekday on the North-South line as the generator builds it. Larger ones
+ * repeat that day with new train IDs, each copy shifted by a few minutes so the copies do not
+ * all depart at the same time, until the timetable holds the requested number of stop events.
+ * Demonstrates use of enums and the timetable generator.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public final class EngineData {
+    /** Minutes in a day; shifted stops past midnight are left out */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** Number of different shifts given to the copies of the day */
+    private static final int SHIFTS = 15;
+
+    /** Sizes of timetable to benchmark on */
+    public enum DataSize {
+        /** One weekday on one line (about 3,300 stop events) */
+        LINE_DAY(0),
+        STOPS_100K(100_000),
+        STOPS_1M(1_000_000),
+        STOPS_10M(10_000_000);
+
+        /** Number of stop events, or 0 for a single day */
+        final int stopEvents;
+
+        DataSize(int stopEvents) {
+            this.stopEvents = stopEvents;
+        }
+    }
+
+    /** Private constructor to prevent instantiation */
+    private EngineData() {}
+
+    /**
+     * Builds the trips of a timetable size on the current network.
+     * @param size The size to build
+     * @return The trips
+     */
+    public static List<Trip> generate(DataSize size) {
+        List<Trip> day = TimetableGenerator.generate(ServicePlan.weekday(), Stations.getInstance(), 1);
+        if (size.stopEvents == 0) return day;
+
+        List<Trip> trips = new ArrayList<>();
+        int stopEvents = 0;
+        for (int copy = 0; stopEvents < size.stopEvents; copy++) {
+            int shift = copy % SHIFTS;
+            for (int t = 0; t < day.size() && stopEvents < size.stopEvents; t++) {
+                Trip original = day.get(t);
+                Trip trip = new Trip(copy == 0 ? original.getTrainID() : original.getTrainID() + "." + copy,
+                    original.getLineIndex());
+                for (int i = 0; i < original.size(); i++) {
+                    int minute = TimeUtils.toMinuteOfDay(original.getTime(i)) + shift;
+                    if (minute >= MINUTES_PER_DAY) break;
+                    trip.addStop(TimeUtils.fromMinuteOfDay(minute), original.getStationNumber(i),
+                        original.isNorthbound(i));
+                }
+                trip.trimToSize();
+                trips.add(trip);
+                stopEvents += trip.size();
+            }
+        }
+        return trips;
+    }
+
+    /**
+     * Replaces the timetable with one of the given size and builds its column store.
+     * @param size The size to load
+     * @return The loaded timetable, to restore between benchmark runs
+     */
+    public static Snapshot load(DataSize size) {
+        MRTManager.addTrips(generate(size));
+        MRTManager.getTimetable().getStopEvents();
+        return Snapshot.of(MRTManager.getTimetable());
+    }
+}
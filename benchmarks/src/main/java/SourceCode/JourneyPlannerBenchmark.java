@@ -0,0 +1,103 @@
+package SourceCode;
+/**
+ * Throughput and allocation of journey planning on a full weekday timetable.
+ * Plans journeys between random stations at random times between 05:00 and 22:00, either for
+ * the arrival time only (which should allocate nothing) or for the full itinerary, on the
+ * built-in North-South line and on the bundled Jakarta network with its interchanges. Also
+ * looks up the same journeys in the precomputed travel-time profiles.
+ * Demonstrates use of JMH states, parameters and class path resources.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JourneyPlannerBenchmark {
+    /** Number of random queries cycled through */
+    private static final int QUERIES = 1 << 14;
+
+    /** The network: "NS" for the built-in North-South line, "JAKARTA" for jakarta-network.txt */
+    @Param({"NS", "JAKARTA"})
+    public String network;
+
+    private JourneyPlanner planner;
+    private TravelTimeProfiles profiles;
+    private int[] origins;
+    private int[] destinations;
+    private int[] times;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void load() {
+        if (network.equals("JAKARTA")) {
+            MRTManager.useNetwork(Stations.parse(readResource("/SourceCode/jakarta-network.txt")));
+        }
+        TimetableGenerator.generateAndLoad(ServicePlan.weekday());
+        planner = MRTManager.getTimetable().getJourneyPlanner();
+        profiles = MRTManager.getTimetable().getTravelTimeProfiles();
+
+        // Fixed seed, so every run asks the same questions
+        Random random = new Random(42);
+        int stationCount = Stations.getInstance().getStationCount();
+        origins = new int[QUERIES];
+        destinations = new int[QUERIES];
+        times = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            origins[q] = 1 + random.nextInt(stationCount);
+            destinations[q] = 1 + random.nextInt(stationCount);
+            times[q] = TimeUtils.fromMinuteOfDay(5 * 60 + random.nextInt(17 * 60));
+        }
+    }
+
+    private static String readResource(String name) {
+        try (InputStream in = JourneyPlannerBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) throw new IllegalStateException("Missing resource " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public int earliestArrival() {
+        int q = nextQuery();
+        return planner.getEarliestArrival(origins[q], destinations[q], times[q]);
+    }
+
+    @Benchmark
+    public Itinerary plan() {
+        int q = nextQuery();
+        return planner.plan(origins[q], destinations[q], times[q]);
+    }
+
+    @Benchmark
+    public int profileLookup() {
+        int q = nextQuery();
+        return profiles.getArrivalTime(origins[q], destinations[q], times[q]);
+    }
+}
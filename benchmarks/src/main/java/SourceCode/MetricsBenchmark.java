@@ -0,0 +1,48 @@
+package SourceCode;
+/**
+ * Cost of timing one call: reading the clock alone, recording an operation in total, and
+ * recording it in total and at a station. The difference between the first and the other two
+ * is what the metrics add to every timetable operation. Run with -t 4 to see recording from
+ * several threads at once, where the counters are shared.
+ * Demonstrates use of JMH states and average-time measurements.
+ */
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    @Setup(Level.Trial)
+    public void reset() {
+        Metrics.reset();
+    }
+
+    @Benchmark
+    public long clockOnly() {
+        return System.nanoTime() - System.nanoTime();
+    }
+
+    @Benchmark
+    public void recordTotal() {
+        Metrics.record(Metrics.Operation.FIND_TRAIN, System.nanoTime(), true);
+    }
+
+    @Benchmark
+    public void recordAtStation() {
+        Metrics.record(Metrics.Operation.NEXT_DEPARTURES, 5, System.nanoTime(), true);
+    }
+}
@@ -0,0 +1,56 @@
+package SourceCode;
+/**
+ * Time and allocation of one MRTManager.simulateTrainsRunning run.
+ * Every run starts from the timetable as generated, restored before each iteration, and
+ * simulates every train until 22:00. Simulation shuttles each train from its first stop
+ * until closing time, so it produces far more stops than it starts from; ten million
+ * stop events would simulate to well over a hundred million, which does not fit in the
+ * benchmark heap, so the largest size is left out here.
+ * Demonstrates use of JMH single-shot measurements.
+ */
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx3g"})
+public class SimulationBenchmark {
+    /** Closing time the trains are simulated until */
+    private static final int CLOSING_TIME = 2200;
+
+    @Param({"LINE_DAY", "STOPS_100K", "STOPS_1M"})
+    public EngineData.DataSize size;
+
+    /** The timetable as generated */
+    private Snapshot loaded;
+
+    @Setup(Level.Trial)
+    public void load() {
+        loaded = EngineData.load(size);
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() {
+        MRTManager.restore(loaded);
+    }
+
+    @Benchmark
+    public Timetable simulateTrainsRunning() {
+        MRTManager.simulateTrainsRunning(CLOSING_TIME);
+        return MRTManager.getTimetable();
+    }
+}
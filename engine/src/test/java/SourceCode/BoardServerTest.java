@@ -0,0 +1,383 @@
+package SourceCode;
+/**
+ * Tests of the HTTP board server on the loopback interface.
+ * Each test starts its own server on port 0 (a free port picked by the system) over a generated
+ * weekday timetable with one delayed train, and checks the status codes and the JSON shape of
+ * the responses. Path segments are decoded exactly once, and failures other than bad input give a
+ * 500 with a JSON error. The JSON is read with a small parser below, so the tests need no JSON library.
+ * Demonstrates use of JUnit 5, the JDK HTTP client and recursive descent parsing.
+ */
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BoardServerTest {
+    /** Keys of every departure, in the order JsonRenderer writes them */
+    private static final List<String> ENTRY_KEYS = List.of("trainID", "time", "stationNumber", "station", "line",
+        "destination", "delayMinutes", "delayReason");
+
+    private static final int DELAY_MINUTES = 4;
+    private static final String DELAY_REASON = "Door \"fault\"";
+
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    private static SchedulingSystem system;
+    private static String delayedTrainID;
+
+    private BoardServer server;
+
+    @BeforeAll
+    static void loadTimetable() {
+        MRTManager.clear();
+        system = new SchedulingSystem();
+        system.generateTimetable(ServicePlan.weekday());
+        delayedTrainID = system.getTimetable().getTrips().keySet().stream().sorted().findFirst().orElseThrow();
+        Trip trip = system.getTimetable().getTrip(delayedTrainID);
+        assertTrue(system.delayTrain(delayedTrainID, trip.getTime(1), DELAY_MINUTES, DELAY_REASON));
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new BoardServer(system, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void boardListsTheDeparturesOfBothDirections() throws Exception {
+        HttpResponse<String> response = get("/boards/Blok%20M");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+
+        Map<String, Object> board = object(Json.parse(response.body()), "station", "northbound", "southbound");
+        assertEquals("Blok M", board.get("station"));
+        for (String direction : List.of("northbound", "southbound")) {
+            List<Object> entries = list(board.get(direction));
+            assertFalse(entries.isEmpty(), direction);
+            for (Object entry : entries) {
+                assertEquals("Blok M", entry(entry).get("station"));
+            }
+        }
+
+        // Stations can be given by number too, or by name in any case
+        assertEquals(response.body(), get("/boards/6").body());
+        assertEquals(response.body(), get("/boards/blok%20m").body());
+    }
+
+    @Test
+    void nextGivesOneTrainEachWay() throws Exception {
+        HttpResponse<String> response = get("/next?station=Senayan&time=0700");
+        assertEquals(200, response.statusCode());
+        Map<String, Object> next = object(Json.parse(response.body()), "station", "hasService", "northbound", "southbound");
+        assertEquals("Senayan", next.get("station"));
+        assertEquals(true, next.get("hasService"));
+        for (String direction : List.of("northbound", "southbound")) {
+            Map<String, Object> entry = entry(next.get(direction));
+            assertEquals("Senayan", entry.get("station"));
+            assertTrue(((String) entry.get("time")).compareTo("07:00") >= 0, direction);
+        }
+
+        // Without a station, the next trains of the whole system
+        Map<String, Object> system = object(Json.parse(get("/next?time=0700").body()),
+            "station", "hasService", "northbound", "southbound");
+        assertNull(system.get("station"));
+        entry(system.get("northbound"));
+    }
+
+    @Test
+    void departuresAreLimitedAndInOrder() throws Exception {
+        HttpResponse<String> response = get("/departures/Blok%20M?direction=north&limit=3&time=0800");
+        assertEquals(200, response.statusCode());
+        Map<String, Object> departures = object(Json.parse(response.body()), "station", "direction", "departures");
+        assertEquals("Blok M", departures.get("station"));
+        assertEquals("northbound", departures.get("direction"));
+        List<Object> entries = list(departures.get("departures"));
+        assertEquals(3, entries.size());
+        String previous = "08:00";
+        for (Object value : entries) {
+            Map<String, Object> entry = entry(value);
+            assertEquals("Bundaran HI", entry.get("destination"));
+            assertTrue(((String) entry.get("time")).compareTo(previous) >= 0);
+            previous = (String) entry.get("time");
+        }
+
+        // Limited to one line, the only line of the network here
+        assertEquals(response.body(), get("/departures/Blok%20M?direction=north&limit=3&time=0800&line=NS").body());
+    }
+
+    @Test
+    void delaysListTheDelayedTrain() throws Exception {
+        HttpResponse<String> response = get("/delays");
+        assertEquals(200, response.statusCode());
+        Map<String, Object> delays = object(Json.parse(response.body()), "northbound", "southbound");
+        List<Object> all = new ArrayList<>(list(delays.get("northbound")));
+        all.addAll(list(delays.get("southbound")));
+        assertFalse(all.isEmpty());
+        for (Object value : all) {
+            Map<String, Object> entry = entry(value);
+            assertEquals(delayedTrainID, entry.get("trainID"));
+            assertEquals((long) DELAY_MINUTES, entry.get("delayMinutes"));
+            assertEquals(DELAY_REASON, entry.get("delayReason"));
+        }
+
+        Map<String, Object> limited = object(Json.parse(get("/delays?limit=1").body()), "northbound", "southbound");
+        assertTrue(list(limited.get("northbound")).size() <= 1);
+        assertTrue(list(limited.get("southbound")).size() <= 1);
+    }
+
+    @Test
+    void badInputIsRejectedWith400() throws Exception {
+        for (String path : List.of("/boards/Nowhere", "/departures/Blok%20M", "/departures/Blok%20M?direction=up",
+                "/departures/Blok%20M?direction=north&limit=x", "/departures/Blok%20M?direction=north&limit=0",
+                "/next?station=Senayan&time=noon", "/journey?from=Senayan", "/boards/Blok%2520M")) {
+            HttpResponse<String> response = get(path);
+            assertEquals(400, response.statusCode(), path);
+            assertError(response);
+        }
+    }
+
+    @Test
+    void unknownPathsAreNotFound() throws Exception {
+        for (String path : List.of("/", "/trains", "/boards", "/boards/Blok%20M/extra", "/next/Senayan", "/delays/1")) {
+            HttpResponse<String> response = get(path);
+            assertEquals(404, response.statusCode(), path);
+            assertError(response);
+        }
+    }
+
+    @Test
+    void onlyGetIsAllowed() throws Exception {
+        for (String method : List.of("POST", "PUT", "DELETE")) {
+            HttpRequest request = HttpRequest.newBuilder(uri("/boards/Blok%20M"))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+            HttpResponse<String> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(405, response.statusCode(), method);
+            assertError(response);
+        }
+    }
+
+    @Test
+    void otherFailuresAreReportedAs500() throws Exception {
+        server.stop();
+        SchedulingSystem failing = new SchedulingSystem() {
+            @Override
+            public DelayReport getDelayReport() {
+                throw new IllegalStateException("Index is being rebuilt");
+            }
+        };
+        server = new BoardServer(failing, 0);
+        server.start();
+
+        HttpResponse<String> response = get("/delays");
+        assertEquals(500, response.statusCode());
+        assertError(response);
+        assertEquals(200, get("/boards/Blok%20M").statusCode());
+    }
+
+    @Test
+    void stopReleasesThePort() throws Exception {
+        int port = server.getPort();
+        assertTrue(port > 0);
+        assertEquals(200, get("/delays").statusCode());
+
+        server.stop();
+        server = null;
+        try (ServerSocket socket = new ServerSocket()) {
+            assertDoesNotThrow(() -> socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port)));
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return CLIENT.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private static void assertError(HttpResponse<String> response) {
+        Map<String, Object> error = object(Json.parse(response.body()), "error");
+        assertInstanceOf(String.class, error.get("error"));
+    }
+
+    /** Checks that a value is an object with exactly the given keys, in order */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value, String... keys) {
+        Map<String, Object> object = assertInstanceOf(Map.class, value);
+        assertEquals(List.of(keys), new ArrayList<>(object.keySet()));
+        return object;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value) {
+        return assertInstanceOf(List.class, value);
+    }
+
+    /** Checks that a value is a departure as JsonRenderer writes it */
+    private static Map<String, Object> entry(Object value) {
+        assertNotNull(value);
+        Map<String, Object> entry = object(value, ENTRY_KEYS.toArray(new String[0]));
+        assertInstanceOf(String.class, entry.get("trainID"));
+        assertTrue(((String) entry.get("time")).matches("\\d\\d:\\d\\d"), entry.toString());
+        assertInstanceOf(Long.class, entry.get("stationNumber"));
+        assertInstanceOf(String.class, entry.get("station"));
+        assertInstanceOf(String.class, entry.get("line"));
+        assertInstanceOf(String.class, entry.get("destination"));
+        assertInstanceOf(Long.class, entry.get("delayMinutes"));
+        if (entry.get("delayReason") != null) assertInstanceOf(String.class, entry.get("delayReason"));
+        return entry;
+    }
+
+    /**
+     * Parses the JSON the server writes: objects (as ordered maps), arrays, strings, integers,
+     * booleans and null. Anything else fails the test.
+     */
+    private static final class Json {
+        private final String text;
+        private int position = 0;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        static Object parse(String text) {
+            Json json = new Json(text);
+            Object value = json.value();
+            json.skipSpace();
+            assertEquals(text.length(), json.position, "Trailing characters in " + text);
+            return value;
+        }
+
+        private Object value() {
+            skipSpace();
+            char c = peek();
+            if (c == '{') return object();
+            if (c == '[') return array();
+            if (c == '"') return string();
+            if (text.startsWith("true", position)) return literal("true", true);
+            if (text.startsWith("false", position)) return literal("false", false);
+            if (text.startsWith("null", position)) return literal("null", null);
+            return number();
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            do {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                assertNull(object.put(key, value()), "Duplicate key " + key);
+                skipSpace();
+            } while (next() == ',');
+            position--;
+            expect('}');
+            return object;
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            expect('[');
+            skipSpace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            do {
+                array.add(value());
+                skipSpace();
+            } while (next() == ',');
+            position--;
+            expect(']');
+            return array;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            for (char c = next(); c != '"'; c = next()) {
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> out.append(escaped);
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        out.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> throw new AssertionError("Bad escape \\" + escaped + " in " + text);
+                }
+            }
+            return out.toString();
+        }
+
+        private Long number() {
+            int start = position;
+            if (peek() == '-') position++;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) position++;
+            assertTrue(position > start, "Expected a value at " + start + " in " + text);
+            return Long.parseLong(text.substring(start, position));
+        }
+
+        private Object literal(String word, Object value) {
+            position += word.length();
+            return value;
+        }
+
+        private void skipSpace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        private char peek() {
+            assertTrue(position < text.length(), "Unexpected end of " + text);
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char c) {
+            assertEquals(c, next(), "At " + (position - 1) + " in " + text);
+        }
+    }
+}
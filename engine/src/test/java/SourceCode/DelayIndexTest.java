@@ -0,0 +1,177 @@
+package SourceCode;
+/**
+ * Tests of the indexed delay heaps against a plain sort of the delayed stops.
+ * Random runs of delays, cleared delays, cancellations, reschedules and removals are published
+ * as timetable versions; the delay index of every version must list exactly the delayed stops
+ * of its trips, most delayed first. Earlier versions are checked again at the end, since later
+ * indexes start as copies that share the per-train handle arrays of the earlier ones.
+ * Demonstrates use of JUnit 5, model-based testing and comparators.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class DelayIndexTest {
+    /** Order of the delay reports: most delayed, then earliest, then by station, train and stop */
+    private static final Comparator<Trip.Stop> MOST_DELAYED_FIRST =
+        Comparator.comparingInt((Trip.Stop stop) -> -stop.getDelay())
+            .thenComparingInt(stop -> TimeUtils.toMinuteOfDay(stop.getDepartureTime()))
+            .thenComparingInt(Trip.Stop::getStationNumber)
+            .thenComparing(Trip.Stop::getTrainID)
+            .thenComparingInt(Trip.Stop::index);
+
+    @BeforeAll
+    static void useJakartaNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(RandomTimetable.jakartaNetwork());
+    }
+
+    @AfterAll
+    static void useDefaultNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(Stations.parse(Stations.DEFAULT_NETWORK));
+    }
+
+    @Test
+    void everyVersionListsItsDelayedStopsInOrder() {
+        RandomTimetable random = new RandomTimetable(11);
+        Timetable.Builder first = Timetable.EMPTY.toBuilder();
+        random.addTrips(first, 300);
+        Timetable timetable = first.build();
+
+        List<Timetable> versions = new ArrayList<>();
+        List<DelayIndex> indexes = new ArrayList<>();
+        for (int round = 0; round < 300; round++) {
+            Timetable.Builder builder = timetable.toBuilder();
+            random.edit(builder, 1 + round % 5);
+            timetable = builder.build();
+            // Read most versions as they are published, so handles are added, moved and freed a few at a time
+            if (round % 3 != 2) {
+                DelayIndex index = timetable.getDelayIndex();
+                assertMatchesTrips(timetable, index);
+                versions.add(timetable);
+                indexes.add(index);
+            }
+        }
+        // Later copies changed trains they shared with these indexes; the earlier indexes must not have moved
+        for (int i = 0; i < versions.size(); i++) {
+            assertSame(indexes.get(i), versions.get(i).getDelayIndex());
+            assertMatchesTrips(versions.get(i), indexes.get(i));
+        }
+    }
+
+    @Test
+    void clearingEveryDelayEmptiesTheHeapsAndFreesTheirHandles() {
+        RandomTimetable random = new RandomTimetable(12);
+        Timetable.Builder first = Timetable.EMPTY.toBuilder();
+        random.addTrips(first, 100);
+        Timetable timetable = first.build();
+
+        for (int cycle = 0; cycle < 3; cycle++) {
+            // Delay every stop of every train, one version per train
+            for (String trainID : sortedTrainIDs(timetable)) {
+                Timetable.Builder builder = timetable.toBuilder();
+                Trip trip = builder.editTrip(trainID);
+                for (int i = 0; i < trip.size(); i++) {
+                    if (!trip.isCancelled(i)) trip.setDelay(i, (i * 7 + cycle) % 13, "Signal fault");
+                }
+                timetable = builder.build();
+                assertMatchesTrips(timetable, timetable.getDelayIndex());
+            }
+            assertEquals(timetable.getStopCount(), timetable.getDelayIndex().size());
+
+            // Then clear them again, so the handles go back on the free list to be reused next cycle
+            for (String trainID : sortedTrainIDs(timetable)) {
+                Timetable.Builder builder = timetable.toBuilder();
+                Trip trip = builder.editTrip(trainID);
+                for (int i = 0; i < trip.size(); i++) {
+                    trip.setDelay(i, 0, null);
+                }
+                timetable = builder.build();
+                assertMatchesTrips(timetable, timetable.getDelayIndex());
+            }
+            assertEquals(0, timetable.getDelayIndex().size());
+        }
+    }
+
+    @Test
+    void updatesOnlyCopyWhenADelayedStopChanges() {
+        RandomTimetable random = new RandomTimetable(13);
+        Timetable.Builder first = Timetable.EMPTY.toBuilder();
+        random.addTrips(first, 50);
+        Timetable timetable = first.build();
+        DelayIndex empty = timetable.getDelayIndex();
+
+        // A new train without delays leaves the index as it is
+        Timetable.Builder builder = timetable.toBuilder();
+        Trip trip = random.newTrip();
+        builder.putTrip(trip);
+        Timetable next = builder.build();
+        assertSame(empty, empty.update(next.getTrips(), Set.of(trip.getTrainID())));
+
+        // Delaying it gives a new index and leaves the old one empty
+        builder = next.toBuilder();
+        builder.editTrip(trip.getTrainID()).setDelay(0, 9, "Crowding");
+        Timetable delayed = builder.build();
+        DelayIndex updated = empty.update(delayed.getTrips(), Set.of(trip.getTrainID()));
+        assertEquals(0, empty.size());
+        assertEquals(1, updated.size());
+        assertMatchesTrips(delayed, updated);
+    }
+
+    @Test
+    void limitedReportsAreTheFirstStopsOfTheFullOrder() {
+        RandomTimetable random = new RandomTimetable(14);
+        Timetable.Builder builder = Timetable.EMPTY.toBuilder();
+        random.addTrips(builder, 500);
+        random.edit(builder, 2_000);
+        DelayIndex index = builder.build().getDelayIndex();
+        for (boolean northbound : new boolean[] {true, false}) {
+            List<ScheduleEntry> all = index.stream(northbound).toList();
+            assertTrue(all.size() > 100, "delayed stops: " + all.size());
+            for (int limit : new int[] {0, 1, 2, 3, 10, 99, all.size(), all.size() + 5}) {
+                assertEquals(all.subList(0, Math.min(limit, all.size())), index.getMostDelayed(northbound, limit));
+            }
+        }
+    }
+
+    /** Checks that an index lists exactly the delayed live stops of a version, in report order */
+    private static void assertMatchesTrips(Timetable timetable, DelayIndex index) {
+        int total = 0;
+        for (boolean northbound : new boolean[] {true, false}) {
+            List<ScheduleEntry> expected = expectedDelays(timetable.getTrips(), northbound);
+            assertEquals(expected.size(), index.size(northbound));
+            assertEquals(expected, index.stream(northbound).toList());
+            assertEquals(expected.subList(0, Math.min(5, expected.size())), index.getMostDelayed(northbound, 5));
+            total += expected.size();
+        }
+        assertEquals(total, index.size());
+    }
+
+    /** @return The delayed live stops of one direction, sorted into report order */
+    private static List<ScheduleEntry> expectedDelays(Map<String, Trip> trips, boolean northbound) {
+        List<Trip.Stop> stops = new ArrayList<>();
+        for (Trip trip : trips.values()) {
+            for (int i = 0; i < trip.size(); i++) {
+                if (!trip.isCancelled(i) && trip.isDelayed(i) && trip.isNorthbound(i) == northbound) {
+                    stops.add(trip.stop(i));
+                }
+            }
+        }
+        stops.sort(MOST_DELAYED_FIRST);
+        return stops.stream().map(ScheduleEntry::of).toList();
+    }
+
+    private static List<String> sortedTrainIDs(Timetable timetable) {
+        return timetable.getTrips().keySet().stream().sorted().toList();
+    }
+}
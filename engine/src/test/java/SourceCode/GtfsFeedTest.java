@@ -0,0 +1,166 @@
+package SourceCode;
+/**
+ * Tests of the GTFS import and export on the small feed in src/test/resources/SourceCode/gtfs.
+ * The feed runs on the North-South line and has:
+ * - a weekday service, a Saturday service and a holiday service that exists only in calendar_dates.txt;
+ * - a stop outside the network (Monas);
+ * - a platform that takes its station from parent_station;
+ * - a night train whose stop times run past midnight (24:01:00).
+ * Broken copies of the feed check that bad rows are rejected and leave the timetable as it was.
+ * Demonstrates use of JUnit 5, temporary directories and class path resources.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GtfsFeedTest {
+    /** The weekday trips: the morning train, with the stop at Monas left out, and the night train */
+    private static final Map<String, String> WEEKDAY_TRIPS = Map.of(
+        "WD1", "0500@1N 0503@2N 0506@3N",
+        "NIGHT", "2358@3S 0001@2S 0004@1S");
+
+    @TempDir
+    Path temp;
+
+    @BeforeEach
+    void clearTimetable() {
+        MRTManager.clear();
+    }
+
+    @Test
+    void importsTheTripsRunningOnADay() throws Exception {
+        GtfsFeed.ImportSummary summary = GtfsFeed.importFeed(fixture(), DayOfWeek.MONDAY);
+
+        // Six stop times loaded; the stop at Monas and the four rows of trips not running on Mondays are skipped
+        assertEquals(new GtfsFeed.ImportSummary(2, 6, 5), summary);
+        assertEquals(WEEKDAY_TRIPS, describeTrips());
+        for (Trip trip : MRTManager.getTimetable().getTrips().values()) {
+            assertEquals("NS", trip.getLine().getCode());
+        }
+    }
+
+    @Test
+    void selectsServicesByWeekdayAndIgnoresCalendarExceptions() throws Exception {
+        // calendar_dates.txt only changes single dates, so neither the removed weekday service
+        // nor the added holiday service changes which trips run on a Saturday
+        assertEquals(new GtfsFeed.ImportSummary(1, 2, 9), GtfsFeed.importFeed(fixture(), DayOfWeek.SATURDAY));
+        assertEquals(Map.of("SA1", "0800@1N 0803@2N"), describeTrips());
+    }
+
+    @Test
+    void importsEveryTripWithoutADay() throws Exception {
+        assertEquals(new GtfsFeed.ImportSummary(4, 10, 1), GtfsFeed.importFeed(fixture(), null));
+        Map<String, String> expected = new TreeMap<>(WEEKDAY_TRIPS);
+        expected.put("SA1", "0800@1N 0803@2N");
+        expected.put("HO1", "0900@1N 0903@2N");
+        assertEquals(expected, describeTrips());
+    }
+
+    @Test
+    void exportedFeedImportsToTheSameTrips() throws Exception {
+        GtfsFeed.importFeed(fixture(), null);
+        Map<String, String> imported = describeTrips();
+
+        Path exported = Files.createDirectory(temp.resolve("exported"));
+        long stopTimes = GtfsFeed.exportFeed(MRTManager.getTimetable(), exported,
+            LocalDate.of(2026, 1, 1), LocalDate.of(2026, 12, 31));
+        assertEquals(10, stopTimes);
+
+        clearTimetable();
+        assertEquals(new GtfsFeed.ImportSummary(4, 10, 0), GtfsFeed.importFeed(exported, DayOfWeek.MONDAY));
+        assertEquals(imported, describeTrips());
+    }
+
+    @Test
+    void rejectsAnInvalidTime() throws Exception {
+        Path feed = brokenCopy("stop_times.txt", "WD1,05:03:00,05:03:00", "WD1,05:63:00,05:63:00");
+        IllegalArgumentException error = assertRejected(feed);
+        assertTrue(error.getMessage().contains("05:63:00"), error.getMessage());
+    }
+
+    @Test
+    void rejectsAnInvalidDirection() throws Exception {
+        Path feed = brokenCopy("trips.txt", "R1,WEEKDAY,WD1,1,", "R1,WEEKDAY,WD1,north,");
+        IllegalArgumentException error = assertRejected(feed);
+        assertTrue(error.getMessage().contains("direction_id"), error.getMessage());
+    }
+
+    @Test
+    void rejectsStopTimesOfATrainThatAreNotTogether() throws Exception {
+        // A late row of the morning train, after the rows of other trains; the night train is loaded first
+        Path feed = brokenCopy("stop_times.txt", "HO1,09:03:00,09:03:00,FTM,2",
+            "HO1,09:03:00,09:03:00,FTM,2\nWD1,05:09:00,05:09:00,FTM,5");
+        IllegalArgumentException error = assertRejected(feed);
+        assertTrue(error.getMessage().contains("not together"), error.getMessage());
+    }
+
+    @Test
+    void rejectsAMissingRequiredColumn() throws Exception {
+        Path feed = brokenCopy("stop_times.txt", "trip_id,arrival_time,departure_time,stop_id,stop_sequence",
+            "trip_id,arrival_time,departure,stop_id,stop_sequence");
+        long version = MRTManager.getTimetable().getVersion();
+        assertThrows(IOException.class, () -> GtfsFeed.importFeed(feed, DayOfWeek.MONDAY));
+        assertEquals(version, MRTManager.getTimetable().getVersion());
+    }
+
+    /** Imports a feed that must be rejected, and checks that the timetable did not change */
+    private static IllegalArgumentException assertRejected(Path feed) {
+        Timetable before = MRTManager.getTimetable();
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> GtfsFeed.importFeed(feed, DayOfWeek.MONDAY));
+        assertEquals(before, MRTManager.getTimetable());
+        assertTrue(MRTManager.getTimetable().getTrips().isEmpty());
+        return error;
+    }
+
+    /** @return The directory of the fixture feed */
+    private static Path fixture() throws URISyntaxException {
+        return Path.of(GtfsFeedTest.class.getResource("/SourceCode/gtfs").toURI());
+    }
+
+    /**
+     * Copies the fixture feed with one piece of one file replaced.
+     * @return The directory of the copy
+     */
+    private Path brokenCopy(String fileName, String text, String replacement) throws Exception {
+        Path copy = Files.createDirectory(temp.resolve("broken"));
+        try (Stream<Path> files = Files.list(fixture())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, copy.resolve(file.getFileName().toString()));
+            }
+        }
+        Path file = copy.resolve(fileName);
+        String content = Files.readString(file);
+        assertTrue(content.contains(text), text);
+        Files.writeString(file, content.replace(text, replacement));
+        return copy;
+    }
+
+    /** @return Every trip of the current timetable as "HHMM@station" plus N or S per stop, by train ID */
+    private static Map<String, String> describeTrips() {
+        Map<String, String> trips = new TreeMap<>();
+        for (Trip trip : MRTManager.getTimetable().getTrips().values()) {
+            StringBuilder stops = new StringBuilder();
+            for (int i = 0; i < trip.size(); i++) {
+                if (i > 0) stops.append(' ');
+                stops.append(String.format("%04d@%d%s", trip.getTime(i), trip.getStationNumber(i),
+                    trip.isNorthbound(i) ? "N" : "S"));
+            }
+            trips.put(trip.getTrainID(), stops.toString());
+        }
+        return trips;
+    }
+}
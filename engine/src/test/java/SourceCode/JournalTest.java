@@ -0,0 +1,221 @@
+package SourceCode;
+/**
+ * Tests of crash recovery from the journal.
+ * Each test records changes of every kind through SchedulingSystem on the Jakarta network,
+ * including trains on the LRT lines at the Dukuh Atas interchange, whose default line is the
+ * North-South line. The journal is then replayed into an empty timetable, which must come back
+ * exactly as it was: the same trips on the same lines, with the same stops, delays and cancellations.
+ * Damaged journals check that:
+ * - a torn last record, or one whose checksum no longer matches, ends the journal there;
+ * - a record that no longer applies stops the replay with an IOException.
+ * Demonstrates use of JUnit 5, temporary directories and file channels.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+    @TempDir
+    Path temp;
+
+    private Path journalFile;
+
+    @BeforeEach
+    void useJakartaNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(RandomTimetable.jakartaNetwork());
+        journalFile = temp.resolve("dimsum.journal");
+    }
+
+    @AfterAll
+    static void useDefaultNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(Stations.parse(Stations.DEFAULT_NETWORK));
+    }
+
+    @Test
+    void replayRebuildsTheSameTimetable() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        assertEquals(0, system.openJournal(journalFile, Journal.FsyncPolicy.ALWAYS));
+        makeChanges(system);
+        long records = system.getJournal().getRecordCount();
+        Map<String, String> expected = describeTimetable();
+        system.closeJournal();
+
+        // The trains built for the LRT lines kept their lines, also for stops only those lines serve
+        assertEquals("CBB", MRTManager.getTimetable().getTrip("CB1").getLine().getCode());
+        assertEquals("BKS", MRTManager.getTimetable().getTrip("BK1").getLine().getCode());
+
+        assertEquals(records, replayIntoEmptyTimetable());
+        assertEquals(expected, describeTimetable());
+    }
+
+    @Test
+    void closingStopsTheIntervalFlusher() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        system.openJournal(journalFile, Journal.FsyncPolicy.INTERVAL);
+        makeChanges(system);
+        long records = system.getJournal().getRecordCount();
+        Map<String, String> expected = describeTimetable();
+        system.closeJournal();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().equals("journal-flusher")) continue;
+            thread.join(1000);
+            assertFalse(thread.isAlive());
+        }
+
+        assertEquals(records, replayIntoEmptyTimetable());
+        assertEquals(expected, describeTimetable());
+    }
+
+    @Test
+    void aRecordWithTheWrongChecksumEndsTheJournal() throws Exception {
+        checkDamagedLastRecord((channel, start, end) -> {
+            // Flip one byte of the record's body, so its checksum no longer matches
+            ByteBuffer body = ByteBuffer.allocate(1);
+            channel.read(body, start + 6);
+            body.put(0, (byte) (body.get(0) ^ 0x5A)).rewind();
+            channel.write(body, start + 6);
+        });
+    }
+
+    @Test
+    void aTornRecordEndsTheJournal() throws Exception {
+        checkDamagedLastRecord((channel, start, end) -> {
+            // The length reached the disk but the end of the body and the checksum did not
+            int lost = (int) (end - start) / 2;
+            channel.write(ByteBuffer.allocate(lost), end - lost);
+        });
+    }
+
+    @Test
+    void aRecordThatCannotBeAppliedStopsTheReplay() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        system.openJournal(journalFile, Journal.FsyncPolicy.NEVER);
+        makeChanges(system);
+        system.closeJournal();
+
+        // On the North-South network alone, the LRT stations of the journaled trains do not exist
+        MRTManager.clear();
+        MRTManager.useNetwork(Stations.parse(Stations.DEFAULT_NETWORK));
+        SchedulingSystem restarted = new SchedulingSystem();
+        IOException error = assertThrows(IOException.class,
+            () -> restarted.openJournal(journalFile, Journal.FsyncPolicy.NEVER));
+        assertTrue(error.getMessage().startsWith("Journal record "), error.getMessage());
+        assertNull(restarted.getJournal());
+    }
+
+    /** Damages the bytes of a record in an open file channel */
+    @FunctionalInterface
+    private interface Damage {
+        /**
+         * @param channel The journal file
+         * @param start The offset the record starts at
+         * @param end The offset the record ends at
+         */
+        void apply(FileChannel channel, long start, long end) throws IOException;
+    }
+
+    /**
+     * Records changes and one last delay, damages the last record, and checks that replaying
+     * gives the timetable as it was before the delay. Changes recorded after reopening the
+     * journal must then replay as well, in place of the damaged record.
+     */
+    private void checkDamagedLastRecord(Damage damage) throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        system.openJournal(journalFile, Journal.FsyncPolicy.ALWAYS);
+        makeChanges(system);
+        Map<String, String> beforeLastChange = describeTimetable();
+        long records = system.getJournal().getRecordCount();
+        long lastStart = system.getJournal().getSize();
+        assertTrue(system.delayTrain("CB1", MRTManager.getTimetable().getTrip("CB1").getTime(1), 6, "Power failure"));
+        long lastEnd = system.getJournal().getSize();
+        assertFalse(beforeLastChange.equals(describeTimetable()));
+        system.closeJournal();
+
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            damage.apply(channel, lastStart, lastEnd);
+        }
+
+        // The damaged record is left out, and the journal ends where it started
+        MRTManager.clear();
+        SchedulingSystem restarted = new SchedulingSystem();
+        assertEquals(records, restarted.openJournal(journalFile, Journal.FsyncPolicy.ALWAYS));
+        assertEquals(beforeLastChange, describeTimetable());
+        assertEquals(lastStart, restarted.getJournal().getSize());
+
+        // New records are written over it and replay after the ones before
+        assertTrue(restarted.cancelTrain("BK1", MRTManager.getTimetable().getTrip("BK1").getTime(1)));
+        Map<String, String> expected = describeTimetable();
+        restarted.closeJournal();
+        assertEquals(records + 1, replayIntoEmptyTimetable());
+        assertEquals(expected, describeTimetable());
+    }
+
+    /** Makes one or more changes of every kind the journal records */
+    private static void makeChanges(SchedulingSystem system) throws IOException, URISyntaxException {
+        Stations network = Stations.getInstance();
+        Line cibubur = network.getLine("CBB");
+        Line bekasi = network.getLine("BKS");
+        assertEquals("NS", network.getDefaultLine(network.getStationNumber("Dukuh Atas")).getCode());
+
+        ServicePlan plan = new ServicePlan();
+        plan.addBand(true, 600, 800, 30);
+        plan.addBand(false, 630, 800, 45);
+        assertTrue(system.generateTimetable(plan) > 0);
+
+        // Trains on the LRT lines that start at the interchange and go on to stops of their own line only
+        system.addTrain(new MRT("CB1", 700, "Dukuh Atas", false, cibubur));
+        system.addTrain(new MRT("CB1", 702, "Setiabudi LRT", false, cibubur));
+        system.addTrains(List.of(
+            new MRT("BK1", 710, "Dukuh Atas", false, bekasi),
+            new MRT("BK1", 712, "Setiabudi LRT", false, bekasi),
+            new MRT("BK1", 714, "Rasuna Said", false, bekasi),
+            new MRT("NS1", 720, "Dukuh Atas", true)));
+
+        Timetable timetable = MRTManager.getTimetable();
+        String generated = timetable.getTrips().keySet().stream().filter(id -> !id.matches("[A-Z]{2}\\d"))
+            .sorted().findFirst().orElseThrow();
+        Trip trip = timetable.getTrip(generated);
+        assertTrue(system.delayTrain(generated, trip.getTime(1), 4, "Door fault"));
+        assertTrue(system.cancelTrain("BK1", 714));
+        assertTrue(system.rescheduleTrain("NS1", 720, 725, "Bundaran HI"));
+        system.importGtfs(gtfsFixture(), DayOfWeek.MONDAY);
+        system.simulateTrainsRunning(900);
+        assertTrue(system.delayTrain("CB1", 700, 3, "Signal fault"));
+    }
+
+    /** Replays the journal into an empty timetable and closes it again */
+    private long replayIntoEmptyTimetable() throws IOException {
+        MRTManager.clear();
+        SchedulingSystem restarted = new SchedulingSystem();
+        long replayed = restarted.openJournal(journalFile, Journal.FsyncPolicy.NEVER);
+        restarted.closeJournal();
+        return replayed;
+    }
+
+    private static Path gtfsFixture() throws URISyntaxException {
+        return Path.of(JournalTest.class.getResource("/SourceCode/gtfs").toURI());
+    }
+
+    /** @return The current timetable, described by RandomTimetable.describe */
+    private static Map<String, String> describeTimetable() {
+        return RandomTimetable.describe(MRTManager.getTimetable());
+    }
+}
@@ -0,0 +1,213 @@
+package SourceCode;
+/**
+ * Tests of the hash array mapped trie timetable versions keep their trips in.
+ * Random runs of puts and removes are checked against a HashMap, with keys whose hashes:
+ * - are all different;
+ * - are all the same (a collision node below the last level of the trie);
+ * - differ only in the top bits, so they share a branch down to the last level.
+ * Other tests check that editors never change the maps they started from or handed out,
+ * and that maps read as ordinary read-only maps.
+ * Demonstrates use of JUnit 5, model-based testing and seeded random numbers.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Test;
+
+class PersistentMapTest {
+    private static final long SEED = 20261018L;
+
+    /** A key with a chosen hash code, so tests can place keys in the trie */
+    private record Key(int id, int hash) {
+        /**
+         * Creates a key whose hash, once PersistentMap spreads it (h ^ h >>> 16), is the given value.
+         * @param id Tells apart keys with the same hash
+         * @param spread The hash the trie will use
+         */
+        static Key withSpreadHash(int id, int spread) {
+            return new Key(id, spread ^ (spread >>> 16));
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+
+    @Test
+    void putAndRemoveMatchAHashMap() {
+        checkAgainstHashMap(id -> id, 5_000);
+    }
+
+    @Test
+    void keysWithTheSameHashShareACollisionNode() {
+        checkAgainstHashMap(id -> new Key(id, 42), 200);
+    }
+
+    @Test
+    void keysDifferingOnlyInTheTopBitsShareABranchToTheLastLevel() {
+        // The four spread hashes agree in their low 30 bits, so only the last level tells them apart
+        checkAgainstHashMap(id -> Key.withSpreadHash(id, (id & 3) << 30 | 0x2AAAAAAA), 40);
+    }
+
+    @Test
+    void removingEveryKeyLeavesTheEmptyMap() {
+        PersistentMap.Editor<Key, String> editor = PersistentMap.<Key, String>empty().edit();
+        List<Key> keys = new ArrayList<>();
+        for (int id = 0; id < 64; id++) {
+            Key key = new Key(id, id % 8 == 0 ? 7 : id * 0x9E3779B9);
+            keys.add(key);
+            editor.put(key, "v" + id);
+        }
+        assertEquals(64, editor.toMap().size());
+        for (Key key : keys) {
+            assertEquals("v" + key.id(), editor.remove(key));
+            assertNull(editor.remove(key));
+        }
+        assertSame(PersistentMap.empty(), editor.toMap());
+    }
+
+    @Test
+    void editorsNeverChangeTheMapTheyStartedFrom() {
+        PersistentMap.Editor<Integer, String> editor = PersistentMap.<Integer, String>empty().edit();
+        for (int i = 0; i < 1_000; i++) {
+            editor.put(i, "a" + i);
+        }
+        PersistentMap<Integer, String> first = editor.toMap();
+        Map<Integer, String> expected = new HashMap<>(first);
+
+        // Two editors from the same map each see only their own changes
+        PersistentMap.Editor<Integer, String> left = first.edit();
+        PersistentMap.Editor<Integer, String> right = first.edit();
+        for (int i = 0; i < 1_000; i += 3) {
+            left.put(i, "left" + i);
+            right.remove(i);
+        }
+        PersistentMap<Integer, String> leftMap = left.toMap();
+        PersistentMap<Integer, String> rightMap = right.toMap();
+        assertEquals(expected, first);
+        assertEquals("left3", leftMap.get(3));
+        assertFalse(rightMap.containsKey(3));
+        assertEquals("a4", rightMap.get(4));
+
+        // An editor that goes on after toMap copies the nodes it handed out instead of changing them
+        Map<Integer, String> leftExpected = new HashMap<>(leftMap);
+        for (int i = 0; i < 1_000; i++) {
+            left.put(i, "again" + i);
+            left.remove(i + 1);
+        }
+        assertEquals(leftExpected, leftMap);
+        assertEquals(expected, first);
+    }
+
+    @Test
+    void mapsReadAsOrdinaryMaps() {
+        Map<String, Integer> source = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            source.put("T" + i, i);
+        }
+        PersistentMap<String, Integer> map = PersistentMap.copyOf(source);
+        assertSame(map, PersistentMap.copyOf(map));
+        assertEquals(source, map);
+        assertEquals(map, source);
+        assertEquals(source.hashCode(), map.hashCode());
+        assertEquals(source.keySet(), map.keySet());
+        assertEquals(new HashSet<>(source.values()), new HashSet<>(map.values()));
+        assertNull(map.get(null));
+        assertNull(map.get("T300"));
+        assertThrows(UnsupportedOperationException.class, () -> map.put("T300", 300));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove("T1"));
+        assertThrows(UnsupportedOperationException.class, () -> map.entrySet().iterator().next().setValue(0));
+        assertTrue(PersistentMap.empty().isEmpty());
+        assertFalse(PersistentMap.empty().entrySet().iterator().hasNext());
+    }
+
+    @Test
+    void anEditorCanBeChangedWhileIteratingIt() {
+        PersistentMap.Editor<Integer, Integer> editor = PersistentMap.<Integer, Integer>empty().edit();
+        for (int i = 0; i < 100; i++) {
+            editor.put(i, i);
+        }
+        // The editor iterates the keys it had when iteration started
+        int seen = 0;
+        for (Map.Entry<Integer, Integer> entry : editor.entrySet()) {
+            editor.remove(entry.getKey());
+            editor.put(entry.getKey() + 1_000, entry.getValue());
+            seen++;
+        }
+        assertEquals(100, seen);
+        assertEquals(100, editor.size());
+        assertEquals(Set.of(), intersection(editor.keySet(), Set.of(0, 50, 99)));
+    }
+
+    @Test
+    void rejectsNullKeysAndValues() {
+        PersistentMap.Editor<String, String> editor = PersistentMap.<String, String>empty().edit();
+        assertThrows(NullPointerException.class, () -> editor.put(null, "x"));
+        assertThrows(NullPointerException.class, () -> editor.put("x", null));
+        assertNull(editor.remove(null));
+        assertEquals(0, editor.size());
+    }
+
+    /**
+     * Runs seeded random puts and removes on an editor and on a HashMap, taking a map after every
+     * few operations, and checks that every map taken still equals the HashMap as it was then.
+     * @param keyOf Creates the key with an ID
+     * @param keyCount The number of different keys to use
+     */
+    private static <K> void checkAgainstHashMap(IntFunction<K> keyOf, int keyCount) {
+        Random random = new Random(SEED);
+        PersistentMap.Editor<K, Integer> editor = PersistentMap.<K, Integer>empty().edit();
+        Map<K, Integer> model = new HashMap<>();
+        List<PersistentMap<K, Integer>> taken = new ArrayList<>();
+        List<Map<K, Integer>> expected = new ArrayList<>();
+        for (int op = 0; op < keyCount * 6; op++) {
+            K key = keyOf.apply(random.nextInt(keyCount));
+            if (random.nextInt(3) == 0) {
+                assertEquals(model.remove(key), editor.remove(key));
+            } else {
+                int value = random.nextInt();
+                assertEquals(model.put(key, value), editor.put(key, value));
+            }
+            assertEquals(model.size(), editor.size());
+            if (op % (keyCount / 4 + 1) == 0) {
+                taken.add(editor.toMap());
+                expected.add(new HashMap<>(model));
+            }
+        }
+        taken.add(editor.toMap());
+        expected.add(new HashMap<>(model));
+        for (int i = 0; i < taken.size(); i++) {
+            PersistentMap<K, Integer> map = taken.get(i);
+            Map<K, Integer> want = expected.get(i);
+            assertEquals(want.size(), map.size());
+            assertEquals(want, map);
+            int entries = 0;
+            for (Map.Entry<K, Integer> entry : map.entrySet()) {
+                assertEquals(want.get(entry.getKey()), entry.getValue());
+                entries++;
+            }
+            assertEquals(want.size(), entries);
+            for (int id = 0; id < keyCount; id++) {
+                K key = keyOf.apply(id);
+                assertEquals(want.get(key), map.get(key));
+            }
+        }
+    }
+
+    private static <T> Set<T> intersection(Set<T> a, Set<T> b) {
+        Set<T> both = new HashSet<>(a);
+        both.retainAll(b);
+        return both;
+    }
+}
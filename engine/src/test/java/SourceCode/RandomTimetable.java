@@ -0,0 +1,153 @@
+package SourceCode;
+/**
+ * Seeded random timetables and edits for the index tests.
+ * Trips run along one line of the current network, so with the Jakarta network they call at
+ * interchanges shared by several lines. Edits are the kinds of change MRTManager makes to a
+ * trip (new trips, delays, cleared delays, cancellations, reschedules and removals), made
+ * directly on a Timetable.Builder so a test controls exactly which versions are published.
+ * describe turns a timetable into plain text per train, for tests comparing whole timetables.
+ * Demonstrates use of seeded random numbers and the timetable builder.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+final class RandomTimetable {
+    private static final String[] REASONS = {"Signal fault", "Door fault", "Crowding"};
+
+    private final Random random;
+    private int nextTrainNumber = 1;
+
+    RandomTimetable(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates a trip along part of a random line, leaving between 05:00 and 21:59.
+     * @return The trip, not yet frozen
+     */
+    Trip newTrip() {
+        List<Line> lines = Stations.getInstance().getLines();
+        Line line = lines.get(random.nextInt(lines.size()));
+        boolean northbound = random.nextBoolean();
+        int position = random.nextInt(line.size());
+        int minute = 5 * 60 + random.nextInt(17 * 60);
+        Trip trip = new Trip(String.format("T%05d", nextTrainNumber++), line.getIndex());
+        int stops = 1 + random.nextInt(8);
+        for (int i = 0; i < stops && position >= 0 && position < line.size(); i++) {
+            trip.addStop(TimeUtils.fromMinuteOfDay(minute), line.getStation(position), northbound);
+            position += northbound ? 1 : -1;
+            minute += 2 + random.nextInt(3);
+        }
+        return trip;
+    }
+
+    /**
+     * Adds new trips to a builder.
+     * @param count The number of trips to add
+     */
+    void addTrips(Timetable.Builder builder, int count) {
+        for (int i = 0; i < count; i++) {
+            builder.putTrip(newTrip());
+        }
+    }
+
+    /**
+     * Makes one random change to a builder: adds, delays, clears a delay of, cancels a stop of,
+     * reschedules a stop of or removes a train.
+     */
+    void edit(Timetable.Builder builder) {
+        List<String> trainIDs = new ArrayList<>(builder.getTrainIDs());
+        int kind = random.nextInt(8);
+        if (trainIDs.isEmpty() || kind == 0) {
+            builder.putTrip(newTrip());
+            return;
+        }
+        trainIDs.sort(null);
+        String trainID = trainIDs.get(random.nextInt(trainIDs.size()));
+        if (kind == 1) {
+            builder.removeTrip(trainID);
+            return;
+        }
+        Trip trip = builder.editTrip(trainID);
+        int stop = randomLiveStop(trip);
+        if (stop == -1) return;
+        switch (kind) {
+            case 2, 3 -> trip.setDelay(stop, 1 + random.nextInt(20), REASONS[random.nextInt(REASONS.length)]);
+            case 4 -> trip.delayFrom(stop, 1 + random.nextInt(10), REASONS[random.nextInt(REASONS.length)]);
+            case 5 -> trip.setDelay(stop, 0, null);
+            case 6 -> trip.cancelStop(stop);
+            default -> {
+                Line line = trip.getLine();
+                int station = line.getStation(random.nextInt(line.size()));
+                int minute = TimeUtils.toMinuteOfDay(trip.getTime(stop)) + random.nextInt(11) - 5;
+                trip.rescheduleStop(stop, TimeUtils.fromMinuteOfDay(minute), station, random.nextBoolean());
+            }
+        }
+    }
+
+    /**
+     * Makes random changes to a builder.
+     * @param count The number of changes to make
+     */
+    void edit(Timetable.Builder builder, int count) {
+        for (int i = 0; i < count; i++) {
+            edit(builder);
+        }
+    }
+
+    /** @return A random stop of the trip that is not cancelled, or -1 if there is none */
+    private int randomLiveStop(Trip trip) {
+        int start = random.nextInt(trip.size());
+        for (int i = 0; i < trip.size(); i++) {
+            int stop = (start + i) % trip.size();
+            if (!trip.isCancelled(stop)) return stop;
+        }
+        return -1;
+    }
+
+    /**
+     * Describes a timetable, so two timetables can be compared whatever objects hold them.
+     * @return Every trip as its line code and its stops, by train ID. A stop is "HHMM@station"
+     *         plus N or S, "+minutes reason" if delayed, or "X" if cancelled
+     */
+    static Map<String, String> describe(Timetable timetable) {
+        Map<String, String> trips = new TreeMap<>();
+        for (Trip trip : timetable.getTrips().values()) {
+            StringBuilder stops = new StringBuilder(trip.getLine().getCode());
+            for (int i = 0; i < trip.size(); i++) {
+                stops.append(' ');
+                if (trip.isCancelled(i)) {
+                    stops.append('X');
+                    continue;
+                }
+                stops.append(String.format("%04d@%d%s", trip.getTime(i), trip.getStationNumber(i),
+                    trip.isNorthbound(i) ? "N" : "S"));
+                if (trip.isDelayed(i)) {
+                    stops.append('+').append(trip.getDelay(i)).append(' ').append(trip.getDelayReason(i));
+                }
+            }
+            trips.put(trip.getTrainID(), stops.toString());
+        }
+        return trips;
+    }
+
+    /** @return The Jakarta network shipped with the sources, with its interchanges */
+    static Stations jakartaNetwork() {
+        return Stations.parse(readResource("/SourceCode/jakarta-network.txt"));
+    }
+
+    private static String readResource(String name) {
+        try (InputStream in = RandomTimetable.class.getResourceAsStream(name)) {
+            if (in == null) throw new IllegalStateException("Missing resource " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
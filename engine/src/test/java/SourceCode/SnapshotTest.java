@@ -0,0 +1,190 @@
+package SourceCode;
+/**
+ * Tests of saving and loading binary timetable snapshots, alone and together with the journal.
+ * The timetables run on the Jakarta network and include trains on the LRT lines at the Dukuh Atas
+ * interchange, delays and cancellations. A loaded snapshot must give the same trips on the same
+ * lines and a column store that answers every query as before. Damaged snapshots, and snapshots
+ * of another network, must be rejected and leave the timetable as it was; so must a journal with
+ * fewer records than the snapshot covers.
+ * Demonstrates use of JUnit 5, temporary directories and file channels.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotTest {
+    @TempDir
+    Path temp;
+
+    private Path snapshotFile;
+    private Path journalFile;
+
+    @BeforeEach
+    void useJakartaNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(RandomTimetable.jakartaNetwork());
+        snapshotFile = temp.resolve("dimsum.snapshot");
+        journalFile = temp.resolve("dimsum.journal");
+    }
+
+    @AfterAll
+    static void useDefaultNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(Stations.parse(Stations.DEFAULT_NETWORK));
+    }
+
+    @Test
+    void loadedSnapshotGivesTheSameTimetable() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        loadTrips(system);
+        Timetable saved = MRTManager.getTimetable();
+        system.saveSnapshot(snapshotFile);
+
+        MRTManager.clear();
+        Snapshot snapshot = new SchedulingSystem().loadSnapshot(snapshotFile);
+        assertEquals(saved.getTrips().size(), snapshot.getTripCount());
+        assertEquals(0, snapshot.getJournalRecords());
+
+        Timetable loaded = MRTManager.getTimetable();
+        assertEquals(RandomTimetable.describe(saved), RandomTimetable.describe(loaded));
+        assertEquals("CBB", loaded.getTrip("CB1").getLine().getCode());
+        assertSameDepartures(saved, loaded);
+    }
+
+    @Test
+    void journalRecordsAfterTheSnapshotReplayOnTopOfIt() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        system.openJournal(journalFile, Journal.FsyncPolicy.NEVER);
+        loadTrips(system);
+        system.saveSnapshot(snapshotFile);
+        Map<String, String> atSnapshot = RandomTimetable.describe(MRTManager.getTimetable());
+
+        // Changes after the snapshot, including another train on an LRT line
+        Line bekasi = Stations.getInstance().getLine("BKS");
+        system.addTrains(List.of(
+            new MRT("BK1", 810, "Dukuh Atas", false, bekasi),
+            new MRT("BK1", 812, "Setiabudi LRT", false, bekasi)));
+        assertTrue(system.delayTrain("BK1", 810, 5, "Crowding"));
+        assertTrue(system.cancelTrain("CB1", 702));
+        Timetable expected = MRTManager.getTimetable();
+        system.closeJournal();
+
+        // A restart loads the snapshot and replays only the three records written after it
+        MRTManager.clear();
+        SchedulingSystem restarted = new SchedulingSystem();
+        restarted.loadSnapshot(snapshotFile);
+        assertEquals(atSnapshot, RandomTimetable.describe(MRTManager.getTimetable()));
+        assertEquals(3, restarted.openJournal(journalFile, Journal.FsyncPolicy.NEVER));
+        restarted.closeJournal();
+
+        Timetable recovered = MRTManager.getTimetable();
+        assertEquals(RandomTimetable.describe(expected), RandomTimetable.describe(recovered));
+        assertEquals("BKS", recovered.getTrip("BK1").getLine().getCode());
+        assertSameDepartures(expected, recovered);
+    }
+
+    @Test
+    void aJournalShorterThanTheSnapshotIsRejected() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        system.openJournal(journalFile, Journal.FsyncPolicy.NEVER);
+        loadTrips(system);
+        system.saveSnapshot(snapshotFile);
+        system.closeJournal();
+
+        // The snapshot covers the records of its own journal, which a new journal does not have
+        MRTManager.clear();
+        SchedulingSystem restarted = new SchedulingSystem();
+        restarted.loadSnapshot(snapshotFile);
+        assertThrows(IOException.class,
+            () -> restarted.openJournal(temp.resolve("other.journal"), Journal.FsyncPolicy.NEVER));
+        assertNull(restarted.getJournal());
+    }
+
+    @Test
+    void damagedSnapshotsAreRejected() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        loadTrips(system);
+        system.saveSnapshot(snapshotFile);
+        long size = Files.size(snapshotFile);
+
+        // One flipped byte in the middle of the body fails the checksum
+        Path flipped = Files.copy(snapshotFile, temp.resolve("flipped.snapshot"));
+        try (FileChannel channel = FileChannel.open(flipped, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, size / 2);
+            b.put(0, (byte) (b.get(0) ^ 0x01)).rewind();
+            channel.write(b, size / 2);
+        }
+        assertRejected(flipped);
+
+        // So does a file cut short, e.g. copied while it was being written
+        Path truncated = Files.copy(snapshotFile, temp.resolve("truncated.snapshot"));
+        try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 100);
+        }
+        assertRejected(truncated);
+    }
+
+    @Test
+    void snapshotsOfAnotherNetworkAreRejected() throws Exception {
+        SchedulingSystem system = new SchedulingSystem();
+        loadTrips(system);
+        system.saveSnapshot(snapshotFile);
+
+        MRTManager.clear();
+        MRTManager.useNetwork(Stations.parse(Stations.DEFAULT_NETWORK));
+        assertRejected(snapshotFile);
+    }
+
+    /** Generates a morning of trips and adds a delayed LRT train with a cancelled stop */
+    private static void loadTrips(SchedulingSystem system) {
+        ServicePlan plan = new ServicePlan();
+        plan.addBand(true, 600, 900, 20);
+        plan.addBand(false, 600, 900, 30);
+        assertTrue(system.generateTimetable(plan) > 0);
+
+        Line cibubur = Stations.getInstance().getLine("CBB");
+        system.addTrains(List.of(
+            new MRT("CB1", 700, "Dukuh Atas", false, cibubur),
+            new MRT("CB1", 702, "Setiabudi LRT", false, cibubur),
+            new MRT("CB1", 704, "Rasuna Said", false, cibubur)));
+        assertTrue(system.delayTrain("CB1", 700, 2, "Door fault"));
+        assertTrue(system.cancelTrain("CB1", 706));
+    }
+
+    /** Loads a snapshot that must be rejected, and checks that the timetable did not change */
+    private static void assertRejected(Path file) {
+        Timetable before = MRTManager.getTimetable();
+        assertThrows(IOException.class, () -> new SchedulingSystem().loadSnapshot(file));
+        assertEquals(before, MRTManager.getTimetable());
+    }
+
+    /** Checks that two timetables give the same departures at every station */
+    private static void assertSameDepartures(Timetable expected, Timetable actual) {
+        StopEventStore expectedStops = expected.getStopEvents();
+        StopEventStore actualStops = actual.getStopEvents();
+        assertEquals(expectedStops.size(), actualStops.size());
+        Stations network = Stations.getInstance();
+        for (boolean northbound : new boolean[] {true, false}) {
+            assertEquals(expectedStops.getEntries(northbound), actualStops.getEntries(northbound));
+            for (int station = network.getFirstStationNumber(); station <= network.getLastStationNumber(); station++) {
+                assertEquals(expected.getNextDepartures(station, northbound, 700, 4).asList(),
+                    actual.getNextDepartures(station, northbound, 700, 4).asList());
+            }
+        }
+    }
+}
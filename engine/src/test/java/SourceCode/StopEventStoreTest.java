@@ -0,0 +1,188 @@
+package SourceCode;
+/**
+ * Tests that a column store brought up to date from an earlier version answers every query
+ * exactly as a store built from scratch over the same trips.
+ * The timetables are random trips on the Jakarta network, so next-departure queries at the
+ * interchanges merge several lines. Stores are compared:
+ * - row by row, once they have been compacted into a single set of sorted columns;
+ * - query by query (every departure per direction, per station and per line) while they
+ *   still keep the changed rows aside.
+ * Demonstrates use of JUnit 5, model-based testing and package-private test hooks.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class StopEventStoreTest {
+    /** Trips of the starting timetable; with up to 8 stops each, about 18000 rows */
+    private static final int TRIPS = 4_000;
+
+    /** Query times spread over the day, in HHMM format */
+    private static final int[] FROM_TIMES = {0, 500, 742, 1200, 1659, 2130, 2359};
+
+    @BeforeAll
+    static void useJakartaNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(RandomTimetable.jakartaNetwork());
+    }
+
+    @AfterAll
+    static void useDefaultNetwork() {
+        MRTManager.clear();
+        MRTManager.useNetwork(Stations.parse(Stations.DEFAULT_NETWORK));
+    }
+
+    @Test
+    void smallUpdatesKeepChangedRowsAsideAndMatchAFreshStore() {
+        RandomTimetable random = new RandomTimetable(1);
+        Timetable timetable = startingTimetable(random);
+        StopEventStore store = timetable.getStopEvents();
+        assertSame(store, store.compact());
+
+        for (int round = 0; round < 20; round++) {
+            Timetable.Builder builder = timetable.toBuilder();
+            random.edit(builder, 25);
+            Timetable next = builder.build();
+            store = store.update(next.getTrips(), changedTrainIDs(timetable, next));
+            timetable = next;
+
+            // Far fewer than the 4096 rows that trigger a merge have changed
+            assertNotSame(store, store.compact());
+            assertSameQueries(StopEventStore.build(timetable.getTrips().values()), store);
+        }
+        assertSameRows(StopEventStore.build(timetable.getTrips().values()), store.compact());
+    }
+
+    @Test
+    void updatesPastTheChangedRowLimitAreMergedIntoSortedColumns() {
+        RandomTimetable random = new RandomTimetable(2);
+        Timetable timetable = startingTimetable(random);
+        StopEventStore store = timetable.getStopEvents();
+
+        int compactions = 0;
+        for (int round = 0; round < 12; round++) {
+            Timetable.Builder builder = timetable.toBuilder();
+            random.edit(builder, 400);
+            Timetable next = builder.build();
+            store = store.update(next.getTrips(), changedTrainIDs(timetable, next));
+            timetable = next;
+
+            StopEventStore fresh = StopEventStore.build(timetable.getTrips().values());
+            if (store.compact() == store) {
+                compactions++;
+                assertSameRows(fresh, store);
+            }
+            assertSameQueries(fresh, store);
+        }
+        // A few hundred changed trains pass the limit every two or three rounds
+        assertTrue(compactions >= 3, "compactions: " + compactions);
+    }
+
+    @Test
+    void timetableVersionsCarryTheStoreForward() {
+        RandomTimetable random = new RandomTimetable(3);
+        Timetable timetable = startingTimetable(random);
+        timetable.getStopEvents();
+
+        List<Timetable> versions = new ArrayList<>();
+        for (int round = 0; round < 60; round++) {
+            Timetable.Builder builder = timetable.toBuilder();
+            random.edit(builder, 1 + round % 7);
+            timetable = builder.build();
+            versions.add(timetable);
+            // Read only some versions, so the others pass their changes on unread
+            if (round % 4 == 3) {
+                assertSameQueries(StopEventStore.build(timetable.getTrips().values()), timetable.getStopEvents());
+            }
+        }
+        // Versions read late, out of order, still see their own trips
+        for (int i = versions.size() - 1; i >= 0; i -= 5) {
+            Timetable version = versions.get(i);
+            assertSameQueries(StopEventStore.build(version.getTrips().values()), version.getStopEvents());
+        }
+    }
+
+    @Test
+    void longRunsOfUnreadVersionsRebuildTheStore() {
+        RandomTimetable random = new RandomTimetable(4);
+        Timetable.Builder first = Timetable.EMPTY.toBuilder();
+        random.addTrips(first, 50);
+        Timetable timetable = first.build();
+        timetable.getStopEvents();
+
+        // More changes than there are trips, so the store is built again instead of updated
+        for (int round = 0; round < 200; round++) {
+            Timetable.Builder builder = timetable.toBuilder();
+            random.edit(builder, 3);
+            timetable = builder.build();
+        }
+        StopEventStore store = timetable.getStopEvents();
+        assertSame(store, store.compact());
+        assertSameRows(StopEventStore.build(timetable.getTrips().values()), store);
+    }
+
+    private static Timetable startingTimetable(RandomTimetable random) {
+        Timetable.Builder builder = Timetable.EMPTY.toBuilder();
+        random.addTrips(builder, TRIPS);
+        return builder.build();
+    }
+
+    /** @return The trains whose trips differ between two versions */
+    private static Set<String> changedTrainIDs(Timetable before, Timetable after) {
+        Set<String> changed = new HashSet<>();
+        for (String trainID : before.getTrips().keySet()) {
+            if (before.getTrip(trainID) != after.getTrip(trainID)) changed.add(trainID);
+        }
+        for (String trainID : after.getTrips().keySet()) {
+            if (before.getTrip(trainID) != after.getTrip(trainID)) changed.add(trainID);
+        }
+        return changed;
+    }
+
+    /** Checks that two stores without changed rows hold the same rows in the same order */
+    private static void assertSameRows(StopEventStore expected, StopEventStore actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getTrips(), actual.getTrips());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getMinuteOfDay(row), actual.getMinuteOfDay(row), "minute of row " + row);
+            assertEquals(expected.getStationNumber(row), actual.getStationNumber(row), "station of row " + row);
+            assertEquals(expected.isNorthbound(row), actual.isNorthbound(row), "direction of row " + row);
+            assertSame(expected.getTrip(row), actual.getTrip(row), "trip of row " + row);
+            assertEquals(expected.getStopIndex(row), actual.getStopIndex(row), "stop of row " + row);
+            assertEquals(expected.getDelay(row), actual.getDelay(row), "delay of row " + row);
+        }
+        assertSameQueries(expected, actual);
+    }
+
+    /** Checks that two stores give the same departures for every direction, station and line */
+    private static void assertSameQueries(StopEventStore expected, StopEventStore actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getTrips(), actual.getTrips());
+        Stations network = Stations.getInstance();
+        for (boolean northbound : new boolean[] {true, false}) {
+            assertEquals(expected.getEntries(northbound), actual.getEntries(northbound));
+            for (int station = network.getFirstStationNumber(); station <= network.getLastStationNumber(); station++) {
+                for (int fromTime : FROM_TIMES) {
+                    String query = "station " + station + (northbound ? " N" : " S") + " from " + fromTime;
+                    assertEquals(expected.getNextDepartures(station, northbound, fromTime, 5).asList(),
+                        actual.getNextDepartures(station, northbound, fromTime, 5).asList(), query);
+                }
+                assertEquals(expected.getNextDepartures(station, northbound, 0, Integer.MAX_VALUE).asList(),
+                    actual.getNextDepartures(station, northbound, 0, Integer.MAX_VALUE).asList());
+                for (Line line : network.getLinesAt(station)) {
+                    assertEquals(expected.getNextDepartures(line, station, northbound, 1200, 5).asList(),
+                        actual.getNextDepartures(line, station, northbound, 1200, 5).asList());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package SourceCode;
+/**
+ * Tests of generating timetables from service plans more than once.
+ * Generating again must replace the trips of the earlier run, whatever happened to them since
+ * (delays, a simulation, a snapshot round trip), and leave trains added by other means alone.
+ * Demonstrates use of JUnit 5 and temporary directories.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TimetableGeneratorTest {
+    @TempDir
+    Path temp;
+
+    private SchedulingSystem system;
+
+    @BeforeEach
+    void startEmpty() {
+        MRTManager.clear();
+        system = new SchedulingSystem();
+        system.addTrain(new MRT("NS1", 700, "Blok M", true));
+    }
+
+    @Test
+    void generatingTwiceKeepsTheTripCount() {
+        int generated = system.generateTimetable(ServicePlan.weekday());
+        assertTrue(generated > 0);
+        Set<String> firstRun = generatedTrainIDs();
+        assertEquals(generated + 1, MRTManager.getTimetable().getTrips().size());
+
+        // The second run replaces the first and hands out the same train IDs again
+        assertEquals(generated, system.generateTimetable(ServicePlan.weekday()));
+        assertEquals(generated + 1, MRTManager.getTimetable().getTrips().size());
+        assertEquals(firstRun, generatedTrainIDs());
+        assertFalse(MRTManager.getTimetable().getTrip("NS1").isGenerated());
+    }
+
+    @Test
+    void aNewPlanReplacesTheOldOne() {
+        system.generateTimetable(ServicePlan.weekday());
+
+        ServicePlan morning = new ServicePlan();
+        morning.addBand(true, 600, 700, 15);
+        morning.addBand(false, 600, 700, 20);
+        int generated = system.generateTimetable(morning);
+        assertEquals(generated, generatedTrainIDs().size());
+        assertEquals(generated + 1, MRTManager.getTimetable().getTrips().size());
+    }
+
+    @Test
+    void changedTripsAreStillReplaced() throws Exception {
+        int generated = system.generateTimetable(ServicePlan.weekday());
+        String first = generatedTrainIDs().stream().sorted().findFirst().orElseThrow();
+        Trip trip = MRTManager.getTimetable().getTrip(first);
+        assertTrue(system.delayTrain(first, trip.getTime(0), 5, "Door fault"));
+        system.simulateTrainsRunning(2359);
+
+        // The generated flag survives a snapshot round trip
+        Path snapshotFile = temp.resolve("dimsum.snapshot");
+        system.saveSnapshot(snapshotFile);
+        MRTManager.clear();
+        system.loadSnapshot(snapshotFile);
+        assertTrue(MRTManager.getTimetable().getTrip(first).isGenerated());
+
+        assertEquals(generated, system.generateTimetable(ServicePlan.weekday()));
+        assertEquals(generated + 1, MRTManager.getTimetable().getTrips().size());
+        assertFalse(MRTManager.getTimetable().getTrip(first).isDelayed(0));
+    }
+
+    private static Set<String> generatedTrainIDs() {
+        return MRTManager.getTimetable().getTrips().values().stream()
+            .filter(Trip::isGenerated).map(Trip::getTrainID).collect(Collectors.toSet());
+    }
+}